@@ -0,0 +1,79 @@
+package one.jpro.platform.auth.core.http.impl;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the throughput of {@link RequestParser} for a typical browser request,
+ * received either at once or in small segments as on a slow connection.
+ *
+ * @author Besmir Beqiri
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RequestParserBenchmark {
+
+    private static final byte[] REQUEST = ("GET /auth?code=4%2F0AfJohXn&state=af0ifjsldkj&scope=openid%20email HTTP/1.1\r\n" +
+            "Host: localhost:8080\r\n" +
+            "Connection: keep-alive\r\n" +
+            "sec-ch-ua: \"Chromium\";v=\"124\", \"Google Chrome\";v=\"124\", \"Not-A.Brand\";v=\"99\"\r\n" +
+            "sec-ch-ua-mobile: ?0\r\n" +
+            "sec-ch-ua-platform: \"macOS\"\r\n" +
+            "Upgrade-Insecure-Requests: 1\r\n" +
+            "User-Agent: Mozilla/5.0 (Macintosh; Intel Mac OS X 10_15_7) AppleWebKit/537.36 " +
+            "(KHTML, like Gecko) Chrome/124.0.0.0 Safari/537.36\r\n" +
+            "Accept: text/html,application/xhtml+xml,application/xml;q=0.9,image/avif,image/webp,*/*;q=0.8\r\n" +
+            "Sec-Fetch-Site: cross-site\r\n" +
+            "Sec-Fetch-Mode: navigate\r\n" +
+            "Sec-Fetch-Dest: document\r\n" +
+            "Referer: https://accounts.google.com/\r\n" +
+            "Accept-Encoding: gzip, deflate, br, zstd\r\n" +
+            "Accept-Language: en-US,en;q=0.9\r\n" +
+            "\r\n").getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * The size of the segments in which the request is received, 0 to receive it at once.
+     */
+    @Param({"0", "64", "1"})
+    public int segmentSize;
+
+    private ByteTokenizer tokenizer;
+    private ByteBuffer[] segments;
+
+    @Setup
+    public void setUp() {
+        tokenizer = new ByteTokenizer();
+        final int size = segmentSize == 0 ? REQUEST.length : segmentSize;
+        segments = new ByteBuffer[(REQUEST.length + size - 1) / size];
+        for (int i = 0; i < segments.length; i++) {
+            final int offset = i * size;
+            segments[i] = ByteBuffer.wrap(REQUEST, offset, Math.min(size, REQUEST.length - offset)).slice();
+        }
+    }
+
+    @Benchmark
+    public Request parse() {
+        final RequestParser parser = new RequestParser(tokenizer);
+        for (ByteBuffer segment : segments) {
+            tokenizer.add(segment.duplicate());
+            if (parser.parse()) {
+                break;
+            }
+        }
+        final Request request = parser.request();
+        tokenizer.compact();
+        return request;
+    }
+
+    @Benchmark
+    public String parseAndLookUpHeader() {
+        return parse().header("Connection");
+    }
+}
@@ -0,0 +1,26 @@
+package one.jpro.platform.auth.core.http;
+
+/**
+ * The threads on which the embedded {@link HttpServer} runs the request handlers.
+ *
+ * @author Besmir Beqiri
+ */
+public enum HandlerExecution {
+
+    /**
+     * The handlers run on the event loop thread of the connection. This is the fastest mode for handlers
+     * that never block, but a blocking handler stalls all the connections of the event loop.
+     */
+    EVENT_LOOP,
+
+    /**
+     * Every request is handled on a new virtual thread. Virtual threads require Java 21; on older runtimes
+     * a bounded pool of platform threads is used instead.
+     */
+    VIRTUAL_THREADS,
+
+    /**
+     * The requests are handled on a bounded pool of platform threads.
+     */
+    THREAD_POOL
+}
@@ -25,10 +25,19 @@ public class HttpOptions implements Options {
     public static final boolean DEFAULT_REUSE_PORT = false;
     public static final Duration DEFAULT_RESOLUTION = Duration.ofMillis(100);
     public static final Duration DEFAULT_REQUEST_TIMEOUT = Duration.ofSeconds(60);
+    public static final Duration DEFAULT_KEEP_ALIVE_TIMEOUT = Duration.ofSeconds(60);
+    public static final Duration DEFAULT_TIMER_TICK = Duration.ofMillis(10);
     public static final int DEFAULT_READ_BUFFER_SIZE = 1_024 * 64;
     public static final int DEFAULT_ACCEPT_LENGTH = 0;
     public static final int DEFAULT_MAX_REQUEST_SIZE = 1_024 * 1_024;
+    public static final long DEFAULT_MAX_STREAMED_BODY_SIZE = 1_024L * 1_024 * 1_024;
     public static final int DEFAULT_CONCURRENCY = Runtime.getRuntime().availableProcessors();
+    public static final boolean DEFAULT_MULTI_ACCEPTOR = false;
+    public static final HandlerExecution DEFAULT_HANDLER_EXECUTION = HandlerExecution.EVENT_LOOP;
+    public static final int DEFAULT_HANDLER_POOL_SIZE = Runtime.getRuntime().availableProcessors() * 2;
+    public static final int DEFAULT_MAX_PENDING_REQUESTS = 256;
+    public static final boolean DEFAULT_COMPRESSION = true;
+    public static final long DEFAULT_BUFFER_POOL_SIZE = 4L * 1_024 * 1_024;
 
     private String host = DEFAULT_HOST;
     private int port = DEFAULT_PORT;
@@ -36,10 +45,19 @@ public class HttpOptions implements Options {
     private boolean reusePort = DEFAULT_REUSE_PORT;
     private Duration resolution = DEFAULT_RESOLUTION;
     private Duration requestTimeout = DEFAULT_REQUEST_TIMEOUT;
+    private Duration keepAliveTimeout = DEFAULT_KEEP_ALIVE_TIMEOUT;
+    private Duration timerTick = DEFAULT_TIMER_TICK;
     private int readBufferSize = DEFAULT_READ_BUFFER_SIZE;
     private int acceptLength = DEFAULT_ACCEPT_LENGTH;
     private int maxRequestSize = DEFAULT_MAX_REQUEST_SIZE;
+    private long maxStreamedBodySize = DEFAULT_MAX_STREAMED_BODY_SIZE;
     private int concurrency = DEFAULT_CONCURRENCY;
+    private boolean multiAcceptor = DEFAULT_MULTI_ACCEPTOR;
+    private HandlerExecution handlerExecution = DEFAULT_HANDLER_EXECUTION;
+    private int handlerPoolSize = DEFAULT_HANDLER_POOL_SIZE;
+    private int maxPendingRequests = DEFAULT_MAX_PENDING_REQUESTS;
+    private boolean compression = DEFAULT_COMPRESSION;
+    private long bufferPoolSize = DEFAULT_BUFFER_POOL_SIZE;
 
     /**
      * Retrieves the host address currently set for HTTP connections.
@@ -161,6 +179,47 @@ public class HttpOptions implements Options {
         return this;
     }
 
+    /**
+     * Retrieves the duration a persistent connection may stay idle between requests before it is closed.
+     *
+     * @return the keep-alive timeout as a {@code Duration}
+     */
+    public Duration getKeepAliveTimeout() {
+        return keepAliveTimeout;
+    }
+
+    /**
+     * Sets the duration a persistent connection may stay idle between requests before it is closed.
+     *
+     * @param keepAliveTimeout the keep-alive timeout as a {@code Duration}
+     * @return the {@code HttpOptions} instance for method chaining
+     */
+    public HttpOptions setKeepAliveTimeout(Duration keepAliveTimeout) {
+        this.keepAliveTimeout = keepAliveTimeout;
+        return this;
+    }
+
+    /**
+     * Retrieves the tick duration of the timer that expires the request and keep-alive timeouts.
+     *
+     * @return the timer tick as a {@code Duration}
+     */
+    public Duration getTimerTick() {
+        return timerTick;
+    }
+
+    /**
+     * Sets the tick duration of the timer that expires the request and keep-alive timeouts.
+     * Timeouts expire up to one tick late, shorter ticks wake up the event loops more often.
+     *
+     * @param timerTick the timer tick as a {@code Duration}
+     * @return the {@code HttpOptions} instance for method chaining
+     */
+    public HttpOptions setTimerTick(Duration timerTick) {
+        this.timerTick = timerTick;
+        return this;
+    }
+
     /**
      * Retrieves the size of the read buffer for HTTP connections.
      *
@@ -221,6 +280,27 @@ public class HttpOptions implements Options {
         return this;
     }
 
+    /**
+     * Retrieves the maximum size of a request body streamed to a handler.
+     *
+     * @return the maximum size of a streamed request body in bytes
+     */
+    public long getMaxStreamedBodySize() {
+        return maxStreamedBodySize;
+    }
+
+    /**
+     * Sets the maximum size of a request body streamed to a handler. Requests announcing a larger
+     * body are rejected before any of it is read, chunked bodies once they exceed the size.
+     *
+     * @param maxStreamedBodySize the maximum size in bytes for a streamed request body
+     * @return the {@code HttpOptions} instance for method chaining
+     */
+    public HttpOptions setMaxStreamedBodySize(long maxStreamedBodySize) {
+        this.maxStreamedBodySize = maxStreamedBodySize;
+        return this;
+    }
+
     /**
      * Retrieves the level of concurrency for HTTP operations.
      *
@@ -241,6 +321,134 @@ public class HttpOptions implements Options {
         return this;
     }
 
+    /**
+     * Returns whether every connection event loop accepts its own connections.
+     *
+     * @return {@code true} if the multi-acceptor mode is enabled, {@code false} otherwise
+     */
+    public boolean isMultiAcceptor() {
+        return multiAcceptor;
+    }
+
+    /**
+     * Sets whether every connection event loop accepts its own connections on a server socket bound
+     * with {@code SO_REUSEPORT}, so that the operating system spreads the incoming connections across
+     * the event loops. If the platform does not support {@code SO_REUSEPORT}, a single acceptor
+     * thread distributes the connections instead.
+     *
+     * @param multiAcceptor the value to set for the multi-acceptor mode
+     * @return the {@code HttpOptions} instance for method chaining
+     */
+    public HttpOptions setMultiAcceptor(boolean multiAcceptor) {
+        this.multiAcceptor = multiAcceptor;
+        return this;
+    }
+
+    /**
+     * Retrieves the threads on which the request handlers run.
+     *
+     * @return the handler execution mode
+     */
+    public HandlerExecution getHandlerExecution() {
+        return handlerExecution;
+    }
+
+    /**
+     * Sets the threads on which the request handlers run. Handlers that block, for example while
+     * exchanging an authorization code, should not run on the event loop threads.
+     *
+     * @param handlerExecution the handler execution mode to set
+     * @return the {@code HttpOptions} instance for method chaining
+     */
+    public HttpOptions setHandlerExecution(HandlerExecution handlerExecution) {
+        this.handlerExecution = handlerExecution;
+        return this;
+    }
+
+    /**
+     * Retrieves the number of platform threads handling the requests in the thread pool mode.
+     *
+     * @return the handler pool size
+     */
+    public int getHandlerPoolSize() {
+        return handlerPoolSize;
+    }
+
+    /**
+     * Sets the number of platform threads handling the requests in the thread pool mode.
+     *
+     * @param handlerPoolSize the handler pool size to set
+     * @return the {@code HttpOptions} instance for method chaining
+     */
+    public HttpOptions setHandlerPoolSize(int handlerPoolSize) {
+        this.handlerPoolSize = handlerPoolSize;
+        return this;
+    }
+
+    /**
+     * Retrieves the maximum number of requests of an event loop being handled off the event loop at the same time.
+     *
+     * @return the maximum number of pending requests
+     */
+    public int getMaxPendingRequests() {
+        return maxPendingRequests;
+    }
+
+    /**
+     * Sets the maximum number of requests of an event loop being handled off the event loop at the same time.
+     * Further requests wait, without reading from their connections, until a response has been sent.
+     *
+     * @param maxPendingRequests the maximum number of pending requests to set
+     * @return the {@code HttpOptions} instance for method chaining
+     */
+    public HttpOptions setMaxPendingRequests(int maxPendingRequests) {
+        this.maxPendingRequests = maxPendingRequests;
+        return this;
+    }
+
+    /**
+     * Returns whether streamed response bodies are compressed.
+     *
+     * @return {@code true} if the compression is enabled, {@code false} otherwise
+     */
+    public boolean isCompression() {
+        return compression;
+    }
+
+    /**
+     * Sets whether streamed response bodies of text content types are compressed with gzip or deflate,
+     * if the client accepts it and the handler has not encoded the body itself.
+     *
+     * @param compression the value to set for the compression flag
+     * @return the {@code HttpOptions} instance for method chaining
+     */
+    public HttpOptions setCompression(boolean compression) {
+        this.compression = compression;
+        return this;
+    }
+
+    /**
+     * Retrieves the maximum number of bytes of the idle buffers kept for reuse by each event loop.
+     *
+     * @return the buffer pool size in bytes
+     */
+    public long getBufferPoolSize() {
+        return bufferPoolSize;
+    }
+
+    /**
+     * Sets the maximum number of bytes of the idle buffers kept for reuse by each event loop.
+     * The request and response head buffers of the connections are acquired from the pool of their event loop
+     * and returned to it when the connections become idle or are closed. A size of 0 disables pooling.
+     *
+     * @param bufferPoolSize the buffer pool size in bytes to set
+     * @return the {@code HttpOptions} instance for method chaining
+     */
+    public HttpOptions setBufferPoolSize(long bufferPoolSize) {
+        this.bufferPoolSize = bufferPoolSize;
+        return this;
+    }
+
     /**
      * Converts the current settings of {@code HttpOptions} to a JSON representation.
      * This is useful for debugging or storing the configuration state.
@@ -256,10 +464,19 @@ public class HttpOptions implements Options {
         json.put("reusePort", reusePort);
         json.put("resolution", resolution.toMillis());
         json.put("requestTimeout", requestTimeout.toMillis());
+        json.put("keepAliveTimeout", keepAliveTimeout.toMillis());
+        json.put("timerTick", timerTick.toMillis());
         json.put("readBufferSize", readBufferSize);
         json.put("acceptLength", acceptLength);
         json.put("maxRequestSize", maxRequestSize);
+        json.put("maxStreamedBodySize", maxStreamedBodySize);
         json.put("concurrency", concurrency);
+        json.put("multiAcceptor", multiAcceptor);
+        json.put("handlerExecution", handlerExecution.name());
+        json.put("handlerPoolSize", handlerPoolSize);
+        json.put("maxPendingRequests", maxPendingRequests);
+        json.put("compression", compression);
+        json.put("bufferPoolSize", bufferPoolSize);
         return json;
     }
 }
@@ -0,0 +1,145 @@
+package one.jpro.platform.auth.core.http.impl;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+
+/**
+ * A pool of byte arrays and direct byte buffers, reused by the connections of an event loop.
+ * <p>
+ * Buffers are pooled in power-of-two size classes, starting at {@link #MIN_SIZE} bytes, so that a buffer
+ * acquired for a given capacity may be larger. Released buffers are kept as long as the pooled bytes do not
+ * exceed the maximum size of the pool, and are dropped otherwise. The pool is not thread-safe: it is owned
+ * by a single event loop and must only be used on its thread, so it needs no locks.
+ *
+ * @author Besmir Beqiri
+ */
+final class BufferPool {
+
+    /**
+     * The size of the smallest size class.
+     */
+    static final int MIN_SIZE = 512;
+
+    private static final int MIN_SIZE_SHIFT = Integer.numberOfTrailingZeros(MIN_SIZE);
+
+    /**
+     * The number of size classes, the largest being 1 GiB.
+     */
+    private static final int SIZE_CLASSES = 31 - MIN_SIZE_SHIFT;
+
+    private final long maxSize;
+    private final ArrayDeque<byte[]>[] arrays;
+    private final ArrayDeque<ByteBuffer>[] directBuffers;
+    private long size;
+
+    /**
+     * Creates a buffer pool.
+     *
+     * @param maxSize the maximum number of bytes kept in the pool, 0 to disable pooling
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    BufferPool(long maxSize) {
+        if (maxSize < 0) {
+            throw new IllegalArgumentException("The maximum size must not be negative: " + maxSize);
+        }
+        this.maxSize = maxSize;
+        arrays = new ArrayDeque[SIZE_CLASSES];
+        directBuffers = new ArrayDeque[SIZE_CLASSES];
+        for (int i = 0; i < SIZE_CLASSES; i++) {
+            arrays[i] = new ArrayDeque<>();
+            directBuffers[i] = new ArrayDeque<>();
+        }
+    }
+
+    /**
+     * Returns the number of bytes of the buffers kept in the pool.
+     *
+     * @return the pooled bytes
+     */
+    long size() {
+        return size;
+    }
+
+    /**
+     * Acquires a byte array, which is not cleared.
+     *
+     * @param minCapacity the minimum length of the array
+     * @return a pooled or new array of at least the given length
+     */
+    byte[] acquireArray(int minCapacity) {
+        final int sizeClass = sizeClass(minCapacity);
+        if (sizeClass < 0) {
+            return new byte[minCapacity];
+        }
+        final byte[] array = arrays[sizeClass].pollLast();
+        if (array == null) {
+            return new byte[MIN_SIZE << sizeClass];
+        }
+        size -= array.length;
+        return array;
+    }
+
+    /**
+     * Returns a byte array to the pool. The array must not be used afterward.
+     *
+     * @param array the array to release
+     */
+    void release(byte[] array) {
+        final int sizeClass = exactSizeClass(array.length);
+        if (sizeClass >= 0 && size + array.length <= maxSize) {
+            arrays[sizeClass].addLast(array);
+            size += array.length;
+        }
+    }
+
+    /**
+     * Acquires a cleared direct byte buffer.
+     *
+     * @param minCapacity the minimum capacity of the buffer
+     * @return a pooled or new direct buffer of at least the given capacity
+     */
+    ByteBuffer acquireDirect(int minCapacity) {
+        final int sizeClass = sizeClass(minCapacity);
+        if (sizeClass < 0) {
+            return ByteBuffer.allocateDirect(minCapacity);
+        }
+        final ByteBuffer buffer = directBuffers[sizeClass].pollLast();
+        if (buffer == null) {
+            return ByteBuffer.allocateDirect(MIN_SIZE << sizeClass);
+        }
+        size -= buffer.capacity();
+        return buffer.clear();
+    }
+
+    /**
+     * Returns a direct byte buffer acquired from this pool. The buffer must not be used afterward.
+     *
+     * @param buffer the buffer to release
+     */
+    void release(ByteBuffer buffer) {
+        final int sizeClass = exactSizeClass(buffer.capacity());
+        if (buffer.isDirect() && sizeClass >= 0 && size + buffer.capacity() <= maxSize) {
+            directBuffers[sizeClass].addLast(buffer);
+            size += buffer.capacity();
+        }
+    }
+
+    /**
+     * Returns the size class of buffers with at least the given capacity, or -1 if they are too large.
+     */
+    private static int sizeClass(int capacity) {
+        if (capacity <= MIN_SIZE) {
+            return 0;
+        }
+        final int sizeClass = 32 - Integer.numberOfLeadingZeros(capacity - 1) - MIN_SIZE_SHIFT;
+        return sizeClass < SIZE_CLASSES ? sizeClass : -1;
+    }
+
+    /**
+     * Returns the size class of buffers with exactly the given capacity, or -1 if there is none.
+     */
+    private static int exactSizeClass(int capacity) {
+        final int sizeClass = sizeClass(capacity);
+        return sizeClass >= 0 && MIN_SIZE << sizeClass == capacity ? sizeClass : -1;
+    }
+}
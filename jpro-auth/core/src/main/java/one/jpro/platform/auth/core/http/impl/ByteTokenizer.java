@@ -6,14 +6,47 @@ import java.util.Arrays;
 /**
  * ByteTokenizer is an expandable, first-in first-out byte array that supports tokenization.
  * Bytes are added at the tail and tokenization occurs at the head.
+ * <p>
+ * Tokens are not copied out of the array. A successful call to {@link #next(int)} or
+ * {@link #next(byte[])} marks the token with the offsets {@link #tokenStart()} and
+ * {@link #tokenEnd()} into the {@link #array() underlying array}, which stay valid
+ * until the next call to {@link #compact()}. The search for a delimiter is resumable:
+ * when the delimiter is not found, the bytes scanned so far are not scanned again
+ * once more bytes are added.
+ * <p>
+ * With a {@link BufferPool}, the underlying array is acquired from the pool when bytes are added,
+ * and returned to it as soon as all bytes have been tokenized and compacted away, or when the tokenizer
+ * is {@link #release() released}, so that idle connections do not hold any array.
  *
  * @author Besmir Beqiri
  */
 final class ByteTokenizer {
 
-    private byte[] array = new byte[0];
+    private static final byte[] EMPTY_ARRAY = new byte[0];
+
+    private final BufferPool pool;
+    private byte[] array = EMPTY_ARRAY;
     private int position;
     private int size;
+    private int scanPosition;
+    private int tokenStart;
+    private int tokenEnd;
+
+    /**
+     * Creates a tokenizer that allocates its array.
+     */
+    ByteTokenizer() {
+        this(null);
+    }
+
+    /**
+     * Creates a tokenizer that acquires its array from the given pool.
+     *
+     * @param pool the buffer pool, or null to allocate the array
+     */
+    ByteTokenizer(BufferPool pool) {
+        this.pool = pool;
+    }
 
     /**
      * Returns the current size of the tokenized byte array.
@@ -42,78 +75,189 @@ final class ByteTokenizer {
         return size - position;
     }
 
+    /**
+     * Returns the offset of the next byte to be tokenized.
+     *
+     * @return the current position
+     */
+    int position() {
+        return position;
+    }
+
+    /**
+     * Returns the underlying byte array. Only the bytes up to {@link #size()} are valid.
+     *
+     * @return the underlying byte array
+     */
+    byte[] array() {
+        return array;
+    }
+
+    /**
+     * Returns the offset of the first byte of the last token.
+     *
+     * @return the start offset of the last token
+     */
+    int tokenStart() {
+        return tokenStart;
+    }
+
+    /**
+     * Returns the offset after the last byte of the last token, excluding its delimiter.
+     *
+     * @return the end offset of the last token
+     */
+    int tokenEnd() {
+        return tokenEnd;
+    }
+
+    /**
+     * Returns the length of the last token.
+     *
+     * @return the length of the last token
+     */
+    int tokenLength() {
+        return tokenEnd - tokenStart;
+    }
+
+    /**
+     * Creates a string from the last token.
+     *
+     * @return the last token as a string
+     */
+    String tokenString() {
+        return new String(array, tokenStart, tokenEnd - tokenStart);
+    }
+
     /**
      * Compacts the underlying byte array by removing processed bytes
      * and shifting the remaining bytes to the beginning.
-     * After compaction, the position is reset to 0.
+     * After compaction, the position is reset to 0 and the offsets
+     * of previously returned tokens are no longer valid.
+     * If no bytes remain, the array is returned to the pool, if any.
      */
     void compact() {
-        array = Arrays.copyOfRange(array, position, size);
-        size = size - position;
+        if (position > 0) {
+            System.arraycopy(array, position, array, 0, size - position);
+            size -= position;
+            scanPosition = Math.max(0, scanPosition - position);
+            position = 0;
+            tokenStart = 0;
+            tokenEnd = 0;
+        }
+        if (size == 0 && pool != null) {
+            release();
+        }
+    }
+
+    /**
+     * Discards all bytes and returns the underlying array to the pool, if any.
+     */
+    void release() {
+        if (array != EMPTY_ARRAY) {
+            if (pool != null) {
+                pool.release(array);
+            }
+            array = EMPTY_ARRAY;
+        }
         position = 0;
+        size = 0;
+        scanPosition = 0;
+        tokenStart = 0;
+        tokenEnd = 0;
     }
 
     /**
      * Adds bytes from a ByteBuffer to the tokenized byte array.
-     * The added bytes are appended to the end of the existing byte array.
+     * The added bytes are appended to the end of the existing byte array,
+     * which is grown if needed. Growing keeps all offsets valid.
      *
      * @param buffer the ByteBuffer containing the bytes to add
      */
     void add(ByteBuffer buffer) {
         int bufferLen = buffer.remaining();
         if (array.length - size < bufferLen) {
-            array = Arrays.copyOf(array, Math.max(size + bufferLen, array.length * 2));
+            grow(Math.max(size + bufferLen, array.length * 2));
         }
         buffer.get(array, size, bufferLen);
         size += bufferLen;
     }
 
+    private void grow(int capacity) {
+        if (pool == null) {
+            array = Arrays.copyOf(array, capacity);
+            return;
+        }
+        final byte[] grown = pool.acquireArray(capacity);
+        System.arraycopy(array, 0, grown, 0, size);
+        if (array != EMPTY_ARRAY) {
+            pool.release(array);
+        }
+        array = grown;
+    }
+
     /**
-     * Retrieves the next fixed-length chunk of bytes from the tokenized byte array.
+     * Marks the next fixed-length chunk of bytes in the tokenized byte array as token.
      * The position is advanced by the specified length.
      *
-     * @param length the length of the chunk to retrieve
-     * @return the next chunk of bytes, or null if there are not enough bytes remaining
+     * @param length the length of the chunk
+     * @return {@code true} if the token is available, {@code false} if there are not enough bytes remaining
      */
-    byte[] next(int length) {
+    boolean next(int length) {
         if (size - position < length) {
-            return null;
+            return false;
         }
-        byte[] result = Arrays.copyOfRange(array, position, position + length);
-        position += length;
-        return result;
+        tokenStart = position;
+        tokenEnd = position + length;
+        position = tokenEnd;
+        return true;
     }
 
     /**
-     * Retrieves the next chunk of bytes from the tokenized byte array, delimited by the specified byte array.
+     * Marks the next chunk of bytes in the tokenized byte array, delimited by the specified byte array, as token.
      * The position is advanced to the end of the delimiter.
      *
      * @param delimiter the byte array used as the delimiter
-     * @return the next chunk of bytes, or null if the delimiter is not found
+     * @return {@code true} if the token is available, {@code false} if the delimiter is not found
      */
-    byte[] next(byte[] delimiter) {
+    boolean next(byte[] delimiter) {
         int index = indexOf(delimiter);
         if (index < 0) {
-            return null;
+            return false;
         }
-        byte[] result = Arrays.copyOfRange(array, position, index);
+        tokenStart = position;
+        tokenEnd = index;
         position = index + delimiter.length;
-        return result;
+        return true;
     }
 
     /**
      * Searches for the index of the specified byte array within the tokenized byte array,
-     * starting from the current position.
+     * starting from the current position or from where the previous unsuccessful search stopped.
      *
      * @param delimiter the byte array to search for
      * @return the index of the delimiter, or -1 if it is not found
      */
     private int indexOf(byte[] delimiter) {
-        for (int i = position; i <= size - delimiter.length; i++) {
-            if (Arrays.equals(delimiter, 0, delimiter.length, array, i, i + delimiter.length)) {
+        final byte first = delimiter[0];
+        final int last = size - delimiter.length;
+        for (int i = Math.max(position, scanPosition); i <= last; i++) {
+            if (array[i] == first && matches(delimiter, i)) {
+                scanPosition = 0;
                 return i;
             }
         }
+        // a partial delimiter at the tail may be completed by the next bytes
+        scanPosition = Math.max(position, last + 1);
         return -1;
     }
+
+    private boolean matches(byte[] delimiter, int offset) {
+        for (int j = 1; j < delimiter.length; j++) {
+            if (array[offset + j] != delimiter[j]) {
+                return false;
+            }
+        }
+        return true;
+    }
 }
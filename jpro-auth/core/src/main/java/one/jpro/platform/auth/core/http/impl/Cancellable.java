@@ -1,7 +1,7 @@
 package one.jpro.platform.auth.core.http.impl;
 
 /**
- * Task handle returned by {@link Scheduler} that facilitates task cancellation.
+ * Task handle returned by {@link TimerWheel} that facilitates task cancellation.
  *
  * @author Besmir Beqiri
  */
@@ -5,18 +5,29 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.nio.BufferOverflowException;
 import java.nio.ByteBuffer;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
 import java.util.*;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.Deflater;
 
 /**
  * This class represents an independent, threaded event loop for managing a group of connections.
- * It has its own selector, direct off-heap byte buffer, timeout queue, task queue, and state-per-connection.
+ * It has its own selector, direct off-heap byte buffer, buffer pool, timer wheel, task queue, and state-per-connection.
+ * The buffers of the connections are acquired from the buffer pool and returned to it when the connections
+ * become idle or are closed, so that persistent connections do not allocate new buffers for every request.
  * <p>
  * ConnectionEventLoop instances are managed by a parent EventLoop.
  *
@@ -26,19 +37,50 @@ class ConnectionEventLoop {
 
     private static final Logger logger = LoggerFactory.getLogger(ConnectionEventLoop.class);
 
+    /**
+     * The initial size of the buffer holding the status line and headers of a response.
+     */
+    private static final int HEAD_BUFFER_SIZE = 512;
+
+    /**
+     * An empty buffer, used in place of the body of a response without a buffer body.
+     */
+    private static final ByteBuffer EMPTY_BUFFER = ByteBuffer.allocateDirect(0);
+
+    /**
+     * The end of a piece of a chunked body.
+     */
+    private static final ByteBuffer CHUNK_END = ByteBuffer.wrap("\r\n".getBytes()).asReadOnlyBuffer();
+
+    /**
+     * The last chunk of a chunked body, without trailers.
+     */
+    private static final ByteBuffer LAST_CHUNK = ByteBuffer.wrap("0\r\n\r\n".getBytes()).asReadOnlyBuffer();
+
+    /**
+     * The end of a piece of a chunked body followed by the last chunk.
+     */
+    private static final ByteBuffer CHUNK_END_LAST_CHUNK = ByteBuffer.wrap("\r\n0\r\n\r\n".getBytes()).asReadOnlyBuffer();
+
     private final HttpOptions options;
     private final Handler handler;
+    private final Executor handlerExecutor;
     private final AtomicLong connectionCounter;
     private final AtomicBoolean stop;
 
-    private final Scheduler scheduler;
+    private final TimerWheel timerWheel;
     private final Queue<Runnable> taskQueue;
     private final ByteBuffer buffer;
+    private final BufferPool bufferPool;
     private final Selector selector;
     private final Thread thread;
+    private final AtomicInteger connectionCount = new AtomicInteger();
+    private final Queue<Runnable> waitingDispatches = new ArrayDeque<>();
+    private int pendingRequests;
+    private volatile ServerSocketChannel serverSocketChannel;
 
     /**
-     * Constructs a ConnectionEventLoop instance.
+     * Constructs a ConnectionEventLoop instance running the handler on the event loop thread.
      *
      * @param options            the HTTP options to use
      * @param handler            the handler to process requests and responses
@@ -48,14 +90,31 @@ class ConnectionEventLoop {
      */
     ConnectionEventLoop(HttpOptions options, Handler handler,
                         AtomicLong connectionCounter, AtomicBoolean stop) throws IOException {
+        this(options, handler, null, connectionCounter, stop);
+    }
+
+    /**
+     * Constructs a ConnectionEventLoop instance.
+     *
+     * @param options            the HTTP options to use
+     * @param handler            the handler to process requests and responses
+     * @param handlerExecutor    the executor running the handler, or null to run it on the event loop thread
+     * @param connectionCounter  an atomic counter for generating connection IDs
+     * @param stop               an atomic boolean indicating whether to stop the event loop
+     * @throws IOException if an I/O error occurs during initialization
+     */
+    ConnectionEventLoop(HttpOptions options, Handler handler, Executor handlerExecutor,
+                        AtomicLong connectionCounter, AtomicBoolean stop) throws IOException {
         this.options = options;
         this.handler = handler;
+        this.handlerExecutor = handlerExecutor;
         this.connectionCounter = connectionCounter;
         this.stop = stop;
 
-        scheduler = new Scheduler();
+        timerWheel = new TimerWheel(options.getTimerTick());
         taskQueue = new ConcurrentLinkedQueue<>();
         buffer = ByteBuffer.allocateDirect(options.getReadBufferSize());
+        bufferPool = new BufferPool(options.getBufferPoolSize());
         selector = Selector.open();
         thread = new Thread(this::run, "connection-event-loop");
         thread.setDaemon(true);
@@ -91,6 +150,45 @@ class ConnectionEventLoop {
          */
         static final String KEEP_ALIVE = "Keep-Alive";
 
+        /**
+         * The "Accept-Encoding" header name.
+         */
+        static final String HEADER_ACCEPT_ENCODING = "Accept-Encoding";
+
+        /**
+         * The "Content-Encoding" header name.
+         */
+        static final String HEADER_CONTENT_ENCODING = "Content-Encoding";
+
+        /**
+         * The "Content-Type" header name.
+         */
+        static final String HEADER_CONTENT_TYPE = "Content-Type";
+
+        /**
+         * The "Transfer-Encoding" header name.
+         */
+        static final String HEADER_TRANSFER_ENCODING = "Transfer-Encoding";
+
+        /**
+         * The "Vary" header name.
+         */
+        static final String HEADER_VARY = "Vary";
+
+        /**
+         * The "chunked" transfer coding.
+         */
+        static final String CHUNKED = "chunked";
+
+        /**
+         * The headers added to responses, shared so that they are not created for every response.
+         */
+        static final Header CONNECTION_KEEP_ALIVE = new Header(HEADER_CONNECTION, KEEP_ALIVE);
+        static final Header TRANSFER_ENCODING_CHUNKED = new Header(HEADER_TRANSFER_ENCODING, CHUNKED);
+        static final Header CONTENT_ENCODING_GZIP = new Header(HEADER_CONTENT_ENCODING, ContentEncoder.GZIP);
+        static final Header CONTENT_ENCODING_DEFLATE = new Header(HEADER_CONTENT_ENCODING, ContentEncoder.DEFLATE);
+        static final Header VARY_ACCEPT_ENCODING = new Header(HEADER_VARY, HEADER_ACCEPT_ENCODING);
+
         /**
          * The SocketChannel associated with the connection.
          */
@@ -117,15 +215,73 @@ class ConnectionEventLoop {
         RequestParser requestParser;
 
         /**
-         * The ByteBuffer for writing responses.
+         * The direct buffer holding the status line and headers of the response, or the size line of a chunk
+         * of a stream body, acquired from the buffer pool while a response is written, or null.
+         */
+        ByteBuffer headBuffer;
+
+        /**
+         * The headers added to the response, reused across responses.
+         */
+        final List<Header> responseHeaders = new ArrayList<>(4);
+
+        /**
+         * The buffers written with a single gathering write: the response head and the buffer body, if any,
+         * or the size line, the data and the end of a piece of a chunked body.
+         */
+        final ByteBuffer[] writeBuffers = new ByteBuffer[3];
+
+        /**
+         * The subscriber writing the stream body of the response, or null.
+         */
+        StreamWriter streamWriter;
+
+        /**
+         * The file body being written after the buffers, or null.
+         */
+        ResponseBody.FileBody writeFile;
+
+        /**
+         * The position in the file of the next byte of the file body to write.
+         */
+        long writeFilePosition;
+
+        /**
+         * The number of bytes of the file body left to write.
          */
-        ByteBuffer writeBuffer;
+        long writeFileRemaining;
 
         /**
-         * The task with timeout representing the request.
+         * The body of the current request being streamed to the handler, or null if there is none,
+         * or it has been received completely.
+         */
+        BodyStream bodyStream;
+
+        /**
+         * Indicates whether the head of the current request has been parsed and its body is being received as a whole.
+         */
+        boolean bufferingBody;
+
+        /**
+         * The task with timeout representing the request, or the idle time between requests.
          */
         Cancellable requestTimeoutTask;
 
+        /**
+         * Indicates whether the connection is idle, waiting for the next request.
+         */
+        boolean idle;
+
+        /**
+         * Indicates whether the connection has been closed.
+         */
+        boolean closed;
+
+        /**
+         * Indicates whether the request of the connection is being handled by the handler executor.
+         */
+        boolean dispatched;
+
         /**
          * Indicates whether the HTTP version is 1.0.
          */
@@ -136,6 +292,16 @@ class ConnectionEventLoop {
          */
         boolean keepAlive;
 
+        /**
+         * Indicates whether the request method is HEAD, so a stream body is not written.
+         */
+        boolean headRequest;
+
+        /**
+         * The value of the Accept-Encoding header of the request, or null.
+         */
+        String acceptEncoding;
+
         /**
          * Constructs a Connection object.
          *
@@ -145,10 +311,10 @@ class ConnectionEventLoop {
         private Connection(SocketChannel socketChannel, SelectionKey selectionKey) {
             this.socketChannel = socketChannel;
             this.selectionKey = selectionKey;
-            byteTokenizer = new ByteTokenizer();
+            byteTokenizer = new ByteTokenizer(bufferPool);
             id = Long.toString(connectionCounter.getAndIncrement());
             requestParser = new RequestParser(byteTokenizer);
-            requestTimeoutTask = scheduler.schedule(this::onRequestTimeout, options.getRequestTimeout());
+            requestTimeoutTask = timerWheel.schedule(this::onRequestTimeout, options.getRequestTimeout());
         }
 
         /**
@@ -159,6 +325,14 @@ class ConnectionEventLoop {
             failSafeClose();
         }
 
+        /**
+         * Called when the persistent connection has been idle for too long.
+         */
+        private void onKeepAliveTimeout() {
+            logger.trace("Keep-alive timeout in connection with id: {}", id);
+            failSafeClose();
+        }
+
         /**
          * Called when the socket channel is readable.
          */
@@ -184,25 +358,69 @@ class ConnectionEventLoop {
                 failSafeClose();
                 return;
             }
+            if (idle) { // the next request starts, which must be received within the request timeout
+                idle = false;
+                requestTimeoutTask.cancel();
+                requestTimeoutTask = timerWheel.schedule(this::onRequestTimeout, options.getRequestTimeout());
+            }
             buffer.flip();
             byteTokenizer.add(buffer);
             logger.trace("Read bytes in connection with id: {}, read_bytes: {}, request_bytes: {}",
                     id, numBytes, byteTokenizer.remaining());
-            if (requestParser.parse()) {
-                logger.trace("Read request with connection id: {} and request_bytes: {}", id, byteTokenizer.remaining());
-                onParseRequest();
-            } else {
-                if (byteTokenizer.size() > options.getMaxRequestSize()) {
-                    logger.trace("Exceed request max_size in connection with id: {} and request_size: {}", id, byteTokenizer.size());
-                    failSafeClose();
+            if (bodyStream != null) {
+                bodyStream.onReceived();
+            } else if (!parseRequest() && byteTokenizer.size() > options.getMaxRequestSize()) {
+                logger.trace("Exceed request max_size in connection with id: {} and request_size: {}", id, byteTokenizer.size());
+                failSafeClose();
+            }
+        }
+
+        /**
+         * Parses the received bytes and dispatches the request once it is complete or, if the handler
+         * streams its body, once its head is complete. Bodies announced to be larger than allowed
+         * are rejected before they are received.
+         *
+         * @return true if the request has been dispatched or rejected, false if more bytes are needed
+         */
+        private boolean parseRequest() {
+            if (!bufferingBody) {
+                if (!requestParser.parseHead()) {
+                    return false;
+                }
+                if (!requestParser.isComplete()) {
+                    final Request head = requestParser.head();
+                    final boolean streamed = handler.streamsBody(head);
+                    final long contentLength = requestParser.contentLength();
+                    if (contentLength > (streamed ? options.getMaxStreamedBodySize() : options.getMaxRequestSize())) {
+                        logger.trace("Exceed body max_size in connection with id: {} and content_length: {}", id, contentLength);
+                        failSafeClose();
+                        return true;
+                    }
+                    if (streamed) {
+                        logger.trace("Read request head with connection id: {}", id);
+                        bodyStream = new BodyStream(requestParser);
+                        onParseRequest(new Request(head.method(), head.uri(), head.version(), head.headers(),
+                                null, bodyStream));
+                        return true;
+                    }
+                    bufferingBody = true;
                 }
             }
+            if (!requestParser.parse()) {
+                return false;
+            }
+            logger.trace("Read request with connection id: {} and request_bytes: {}", id, byteTokenizer.remaining());
+            bufferingBody = false;
+            onParseRequest(requestParser.request());
+            return true;
         }
 
         /**
-         * Handles the parsed request.
+         * Handles the parsed request, or the parsed head of a request with streamed body.
+         *
+         * @param request The parsed request.
          */
-        private void onParseRequest() {
+        private void onParseRequest(Request request) {
             if (selectionKey.interestOps() != 0) {
                 selectionKey.interestOps(0);
             }
@@ -210,12 +428,94 @@ class ConnectionEventLoop {
                 requestTimeoutTask.cancel();
                 requestTimeoutTask = null;
             }
-            Request request = requestParser.request();
             httpOneDotZero = request.version().equalsIgnoreCase(HTTP_1_0);
             keepAlive = request.hasHeader(HEADER_CONNECTION, KEEP_ALIVE);
+            headRequest = request.method().equals("HEAD");
+            acceptEncoding = request.header(HEADER_ACCEPT_ENCODING);
             byteTokenizer.compact();
-            requestParser = new RequestParser(byteTokenizer);
-            handler.handle(request, this::onResponse);
+            if (bodyStream == null) { // otherwise the parser is still needed for the body
+                requestParser.reset();
+            }
+            dispatch(request);
+        }
+
+        /**
+         * Makes the connection wait for the client to send more of the streamed body, within the request timeout.
+         */
+        private void resumeReading() {
+            if ((selectionKey.interestOps() & SelectionKey.OP_READ) == 0) {
+                selectionKey.interestOps(selectionKey.interestOps() | SelectionKey.OP_READ);
+            }
+            if (requestTimeoutTask == null) {
+                requestTimeoutTask = timerWheel.schedule(this::onRequestTimeout, options.getRequestTimeout());
+            }
+        }
+
+        /**
+         * Stops reading from the connection, while no more of the streamed body is wanted.
+         */
+        private void pauseReading() {
+            if ((selectionKey.interestOps() & SelectionKey.OP_READ) != 0) {
+                selectionKey.interestOps(selectionKey.interestOps() & ~SelectionKey.OP_READ);
+            }
+            if (requestTimeoutTask != null) {
+                requestTimeoutTask.cancel();
+                requestTimeoutTask = null;
+            }
+        }
+
+        /**
+         * Passes the request to the handler, on the event loop thread or on the handler executor.
+         * If too many requests of this event loop are being handled by the executor, the request
+         * waits until one of them has been answered.
+         *
+         * @param request The request to handle.
+         */
+        private void dispatch(Request request) {
+            if (handlerExecutor == null) {
+                handler.handle(request, this::onResponse);
+                return;
+            }
+            if (pendingRequests >= options.getMaxPendingRequests()) {
+                logger.trace("Request waiting for the handler in connection with id: {}", id);
+                waitingDispatches.add(() -> {
+                    if (!closed) {
+                        dispatch(request);
+                    }
+                });
+                return;
+            }
+            pendingRequests++;
+            dispatched = true;
+            try {
+                handlerExecutor.execute(() -> {
+                    try {
+                        handler.handle(request, this::onResponse);
+                    } catch (RuntimeException ex) {
+                        logger.error("Handler error in connection with id: {}", id, ex);
+                        runOnEventLoop(this::failSafeClose);
+                    }
+                });
+            } catch (RejectedExecutionException ex) {
+                logger.trace("Handler rejected request in connection with id: {}", id);
+                failSafeClose();
+            }
+        }
+
+        /**
+         * Releases the slot of the request handled by the handler executor, if any,
+         * and dispatches the waiting requests that fit.
+         */
+        private void completeDispatch() {
+            if (!dispatched) {
+                return;
+            }
+            dispatched = false;
+            pendingRequests--;
+            Runnable waiting;
+            while (pendingRequests < options.getMaxPendingRequests() && (waiting = waitingDispatches.poll()) != null) {
+                waiting.run();
+            }
         }
 
         /**
@@ -224,9 +524,12 @@ class ConnectionEventLoop {
          * @param response The response to be sent.
          */
         private void onResponse(Response response) {
-            // Enqueue the callback invocation and wake the selector
-            // to ensure proper handling when invoked from the event loop thread
-            taskQueue.add(() -> {
+            runOnEventLoop(() -> {
+                completeDispatch();
+                if (closed) {
+                    discardBody(response.body());
+                    return;
+                }
                 try {
                     prepareToWriteResponse(response);
                 } catch (IOException ex) {
@@ -234,10 +537,6 @@ class ConnectionEventLoop {
                     failSafeClose();
                 }
             });
-            // Wake up the selector if the callback was invoked from a different thread
-            if (Thread.currentThread() != thread) {
-                selector.wakeup();
-            }
         }
 
         /**
@@ -248,18 +547,136 @@ class ConnectionEventLoop {
          */
         private void prepareToWriteResponse(Response response) throws IOException {
             String version = httpOneDotZero ? HTTP_1_0 : HTTP_1_1;
-            List<Header> headers = new ArrayList<>();
+            final List<Header> headers = responseHeaders;
+            headers.clear();
+            final boolean mayHaveBody = mayHaveBody(response.status());
+            final boolean stream = response.body() instanceof ResponseBody.StreamBody;
+            boolean chunked = false;
+            ContentEncoder encoder = null;
+            if (stream && mayHaveBody && !response.hasHeader(HEADER_CONTENT_LENGTH)) {
+                if (httpOneDotZero) { // the end of the body is signaled by closing the connection
+                    keepAlive = false;
+                } else {
+                    chunked = true;
+                    headers.add(TRANSFER_ENCODING_CHUNKED);
+                }
+                final boolean compressible = options.isCompression() && !response.hasHeader(HEADER_CONTENT_ENCODING)
+                        && ContentEncoder.isCompressible(response.header(HEADER_CONTENT_TYPE));
+                if (compressible && !response.hasHeader(HEADER_VARY)) {
+                    // the representation depends on the accepted encodings, even if it is sent uncompressed
+                    headers.add(VARY_ACCEPT_ENCODING);
+                }
+                final String encoding = compressible ? ContentEncoder.negotiate(acceptEncoding) : null;
+                if (encoding != null) {
+                    headers.add(encoding.equals(ContentEncoder.GZIP) ? CONTENT_ENCODING_GZIP : CONTENT_ENCODING_DEFLATE);
+                    if (!headRequest) {
+                        encoder = new ContentEncoder(encoding, Deflater.DEFAULT_COMPRESSION);
+                    }
+                }
+            }
             if (httpOneDotZero && keepAlive) {
-                headers.add(new Header(HEADER_CONNECTION, KEEP_ALIVE));
+                headers.add(CONNECTION_KEEP_ALIVE);
             }
-            if (!response.hasHeader(HEADER_CONTENT_LENGTH)) {
-                headers.add(new Header(HEADER_CONTENT_LENGTH, Integer.toString(response.body().length)));
+            final long contentLength = !stream && !response.hasHeader(HEADER_CONTENT_LENGTH) && mayHaveBody
+                    ? response.body().length() : -1;
+            writeHead(response, version, headers, contentLength);
+            headers.clear();
+            writeBuffers[2] = EMPTY_BUFFER;
+            final boolean writeBody = mayHaveBody && !headRequest;
+            if (response.body() instanceof ResponseBody.FileBody fileBody) {
+                writeBuffers[1] = EMPTY_BUFFER;
+                if (writeBody) {
+                    writeFile = fileBody;
+                    writeFilePosition = fileBody.position();
+                    writeFileRemaining = fileBody.count();
+                } else {
+                    discardBody(fileBody);
+                }
+            } else if (response.body() instanceof ResponseBody.StreamBody streamBody) {
+                writeBuffers[1] = EMPTY_BUFFER;
+                if (writeBody) {
+                    streamWriter = new StreamWriter(chunked, encoder);
+                    streamBody.publisher().subscribe(streamWriter);
+                } else {
+                    discardBody(streamBody);
+                }
+            } else {
+                // a duplicate, so that the same body can be written to several connections at the same time
+                writeBuffers[1] = ((ResponseBody.BufferBody) response.body()).buffer().duplicate();
             }
-            writeBuffer = ByteBuffer.wrap(response.serialize(version, headers));
-            logger.trace("Response ready in connection with id: {} and num_bytes: {}", id, writeBuffer.remaining());
+            logger.trace("Response ready in connection with id: {} and num_bytes: {}",
+                    id, headBuffer.remaining() + response.body().length());
             doOnWritable();
         }
 
+        /**
+         * Releases a response body that is not written: its file is closed, and its stream body is subscribed
+         * to and cancelled at once, so that the publisher releases its resources.
+         *
+         * @param body the response body to discard
+         */
+        private void discardBody(ResponseBody body) {
+            if (body instanceof ResponseBody.FileBody fileBody) {
+                try {
+                    fileBody.channel().close();
+                } catch (IOException ex) {
+                    logger.trace("Error closing the response file in connection with id: {}", id);
+                }
+            } else if (body instanceof ResponseBody.StreamBody streamBody) {
+                try {
+                    streamBody.publisher().subscribe(new Flow.Subscriber<>() {
+                        @Override
+                        public void onSubscribe(Flow.Subscription subscription) {
+                            subscription.cancel();
+                        }
+
+                        @Override
+                        public void onNext(ByteBuffer item) {
+                        }
+
+                        @Override
+                        public void onError(Throwable throwable) {
+                        }
+
+                        @Override
+                        public void onComplete() {
+                        }
+                    });
+                } catch (RuntimeException ex) {
+                    logger.trace("Error cancelling the response body in connection with id: {}", id, ex);
+                }
+            }
+        }
+
+        /**
+         * Checks whether a response with the given status may have a body, and hence a content length.
+         */
+        private static boolean mayHaveBody(int status) {
+            return status >= 200 && status != 204 && status != 304;
+        }
+
+        /**
+         * Writes the status line and headers of the response to the head buffer, growing it if needed.
+         */
+        private void writeHead(Response response, String version, List<Header> headers, long contentLength) {
+            if (headBuffer == null) {
+                headBuffer = bufferPool.acquireDirect(HEAD_BUFFER_SIZE);
+            }
+            while (true) {
+                headBuffer.clear();
+                try {
+                    response.writeHead(headBuffer, version, headers, contentLength);
+                    break;
+                } catch (BufferOverflowException ex) {
+                    final int capacity = headBuffer.capacity() * 2;
+                    bufferPool.release(headBuffer);
+                    headBuffer = bufferPool.acquireDirect(capacity);
+                }
+            }
+            headBuffer.flip();
+            writeBuffers[0] = headBuffer;
+        }
+
         /**
          * Called when the socket channel is writable.
          */
@@ -273,74 +690,526 @@ class ConnectionEventLoop {
         }
 
         /**
-         * Writes data to the socket channel.
+         * Writes data to the socket channel: the response head and buffer body, or a piece of a stream
+         * body, with a single gathering write, followed by the file body, if any.
          *
          * @return The number of bytes written.
          * @throws IOException If an I/O error occurs.
          */
-        private int doWrite() throws IOException {
-            buffer.clear(); // pos = 0, limit = capacity
-            int amount = Math.min(buffer.remaining(), writeBuffer.remaining()); // determine transfer quantity
-            buffer.put(writeBuffer.array(), writeBuffer.position(), amount); // do transfer
-            buffer.flip();
-            int written = socketChannel.write(buffer);
-            writeBuffer.position(writeBuffer.position() + written); // advance write buffer
+        private long doWrite() throws IOException {
+            long written = 0;
+            if (hasRemainingBuffers()) {
+                written = socketChannel.write(writeBuffers);
+            }
+            if (writeFileRemaining > 0 && !hasRemainingBuffers()) {
+                long transferred = writeFile.channel().transferTo(writeFilePosition, writeFileRemaining, socketChannel);
+                writeFilePosition += transferred;
+                writeFileRemaining -= transferred;
+                written += transferred;
+            }
             return written;
         }
 
+        /**
+         * Checks whether any of the write buffers has bytes left to write.
+         */
+        private boolean hasRemainingBuffers() {
+            return writeBuffers[0].hasRemaining() || writeBuffers[1].hasRemaining() || writeBuffers[2].hasRemaining();
+        }
+
+        /**
+         * Checks whether everything that is available of the response has been written.
+         *
+         * @return true if nothing is left to write, false otherwise
+         */
+        private boolean isWriteDrained() {
+            return writeFileRemaining == 0 && !hasRemainingBuffers();
+        }
+
+        /**
+         * Checks whether the response has been fully written.
+         *
+         * @return true if nothing is left to write, false otherwise
+         */
+        private boolean isWriteComplete() {
+            return isWriteDrained() && (streamWriter == null || streamWriter.complete);
+        }
+
+        /**
+         * Releases the references to the response that has been written, closing its file, if any,
+         * or cancelling its stream body if it has not been written completely.
+         */
+        private void releaseResponse() {
+            writeBuffers[0] = null;
+            writeBuffers[1] = null;
+            writeBuffers[2] = null;
+            if (streamWriter != null) {
+                streamWriter.release();
+                streamWriter = null;
+            }
+            if (writeFile != null) {
+                try {
+                    writeFile.channel().close();
+                } catch (IOException ex) {
+                    logger.trace("Error closing the response file in connection with id: {}", id);
+                }
+                writeFile = null;
+                writeFileRemaining = 0;
+            }
+        }
+
         /**
          * Handles the writable event.
          *
          * @throws IOException If an I/O error occurs.
          */
         private void doOnWritable() throws IOException {
-            int numBytes = doWrite();
-            if (!writeBuffer.hasRemaining()) { // Response fully written
-                writeBuffer = null; // done with current write buffer, remove reference
+            long numBytes = doWrite();
+            if (isWriteComplete()) { // Response fully written
+                releaseResponse(); // done with current response, remove references
                 logger.trace("Write response with connection id: {} and num_bytes: {}", id, numBytes);
                 if (httpOneDotZero && !keepAlive) { // non-persistent connection, close now
                     logger.trace("Close after response with connection id: {}", id);
                     failSafeClose();
+                } else if (bodyStream != null) { // the rest of the streamed body has not been received
+                    logger.trace("Close after response before the request body with connection id: {}", id);
+                    failSafeClose();
                 } else { // Persistent connection
-                    if (requestParser.parse()) { // Subsequent request in the buffer
+                    if (parseRequest()) { // Subsequent request in the buffer
                         logger.trace("Pipeline request with connection id: {} and request_bytes: {}", id, byteTokenizer.remaining());
-                        onParseRequest();
                     } else { // Switch back to read mode
-                        requestTimeoutTask = scheduler.schedule(this::onRequestTimeout, options.getRequestTimeout());
+                        requestTimeoutTask = timerWheel.schedule(this::onKeepAliveTimeout, options.getKeepAliveTimeout());
+                        idle = true;
+                        releaseHeadBuffer(); // the tokenizer has released its array when it became empty
                         selectionKey.interestOps(SelectionKey.OP_READ);
                     }
                 }
+            } else if (streamWriter != null && isWriteDrained()) { // wait for the next piece of the stream body
+                if ((selectionKey.interestOps() & SelectionKey.OP_WRITE) != 0) {
+                    selectionKey.interestOps(selectionKey.interestOps() & ~SelectionKey.OP_WRITE);
+                }
+                streamWriter.onDrained();
             } else { // Response not fully written, remain in write mode
                 if ((selectionKey.interestOps() & SelectionKey.OP_WRITE) == 0) {
-                    selectionKey.interestOps(SelectionKey.OP_WRITE);
+                    // a streamed body may still be read while the response is written
+                    selectionKey.interestOps(selectionKey.interestOps() | SelectionKey.OP_WRITE);
                 }
                 logger.trace("Write in connection with id: {} and num_bytes: {}", id, numBytes);
             }
         }
 
+        /**
+         * Returns the head buffer to the buffer pool, if it is held.
+         */
+        private void releaseHeadBuffer() {
+            if (headBuffer != null) {
+                bufferPool.release(headBuffer);
+                headBuffer = null;
+            }
+        }
+
         /**
          * Closes the connection safely.
          */
         private void failSafeClose() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            connectionCount.decrementAndGet();
+            completeDispatch();
+            if (bodyStream != null) {
+                bodyStream.fail(new IOException("Connection closed before the request body has been received"));
+            }
             try {
                 if (requestTimeoutTask != null) {
                     requestTimeoutTask.cancel();
                 }
                 selectionKey.cancel();
+                releaseResponse();
+                releaseHeadBuffer();
+                byteTokenizer.release();
                 socketChannel.close();
             } catch (IOException e) {
                 // suppress error
             }
         }
+
+        /**
+         * Writes the pieces of a stream body as they are published, requesting the next piece once the
+         * previous one has been written. All signals are handled on the event loop thread.
+         */
+        private final class StreamWriter implements Flow.Subscriber<ByteBuffer> {
+
+            private final boolean chunked;
+            private final ContentEncoder encoder;
+            private Flow.Subscription subscription;
+            private boolean requested;
+            private boolean completed;
+            private boolean complete;
+            private boolean released;
+
+            /**
+             * Creates a stream writer.
+             *
+             * @param chunked whether the pieces are written as chunks
+             * @param encoder the encoder compressing the pieces, or null
+             */
+            private StreamWriter(boolean chunked, ContentEncoder encoder) {
+                this.chunked = chunked;
+                this.encoder = encoder;
+            }
+
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                runOnEventLoop(() -> {
+                    if (released || this.subscription != null) {
+                        subscription.cancel();
+                        return;
+                    }
+                    this.subscription = subscription;
+                    if (isWriteDrained()) { // otherwise the next piece is requested once the head has been written
+                        onDrained();
+                    }
+                });
+            }
+
+            @Override
+            public void onNext(ByteBuffer item) {
+                runOnEventLoop(() -> {
+                    if (released) {
+                        return;
+                    }
+                    requested = false;
+                    final ByteBuffer data = encoder != null ? encoder.encode(item) : item;
+                    if (data.hasRemaining()) { // an empty chunk would end the body
+                        writeBuffers[0] = chunked ? chunkHead(data.remaining()) : EMPTY_BUFFER;
+                        writeBuffers[1] = data;
+                        writeBuffers[2] = chunked ? CHUNK_END.duplicate() : EMPTY_BUFFER;
+                    }
+                    onWritable();
+                });
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                runOnEventLoop(() -> {
+                    if (!released) { // the client notices the missing end of the body
+                        logger.trace("Response body error in connection with id: {}", id, throwable);
+                        failSafeClose();
+                    }
+                });
+            }
+
+            @Override
+            public void onComplete() {
+                runOnEventLoop(() -> {
+                    if (released || completed) {
+                        return;
+                    }
+                    completed = true;
+                    if (isWriteDrained()) { // otherwise the end is written once the previous piece has been written
+                        writeEnd();
+                    }
+                });
+            }
+
+            /**
+             * Called when everything that is available of the response has been written: writes the end
+             * of the body if it is complete, or requests the next piece.
+             */
+            private void onDrained() {
+                if (completed) {
+                    if (!complete) {
+                        writeEnd();
+                    }
+                } else {
+                    requestNext();
+                }
+            }
+
+            /**
+             * Writes the end of the body: the rest of the compressed data and the last chunk.
+             */
+            private void writeEnd() {
+                complete = true;
+                final ByteBuffer data = encoder != null ? encoder.finish() : EMPTY_BUFFER;
+                if (!chunked) {
+                    writeBuffers[0] = EMPTY_BUFFER;
+                    writeBuffers[1] = data;
+                    writeBuffers[2] = EMPTY_BUFFER;
+                } else if (data.hasRemaining()) {
+                    writeBuffers[0] = chunkHead(data.remaining());
+                    writeBuffers[1] = data;
+                    writeBuffers[2] = CHUNK_END_LAST_CHUNK.duplicate();
+                } else {
+                    writeBuffers[0] = EMPTY_BUFFER;
+                    writeBuffers[1] = EMPTY_BUFFER;
+                    writeBuffers[2] = LAST_CHUNK.duplicate();
+                }
+                onWritable();
+            }
+
+            /**
+             * Requests the next piece, unless one has already been requested or the body is complete.
+             */
+            private void requestNext() {
+                if (subscription != null && !requested && !complete && !released) {
+                    requested = true;
+                    subscription.request(1);
+                }
+            }
+
+            /**
+             * Writes the size line of a chunk with the given length to the head buffer, which has been written.
+             */
+            private ByteBuffer chunkHead(int length) {
+                headBuffer.clear();
+                for (int shift = (31 - Integer.numberOfLeadingZeros(length)) & ~3; shift >= 0; shift -= 4) {
+                    headBuffer.put((byte) Character.forDigit((length >>> shift) & 0xf, 16));
+                }
+                headBuffer.put((byte) '\r').put((byte) '\n');
+                return headBuffer.flip();
+            }
+
+            /**
+             * Cancels the subscription and releases the encoder, if the body has not been written completely.
+             */
+            private void release() {
+                if (released) {
+                    return;
+                }
+                released = true;
+                if (!complete) {
+                    if (subscription != null) {
+                        subscription.cancel();
+                    }
+                    if (encoder != null) {
+                        encoder.end();
+                    }
+                }
+            }
+        }
+
+        /**
+         * Publishes the body of a request to the subscriber of the handler as it is received.
+         * All signals to the subscriber are sent from the event loop thread, so the subscriber
+         * must not block. The published buffers are copies, owned by the subscriber.
+         */
+        private final class BodyStream implements Flow.Publisher<ByteBuffer>, Flow.Subscription {
+
+            private final RequestParser parser;
+            private final AtomicBoolean subscribed = new AtomicBoolean();
+            private Flow.Subscriber<? super ByteBuffer> subscriber;
+            private Throwable error;
+            private long demand;
+            private long received;
+            private boolean done;
+
+            private BodyStream(RequestParser parser) {
+                this.parser = parser;
+            }
+
+            @Override
+            public void subscribe(Flow.Subscriber<? super ByteBuffer> subscriber) {
+                Objects.requireNonNull(subscriber, "Subscriber cannot be null");
+                if (!subscribed.compareAndSet(false, true)) {
+                    subscriber.onSubscribe(new Flow.Subscription() {
+                        @Override
+                        public void request(long n) {
+                        }
+
+                        @Override
+                        public void cancel() {
+                        }
+                    });
+                    subscriber.onError(new IllegalStateException("The request body can only be subscribed once"));
+                    return;
+                }
+                runOnEventLoop(() -> {
+                    this.subscriber = subscriber;
+                    subscriber.onSubscribe(this);
+                    if (error != null) {
+                        this.subscriber = null;
+                        subscriber.onError(error);
+                    } else {
+                        publish();
+                    }
+                });
+            }
+
+            @Override
+            public void request(long n) {
+                runOnEventLoop(() -> {
+                    if (done) {
+                        return;
+                    }
+                    if (n <= 0) {
+                        fail(new IllegalArgumentException("The number of requested items must be positive: " + n));
+                        failSafeClose();
+                        return;
+                    }
+                    demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+                    publish();
+                });
+            }
+
+            @Override
+            public void cancel() {
+                runOnEventLoop(() -> {
+                    if (!done) { // the rest of the body is not read, the connection is closed after the response
+                        done = true;
+                        subscriber = null;
+                        pauseReading();
+                    }
+                });
+            }
+
+            /**
+             * Called when more bytes of the connection have been received.
+             */
+            private void onReceived() {
+                if (requestTimeoutTask != null) { // the client is sending, restart the request timeout
+                    requestTimeoutTask.cancel();
+                    requestTimeoutTask = null;
+                }
+                publish();
+                if (!closed && bodyStream == this && byteTokenizer.size() > options.getMaxRequestSize()) {
+                    logger.trace("Exceed request max_size in connection with id: {} and request_size: {}", id, byteTokenizer.size());
+                    fail(new IOException("Malformed request body"));
+                    failSafeClose();
+                }
+            }
+
+            /**
+             * Publishes the received pieces of the body while there is demand, and reads
+             * from the connection only while more pieces are requested or nothing is held.
+             */
+            private void publish() {
+                if (done || subscriber == null || closed) {
+                    return;
+                }
+                try {
+                    while (demand > 0 && parser.nextBodyChunk(options.getReadBufferSize())) {
+                        received += byteTokenizer.tokenLength();
+                        if (received > options.getMaxStreamedBodySize()) {
+                            logger.trace("Exceed body max_size in connection with id: {}", id);
+                            fail(new IOException("The request body exceeds the maximum size"));
+                            failSafeClose();
+                            return;
+                        }
+                        final byte[] bytes = Arrays.copyOfRange(byteTokenizer.array(),
+                                byteTokenizer.tokenStart(), byteTokenizer.tokenEnd());
+                        demand--;
+                        subscriber.onNext(ByteBuffer.wrap(bytes));
+                    }
+                    if (demand == 0) { // the end of the body is signaled without demand
+                        parser.nextBodyChunk(0);
+                    }
+                } catch (RuntimeException ex) {
+                    logger.trace("Request body error in connection with id: {}", id);
+                    fail(ex);
+                    failSafeClose();
+                    return;
+                }
+                byteTokenizer.compact();
+                if (parser.isComplete()) {
+                    logger.trace("Read request body with connection id: {} and body_bytes: {}", id, received);
+                    done = true;
+                    bodyStream = null;
+                    requestParser.reset();
+                    pauseReading();
+                    final Flow.Subscriber<? super ByteBuffer> s = subscriber;
+                    subscriber = null;
+                    s.onComplete();
+                } else if (demand > 0 || byteTokenizer.remaining() == 0) {
+                    // without demand, at most one read is held, which may also complete the body
+                    resumeReading();
+                } else {
+                    pauseReading();
+                }
+            }
+
+            /**
+             * Signals the error to the subscriber, or to the subscriber yet to come.
+             */
+            private void fail(Throwable throwable) {
+                if (done) {
+                    return;
+                }
+                done = true;
+                error = throwable;
+                final Flow.Subscriber<? super ByteBuffer> s = subscriber;
+                subscriber = null;
+                if (s != null) {
+                    s.onError(throwable);
+                }
+            }
+        }
     }
 
     /**
-     * Returns the number of active connections.
+     * Runs the given task on the event loop thread.
+     *
+     * @param task the task to run
+     */
+    private void runOnEventLoop(Runnable task) {
+        // Enqueue the task and wake the selector
+        // to ensure proper handling when invoked from the event loop thread
+        taskQueue.add(task);
+        // Wake up the selector if the task was enqueued from a different thread
+        if (Thread.currentThread() != thread) {
+            selector.wakeup();
+        }
+    }
+
+    /**
+     * Returns the number of active connections. This method can be called from any thread.
      *
      * @return The number of active connections.
      */
     int numConnections() {
-        return selector.keys().size();
+        return connectionCount.get();
+    }
+
+    /**
+     * Makes this event loop accept its own connections on a new server socket bound with
+     * {@code SO_REUSEPORT} to the given address, which other event loops may be bound to as well.
+     * Must be called before the event loop is started.
+     *
+     * @param address the address to bind to
+     * @param backlog the maximum length of the accept queue
+     * @return the port the server socket is bound to
+     * @throws IOException if an I/O error occurs
+     */
+    int listen(InetSocketAddress address, int backlog) throws IOException {
+        final ServerSocketChannel channel = ServerSocketChannel.open();
+        try {
+            channel.setOption(StandardSocketOptions.SO_REUSEPORT, true);
+            if (options.isReuseAddr()) {
+                channel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+            }
+            channel.bind(address, backlog);
+            channel.configureBlocking(false);
+            channel.register(selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException | RuntimeException ex) {
+            channel.close();
+            throw ex;
+        }
+        serverSocketChannel = channel;
+        return ((InetSocketAddress) channel.getLocalAddress()).getPort();
+    }
+
+    /**
+     * Closes the server socket of this event loop, if it accepts its own connections.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    void closeServerSocket() throws IOException {
+        final ServerSocketChannel channel = serverSocketChannel;
+        if (channel != null) {
+            channel.close();
+        }
     }
 
     /**
@@ -377,19 +1246,23 @@ class ConnectionEventLoop {
      */
     private void doStart() throws IOException {
         while (!stop.get()) {
-            selector.select(options.getResolution().toMillis());
+            selector.select(selectTimeout());
             Set<SelectionKey> selectedKeys = selector.selectedKeys();
             Iterator<SelectionKey> it = selectedKeys.iterator();
             while (it.hasNext()) {
                 SelectionKey selKey = it.next();
-                if (selKey.isReadable()) {
+                if (!selKey.isValid()) {
+                    // closed while handling a previous key
+                } else if (selKey.isAcceptable()) {
+                    onAcceptable();
+                } else if (selKey.isReadable()) {
                     ((Connection) selKey.attachment()).onReadable();
                 } else if (selKey.isWritable()) {
                     ((Connection) selKey.attachment()).onWritable();
                 }
                 it.remove();
             }
-            scheduler.expired().forEach(Runnable::run);
+            timerWheel.runExpired();
             Runnable task;
             while ((task = taskQueue.poll()) != null) {
                 task.run();
@@ -397,6 +1270,36 @@ class ConnectionEventLoop {
         }
     }
 
+    /**
+     * Accepts the pending connections on the server socket of this event loop.
+     */
+    private void onAcceptable() {
+        try {
+            SocketChannel socketChannel;
+            while ((socketChannel = serverSocketChannel.accept()) != null) {
+                try {
+                    doRegister(socketChannel);
+                } catch (IOException ex) {
+                    logger.error("Error on registering a new socket channel", ex);
+                    socketChannel.close();
+                }
+            }
+        } catch (IOException ex) {
+            logger.error("Error on accepting a new socket channel", ex);
+        }
+    }
+
+    /**
+     * Returns the time to wait for events, which is the resolution, or less if a timeout
+     * may expire earlier. Ticks without any timeout do not wake up the event loop.
+     *
+     * @return the timeout in milliseconds, at least 1
+     */
+    private long selectTimeout() {
+        final long timeoutNanos = timerWheel.nanosUntilNextExpiry(options.getResolution().toNanos());
+        return Math.max(1, (timeoutNanos + 999_999) / 1_000_000);
+    }
+
     /**
      * Registers a new socket channel with the server.
      *
@@ -425,6 +1328,7 @@ class ConnectionEventLoop {
     private void doRegister(SocketChannel socketChannel) throws IOException {
         socketChannel.configureBlocking(false);
         SelectionKey selectionKey = socketChannel.register(selector, SelectionKey.OP_READ);
+        connectionCount.incrementAndGet();
         Connection connection = new Connection(socketChannel, selectionKey);
         selectionKey.attach(connection);
     }
@@ -0,0 +1,216 @@
+package one.jpro.platform.auth.core.http.impl;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Compresses response bodies with the {@code gzip} or {@code deflate} content coding.
+ * <p>
+ * A body can be compressed at once with {@link #encode(ByteBuffer, String, int)}, or in pieces with an
+ * instance: every piece passed to {@link #encode(ByteBuffer)} is flushed, so that the client can decode
+ * it without waiting for the rest of the body, and {@link #finish()} returns the end of the body.
+ * An instance holds native memory until it is finished or {@link #end() ended}.
+ *
+ * @author Besmir Beqiri
+ */
+final class ContentEncoder {
+
+    static final String GZIP = "gzip";
+    static final String DEFLATE = "deflate";
+
+    /**
+     * The header of a gzip member: magic number, deflate method, no flags, no modification time,
+     * no extra flags and an unknown operating system.
+     */
+    private static final byte[] GZIP_HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+
+    private static final int OUTPUT_SIZE = 8 * 1024;
+
+    private final Deflater deflater;
+    private final CRC32 crc;
+    private byte[] output = new byte[OUTPUT_SIZE];
+    private int outputLength;
+    private boolean headerWritten;
+
+    /**
+     * Creates an encoder.
+     *
+     * @param encoding the content coding, {@link #GZIP} or {@link #DEFLATE}
+     * @param level    the compression level, from 0 to 9, or {@link Deflater#DEFAULT_COMPRESSION}
+     */
+    ContentEncoder(String encoding, int level) {
+        final boolean gzip = GZIP.equals(encoding);
+        if (!gzip && !DEFLATE.equals(encoding)) {
+            throw new IllegalArgumentException("Unsupported content coding: " + encoding);
+        }
+        // the deflate content coding is the zlib format, gzip wraps the raw deflate format itself
+        deflater = new Deflater(level, gzip);
+        crc = gzip ? new CRC32() : null;
+        headerWritten = !gzip;
+    }
+
+    /**
+     * Compresses the remaining bytes of the given buffer and flushes the compressed data.
+     *
+     * @param input the piece of the body, which is consumed
+     * @return the compressed piece, valid until the next call of this encoder
+     */
+    ByteBuffer encode(ByteBuffer input) {
+        outputLength = 0;
+        writeHeader();
+        if (crc != null) {
+            crc.update(input.duplicate());
+        }
+        deflater.setInput(input);
+        while (true) {
+            ensureCapacity(OUTPUT_SIZE);
+            outputLength += deflater.deflate(output, outputLength, output.length - outputLength, Deflater.SYNC_FLUSH);
+            if (outputLength < output.length) { // the output is not filled up, so everything has been flushed
+                return ByteBuffer.wrap(output, 0, outputLength);
+            }
+        }
+    }
+
+    /**
+     * Finishes the compressed body and releases the native memory of the encoder.
+     *
+     * @return the end of the compressed body, valid until the next call of this encoder
+     */
+    ByteBuffer finish() {
+        outputLength = 0;
+        writeHeader();
+        deflater.finish();
+        while (!deflater.finished()) {
+            ensureCapacity(OUTPUT_SIZE);
+            outputLength += deflater.deflate(output, outputLength, output.length - outputLength);
+        }
+        if (crc != null) {
+            writeIntLE((int) crc.getValue());
+            writeIntLE((int) deflater.getBytesRead());
+        }
+        deflater.end();
+        return ByteBuffer.wrap(output, 0, outputLength);
+    }
+
+    /**
+     * Releases the native memory of the encoder, if the body is not finished.
+     */
+    void end() {
+        deflater.end();
+    }
+
+    private void writeHeader() {
+        if (!headerWritten) {
+            ensureCapacity(GZIP_HEADER.length);
+            System.arraycopy(GZIP_HEADER, 0, output, outputLength, GZIP_HEADER.length);
+            outputLength += GZIP_HEADER.length;
+            headerWritten = true;
+        }
+    }
+
+    private void writeIntLE(int value) {
+        ensureCapacity(4);
+        for (int i = 0; i < 4; i++) {
+            output[outputLength++] = (byte) (value >>> (8 * i));
+        }
+    }
+
+    private void ensureCapacity(int length) {
+        if (output.length - outputLength < length) {
+            output = Arrays.copyOf(output, Math.max(output.length * 2, outputLength + length));
+        }
+    }
+
+    /**
+     * Compresses a whole body.
+     *
+     * @param content  the body, which is not modified
+     * @param encoding the content coding, {@link #GZIP} or {@link #DEFLATE}
+     * @param level    the compression level
+     * @return the compressed body
+     */
+    static ByteBuffer encode(ByteBuffer content, String encoding, int level) {
+        final ContentEncoder encoder = new ContentEncoder(encoding, level);
+        encoder.deflater.setInput(content.duplicate());
+        if (encoder.crc != null) {
+            encoder.crc.update(content.duplicate());
+        }
+        return encoder.finish();
+    }
+
+    /**
+     * Selects the content coding for the given {@code Accept-Encoding} header value,
+     * preferring gzip over deflate with the same quality.
+     *
+     * @param acceptEncoding the header value, or null
+     * @return {@link #GZIP}, {@link #DEFLATE}, or null if the body should not be compressed
+     */
+    static String negotiate(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return null;
+        }
+        double gzip = -1;
+        double deflate = -1;
+        double any = -1;
+        for (String coding : acceptEncoding.split(",")) {
+            final int semicolon = coding.indexOf(';');
+            final String name = (semicolon < 0 ? coding : coding.substring(0, semicolon)).trim().toLowerCase(Locale.ROOT);
+            final double quality = semicolon < 0 ? 1 : quality(coding.substring(semicolon + 1));
+            switch (name) {
+                case GZIP, "x-gzip" -> gzip = quality;
+                case DEFLATE -> deflate = quality;
+                case "*" -> any = quality;
+                default -> {
+                }
+            }
+        }
+        if (gzip < 0) {
+            gzip = any;
+        }
+        if (deflate < 0) {
+            deflate = any;
+        }
+        if (gzip > 0 && gzip >= deflate) {
+            return GZIP;
+        }
+        return deflate > 0 ? DEFLATE : null;
+    }
+
+    private static double quality(String parameters) {
+        for (String parameter : parameters.split(";")) {
+            parameter = parameter.trim();
+            if (parameter.startsWith("q=") || parameter.startsWith("Q=")) {
+                try {
+                    return Double.parseDouble(parameter.substring(2));
+                } catch (NumberFormatException ex) {
+                    return 0;
+                }
+            }
+        }
+        return 1;
+    }
+
+    /**
+     * Checks whether content of the given type is worth compressing, which is the case for text formats.
+     *
+     * @param contentType the value of the {@code Content-Type} header, or null
+     * @return true if the content should be compressed
+     */
+    static boolean isCompressible(String contentType) {
+        if (contentType == null) {
+            return false;
+        }
+        final String type = contentType.toLowerCase(Locale.ROOT);
+        return type.startsWith("text/")
+                || type.startsWith("application/json")
+                || type.startsWith("application/javascript")
+                || type.startsWith("application/xml")
+                || type.startsWith("application/wasm")
+                || type.startsWith("image/svg+xml")
+                || type.contains("+json")
+                || type.contains("+xml");
+    }
+}
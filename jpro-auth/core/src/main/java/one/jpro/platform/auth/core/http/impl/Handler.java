@@ -10,7 +10,7 @@ import java.util.function.Consumer;
  * @author Besmir Beqiri
  */
 @FunctionalInterface
-interface Handler {
+public interface Handler {
 
     /**
      * HTTP request handle.
@@ -21,4 +21,40 @@ interface Handler {
      * The provided callback object has a reference to internal connection state.
      */
     void handle(@NotNull Request request, @NotNull Consumer<Response> callback);
+
+    /**
+     * Returns whether the body of the given request is streamed to this handler.
+     * If so, the handler is called as soon as the request line and headers have been received, and
+     * the body is published in pieces by {@link Request#bodyPublisher()}. The connection is only read
+     * while the subscriber has requested more pieces, so a slow subscriber slows down the client
+     * instead of the body piling up in memory. Otherwise, the handler is called once the whole body
+     * has been received, which is limited by the maximum request size.
+     *
+     * @param request the request, without body
+     * @return true if the body is streamed, false by default
+     */
+    default boolean streamsBody(@NotNull Request request) {
+        return false;
+    }
+
+    /**
+     * Returns a handler that streams the bodies of all requests to the given handler.
+     *
+     * @param handler the handler subscribing to {@link Request#bodyPublisher()}
+     * @return the streaming handler
+     * @see #streamsBody(Request)
+     */
+    static Handler streaming(@NotNull Handler handler) {
+        return new Handler() {
+            @Override
+            public void handle(@NotNull Request request, @NotNull Consumer<Response> callback) {
+                handler.handle(request, callback);
+            }
+
+            @Override
+            public boolean streamsBody(@NotNull Request request) {
+                return true;
+            }
+        };
+    }
 }
@@ -22,11 +22,18 @@ import java.nio.channels.SelectableChannel;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
 /**
@@ -52,9 +59,15 @@ public final class HttpServerImpl implements HttpServer {
     static final byte[] SPACE = " ".getBytes();
     static final byte[] CRLF = "\r\n".getBytes();
 
+    /**
+     * The number of threads reading static files for handlers running on the event loop threads.
+     */
+    static final int STATIC_FILE_THREADS = 2;
+
     private String uri;
     private boolean isReusePortSupported;
     private boolean isPortBound;
+    private final boolean multiAcceptor;
 
     @Nullable
     private final Stage stage;
@@ -64,6 +77,11 @@ public final class HttpServerImpl implements HttpServer {
     private final AtomicBoolean stop;
     private final ServerSocketChannel serverSocketChannel;
     private final List<ConnectionEventLoop> connectionEventLoops;
+    private final Router router;
+    @Nullable
+    private final ExecutorService handlerExecutor;
+    @Nullable
+    private ExecutorService staticFileExecutor;
     private final CompletableFuture<String> serverResponseFuture = new CompletableFuture<>();
     private final Thread thread;
 
@@ -78,13 +96,14 @@ public final class HttpServerImpl implements HttpServer {
         this.options = Objects.requireNonNull(options, "Http options cannot be null");
 
         // Create a default response
+        final byte[] responseBody = getResourceAsBytes("default-response.html");
         final Response response = new Response(
                 HttpStatus.OK.getCode(),
                 HttpStatus.OK.getMessage(),
                 List.of(new Header(HEADER_CONTENT_TYPE, MIME_HTML)),
-                getResourceAsBytes("default-response.html"));
+                responseBody);
 
-        final Handler handler = (request, callback) -> {
+        final Handler defaultHandler = (request, callback) -> {
             this.uri = request.uri();
 
             logger.debug("***************************************************************************");
@@ -97,23 +116,26 @@ public final class HttpServerImpl implements HttpServer {
             logger.debug("Request version: {}", request.version());
             logger.debug("Request headers: {}", request.headers());
             logger.debug("Response status: {}", response.status());
-            logger.debug("Response body: {}", new String(response.body()));
+            logger.debug("Response body: {}", new String(responseBody));
             logger.debug("***************************************************************************");
 
             callback.accept(response);
             serverResponseFuture.complete(uri);
         };
 
+        router = new Router(defaultHandler);
+
         // Shutdown hook
         Runtime.getRuntime().addShutdownHook(new Thread(this::stop));
 
         selector = Selector.open();
         stop = new AtomicBoolean();
 
+        handlerExecutor = createHandlerExecutor(options);
         AtomicLong connectionCounter = new AtomicLong();
         connectionEventLoops = new ArrayList<>();
         for (int i = 0; i < options.getConcurrency(); i++) {
-            connectionEventLoops.add(new ConnectionEventLoop(options, handler, connectionCounter, stop));
+            connectionEventLoops.add(new ConnectionEventLoop(options, router, handlerExecutor, connectionCounter, stop));
         }
 
         thread = new Thread(this::run, "http-server-thread");
@@ -139,6 +161,90 @@ public final class HttpServerImpl implements HttpServer {
                 logger.warn("The 'SO_REUSEPORT' option is not supported on this platform.");
             }
         }
+        if (options.isMultiAcceptor() && !supportedOptions.contains(StandardSocketOptions.SO_REUSEPORT)) {
+            logger.warn("The 'SO_REUSEPORT' option is not supported on this platform, "
+                    + "falling back to a single acceptor thread.");
+        }
+        multiAcceptor = options.isMultiAcceptor() && supportedOptions.contains(StandardSocketOptions.SO_REUSEPORT);
+    }
+
+    /**
+     * Registers the handler for the given path. Requests matching no route are answered
+     * with the default authentication response.
+     *
+     * @param path    the path, which matches all paths starting with it if it ends with {@code /}
+     * @param handler the handler
+     * @return this server
+     * @see Router#route(String, Handler)
+     */
+    public HttpServerImpl route(@NotNull final String path, @NotNull final Handler handler) {
+        router.route(path, handler);
+        return this;
+    }
+
+    /**
+     * Serves the files of the given directory under the given path prefix,
+     * for example login page assets. If the handlers run on the event loop threads, the files that are
+     * not cached are read on a small pool of daemon threads of this server, otherwise on the handler threads.
+     *
+     * @param pathPrefix the path prefix, ending with {@code /}
+     * @param directory  the directory containing the files
+     * @return this server
+     * @see StaticFileHandler
+     */
+    public HttpServerImpl serveStatic(@NotNull final String pathPrefix, @NotNull final Path directory) {
+        if (!pathPrefix.endsWith("/")) {
+            throw new IllegalArgumentException("The path prefix must end with '/': " + pathPrefix);
+        }
+        final Executor fileExecutor = handlerExecutor != null ? Runnable::run : staticFileExecutor();
+        return route(pathPrefix, new StaticFileHandler(pathPrefix, directory, fileExecutor));
+    }
+
+    /**
+     * Returns the executor reading static files for handlers running on the event loop threads,
+     * creating it on first use.
+     *
+     * @return the static file executor
+     */
+    private synchronized ExecutorService staticFileExecutor() {
+        if (staticFileExecutor == null) {
+            final AtomicInteger threadCounter = new AtomicInteger();
+            staticFileExecutor = Executors.newFixedThreadPool(STATIC_FILE_THREADS, runnable -> {
+                final Thread fileThread = new Thread(runnable, "http-static-file-" + threadCounter.incrementAndGet());
+                fileThread.setDaemon(true);
+                return fileThread;
+            });
+        }
+        return staticFileExecutor;
+    }
+
+    /**
+     * Creates the executor running the request handlers, according to the handler execution mode.
+     *
+     * @param options the HTTP options
+     * @return the executor, or null if the handlers run on the event loop threads
+     */
+    @Nullable
+    static ExecutorService createHandlerExecutor(@NotNull final HttpOptions options) {
+        switch (options.getHandlerExecution()) {
+            case VIRTUAL_THREADS:
+                try {
+                    // Virtual threads are available since Java 21, which is newer than the required Java version
+                    return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+                } catch (ReflectiveOperationException | UnsupportedOperationException ex) {
+                    logger.warn("Virtual threads are not supported on this runtime, using a thread pool instead.");
+                }
+                // fall through
+            case THREAD_POOL:
+                final AtomicInteger threadCounter = new AtomicInteger();
+                return Executors.newFixedThreadPool(options.getHandlerPoolSize(), runnable -> {
+                    final Thread handlerThread = new Thread(runnable, "http-handler-" + threadCounter.incrementAndGet());
+                    handlerThread.setDaemon(true);
+                    return handlerThread;
+                });
+            default:
+                return null;
+        }
     }
 
     private byte[] getResourceAsBytes(@NotNull final String name) throws IOException {
@@ -158,6 +264,10 @@ public final class HttpServerImpl implements HttpServer {
 
     @Override
     public void start() {
+        if (multiAcceptor) {
+            startAcceptors();
+            return;
+        }
         if (!isReusePortSupported && isPortBound) {
             // Reuse port is not supported, so we cannot bind the port again
             return;
@@ -178,6 +288,43 @@ public final class HttpServerImpl implements HttpServer {
         logger.info("Starting server on port: {}", getServerPort());
     }
 
+    /**
+     * Binds a server socket per connection event loop to the same address with {@code SO_REUSEPORT},
+     * so that the kernel distributes the incoming connections among the event loops and no
+     * acceptor thread is needed.
+     */
+    private void startAcceptors() {
+        if (isPortBound) {
+            return;
+        }
+        try {
+            int port = options.getPort();
+            for (ConnectionEventLoop connectionEventLoop : connectionEventLoops) {
+                final InetSocketAddress address = options.getHost() == null
+                        ? new InetSocketAddress(port) // wildcard address
+                        : new InetSocketAddress(options.getHost(), port);
+                // an ephemeral port is only chosen once, the other event loops bind to the same port
+                port = connectionEventLoop.listen(address, options.getAcceptLength());
+            }
+            isPortBound = true;
+        } catch (IOException ex) {
+            closeAcceptors();
+            throw new HttpServerException(ex);
+        }
+        connectionEventLoops.forEach(ConnectionEventLoop::start);
+        logger.info("Starting server on port: {} with {} acceptors", getServerPort(), connectionEventLoops.size());
+    }
+
+    private void closeAcceptors() {
+        for (ConnectionEventLoop connectionEventLoop : connectionEventLoops) {
+            try {
+                connectionEventLoop.closeServerSocket();
+            } catch (IOException ex) {
+                logger.error("Error on closing the server socket", ex);
+            }
+        }
+    }
+
     private void run() {
         try {
             doRun();
@@ -194,23 +341,48 @@ public final class HttpServerImpl implements HttpServer {
             Iterator<SelectionKey> it = selectedKeys.iterator();
             while (it.hasNext()) {
                 SelectionKey selKey = it.next();
-                Optional<ConnectionEventLoop> leastConnections = leastConnections();
-                if (selKey.isAcceptable() && leastConnections.isPresent()) {
-                    ConnectionEventLoop connectionEventLoop = leastConnections.get();
-                    connectionEventLoop.register(serverSocketChannel.accept());
+                if (selKey.isAcceptable()) {
+                    SocketChannel socketChannel;
+                    while ((socketChannel = serverSocketChannel.accept()) != null) {
+                        leastConnections().register(socketChannel);
+                    }
                 }
                 it.remove();
             }
         }
     }
 
-    private Optional<ConnectionEventLoop> leastConnections() {
-        return connectionEventLoops.stream().min(Comparator.comparing(ConnectionEventLoop::numConnections));
+    /**
+     * Picks the less loaded of two randomly chosen event loops, which balances the connections
+     * nearly as well as looking at all the event loops, in constant time.
+     */
+    private ConnectionEventLoop leastConnections() {
+        final int size = connectionEventLoops.size();
+        if (size == 1) {
+            return connectionEventLoops.get(0);
+        }
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        final int first = random.nextInt(size);
+        final int second = (first + 1 + random.nextInt(size - 1)) % size;
+        final ConnectionEventLoop a = connectionEventLoops.get(first);
+        final ConnectionEventLoop b = connectionEventLoops.get(second);
+        return a.numConnections() <= b.numConnections() ? a : b;
     }
 
     @Override
     public void stop() {
         stop.set(true);
+        if (handlerExecutor != null) {
+            handlerExecutor.shutdown();
+        }
+        synchronized (this) {
+            if (staticFileExecutor != null) {
+                staticFileExecutor.shutdown();
+            }
+        }
+        if (multiAcceptor) {
+            closeAcceptors();
+        }
 
         if (serverSocketChannel.isOpen()) {
             try {
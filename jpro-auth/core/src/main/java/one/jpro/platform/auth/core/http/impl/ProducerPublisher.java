@@ -0,0 +1,82 @@
+package one.jpro.platform.auth.core.http.impl;
+
+import java.nio.ByteBuffer;
+import java.util.Objects;
+import java.util.concurrent.Flow;
+import java.util.function.Supplier;
+
+/**
+ * A publisher calling a producer for every requested piece, until it returns null.
+ * Pieces requested while a piece is being published are produced after it, not recursively.
+ *
+ * @author Besmir Beqiri
+ */
+final class ProducerPublisher implements Flow.Publisher<ByteBuffer> {
+
+    private final Supplier<ByteBuffer> producer;
+
+    ProducerPublisher(Supplier<ByteBuffer> producer) {
+        this.producer = Objects.requireNonNull(producer, "producer cannot be null");
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super ByteBuffer> subscriber) {
+        Objects.requireNonNull(subscriber, "subscriber cannot be null");
+        subscriber.onSubscribe(new Subscription(subscriber));
+    }
+
+    private final class Subscription implements Flow.Subscription {
+
+        private final Flow.Subscriber<? super ByteBuffer> subscriber;
+        private long demand;
+        private boolean emitting;
+        private boolean done;
+
+        private Subscription(Flow.Subscriber<? super ByteBuffer> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public synchronized void request(long n) {
+            if (done) {
+                return;
+            }
+            if (n <= 0) {
+                done = true;
+                subscriber.onError(new IllegalArgumentException("The number of requested items must be positive: " + n));
+                return;
+            }
+            demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+            if (emitting) { // called from onNext, the loop below continues with the new demand
+                return;
+            }
+            emitting = true;
+            try {
+                while (demand > 0 && !done) {
+                    final ByteBuffer piece;
+                    try {
+                        piece = producer.get();
+                    } catch (RuntimeException ex) {
+                        done = true;
+                        subscriber.onError(ex);
+                        return;
+                    }
+                    if (piece == null) {
+                        done = true;
+                        subscriber.onComplete();
+                        return;
+                    }
+                    demand--;
+                    subscriber.onNext(piece);
+                }
+            } finally {
+                emitting = false;
+            }
+        }
+
+        @Override
+        public synchronized void cancel() {
+            done = true;
+        }
+    }
+}
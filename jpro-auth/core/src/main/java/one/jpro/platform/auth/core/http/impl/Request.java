@@ -1,13 +1,39 @@
 package one.jpro.platform.auth.core.http.impl;
 
+import java.nio.ByteBuffer;
 import java.util.List;
+import java.util.concurrent.Flow;
 
 /**
  * This class represents discrete HTTP requests with request line, headers, and body.
+ * <p>
+ * The body is either received as a whole, or, if the handler {@link Handler#streamsBody(Request) streams}
+ * the body, published as it arrives by the {@link #bodyPublisher() body publisher}.
+ *
+ * @param method        the request method
+ * @param uri           the request URI
+ * @param version       the HTTP version
+ * @param headers       the request headers
+ * @param body          the body received as a whole, or null
+ * @param bodyPublisher the publisher of the streamed body, or null
  *
  * @author Besmir Beqiri
  */
-public record Request(String method, String uri, String version, List<Header> headers, byte[] body) {
+public record Request(String method, String uri, String version, List<Header> headers, byte[] body,
+                      Flow.Publisher<ByteBuffer> bodyPublisher) {
+
+    /**
+     * Creates a request with the body received as a whole.
+     *
+     * @param method  the request method
+     * @param uri     the request URI
+     * @param version the HTTP version
+     * @param headers the request headers
+     * @param body    the body, or null
+     */
+    public Request(String method, String uri, String version, List<Header> headers, byte[] body) {
+        this(method, uri, version, headers, body, null);
+    }
 
     /**
      * Retrieves the value of the specified header.
@@ -16,6 +42,9 @@ public record Request(String method, String uri, String version, List<Header> he
      * @return The value of the header, or null if the header is not found.
      */
     public String header(String name) {
+        if (headers instanceof RequestHeaders requestHeaders) {
+            return requestHeaders.value(name);
+        }
         for (Header header : headers) {
             if (header.name().equalsIgnoreCase(name)) {
                 return header.value();
@@ -32,6 +61,9 @@ public record Request(String method, String uri, String version, List<Header> he
      * @return true if the request has a header with the specified name and value, false otherwise.
      */
     public boolean hasHeader(String name, String value) {
+        if (headers instanceof RequestHeaders requestHeaders) {
+            return requestHeaders.contains(name, value);
+        }
         for (Header header : headers) {
             if (header.name().equalsIgnoreCase(name) && header.value().equalsIgnoreCase(value)) {
                 return true;
@@ -0,0 +1,118 @@
+package one.jpro.platform.auth.core.http.impl;
+
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+/**
+ * The headers of a parsed request, kept as offsets into the bytes of the request head.
+ * The {@link Header} objects and their strings are created on demand, and looking up
+ * a header by name compares the bytes without creating strings for the other headers.
+ *
+ * @author Besmir Beqiri
+ */
+final class RequestHeaders extends AbstractList<Header> implements RandomAccess {
+
+    /**
+     * The number of offsets stored per header: name start, name end, value start and value end.
+     */
+    static final int OFFSETS_PER_HEADER = 4;
+
+    private final byte[] bytes;
+    private final int[] offsets;
+    private final Header[] headers;
+
+    /**
+     * Creates the request headers.
+     *
+     * @param bytes   the bytes of the request head
+     * @param offsets the offsets of the headers in the bytes, {@link #OFFSETS_PER_HEADER} per header
+     * @param size    the number of headers
+     */
+    RequestHeaders(byte[] bytes, int[] offsets, int size) {
+        this.bytes = bytes;
+        this.offsets = offsets;
+        this.headers = new Header[size];
+    }
+
+    @Override
+    public Header get(int index) {
+        Header header = headers[index];
+        if (header == null) {
+            int i = index * OFFSETS_PER_HEADER;
+            header = new Header(
+                    new String(bytes, offsets[i], offsets[i + 1] - offsets[i]),
+                    new String(bytes, offsets[i + 2], offsets[i + 3] - offsets[i + 2]));
+            headers[index] = header;
+        }
+        return header;
+    }
+
+    @Override
+    public int size() {
+        return headers.length;
+    }
+
+    /**
+     * Retrieves the value of the first header with the specified name, ignoring case.
+     *
+     * @param name the name of the header
+     * @return the value of the header, or null if the header is not found
+     */
+    String value(String name) {
+        for (int index = 0; index < headers.length; index++) {
+            if (nameEquals(index, name)) {
+                return get(index).value();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Checks if there is a header with the specified name and value, both ignoring case.
+     *
+     * @param name  the name of the header
+     * @param value the value of the header
+     * @return true if such a header exists, false otherwise
+     */
+    boolean contains(String name, String value) {
+        for (int index = 0; index < headers.length; index++) {
+            int i = index * OFFSETS_PER_HEADER;
+            if (nameEquals(index, name) && equalsIgnoreCase(bytes, offsets[i + 2], offsets[i + 3], value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean nameEquals(int index, String name) {
+        int i = index * OFFSETS_PER_HEADER;
+        return equalsIgnoreCase(bytes, offsets[i], offsets[i + 1], name);
+    }
+
+    /**
+     * Compares the given bytes with the given ASCII string, ignoring case.
+     *
+     * @param bytes the bytes
+     * @param from  the offset of the first byte to compare
+     * @param to    the offset after the last byte to compare
+     * @param ascii the ASCII string to compare with
+     * @return true if the bytes are equal to the string, false otherwise
+     */
+    static boolean equalsIgnoreCase(byte[] bytes, int from, int to, String ascii) {
+        if (to - from != ascii.length()) {
+            return false;
+        }
+        for (int i = from, j = 0; i < to; i++, j++) {
+            int b = bytes[i];
+            int c = ascii.charAt(j);
+            if (b != c && toLowerCase(b) != toLowerCase(c)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int toLowerCase(int c) {
+        return c >= 'A' && c <= 'Z' ? c + ('a' - 'A') : c;
+    }
+}
@@ -1,14 +1,19 @@
 package one.jpro.platform.auth.core.http.impl;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.function.BiConsumer;
-import java.util.function.Function;
+import java.util.Arrays;
 
 /**
  * This class is responsible for parsing HTTP requests.
  * It parses the request line, headers, and optional request body.
  * It supports both fixed-length and chunked transfer encoding.
+ * <p>
+ * The parser is incremental: the tokens are kept as offsets into the buffer of the
+ * {@link ByteTokenizer}, and the search for the end of a line resumes where it stopped
+ * when more bytes arrive, so a request received in many small segments is parsed in linear time.
+ * <p>
+ * The body is either parsed with the request by {@link #parse()}, or, once the head has been parsed
+ * by {@link #parseHead()}, streamed in pieces with {@link #nextBodyChunk(int)}, so that it never
+ * has to be held in memory as a whole.
  *
  * @author Besmir Beqiri
  */
@@ -48,111 +53,254 @@ final class RequestParser {
      * Enumeration representing the different parsing states of the request.
      */
     enum State {
-        METHOD(p -> p.tokenizer.next(SPACE), RequestParser::parseMethod),
-        URI(p -> p.tokenizer.next(SPACE), RequestParser::parseUri),
-        VERSION(p -> p.tokenizer.next(CRLF), RequestParser::parseVersion),
-        HEADER(p -> p.tokenizer.next(CRLF), RequestParser::parseHeader),
-        BODY(p -> p.tokenizer.next(p.contentLength), RequestParser::parseBody),
-        CHUNK_SIZE(p -> p.tokenizer.next(CRLF), RequestParser::parseChunkSize),
-        CHUNK_DATA(p -> p.tokenizer.next(p.chunkSize), RequestParser::parseChunkData),
-        CHUNK_DATA_END(p -> p.tokenizer.next(CRLF), (rp, token) -> rp.parseChunkDateEnd()),
-        CHUNK_TRAILER(p -> p.tokenizer.next(CRLF), (rp, token) -> rp.parseChunkTrailer()),
-        DONE(null, null);
-
-        final Function<RequestParser, byte[]> tokenSupplier;
-        final BiConsumer<RequestParser, byte[]> tokenConsumer;
-
-        /**
-         * Constructs a State enum with the specified token supplier and token consumer.
-         *
-         * @param tokenSupplier  The function that supplies the next token during parsing.
-         * @param tokenConsumer The function that consumes the token during parsing.
-         */
-        State(Function<RequestParser, byte[]> tokenSupplier, BiConsumer<RequestParser, byte[]> tokenConsumer) {
-            this.tokenSupplier = tokenSupplier;
-            this.tokenConsumer = tokenConsumer;
-        }
+        METHOD, URI, VERSION, HEADER, BODY, CHUNK_SIZE, CHUNK_DATA, CHUNK_DATA_END, CHUNK_TRAILER, DONE
     }
 
     private final ByteTokenizer tokenizer;
+    private int requestStart;
     private State state = State.METHOD;
-    private int contentLength;
+    private long contentLength;
     private int chunkSize;
-    private final ByteMerger chunks = new ByteMerger();
-    private String method;
-    private String uri;
-    private String version;
-    private final List<Header> headers = new ArrayList<>();
+    private int[] chunkOffsets = new int[0];
+    private int chunkCount;
+    private int methodStart, methodEnd;
+    private int uriStart, uriEnd;
+    private int versionStart, versionEnd;
+    private int[] headerOffsets = new int[16 * RequestHeaders.OFFSETS_PER_HEADER];
+    private int headerCount;
+    private int headEnd;
     private byte[] body;
+    private Request head;
 
     /**
-     * Constructor for RequestParser.
+     * Constructor for RequestParser. The request is parsed from the current position of the tokenizer.
      *
      * @param tokenizer The tokenizer used for tokenizing the request data.
      */
     RequestParser(ByteTokenizer tokenizer) {
         this.tokenizer = tokenizer;
+        this.requestStart = tokenizer.position();
+    }
+
+    /**
+     * Resets the parser to parse the next request from the current position of the tokenizer,
+     * reusing its offset arrays.
+     */
+    void reset() {
+        requestStart = tokenizer.position();
+        state = State.METHOD;
+        contentLength = 0;
+        chunkSize = 0;
+        chunkCount = 0;
+        headerCount = 0;
+        headEnd = 0;
+        body = null;
+        head = null;
     }
 
     /**
-     * Parses the HTTP request.
+     * Parses the HTTP request. Parsing can be resumed by calling this method again
+     * after more bytes have been added to the tokenizer. The tokenizer must not be
+     * compacted until the request has been retrieved with {@link #request()}.
      *
      * @return <code>true</code> if the parsing is successful, <code>false</code> otherwise.
      */
     boolean parse() {
         while (state != State.DONE) {
-            byte[] token = state.tokenSupplier.apply(this);
-            if (token == null) {
+            if (!step()) {
                 return false;
             }
-            state.tokenConsumer.accept(this, token);
         }
         return true;
     }
 
+    /**
+     * Parses the request line and the headers of the HTTP request, but not the body.
+     * Parsing can be resumed like with {@link #parse()}.
+     *
+     * @return <code>true</code> if the head has been parsed, <code>false</code> if more bytes are needed.
+     */
+    boolean parseHead() {
+        while (state.compareTo(State.HEADER) <= 0) {
+            if (!step()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Parses the next token of the request, if it is available.
+     *
+     * @return <code>true</code> if a token has been parsed, <code>false</code> if more bytes are needed.
+     */
+    private boolean step() {
+        final boolean available = switch (state) {
+            case METHOD, URI -> tokenizer.next(SPACE);
+            case BODY -> tokenizer.next(bufferedContentLength());
+            case CHUNK_DATA -> tokenizer.next(chunkSize);
+            default -> tokenizer.next(CRLF);
+        };
+        if (!available) {
+            return false;
+        }
+        switch (state) {
+            case METHOD -> parseMethod();
+            case URI -> parseUri();
+            case VERSION -> parseVersion();
+            case HEADER -> parseHeader();
+            case BODY -> parseBody();
+            case CHUNK_SIZE -> parseChunkSize();
+            case CHUNK_DATA -> parseChunkData();
+            case CHUNK_DATA_END -> parseChunkDataEnd();
+            case CHUNK_TRAILER -> parseChunkTrailer();
+            default -> throw new IllegalStateException("unexpected state: " + state);
+        }
+        return true;
+    }
+
+    /**
+     * Checks whether the request, including its body, has been parsed completely.
+     *
+     * @return <code>true</code> if the request is complete, <code>false</code> otherwise.
+     */
+    boolean isComplete() {
+        return state == State.DONE;
+    }
+
+    /**
+     * Returns the length of the body that has not been parsed yet, as announced by the
+     * Content-Length header. Only valid once the head has been parsed.
+     *
+     * @return the remaining length, or -1 if the body is chunked
+     */
+    long contentLength() {
+        if (state == State.BODY) {
+            return contentLength;
+        }
+        return state == State.DONE ? 0 : -1;
+    }
+
+    /**
+     * Marks the next piece of the body that is available in the tokenizer as token, at most the given
+     * number of bytes. The chunked transfer coding is removed, so that only content bytes are returned.
+     * This method can be called once the head has been parsed with {@link #parseHead()}, instead of
+     * {@link #parse()}. Since nothing refers to the body once it has been returned, the tokenizer can
+     * be compacted after every call. With a maximum length of 0, no content is returned, but the
+     * end of a chunked body is still detected.
+     *
+     * @param maxLength the maximum length of the piece
+     * @return <code>true</code> if a piece is available as token of the tokenizer, <code>false</code>
+     * if more bytes are needed or the body is {@link #isComplete() complete}.
+     */
+    boolean nextBodyChunk(int maxLength) {
+        while (state != State.DONE) {
+            if (state == State.BODY || state == State.CHUNK_DATA) {
+                final long left = state == State.BODY ? contentLength : chunkSize;
+                final int length = (int) Math.min(Math.min(left, maxLength), tokenizer.remaining());
+                if (length == 0) {
+                    return false;
+                }
+                tokenizer.next(length);
+                if (state == State.BODY) {
+                    contentLength -= length;
+                    if (contentLength == 0) {
+                        state = State.DONE;
+                    }
+                } else {
+                    chunkSize -= length;
+                    if (chunkSize == 0) {
+                        state = State.CHUNK_DATA_END;
+                    }
+                }
+                return true;
+            }
+            if (!tokenizer.next(CRLF)) {
+                return false;
+            }
+            switch (state) {
+                case CHUNK_SIZE -> parseChunkSize();
+                case CHUNK_DATA_END -> parseChunkDataEnd();
+                case CHUNK_TRAILER -> state = State.DONE;
+                default -> throw new IllegalStateException("unexpected state: " + state);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the request line and headers of the parsed HTTP request, without body.
+     * The request line and headers are copied out of the tokenizer once, so the tokenizer
+     * may be compacted afterward, the strings of the headers are only created when they are accessed.
+     *
+     * @return The head of the request.
+     */
+    Request head() {
+        if (head == null) {
+            final byte[] bytes = Arrays.copyOfRange(tokenizer.array(), requestStart, headEnd);
+            final int[] offsets = Arrays.copyOf(headerOffsets, headerCount * RequestHeaders.OFFSETS_PER_HEADER);
+            for (int i = 0; i < offsets.length; i++) {
+                offsets[i] -= requestStart;
+            }
+            head = new Request(
+                    new String(bytes, methodStart - requestStart, methodEnd - methodStart),
+                    new String(bytes, uriStart - requestStart, uriEnd - uriStart),
+                    new String(bytes, versionStart - requestStart, versionEnd - versionStart),
+                    new RequestHeaders(bytes, offsets, headerCount),
+                    null);
+        }
+        return head;
+    }
+
     /**
      * Returns the parsed Request object representing the HTTP request.
      *
      * @return The parsed Request object.
+     * @see #head()
      */
     Request request() {
-        return new Request(method, uri, version, headers, body);
+        final Request head = head();
+        return body == null ? head : new Request(head.method(), head.uri(), head.version(), head.headers(), body);
     }
 
     /**
      * Parses the method token and updates the state accordingly.
      */
-    private void parseMethod(byte[] token) {
-        method = new String(token);
+    private void parseMethod() {
+        methodStart = tokenizer.tokenStart();
+        methodEnd = tokenizer.tokenEnd();
         state = State.URI;
     }
 
     /**
      * Parses the uri token and updates the state accordingly.
      */
-    private void parseUri(byte[] token) {
-        uri = new String(token);
+    private void parseUri() {
+        uriStart = tokenizer.tokenStart();
+        uriEnd = tokenizer.tokenEnd();
         state = State.VERSION;
     }
 
     /**
      * Parses the version token and updates the state accordingly.
      */
-    private void parseVersion(byte[] token) {
-        version = new String(token);
+    private void parseVersion() {
+        versionStart = tokenizer.tokenStart();
+        versionEnd = tokenizer.tokenEnd();
         state = State.HEADER;
     }
 
     /**
      * Parses the header token and updates the state accordingly.
      */
-    private void parseHeader(byte[] token) {
-        if (token.length == 0) { // CR-LF on own line, end of headers
+    private void parseHeader() {
+        if (tokenizer.tokenLength() == 0) { // CR-LF on own line, end of headers
+            headEnd = tokenizer.tokenStart();
             if (hasMultipleTransferLengths()) {
                 throw new IllegalStateException("multiple message lengths");
             }
-            Integer contentLength = findContentLength();
-            if (contentLength == null) {
+            long contentLength = findContentLength();
+            if (contentLength < 0) {
                 if (hasChunkedEncodingHeader()) {
                     state = State.CHUNK_SIZE;
                 } else {
@@ -163,33 +311,39 @@ final class RequestParser {
                 state = State.BODY;
             }
         } else {
-            headers.add(parseHeaderLine(token));
+            parseHeaderLine(tokenizer.array(), tokenizer.tokenStart(), tokenizer.tokenEnd());
         }
     }
 
     /**
-     * Parses a header line and returns a Header object.
+     * Parses a header line and records the offsets of its name and value.
      */
-    private static Header parseHeaderLine(byte[] line) {
-        int colonIndex = indexOfColon(line);
-        if (colonIndex <= 0) {
+    private void parseHeaderLine(byte[] array, int start, int end) {
+        int colonIndex = indexOfColon(array, start, end);
+        if (colonIndex <= start) {
             throw new IllegalStateException("malformed header line");
         }
         int spaceIndex = colonIndex + 1;
-        while (spaceIndex < line.length && line[spaceIndex] == ' ') { // advance beyond variable-length space prefix
+        while (spaceIndex < end && array[spaceIndex] == ' ') { // advance beyond variable-length space prefix
             spaceIndex++;
         }
-        return new Header(
-                new String(line, 0, colonIndex),
-                new String(line, spaceIndex, line.length - spaceIndex));
+        int i = headerCount * RequestHeaders.OFFSETS_PER_HEADER;
+        if (i == headerOffsets.length) {
+            headerOffsets = Arrays.copyOf(headerOffsets, headerOffsets.length * 2);
+        }
+        headerOffsets[i] = start;
+        headerOffsets[i + 1] = colonIndex;
+        headerOffsets[i + 2] = spaceIndex;
+        headerOffsets[i + 3] = end;
+        headerCount++;
     }
 
     /**
-     * Finds the index of the colon character in a byte array.
+     * Finds the index of the colon character in a range of a byte array.
      */
-    private static int indexOfColon(byte[] line) {
-        for (int i = 0; i < line.length; i++) {
-            if (line[i] == ':') {
+    private static int indexOfColon(byte[] array, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (array[i] == ':') {
                 return i;
             }
         }
@@ -199,12 +353,15 @@ final class RequestParser {
     /**
      * Parses the chunk size token and updates the state accordingly.
      */
-    private void parseChunkSize(byte[] token) {
+    private void parseChunkSize() {
         try {
-            chunkSize = Integer.parseInt(new String(token), RADIX_HEX);
+            chunkSize = Integer.parseInt(tokenizer.tokenString(), RADIX_HEX);
         } catch (NumberFormatException e) {
             throw new IllegalStateException("invalid chunk size");
         }
+        if (chunkSize < 0) {
+            throw new IllegalStateException("invalid chunk size");
+        }
         state = chunkSize == 0
                 ? State.CHUNK_TRAILER
                 : State.CHUNK_DATA;
@@ -212,16 +369,23 @@ final class RequestParser {
 
     /**
      * Parses the chunk data token and updates the state accordingly.
+     * Only the offsets of the chunk are recorded, the chunks are merged once the body is complete.
      */
-    private void parseChunkData(byte[] token) {
-        chunks.add(token);
+    private void parseChunkData() {
+        int i = chunkCount * 2;
+        if (i == chunkOffsets.length) {
+            chunkOffsets = Arrays.copyOf(chunkOffsets, Math.max(8, chunkOffsets.length * 2));
+        }
+        chunkOffsets[i] = tokenizer.tokenStart();
+        chunkOffsets[i + 1] = tokenizer.tokenEnd();
+        chunkCount++;
         state = State.CHUNK_DATA_END;
     }
 
     /**
      * Parses the chunk data end token and updates the state accordingly.
      */
-    private void parseChunkDateEnd() {
+    private void parseChunkDataEnd() {
         state = State.CHUNK_SIZE;
     }
 
@@ -229,26 +393,45 @@ final class RequestParser {
      * Parses the chunk trailer token and updates the state accordingly.
      */
     private void parseChunkTrailer() {
-        body = chunks.merge();
+        int size = 0;
+        for (int i = 0; i < chunkCount * 2; i += 2) {
+            size += chunkOffsets[i + 1] - chunkOffsets[i];
+        }
+        body = new byte[size];
+        int offset = 0;
+        for (int i = 0; i < chunkCount * 2; i += 2) {
+            int length = chunkOffsets[i + 1] - chunkOffsets[i];
+            System.arraycopy(tokenizer.array(), chunkOffsets[i], body, offset, length);
+            offset += length;
+        }
         state = State.DONE;
     }
 
     /**
      * Parses the body token and updates the state accordingly.
      */
-    private void parseBody(byte[] token) {
-        body = token;
+    private void parseBody() {
+        body = Arrays.copyOfRange(tokenizer.array(), tokenizer.tokenStart(), tokenizer.tokenEnd());
         state = State.DONE;
     }
 
+    /**
+     * Returns the content length of a body that is parsed as a whole, which must fit into an array.
+     */
+    private int bufferedContentLength() {
+        if (contentLength > Integer.MAX_VALUE - 8) {
+            throw new IllegalStateException("content-length too large");
+        }
+        return (int) contentLength;
+    }
+
     /**
      * Checks if there are multiple transfer length headers in the request.
      */
     private boolean hasMultipleTransferLengths() {
         int count = 0;
-        for (Header header : headers) {
-            if (header.name().equalsIgnoreCase(HEADER_CONTENT_LENGTH)
-                    || header.name().equalsIgnoreCase(HEADER_TRANSFER_ENCODING)) {
+        for (int index = 0; index < headerCount; index++) {
+            if (headerNameEquals(index, HEADER_CONTENT_LENGTH) || headerNameEquals(index, HEADER_TRANSFER_ENCODING)) {
                 count++;
             }
         }
@@ -257,30 +440,52 @@ final class RequestParser {
 
     /**
      * Finds the content length from the request headers.
+     *
+     * @return the content length, or -1 if there is no content length header
      */
-    private Integer findContentLength() {
-        try {
-            for (Header header : headers) {
-                if (header.name().equalsIgnoreCase(HEADER_CONTENT_LENGTH)) {
-                    return Integer.parseInt(header.value());
+    private long findContentLength() {
+        final byte[] array = tokenizer.array();
+        for (int index = 0; index < headerCount; index++) {
+            if (headerNameEquals(index, HEADER_CONTENT_LENGTH)) {
+                int i = index * RequestHeaders.OFFSETS_PER_HEADER;
+                int start = headerOffsets[i + 2];
+                int end = headerOffsets[i + 3];
+                if (start == end) {
+                    throw new IllegalStateException("invalid content-length header value");
+                }
+                long value = 0;
+                for (int j = start; j < end; j++) {
+                    int digit = array[j] - '0';
+                    if (digit < 0 || digit > 9 || value > (Long.MAX_VALUE - digit) / 10) {
+                        throw new IllegalStateException("invalid content-length header value");
+                    }
+                    value = value * 10 + digit;
                 }
+                return value;
             }
-            return null;
-        } catch (NumberFormatException e) {
-            throw new IllegalStateException("invalid content-length header value");
         }
+        return -1;
     }
 
     /**
      * Checks if the request has a chunked encoding header.
      */
     private boolean hasChunkedEncodingHeader() {
-        for (Header header : headers) {
-            if (header.name().equalsIgnoreCase(HEADER_TRANSFER_ENCODING)
-                    && header.value().equalsIgnoreCase(CHUNKED)) {
+        for (int index = 0; index < headerCount; index++) {
+            int i = index * RequestHeaders.OFFSETS_PER_HEADER;
+            if (headerNameEquals(index, HEADER_TRANSFER_ENCODING) && RequestHeaders.equalsIgnoreCase(
+                    tokenizer.array(), headerOffsets[i + 2], headerOffsets[i + 3], CHUNKED)) {
                 return true;
             }
         }
         return false;
     }
+
+    /**
+     * Checks if the name of the header with the given index equals the given name, ignoring case.
+     */
+    private boolean headerNameEquals(int index, String name) {
+        int i = index * RequestHeaders.OFFSETS_PER_HEADER;
+        return RequestHeaders.equalsIgnoreCase(tokenizer.array(), headerOffsets[i], headerOffsets[i + 1], name);
+    }
 }
@@ -1,5 +1,7 @@
 package one.jpro.platform.auth.core.http.impl;
 
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
 import java.util.List;
 
 /**
@@ -12,7 +14,7 @@ import java.util.List;
  *
  * @author Besmir Beqiri
  */
-record Response(int status, String reason, List<Header> headers, byte[] body) {
+public record Response(int status, String reason, List<Header> headers, ResponseBody body) {
 
     /**
      * The byte array representing the ": " separator.
@@ -29,6 +31,23 @@ record Response(int status, String reason, List<Header> headers, byte[] body) {
      */
     static final byte[] CRLF = "\r\n".getBytes();
 
+    /**
+     * The byte array representing the "Content-Length" header name and the ": " separator.
+     */
+    static final byte[] CONTENT_LENGTH_COLON_SPACE = "Content-Length: ".getBytes();
+
+    /**
+     * Creates a response with the given byte array as body.
+     *
+     * @param status  the status code of the response
+     * @param reason  the reason phrase of the response
+     * @param headers the headers of the response
+     * @param body    the body of the response, which must not be modified afterward
+     */
+    public Response(int status, String reason, List<Header> headers, byte[] body) {
+        this(status, reason, headers, ResponseBody.of(body));
+    }
+
     /**
      * Checks if the response has a header with the specified name.
      *
@@ -45,39 +64,85 @@ record Response(int status, String reason, List<Header> headers, byte[] body) {
     }
 
     /**
-     * Serializes the response to a byte array using the specified version and headers.
+     * Retrieves the value of the specified header.
+     *
+     * @param name the name of the header
+     * @return the value of the header, or null if the header is not found
+     */
+    public String header(String name) {
+        for (Header header : headers) {
+            if (header.name().equalsIgnoreCase(name)) {
+                return header.value();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Writes the status line and headers of the response to the given buffer,
+     * including the blank line that separates them from the body. Nothing is allocated.
      *
-     * @param version the HTTP version to use in the serialization
-     * @param headers the additional headers to include in the serialization
-     * @return the serialized response as a byte array
+     * @param buffer        the buffer to write to
+     * @param version       the HTTP version to use in the status line
+     * @param headers       the additional headers to include
+     * @param contentLength the value of an additional {@code Content-Length} header, or -1 to omit it
+     * @throws BufferOverflowException if the buffer is too small
      */
-    byte[] serialize(String version, List<Header> headers) {
-        ByteMerger merger = new ByteMerger();
-        merger.add(version.getBytes());
-        merger.add(SPACE);
-        merger.add(Integer.toString(status).getBytes());
-        merger.add(SPACE);
-        merger.add(reason.getBytes());
-        merger.add(CRLF);
-        appendHeaders(merger, headers);
-        appendHeaders(merger, this.headers);
-        merger.add(CRLF);
-        merger.add(body);
-        return merger.merge();
+    void writeHead(ByteBuffer buffer, String version, List<Header> headers, long contentLength) {
+        putAscii(buffer, version);
+        buffer.put(SPACE);
+        putDecimal(buffer, status);
+        buffer.put(SPACE);
+        putAscii(buffer, reason);
+        buffer.put(CRLF);
+        writeHeaders(buffer, headers);
+        if (contentLength >= 0) {
+            buffer.put(CONTENT_LENGTH_COLON_SPACE);
+            putDecimal(buffer, contentLength);
+            buffer.put(CRLF);
+        }
+        writeHeaders(buffer, this.headers);
+        buffer.put(CRLF);
     }
 
     /**
-     * Appends the headers to the specified ByteMerger.
+     * Writes the headers to the specified buffer.
      *
-     * @param merger  the ByteMerger to append the headers to
-     * @param headers the headers to append
+     * @param buffer  the buffer to write the headers to
+     * @param headers the headers to write
      */
-    private static void appendHeaders(ByteMerger merger, List<Header> headers) {
+    private static void writeHeaders(ByteBuffer buffer, List<Header> headers) {
         for (Header header : headers) {
-            merger.add(header.name().getBytes());
-            merger.add(COLON_SPACE);
-            merger.add(header.value().getBytes());
-            merger.add(CRLF);
+            putAscii(buffer, header.name());
+            buffer.put(COLON_SPACE);
+            putAscii(buffer, header.value());
+            buffer.put(CRLF);
+        }
+    }
+
+    /**
+     * Writes the decimal digits of the given non-negative number to the buffer.
+     */
+    private static void putDecimal(ByteBuffer buffer, long value) {
+        long divisor = 1;
+        while (value / divisor >= 10) {
+            divisor *= 10;
+        }
+        for (; divisor > 0; divisor /= 10) {
+            buffer.put((byte) ('0' + value / divisor % 10));
+        }
+    }
+
+    /**
+     * Writes the given string to the buffer with one byte per character, as header fields are ISO-8859-1 encoded.
+     */
+    private static void putAscii(ByteBuffer buffer, String s) {
+        final int length = s.length();
+        if (buffer.remaining() < length) {
+            throw new BufferOverflowException();
+        }
+        for (int i = 0; i < length; i++) {
+            buffer.put((byte) s.charAt(i));
         }
     }
 }
@@ -0,0 +1,145 @@
+package one.jpro.platform.auth.core.http.impl;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Objects;
+import java.util.concurrent.Flow;
+import java.util.function.Supplier;
+
+/**
+ * Represents the body of an HTTP {@link Response}. The body is written to the connection as it is,
+ * without being copied into intermediate arrays: a buffer body is written together with the response
+ * header in a single gathering write, a file body is transferred from the file channel to the socket.
+ * A stream body of unknown length is written piece by piece as it is published, with the chunked
+ * transfer coding, and compressed if the client accepts it.
+ *
+ * @author Besmir Beqiri
+ */
+public sealed interface ResponseBody permits ResponseBody.BufferBody, ResponseBody.FileBody, ResponseBody.StreamBody {
+
+    /**
+     * An empty body.
+     */
+    ResponseBody EMPTY = of(new byte[0]);
+
+    /**
+     * Returns the length of the body.
+     *
+     * @return the length in bytes, or -1 if it is unknown
+     */
+    long length();
+
+    /**
+     * Creates a body from the given byte array, which must not be modified afterward.
+     *
+     * @param bytes the content of the body
+     * @return the response body
+     */
+    static ResponseBody of(byte[] bytes) {
+        return new BufferBody(ByteBuffer.wrap(bytes));
+    }
+
+    /**
+     * Creates a body from the remaining bytes of the given buffer, for example a direct buffer.
+     * The buffer is neither modified nor copied, so the same body can be used for several responses.
+     *
+     * @param buffer the content of the body
+     * @return the response body
+     */
+    static ResponseBody of(ByteBuffer buffer) {
+        return new BufferBody(buffer.asReadOnlyBuffer());
+    }
+
+    /**
+     * Creates a body from a region of the given file channel. The channel is closed
+     * once the response has been written or the connection has been closed.
+     *
+     * @param channel  the file channel
+     * @param position the position of the region in the file
+     * @param count    the length of the region
+     * @return the response body
+     */
+    static ResponseBody of(FileChannel channel, long position, long count) {
+        return new FileBody(channel, position, count);
+    }
+
+    /**
+     * Creates a body from the pieces published by the given publisher. The next piece is only requested
+     * once the previous one has been written, and the published buffers are written as they are,
+     * so they must not be modified afterward.
+     *
+     * @param publisher the publisher of the pieces of the body
+     * @return the response body
+     */
+    static ResponseBody of(Flow.Publisher<ByteBuffer> publisher) {
+        return new StreamBody(publisher);
+    }
+
+    /**
+     * Creates a body from the pieces returned by the given producer. The producer is called on the
+     * event loop thread whenever the previous piece has been written, so it must not block,
+     * and returns null at the end of the body.
+     *
+     * @param producer the producer of the pieces of the body
+     * @return the response body
+     */
+    static ResponseBody ofProducer(Supplier<ByteBuffer> producer) {
+        return new StreamBody(new ProducerPublisher(producer));
+    }
+
+    /**
+     * A body backed by a byte buffer.
+     *
+     * @param buffer the buffer, whose remaining bytes are the content of the body
+     */
+    record BufferBody(ByteBuffer buffer) implements ResponseBody {
+
+        public BufferBody {
+            Objects.requireNonNull(buffer, "buffer cannot be null");
+        }
+
+        @Override
+        public long length() {
+            return buffer.remaining();
+        }
+    }
+
+    /**
+     * A body backed by a region of a file.
+     *
+     * @param channel  the file channel
+     * @param position the position of the region in the file
+     * @param count    the length of the region
+     */
+    record FileBody(FileChannel channel, long position, long count) implements ResponseBody {
+
+        public FileBody {
+            Objects.requireNonNull(channel, "channel cannot be null");
+            if (position < 0 || count < 0) {
+                throw new IllegalArgumentException("Invalid file region: position=" + position + ", count=" + count);
+            }
+        }
+
+        @Override
+        public long length() {
+            return count;
+        }
+    }
+
+    /**
+     * A body of unknown length, backed by a publisher.
+     *
+     * @param publisher the publisher of the pieces of the body
+     */
+    record StreamBody(Flow.Publisher<ByteBuffer> publisher) implements ResponseBody {
+
+        public StreamBody {
+            Objects.requireNonNull(publisher, "publisher cannot be null");
+        }
+
+        @Override
+        public long length() {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package one.jpro.platform.auth.core.http.impl;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+/**
+ * A {@link Handler} that dispatches each request to the handler registered for its path.
+ * <p>
+ * A route whose path ends with {@code /} matches every request path starting with it, any other
+ * route only matches the exact request path. Exact routes take precedence, and among the prefix
+ * routes the longest one wins. Requests matching no route are passed to the fallback handler.
+ * The query string of the request URI is ignored for matching.
+ * <p>
+ * Routes can be added at any time, also while requests are being dispatched.
+ *
+ * @author Besmir Beqiri
+ */
+public final class Router implements Handler {
+
+    private final Handler fallback;
+    private volatile Map<String, Handler> exactRoutes = Map.of();
+    private volatile List<Route> prefixRoutes = List.of();
+
+    /**
+     * Creates a router.
+     *
+     * @param fallback the handler of the requests that match no route
+     */
+    public Router(@NotNull Handler fallback) {
+        this.fallback = Objects.requireNonNull(fallback, "Fallback handler cannot be null");
+    }
+
+    /**
+     * Registers the handler for the given path, replacing any handler registered for the same path.
+     *
+     * @param path    the path, which matches all paths starting with it if it ends with {@code /}
+     * @param handler the handler
+     * @return this router
+     */
+    public synchronized Router route(@NotNull String path, @NotNull Handler handler) {
+        Objects.requireNonNull(handler, "Handler cannot be null");
+        if (!path.startsWith("/")) {
+            throw new IllegalArgumentException("The path must start with '/': " + path);
+        }
+        if (path.endsWith("/")) {
+            final List<Route> routes = new ArrayList<>(prefixRoutes);
+            routes.removeIf(route -> route.prefix.equals(path));
+            routes.add(new Route(path, handler));
+            routes.sort(Comparator.comparingInt((Route route) -> route.prefix.length()).reversed());
+            prefixRoutes = List.copyOf(routes);
+        } else {
+            final Map<String, Handler> routes = new HashMap<>(exactRoutes);
+            routes.put(path, handler);
+            exactRoutes = Map.copyOf(routes);
+        }
+        return this;
+    }
+
+    @Override
+    public void handle(@NotNull Request request, @NotNull Consumer<Response> callback) {
+        findHandler(path(request.uri())).handle(request, callback);
+    }
+
+    @Override
+    public boolean streamsBody(@NotNull Request request) {
+        return findHandler(path(request.uri())).streamsBody(request);
+    }
+
+    /**
+     * Returns the handler for the given request path.
+     *
+     * @param path the request path, without query string
+     * @return the handler
+     */
+    Handler findHandler(String path) {
+        final Handler handler = exactRoutes.get(path);
+        if (handler != null) {
+            return handler;
+        }
+        for (Route route : prefixRoutes) {
+            if (path.startsWith(route.prefix)) {
+                return route.handler;
+            }
+        }
+        return fallback;
+    }
+
+    /**
+     * Returns the path of the given request URI, without query string and fragment.
+     *
+     * @param uri the request URI
+     * @return the path
+     */
+    static String path(String uri) {
+        int end = uri.length();
+        for (int i = 0; i < end; i++) {
+            final char c = uri.charAt(i);
+            if (c == '?' || c == '#') {
+                end = i;
+            }
+        }
+        return uri.substring(0, end);
+    }
+
+    private record Route(String prefix, Handler handler) {
+    }
+}
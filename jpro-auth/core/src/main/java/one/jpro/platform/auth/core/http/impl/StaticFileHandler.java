@@ -0,0 +1,529 @@
+package one.jpro.platform.auth.core.http.impl;
+
+import one.jpro.platform.auth.core.http.HttpStatus;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+import java.util.zip.Deflater;
+
+/**
+ * A {@link Handler} serving the files of a directory, for example login page assets.
+ * <p>
+ * Large files are transferred from the file to the socket with {@link FileChannel#transferTo}, small files are
+ * kept in direct buffers in a bounded cache and written from there. Every response carries an {@code ETag}
+ * derived from the size and modification time of the file, so that clients can revalidate with
+ * {@code If-None-Match} and get a {@code 304 Not Modified} response. Single byte ranges are supported.
+ * <p>
+ * Text files are compressed with gzip or deflate if the client accepts it. The compressed variants are kept
+ * in the same cache, so every file is only compressed once, and get entity tags of their own.
+ * <p>
+ * Files that are not cached yet are read and compressed on an executor and the response is completed from
+ * there, so the event loop never waits for them. Concurrent requests for the same file and content coding
+ * share a single read. Only the attributes of the requested file are read, and
+ * large files opened, on the calling thread.
+ *
+ * @author Besmir Beqiri
+ */
+public final class StaticFileHandler implements Handler {
+
+    private static final Logger logger = LoggerFactory.getLogger(StaticFileHandler.class);
+
+    /**
+     * The default maximum size of the files kept in the cache.
+     */
+    public static final int DEFAULT_MAX_CACHED_FILE_SIZE = 64 * 1024;
+
+    /**
+     * The default maximum total size of the cache.
+     */
+    public static final long DEFAULT_MAX_CACHE_SIZE = 16 * 1024 * 1024;
+
+    /**
+     * The default maximum size of the files that are compressed.
+     */
+    public static final int DEFAULT_MAX_COMPRESSED_FILE_SIZE = 1024 * 1024;
+
+    /**
+     * The minimum size of the files that are compressed, smaller files hardly get any smaller.
+     */
+    static final int MIN_COMPRESSED_FILE_SIZE = 256;
+
+    static final String HEADER_ACCEPT_ENCODING = "Accept-Encoding";
+    static final String HEADER_ACCEPT_RANGES = "Accept-Ranges";
+    static final String HEADER_ALLOW = "Allow";
+    static final String HEADER_CONTENT_ENCODING = "Content-Encoding";
+    static final String HEADER_CONTENT_LENGTH = "Content-Length";
+    static final String HEADER_CONTENT_RANGE = "Content-Range";
+    static final String HEADER_CONTENT_TYPE = "Content-Type";
+    static final String HEADER_ETAG = "ETag";
+    static final String HEADER_IF_NONE_MATCH = "If-None-Match";
+    static final String HEADER_IF_RANGE = "If-Range";
+    static final String HEADER_LAST_MODIFIED = "Last-Modified";
+    static final String HEADER_RANGE = "Range";
+    static final String HEADER_VARY = "Vary";
+    static final String INDEX_FILE = "index.html";
+
+    private static final Map<String, String> CONTENT_TYPES = Map.ofEntries(
+            Map.entry("html", "text/html; charset=utf-8"),
+            Map.entry("htm", "text/html; charset=utf-8"),
+            Map.entry("css", "text/css; charset=utf-8"),
+            Map.entry("js", "text/javascript; charset=utf-8"),
+            Map.entry("mjs", "text/javascript; charset=utf-8"),
+            Map.entry("json", "application/json"),
+            Map.entry("txt", "text/plain; charset=utf-8"),
+            Map.entry("xml", "application/xml"),
+            Map.entry("svg", "image/svg+xml"),
+            Map.entry("png", "image/png"),
+            Map.entry("jpg", "image/jpeg"),
+            Map.entry("jpeg", "image/jpeg"),
+            Map.entry("gif", "image/gif"),
+            Map.entry("webp", "image/webp"),
+            Map.entry("ico", "image/x-icon"),
+            Map.entry("woff", "font/woff"),
+            Map.entry("woff2", "font/woff2"),
+            Map.entry("pdf", "application/pdf"),
+            Map.entry("wasm", "application/wasm"));
+    private static final String DEFAULT_CONTENT_TYPE = "application/octet-stream";
+
+    private final String pathPrefix;
+    private final Path root;
+    private final int maxCachedFileSize;
+    private final int maxCompressedFileSize;
+    private final FileCache cache;
+
+    /**
+     * Creates a handler serving the files of the given directory with the default cache limits.
+     *
+     * @param pathPrefix   the path prefix of the requests, which is removed to get the path of the file
+     * @param root         the directory containing the files
+     * @param fileExecutor the executor reading and compressing the files that are not cached
+     */
+    public StaticFileHandler(@NotNull String pathPrefix, @NotNull Path root, @NotNull Executor fileExecutor) {
+        this(pathPrefix, root, DEFAULT_MAX_CACHED_FILE_SIZE, DEFAULT_MAX_CACHE_SIZE, fileExecutor);
+    }
+
+    /**
+     * Creates a handler serving the files of the given directory, compressing files up to the default size.
+     *
+     * @param pathPrefix        the path prefix of the requests, which is removed to get the path of the file
+     * @param root              the directory containing the files
+     * @param maxCachedFileSize the maximum size of the uncompressed files kept in the cache, 0 to only cache
+     *                          compressed variants
+     * @param maxCacheSize      the maximum total size of the files and compressed variants kept in the cache,
+     *                          0 to disable the cache
+     * @param fileExecutor      the executor reading and compressing the files that are not cached
+     */
+    public StaticFileHandler(@NotNull String pathPrefix, @NotNull Path root, int maxCachedFileSize, long maxCacheSize,
+                             @NotNull Executor fileExecutor) {
+        this(pathPrefix, root, maxCachedFileSize, maxCacheSize, DEFAULT_MAX_COMPRESSED_FILE_SIZE, fileExecutor);
+    }
+
+    /**
+     * Creates a handler serving the files of the given directory.
+     *
+     * @param pathPrefix            the path prefix of the requests, which is removed to get the path of the file
+     * @param root                  the directory containing the files
+     * @param maxCachedFileSize     the maximum size of the uncompressed files kept in the cache, 0 to only cache
+     *                              compressed variants
+     * @param maxCacheSize          the maximum total size of the files and compressed variants kept in the cache,
+     *                              0 to disable the cache
+     * @param maxCompressedFileSize the maximum size of the files that are compressed, 0 to disable compression
+     * @param fileExecutor          the executor reading and compressing the files that are not cached, which may
+     *                              run them directly if the handler is never called on an event loop thread
+     */
+    public StaticFileHandler(@NotNull String pathPrefix, @NotNull Path root, int maxCachedFileSize, long maxCacheSize,
+                             int maxCompressedFileSize, @NotNull Executor fileExecutor) {
+        this.pathPrefix = Objects.requireNonNull(pathPrefix, "Path prefix cannot be null");
+        this.root = Objects.requireNonNull(root, "Root directory cannot be null").toAbsolutePath().normalize();
+        this.maxCachedFileSize = maxCachedFileSize;
+        this.maxCompressedFileSize = maxCompressedFileSize;
+        this.cache = new FileCache(maxCacheSize, Objects.requireNonNull(fileExecutor, "File executor cannot be null"));
+    }
+
+    @Override
+    public void handle(@NotNull Request request, @NotNull Consumer<Response> callback) {
+        final boolean head = request.method().equals("HEAD");
+        if (!head && !request.method().equals("GET")) {
+            callback.accept(response(HttpStatus.METHOD_NOT_ALLOWED, List.of(new Header(HEADER_ALLOW, "GET, HEAD"))));
+            return;
+        }
+        final Path file = resolve(Router.path(request.uri()));
+        if (file == null) {
+            callback.accept(response(HttpStatus.NOT_FOUND, List.of()));
+            return;
+        }
+        try {
+            serve(request, file, head, callback);
+        } catch (IOException ex) {
+            callback.accept(failure(file, ex));
+        }
+    }
+
+    /**
+     * Returns the file for the given request path, or null if it is outside the root directory
+     * or not a regular file.
+     */
+    Path resolve(String requestPath) {
+        if (!requestPath.startsWith(pathPrefix)) {
+            return null;
+        }
+        final String relative;
+        try {
+            relative = URI.create(requestPath.substring(pathPrefix.length())).getPath();
+        } catch (IllegalArgumentException ex) {
+            return null;
+        }
+        if (relative == null || relative.indexOf('\0') >= 0) {
+            return null;
+        }
+        Path file = root.resolve(relative.startsWith("/") ? relative.substring(1) : relative).normalize();
+        if (!file.startsWith(root)) {
+            return null; // path traversal
+        }
+        if (Files.isDirectory(file)) {
+            file = file.resolve(INDEX_FILE);
+        }
+        return Files.isRegularFile(file) ? file : null;
+    }
+
+    private void serve(Request request, Path file, boolean head, Consumer<Response> callback) throws IOException {
+        final BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        final long size = attributes.size();
+        final long lastModified = attributes.lastModifiedTime().toMillis();
+        final String etag = "\"" + Long.toHexString(size) + "-" + Long.toHexString(lastModified) + "\"";
+        final String contentType = contentType(file);
+        final boolean compressible = size >= MIN_COMPRESSED_FILE_SIZE && size <= maxCompressedFileSize
+                && ContentEncoder.isCompressible(contentType);
+        // byte ranges refer to the uncompressed file
+        final String encoding = compressible && request.header(HEADER_RANGE) == null
+                ? ContentEncoder.negotiate(request.header(HEADER_ACCEPT_ENCODING)) : null;
+
+        final List<Header> headers = new ArrayList<>();
+        headers.add(new Header(HEADER_ETAG, encoding == null ? etag : variantEtag(etag, encoding)));
+        headers.add(new Header(HEADER_LAST_MODIFIED, DateTimeFormatter.RFC_1123_DATE_TIME
+                .format(Instant.ofEpochMilli(lastModified).atOffset(ZoneOffset.UTC))));
+        if (compressible) {
+            headers.add(new Header(HEADER_VARY, HEADER_ACCEPT_ENCODING));
+        }
+        final String ifNoneMatch = request.header(HEADER_IF_NONE_MATCH);
+        if (ifNoneMatch != null && matches(ifNoneMatch, headers.get(0).value())) {
+            callback.accept(response(HttpStatus.NOT_MODIFIED, headers));
+            return;
+        }
+
+        headers.add(new Header(HEADER_CONTENT_TYPE, contentType));
+        if (encoding == null) {
+            serveFile(request, file, head, size, lastModified, etag, headers, callback);
+            return;
+        }
+        cache.get(file, encoding, size, lastModified).whenComplete((compressed, ex) -> {
+            if (ex != null) {
+                callback.accept(failure(file, ex));
+            } else if (compressed != null) {
+                headers.add(new Header(HEADER_CONTENT_ENCODING, encoding));
+                headers.add(new Header(HEADER_CONTENT_LENGTH, Integer.toString(compressed.remaining())));
+                callback.accept(new Response(HttpStatus.OK.getCode(), HttpStatus.OK.getMessage(), headers,
+                        head ? ResponseBody.EMPTY : ResponseBody.of(compressed)));
+            } else {
+                headers.set(0, new Header(HEADER_ETAG, etag)); // modified while reading, serve it uncompressed
+                serveFile(request, file, head, size, lastModified, etag, headers, callback);
+            }
+        });
+    }
+
+    /**
+     * Serves the uncompressed file, or the requested byte range of it, from the cache or from the file.
+     */
+    private void serveFile(Request request, Path file, boolean head, long size, long lastModified, String etag,
+                           List<Header> headers, Consumer<Response> callback) {
+        headers.add(new Header(HEADER_ACCEPT_RANGES, "bytes"));
+        long start = 0;
+        long length = size;
+        HttpStatus status = HttpStatus.OK;
+        final String range = request.header(HEADER_RANGE);
+        final String ifRange = request.header(HEADER_IF_RANGE);
+        if (range != null && (ifRange == null || ifRange.equals(etag))) {
+            final long[] byteRange = parseRange(range, size);
+            if (byteRange == null) {
+                headers.add(new Header(HEADER_CONTENT_RANGE, "bytes */" + size));
+                callback.accept(response(HttpStatus.RANGE_NOT_SATISFIABLE, headers));
+                return;
+            }
+            if (byteRange.length == 2) {
+                start = byteRange[0];
+                length = byteRange[1] - byteRange[0] + 1;
+                status = HttpStatus.PARTIAL_CONTENT;
+                headers.add(new Header(HEADER_CONTENT_RANGE,
+                        "bytes " + byteRange[0] + "-" + byteRange[1] + "/" + size));
+            }
+        }
+        headers.add(new Header(HEADER_CONTENT_LENGTH, Long.toString(length)));
+
+        final int code = status.getCode();
+        final String message = status.getMessage();
+        if (head) {
+            callback.accept(new Response(code, message, headers, ResponseBody.EMPTY));
+            return;
+        }
+        final long first = start;
+        final long count = length;
+        final CompletableFuture<ByteBuffer> cached = size <= maxCachedFileSize
+                ? cache.get(file, null, size, lastModified) : CompletableFuture.completedFuture(null);
+        cached.whenComplete((buffer, ex) -> {
+            if (ex != null) {
+                callback.accept(failure(file, ex));
+            } else if (buffer != null) {
+                callback.accept(new Response(code, message, headers, ResponseBody.of(buffer.duplicate()
+                        .limit((int) (first + count)).position((int) first))));
+            } else {
+                // not cacheable or modified while reading, transfer it from the file
+                try {
+                    callback.accept(new Response(code, message, headers,
+                            ResponseBody.of(FileChannel.open(file), first, count)));
+                } catch (IOException fileException) {
+                    callback.accept(failure(file, fileException));
+                }
+            }
+        });
+    }
+
+    /**
+     * Returns the response to a failure while serving the given file.
+     */
+    private static Response failure(Path file, Throwable ex) {
+        if (ex instanceof CompletionException && ex.getCause() != null) {
+            ex = ex.getCause();
+        }
+        if (ex instanceof NoSuchFileException) {
+            return response(HttpStatus.NOT_FOUND, List.of());
+        }
+        logger.warn("Error serving file: {}", file, ex);
+        return response(HttpStatus.INTERNAL_SERVER_ERROR, List.of());
+    }
+
+    /**
+     * Returns the entity tag of the variant of a file compressed with the given content coding.
+     */
+    static String variantEtag(String etag, String encoding) {
+        return etag.substring(0, etag.length() - 1) + "-" + encoding + "\"";
+    }
+
+    /**
+     * Checks if the given {@code If-None-Match} header value matches the given entity tag,
+     * using the weak comparison.
+     */
+    static boolean matches(String ifNoneMatch, String etag) {
+        for (String tag : ifNoneMatch.split(",")) {
+            tag = tag.trim();
+            if (tag.equals("*") || (tag.startsWith("W/") ? tag.substring(2) : tag).equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Parses the given {@code Range} header value.
+     *
+     * @param range the header value
+     * @param size  the size of the file
+     * @return the first and last byte position of the range, an empty array if the header
+     * should be ignored, or null if the range is not satisfiable
+     */
+    static long[] parseRange(String range, long size) {
+        if (!range.startsWith("bytes=") || range.indexOf(',') >= 0) {
+            return new long[0]; // other units and multiple ranges are not supported, serve the full file
+        }
+        final String spec = range.substring("bytes=".length()).trim();
+        final int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return new long[0];
+        }
+        try {
+            final long first;
+            final long last;
+            if (dash == 0) { // suffix range, the last n bytes
+                final long suffix = Long.parseLong(spec.substring(1));
+                if (suffix <= 0) {
+                    return null;
+                }
+                first = Math.max(0, size - suffix);
+                last = size - 1;
+            } else {
+                first = Long.parseLong(spec.substring(0, dash));
+                last = dash == spec.length() - 1
+                        ? size - 1
+                        : Math.min(size - 1, Long.parseLong(spec.substring(dash + 1)));
+                if (last < first) {
+                    return first < size ? new long[0] : null;
+                }
+            }
+            return first < size ? new long[]{first, last} : null;
+        } catch (NumberFormatException ex) {
+            return new long[0];
+        }
+    }
+
+    private static String contentType(Path file) throws IOException {
+        final String name = file.getFileName().toString();
+        final int dot = name.lastIndexOf('.');
+        final String contentType = dot < 0 ? null : CONTENT_TYPES.get(name.substring(dot + 1).toLowerCase(Locale.ROOT));
+        if (contentType != null) {
+            return contentType;
+        }
+        final String probed = Files.probeContentType(file);
+        return probed != null ? probed : DEFAULT_CONTENT_TYPE;
+    }
+
+    private static Response response(HttpStatus status, List<Header> headers) {
+        return new Response(status.getCode(), status.getMessage(), headers, ResponseBody.EMPTY);
+    }
+
+    /**
+     * A least recently used cache of small files and compressed variants of files in direct buffers,
+     * bounded by their total size.
+     */
+    private static final class FileCache {
+
+        private final long maxSize;
+        private final Executor executor;
+        private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+        private final HashMap<Key, Loading> loading = new HashMap<>();
+        private long size;
+
+        FileCache(long maxSize, Executor executor) {
+            this.maxSize = maxSize;
+            this.executor = executor;
+        }
+
+        /**
+         * Returns the content of the given file. A cached content is returned immediately, otherwise the file
+         * is read and compressed on the executor, once for all the requests waiting for the same version of it.
+         * The returned buffer must not be modified, only duplicated.
+         *
+         * @param encoding the content coding of the variant, or null for the file itself
+         * @return the future content, which is null if the file has been modified while reading it
+         */
+        CompletableFuture<ByteBuffer> get(Path file, String encoding, long fileSize, long lastModified) {
+            final Key key = new Key(file, encoding);
+            final Loading load;
+            synchronized (this) {
+                final Entry entry = entries.get(key);
+                if (entry != null && entry.fileSize == fileSize && entry.lastModified == lastModified) {
+                    return CompletableFuture.completedFuture(entry.buffer);
+                }
+                final Loading pending = loading.get(key);
+                if (pending != null && pending.fileSize == fileSize && pending.lastModified == lastModified) {
+                    return pending.future;
+                }
+                load = new Loading(fileSize, lastModified, new CompletableFuture<>());
+                loading.put(key, load);
+            }
+            try {
+                executor.execute(() -> {
+                    ByteBuffer buffer = null;
+                    Exception failure = null;
+                    try {
+                        buffer = load(key, fileSize, lastModified);
+                    } catch (IOException | RuntimeException ex) {
+                        failure = ex;
+                    }
+                    complete(key, load, buffer, failure);
+                });
+            } catch (RejectedExecutionException ex) {
+                complete(key, load, null, ex);
+            }
+            return load.future;
+        }
+
+        /**
+         * Completes the given load, once it no longer accepts new requests.
+         */
+        private void complete(Key key, Loading load, ByteBuffer buffer, Exception failure) {
+            synchronized (this) {
+                loading.remove(key, load);
+            }
+            if (failure != null) {
+                load.future.completeExceptionally(failure);
+            } else {
+                load.future.complete(buffer);
+            }
+        }
+
+        /**
+         * Reads and compresses the given file and caches its content.
+         *
+         * @return the content, or null if the file has been modified while reading it
+         */
+        private ByteBuffer load(Key key, long fileSize, long lastModified) throws IOException {
+            final Path file = key.file();
+            final String encoding = key.encoding();
+            ByteBuffer buffer = read(file, fileSize, encoding == null);
+            if (buffer == null) {
+                return null;
+            }
+            if (encoding != null) {
+                final ByteBuffer compressed = ContentEncoder.encode(buffer, encoding, Deflater.BEST_COMPRESSION);
+                buffer = ByteBuffer.allocateDirect(compressed.remaining()).put(compressed).flip();
+            }
+            synchronized (this) {
+                final Entry previous = entries.put(key, new Entry(fileSize, lastModified, buffer));
+                size += buffer.capacity() - (previous == null ? 0 : previous.buffer.capacity());
+                final Iterator<Entry> it = entries.values().iterator();
+                while (size > maxSize && it.hasNext()) {
+                    size -= it.next().buffer.capacity();
+                    it.remove();
+                }
+            }
+            return buffer;
+        }
+
+        private static ByteBuffer read(Path file, long fileSize, boolean direct) throws IOException {
+            try (FileChannel channel = FileChannel.open(file)) {
+                final ByteBuffer buffer = direct
+                        ? ByteBuffer.allocateDirect((int) fileSize)
+                        : ByteBuffer.allocate((int) fileSize);
+                while (buffer.hasRemaining()) {
+                    if (channel.read(buffer) < 0) {
+                        return null;
+                    }
+                }
+                return channel.size() == fileSize ? buffer.flip() : null;
+            }
+        }
+
+        private record Key(Path file, String encoding) {
+        }
+
+        private record Entry(long fileSize, long lastModified, ByteBuffer buffer) {
+        }
+
+        private record Loading(long fileSize, long lastModified, CompletableFuture<ByteBuffer> future) {
+        }
+    }
+}
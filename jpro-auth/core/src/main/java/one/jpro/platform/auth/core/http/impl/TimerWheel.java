@@ -0,0 +1,223 @@
+package one.jpro.platform.auth.core.http.impl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * TimerWheel is a hashed timing wheel for efficiently scheduling deferred tasks and running
+ * expired tasks, such as the request and keep-alive timeouts of many connections.
+ * <p>
+ * Time is divided into ticks of a fixed duration. A task is put in the bucket of the tick at which
+ * its deadline has passed, modulo the number of buckets, so that both scheduling and cancelling a task
+ * take constant time. A {@link Cancellable} handle is returned to clients when a new task is scheduled.
+ * Tasks never run before their deadline, but up to one tick after it.
+ * <p>
+ * This class is not thread-safe, it is meant to be used by a single event loop thread.
+ *
+ * @author Besmir Beqiri
+ */
+final class TimerWheel {
+
+    private static final Logger logger = LoggerFactory.getLogger(TimerWheel.class);
+
+    /**
+     * The default number of buckets of the wheel.
+     */
+    static final int DEFAULT_WHEEL_SIZE = 512;
+
+    private final Clock clock;
+    private final long tickNanos;
+    private final long startTime;
+    private final Timeout[] buckets;
+    private final int mask;
+    private final List<Timeout> expired = new ArrayList<>();
+    private long currentTick;
+    private int size;
+
+    /**
+     * Constructs a new TimerWheel with the given tick duration and the default system clock.
+     *
+     * @param tick the duration of a tick
+     */
+    TimerWheel(Duration tick) {
+        this(System::nanoTime, tick, DEFAULT_WHEEL_SIZE);
+    }
+
+    /**
+     * Constructs a new TimerWheel with the specified clock, tick duration and number of buckets.
+     *
+     * @param clock     the clock to use for time-related operations
+     * @param tick      the duration of a tick
+     * @param wheelSize the number of buckets, rounded up to a power of two
+     */
+    TimerWheel(Clock clock, Duration tick, int wheelSize) {
+        if (tick.isNegative() || tick.isZero()) {
+            throw new IllegalArgumentException("The tick duration must be positive: " + tick);
+        }
+        if (wheelSize <= 0) {
+            throw new IllegalArgumentException("The wheel size must be positive: " + wheelSize);
+        }
+        this.clock = clock;
+        this.tickNanos = tick.toNanos();
+        this.startTime = clock.nanoTime();
+        int length = 1;
+        while (length < wheelSize) {
+            length <<= 1;
+        }
+        this.buckets = new Timeout[length];
+        this.mask = buckets.length - 1;
+    }
+
+    /**
+     * Returns the number of tasks in the wheel.
+     *
+     * @return the number of tasks
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Schedules a task to be executed after the specified duration.
+     *
+     * @param task     the task to schedule
+     * @param duration the duration after which the task should be executed
+     * @return a Cancellable object that can be used to cancel the scheduled task
+     */
+    Cancellable schedule(Runnable task, Duration duration) {
+        final long deadline = clock.nanoTime() - startTime + duration.toNanos();
+        // round up, so that the task does not run before its deadline
+        final long deadlineTick = Math.max(currentTick + 1, Math.floorDiv(deadline + tickNanos - 1, tickNanos));
+        final Timeout timeout = new Timeout(task, deadlineTick);
+        timeout.link((int) (deadlineTick & mask));
+        return timeout;
+    }
+
+    /**
+     * Returns the time until the earliest task in the wheel may expire, looking at most the given time ahead.
+     * Only the buckets of the ticks within that time are visited, from the next tick on. A bucket may hold
+     * tasks of a later turn of the wheel, so the returned time may be earlier than needed, but never later.
+     *
+     * @param maxNanos the maximum time to look ahead in nanoseconds
+     * @return the time until the first tick with a task in nanoseconds, zero if it is already due,
+     * or the given maximum time if no task expires before
+     */
+    long nanosUntilNextExpiry(long maxNanos) {
+        if (size > 0) {
+            final long now = clock.nanoTime() - startTime;
+            final long ticks = Math.min(buckets.length, maxNanos / tickNanos + 1);
+            for (long i = 1; i <= ticks; i++) {
+                if (buckets[(int) ((currentTick + i) & mask)] != null) {
+                    return Math.min(maxNanos, Math.max(0, (currentTick + i) * tickNanos - now));
+                }
+            }
+        }
+        return maxNanos;
+    }
+
+    /**
+     * Runs the tasks whose deadline has passed. The expired tasks are removed from the wheel
+     * before they are run, so they may schedule new tasks. A task that fails is logged and
+     * does not prevent the other expired tasks from running.
+     *
+     * @return the number of tasks that have been run
+     */
+    int runExpired() {
+        final long targetTick = (clock.nanoTime() - startTime) / tickNanos;
+        if (targetTick <= currentTick) {
+            return 0;
+        }
+        if (size > 0) {
+            // after a full turn every bucket has been visited, no need to visit them again
+            final long ticks = Math.min(targetTick - currentTick, buckets.length);
+            for (long i = 1; i <= ticks; i++) {
+                collectExpired((int) ((currentTick + i) & mask), targetTick);
+            }
+        }
+        currentTick = targetTick;
+
+        final int count = expired.size();
+        for (int i = 0; i < count; i++) {
+            try {
+                expired.get(i).task.run();
+            } catch (RuntimeException ex) {
+                logger.error("Error running an expired task", ex);
+            }
+        }
+        expired.clear();
+        return count;
+    }
+
+    private void collectExpired(int bucket, long targetTick) {
+        Timeout timeout = buckets[bucket];
+        while (timeout != null) {
+            final Timeout next = timeout.next;
+            if (timeout.deadlineTick <= targetTick) {
+                timeout.unlink();
+                expired.add(timeout);
+            }
+            timeout = next;
+        }
+    }
+
+    /**
+     * Represents a task scheduled in the wheel, as a node of the doubly linked list of its bucket.
+     */
+    private final class Timeout implements Cancellable {
+        final Runnable task;
+        final long deadlineTick;
+        int bucket = -1;
+        Timeout prev;
+        Timeout next;
+
+        /**
+         * Constructs a new Timeout with the specified task and the tick at which it expires.
+         *
+         * @param task         the task to be executed
+         * @param deadlineTick the tick at which the task expires
+         */
+        Timeout(Runnable task, long deadlineTick) {
+            this.task = task;
+            this.deadlineTick = deadlineTick;
+        }
+
+        void link(int bucket) {
+            this.bucket = bucket;
+            next = buckets[bucket];
+            if (next != null) {
+                next.prev = this;
+            }
+            buckets[bucket] = this;
+            size++;
+        }
+
+        void unlink() {
+            if (prev != null) {
+                prev.next = next;
+            } else {
+                buckets[bucket] = next;
+            }
+            if (next != null) {
+                next.prev = prev;
+            }
+            prev = null;
+            next = null;
+            bucket = -1;
+            size--;
+        }
+
+        /**
+         * Cancels the task by removing it from the wheel, if it has not expired yet.
+         */
+        @Override
+        public void cancel() {
+            if (bucket >= 0) {
+                unlink();
+            }
+        }
+    }
+}
@@ -22,10 +22,19 @@ public class HttpOptionsTests {
         assertEquals(httpOptions.isReusePort(), HttpOptions.DEFAULT_REUSE_PORT);
         assertEquals(httpOptions.getResolution(), HttpOptions.DEFAULT_RESOLUTION);
         assertEquals(httpOptions.getRequestTimeout(), HttpOptions.DEFAULT_REQUEST_TIMEOUT);
+        assertEquals(httpOptions.getKeepAliveTimeout(), HttpOptions.DEFAULT_KEEP_ALIVE_TIMEOUT);
+        assertEquals(httpOptions.getTimerTick(), HttpOptions.DEFAULT_TIMER_TICK);
         assertEquals(httpOptions.getReadBufferSize(), HttpOptions.DEFAULT_READ_BUFFER_SIZE);
         assertEquals(httpOptions.getAcceptLength(), HttpOptions.DEFAULT_ACCEPT_LENGTH);
         assertEquals(httpOptions.getMaxRequestSize(), HttpOptions.DEFAULT_MAX_REQUEST_SIZE);
+        assertEquals(httpOptions.getMaxStreamedBodySize(), HttpOptions.DEFAULT_MAX_STREAMED_BODY_SIZE);
         assertEquals(httpOptions.getConcurrency(), HttpOptions.DEFAULT_CONCURRENCY);
+        assertEquals(httpOptions.isMultiAcceptor(), HttpOptions.DEFAULT_MULTI_ACCEPTOR);
+        assertEquals(httpOptions.getHandlerExecution(), HttpOptions.DEFAULT_HANDLER_EXECUTION);
+        assertEquals(httpOptions.getHandlerPoolSize(), HttpOptions.DEFAULT_HANDLER_POOL_SIZE);
+        assertEquals(httpOptions.getMaxPendingRequests(), HttpOptions.DEFAULT_MAX_PENDING_REQUESTS);
+        assertEquals(httpOptions.isCompression(), HttpOptions.DEFAULT_COMPRESSION);
+        assertEquals(httpOptions.getBufferPoolSize(), HttpOptions.DEFAULT_BUFFER_POOL_SIZE);
     }
 
     @Test
@@ -39,10 +48,19 @@ public class HttpOptionsTests {
         json.put("reusePort", httpOptions.isReusePort());
         json.put("resolution", httpOptions.getResolution().toMillis());
         json.put("requestTimeout", httpOptions.getRequestTimeout().toMillis());
+        json.put("keepAliveTimeout", httpOptions.getKeepAliveTimeout().toMillis());
+        json.put("timerTick", httpOptions.getTimerTick().toMillis());
         json.put("readBufferSize", httpOptions.getReadBufferSize());
         json.put("acceptLength", httpOptions.getAcceptLength());
         json.put("maxRequestSize", httpOptions.getMaxRequestSize());
+        json.put("maxStreamedBodySize", httpOptions.getMaxStreamedBodySize());
         json.put("concurrency", httpOptions.getConcurrency());
+        json.put("multiAcceptor", httpOptions.isMultiAcceptor());
+        json.put("handlerExecution", httpOptions.getHandlerExecution().name());
+        json.put("handlerPoolSize", httpOptions.getHandlerPoolSize());
+        json.put("maxPendingRequests", httpOptions.getMaxPendingRequests());
+        json.put("compression", httpOptions.isCompression());
+        json.put("bufferPoolSize", httpOptions.getBufferPoolSize());
 
 
         assertTrue(httpOptions.toJSON().similar(json));
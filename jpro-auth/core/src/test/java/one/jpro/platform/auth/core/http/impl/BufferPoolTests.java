@@ -0,0 +1,81 @@
+package one.jpro.platform.auth.core.http.impl;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * BufferPool tests.
+ *
+ * @author Besmir Beqiri
+ */
+public class BufferPoolTests {
+
+    @Test
+    public void buffersAreReusedPerSizeClass() {
+        final BufferPool pool = new BufferPool(64 * 1024);
+        final byte[] array = pool.acquireArray(1000);
+        assertEquals(1024, array.length);
+        assertEquals(BufferPool.MIN_SIZE, pool.acquireArray(1).length);
+        pool.release(array);
+        assertEquals(1024, pool.size());
+        assertSame(array, pool.acquireArray(513));
+        assertEquals(0, pool.size());
+
+        final ByteBuffer buffer = pool.acquireDirect(512);
+        assertTrue(buffer.isDirect());
+        assertEquals(512, buffer.capacity());
+        buffer.put((byte) 1);
+        pool.release(buffer);
+        final ByteBuffer reused = pool.acquireDirect(100);
+        assertSame(buffer, reused);
+        assertEquals(0, reused.position());
+        assertEquals(512, reused.limit());
+    }
+
+    @Test
+    public void poolIsBounded() {
+        final BufferPool pool = new BufferPool(2048);
+        pool.release(new byte[1024]);
+        pool.release(new byte[1024]);
+        pool.release(new byte[1024]);
+        assertEquals(2048, pool.size());
+        pool.release(new byte[1000]); // not of a size class
+        pool.release(ByteBuffer.allocate(512)); // not direct
+        assertEquals(2048, pool.size());
+
+        final BufferPool disabled = new BufferPool(0);
+        final byte[] array = disabled.acquireArray(512);
+        disabled.release(array);
+        assertEquals(0, disabled.size());
+        assertNotSame(array, disabled.acquireArray(512));
+    }
+
+    @Test
+    public void tokenizerReturnsItsArrayWhenEmpty() {
+        final BufferPool pool = new BufferPool(64 * 1024);
+        final ByteTokenizer tokenizer = new ByteTokenizer(pool);
+        tokenizer.add(ByteBuffer.wrap(new byte[600]));
+        assertEquals(1024, tokenizer.capacity());
+        tokenizer.add(ByteBuffer.wrap(new byte[600]));
+        assertEquals(2048, tokenizer.capacity());
+        assertEquals(1024, pool.size(), "the outgrown array is returned");
+
+        assertTrue(tokenizer.next(1000));
+        tokenizer.compact();
+        assertEquals(2048, tokenizer.capacity(), "the array is kept while bytes remain");
+        assertTrue(tokenizer.next(200));
+        tokenizer.compact();
+        assertEquals(0, tokenizer.capacity());
+        assertEquals(3072, pool.size());
+
+        tokenizer.add(ByteBuffer.wrap(new byte[1500]));
+        assertEquals(2048, tokenizer.capacity());
+        assertEquals(1024, pool.size());
+        tokenizer.release();
+        assertEquals(0, tokenizer.size());
+        assertEquals(3072, pool.size());
+    }
+}
@@ -0,0 +1,506 @@
+package one.jpro.platform.auth.core.http.impl;
+
+import one.jpro.platform.auth.core.http.HttpOptions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * ConnectionEventLoop tests.
+ *
+ * @author Besmir Beqiri
+ */
+public class ConnectionEventLoopTests {
+
+    private final AtomicBoolean stop = new AtomicBoolean();
+    private ServerSocketChannel serverSocketChannel;
+    private ConnectionEventLoop eventLoop;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        serverSocketChannel = ServerSocketChannel.open();
+        serverSocketChannel.bind(new InetSocketAddress("localhost", 0));
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        stop.set(true);
+        serverSocketChannel.close();
+    }
+
+    @Test
+    public void writeBufferBodies() throws IOException {
+        final byte[] large = new byte[4 * 1024 * 1024];
+        new Random(42).nextBytes(large);
+        final ByteBuffer direct = ByteBuffer.allocateDirect(large.length).put(large).flip();
+        start((request, callback) -> callback.accept(request.uri().equals("/direct")
+                ? new Response(200, "OK", List.of(), ResponseBody.of(direct))
+                : new Response(200, "OK", List.of(new Header("Content-Type", "text/plain")), "hello".getBytes())));
+
+        try (Socket socket = connect()) {
+            send(socket, "GET /text HTTP/1.1\r\n\r\nGET /direct HTTP/1.1\r\n\r\n");
+            assertEquals("HTTP/1.1 200 OK\r\nContent-Length: 5\r\nContent-Type: text/plain\r\n\r\nhello",
+                    new String(readResponse(socket.getInputStream(), 5), StandardCharsets.US_ASCII));
+            final byte[] response = readResponse(socket.getInputStream(), large.length);
+            assertArrayEquals(large, tail(response, large.length));
+            send(socket, "GET /direct HTTP/1.1\r\n\r\n"); // the shared body can be written again
+            assertArrayEquals(large, tail(readResponse(socket.getInputStream(), large.length), large.length));
+        }
+    }
+
+    @Test
+    public void writeFileBody() throws IOException {
+        final Path file = Files.createTempFile("connection-event-loop", ".bin");
+        final byte[] content = new byte[3 * 1024 * 1024 + 17];
+        new Random(7).nextBytes(content);
+        Files.write(file, content);
+        final FileChannel[] channel = new FileChannel[1];
+        start((request, callback) -> {
+            try {
+                channel[0] = FileChannel.open(file);
+                callback.accept(new Response(200, "OK", List.of(), ResponseBody.of(channel[0], 10, content.length - 20)));
+            } catch (IOException ex) {
+                throw new RuntimeException(ex);
+            }
+        });
+
+        try (Socket socket = connect()) {
+            send(socket, "GET /file HTTP/1.1\r\n\r\n");
+            final byte[] response = readResponse(socket.getInputStream(), content.length - 20);
+            assertTrue(new String(response, 0, 64, StandardCharsets.US_ASCII)
+                    .startsWith("HTTP/1.1 200 OK\r\nContent-Length: " + (content.length - 20) + "\r\n\r\n"));
+            final byte[] expected = new byte[content.length - 20];
+            System.arraycopy(content, 10, expected, 0, expected.length);
+            assertArrayEquals(expected, tail(response, expected.length));
+        }
+        for (int i = 0; i < 100 && channel[0].isOpen(); i++) {
+            sleep();
+        }
+        assertFalse(channel[0].isOpen(), "the file is closed once it has been written");
+        Files.delete(file);
+    }
+
+    @Test
+    public void offloadBlockingHandler() throws IOException, InterruptedException {
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+        final ExecutorService executor = Executors.newCachedThreadPool();
+        try {
+            start(new HttpOptions().setMaxPendingRequests(2), executor, (request, callback) -> {
+                if (request.uri().equals("/block")) {
+                    maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                    try {
+                        release.await();
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                    }
+                    running.decrementAndGet();
+                }
+                callback.accept(new Response(200, "OK", List.of(), request.uri().getBytes(StandardCharsets.US_ASCII)));
+            });
+
+            final List<Socket> blocked = new ArrayList<>();
+            try {
+                for (int i = 0; i < 5; i++) {
+                    final Socket socket = connect();
+                    blocked.add(socket);
+                    send(socket, "GET /block HTTP/1.1\r\n\r\n");
+                }
+                for (int i = 0; i < 100 && running.get() < 2; i++) {
+                    sleep();
+                }
+                assertEquals(2, running.get(), "only two requests of the event loop are handled at the same time");
+
+                release.countDown();
+                for (Socket socket : blocked) {
+                    assertEquals("HTTP/1.1 200 OK\r\nContent-Length: 6\r\n\r\n/block",
+                            new String(readResponse(socket.getInputStream(), 6), StandardCharsets.US_ASCII));
+                }
+                assertEquals(2, maxRunning.get());
+            } finally {
+                for (Socket socket : blocked) {
+                    socket.close();
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void blockingHandlerDoesNotStallTheEventLoop() throws IOException, InterruptedException {
+        final CountDownLatch release = new CountDownLatch(1);
+        final ExecutorService executor = Executors.newCachedThreadPool();
+        try {
+            start(new HttpOptions(), executor, (request, callback) -> {
+                if (request.uri().equals("/block")) {
+                    try {
+                        release.await();
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                callback.accept(new Response(200, "OK", List.of(), request.uri().getBytes(StandardCharsets.US_ASCII)));
+            });
+
+            try (Socket blocked = connect(); Socket socket = connect()) {
+                send(blocked, "GET /block HTTP/1.1\r\n\r\n");
+                send(socket, "GET /fast HTTP/1.1\r\n\r\n");
+                assertEquals("HTTP/1.1 200 OK\r\nContent-Length: 5\r\n\r\n/fast",
+                        new String(readResponse(socket.getInputStream(), 5), StandardCharsets.US_ASCII));
+                release.countDown();
+                assertEquals("HTTP/1.1 200 OK\r\nContent-Length: 6\r\n\r\n/block",
+                        new String(readResponse(blocked.getInputStream(), 6), StandardCharsets.US_ASCII));
+            }
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void streamRequestBodyWithBackpressure() throws IOException, InterruptedException {
+        final byte[] content = new byte[16 * 1024 * 1024];
+        new Random(3).nextBytes(content);
+        final AtomicLong received = new AtomicLong();
+        final CountDownLatch firstChunk = new CountDownLatch(1);
+        final Flow.Subscription[] subscription = new Flow.Subscription[1];
+        final ByteArrayOutputStream body = new ByteArrayOutputStream();
+        start(Handler.streaming((request, callback) -> request.bodyPublisher().subscribe(new Flow.Subscriber<>() {
+            @Override
+            public void onSubscribe(Flow.Subscription s) {
+                subscription[0] = s;
+                s.request(1);
+            }
+
+            @Override
+            public void onNext(ByteBuffer item) {
+                received.addAndGet(item.remaining());
+                body.write(item.array(), item.arrayOffset() + item.position(), item.remaining());
+                firstChunk.countDown();
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                callback.accept(new Response(500, "Internal Server Error", List.of(), new byte[0]));
+            }
+
+            @Override
+            public void onComplete() {
+                callback.accept(new Response(200, "OK", List.of(),
+                        Long.toString(received.get()).getBytes(StandardCharsets.US_ASCII)));
+            }
+        })));
+
+        try (Socket socket = connect()) {
+            final Thread sender = new Thread(() -> {
+                try {
+                    send(socket, "POST /upload HTTP/1.1\r\nContent-Length: " + content.length + "\r\n\r\n");
+                    socket.getOutputStream().write(content);
+                    socket.getOutputStream().flush();
+                } catch (IOException ex) {
+                    // the test fails on reading the response
+                }
+            });
+            sender.setDaemon(true);
+            sender.start();
+            assertTrue(firstChunk.await(10, TimeUnit.SECONDS));
+            Thread.sleep(200);
+            assertTrue(received.get() <= HttpOptions.DEFAULT_READ_BUFFER_SIZE,
+                    "only the requested piece is published, received: " + received.get());
+            assertTrue(sender.isAlive(), "the client is blocked while the subscriber does not request more");
+
+            subscription[0].request(Long.MAX_VALUE);
+            final String length = Integer.toString(content.length);
+            assertEquals("HTTP/1.1 200 OK\r\nContent-Length: " + length.length() + "\r\n\r\n" + length,
+                    new String(readResponse(socket.getInputStream(), length.length()), StandardCharsets.US_ASCII));
+            assertArrayEquals(content, body.toByteArray());
+
+            // the connection is reused for the next request
+            send(socket, "POST /upload HTTP/1.1\r\nTransfer-Encoding: chunked\r\n\r\n3\r\nabc\r\n0\r\n\r\n");
+            final String response = new String(readHead(socket.getInputStream()), StandardCharsets.US_ASCII);
+            assertTrue(response.startsWith("HTTP/1.1 200 OK\r\n"), response);
+        }
+    }
+
+    @Test
+    public void rejectTooLargeStreamedBody() throws IOException {
+        final AtomicBoolean handled = new AtomicBoolean();
+        start(new HttpOptions().setMaxStreamedBodySize(1024), null, Handler.streaming((request, callback) -> {
+            handled.set(true);
+            callback.accept(new Response(200, "OK", List.of(), new byte[0]));
+        }));
+
+        try (Socket socket = connect()) {
+            send(socket, "POST /upload HTTP/1.1\r\nContent-Length: 1025\r\n\r\n");
+            assertEquals(-1, socket.getInputStream().read(), "the connection is closed without reading the body");
+        }
+        assertFalse(handled.get());
+    }
+
+    @Test
+    public void writeChunkedStreamBodies() throws IOException {
+        final String line = "streamed line of text\n";
+        start((request, callback) -> {
+            final int[] count = {0};
+            final ResponseBody body = request.uri().equals("/publisher")
+                    ? ResponseBody.of(subscriber -> {
+                        final SubmissionPublisher<ByteBuffer> publisher = new SubmissionPublisher<>();
+                        publisher.subscribe(subscriber);
+                        new Thread(() -> { // submitting blocks while the subscriber has no demand
+                            for (int i = 0; i < 1000; i++) {
+                                publisher.submit(ByteBuffer.wrap(line.getBytes(StandardCharsets.US_ASCII)));
+                            }
+                            publisher.close();
+                        }).start();
+                    })
+                    : ResponseBody.ofProducer(() -> count[0]++ < 1000
+                        ? ByteBuffer.wrap(line.getBytes(StandardCharsets.US_ASCII)) : null);
+            callback.accept(new Response(200, "OK", List.of(new Header("Content-Type", "text/plain")), body));
+        });
+
+        try (Socket socket = connect()) {
+            send(socket, "GET /producer HTTP/1.1\r\n\r\n");
+            String head = new String(readHead(socket.getInputStream()), StandardCharsets.US_ASCII);
+            // the client accepts no encoding, but the body would have been compressed for others
+            assertEquals("HTTP/1.1 200 OK\r\nTransfer-Encoding: chunked\r\nVary: Accept-Encoding\r\n"
+                    + "Content-Type: text/plain\r\n\r\n", head);
+            assertEquals(line.repeat(1000), new String(readChunked(socket.getInputStream()), StandardCharsets.US_ASCII));
+
+            // the connection is reused, and the body is compressed for a client accepting it
+            send(socket, "GET /publisher HTTP/1.1\r\nAccept-Encoding: gzip\r\n\r\n");
+            head = new String(readHead(socket.getInputStream()), StandardCharsets.US_ASCII);
+            assertTrue(head.contains("Vary: Accept-Encoding\r\nContent-Encoding: gzip\r\n"), head);
+            final byte[] compressed = readChunked(socket.getInputStream());
+            assertTrue(compressed.length < line.length() * 1000 / 2, "compressed length: " + compressed.length);
+            assertEquals(line.repeat(1000), new String(new GZIPInputStream(new ByteArrayInputStream(compressed))
+                    .readAllBytes(), StandardCharsets.US_ASCII));
+
+            send(socket, "HEAD /producer HTTP/1.1\r\n\r\n");
+            assertTrue(new String(readHead(socket.getInputStream()), StandardCharsets.US_ASCII)
+                    .startsWith("HTTP/1.1 200 OK\r\nTransfer-Encoding: chunked\r\n"));
+        }
+
+        try (Socket socket = connect()) { // HTTP/1.0 does not support the chunked transfer coding
+            send(socket, "GET /producer HTTP/1.0\r\nConnection: Keep-Alive\r\n\r\n");
+            final String head = new String(readHead(socket.getInputStream()), StandardCharsets.US_ASCII);
+            assertEquals("HTTP/1.0 200 OK\r\nVary: Accept-Encoding\r\nContent-Type: text/plain\r\n\r\n", head);
+            assertEquals(line.repeat(1000), new String(socket.getInputStream().readAllBytes(), StandardCharsets.US_ASCII));
+        }
+    }
+
+    @Test
+    public void cancelStreamBodiesThatAreNotWritten() throws IOException, InterruptedException {
+        final CountDownLatch cancelled = new CountDownLatch(2);
+        start((request, callback) -> {
+            final ResponseBody body = ResponseBody.of(subscriber -> subscriber.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) {
+                    subscriber.onNext(ByteBuffer.wrap("body".getBytes(StandardCharsets.US_ASCII)));
+                    subscriber.onComplete();
+                }
+
+                @Override
+                public void cancel() {
+                    cancelled.countDown();
+                }
+            }));
+            final int status = request.uri().equals("/not-modified") ? 304 : 200;
+            callback.accept(new Response(status, status == 304 ? "Not Modified" : "OK", List.of(), body));
+        });
+
+        try (Socket socket = connect()) {
+            send(socket, "HEAD /stream HTTP/1.1\r\n\r\n");
+            assertTrue(new String(readHead(socket.getInputStream()), StandardCharsets.US_ASCII)
+                    .startsWith("HTTP/1.1 200 OK\r\n"));
+            send(socket, "GET /not-modified HTTP/1.1\r\n\r\n");
+            assertTrue(new String(readHead(socket.getInputStream()), StandardCharsets.US_ASCII)
+                    .startsWith("HTTP/1.1 304 Not Modified\r\n"));
+        }
+        assertTrue(cancelled.await(5, TimeUnit.SECONDS), "The bodies that are not written are cancelled");
+    }
+
+    @Test
+    public void acceptOnSharedPort() throws IOException {
+        assumeTrue(serverSocketChannel.supportedOptions().contains(StandardSocketOptions.SO_REUSEPORT),
+                "SO_REUSEPORT is not supported on this platform");
+        final Handler handler = (request, callback) -> callback.accept(
+                new Response(200, "OK", List.of(), Thread.currentThread().getName().getBytes(StandardCharsets.US_ASCII)));
+        final List<ConnectionEventLoop> eventLoops = List.of(
+                new ConnectionEventLoop(new HttpOptions(), handler, new AtomicLong(), stop),
+                new ConnectionEventLoop(new HttpOptions(), handler, new AtomicLong(), stop));
+        try {
+            final int port = eventLoops.get(0).listen(new InetSocketAddress("localhost", 0), 64);
+            assertEquals(port, eventLoops.get(1).listen(new InetSocketAddress("localhost", port), 64));
+            eventLoops.forEach(ConnectionEventLoop::start);
+
+            final List<Socket> sockets = new ArrayList<>();
+            try {
+                for (int i = 0; i < 16; i++) {
+                    final Socket socket = new Socket("localhost", port);
+                    socket.setSoTimeout(10_000);
+                    sockets.add(socket);
+                    send(socket, "GET / HTTP/1.1\r\n\r\n");
+                    final String response = new String(readHead(socket.getInputStream()), StandardCharsets.US_ASCII);
+                    assertTrue(response.startsWith("HTTP/1.1 200 OK\r\n"), response);
+                }
+                for (int i = 0; i < 100 && eventLoops.stream().mapToInt(ConnectionEventLoop::numConnections).sum() < 16; i++) {
+                    sleep();
+                }
+                assertEquals(16, eventLoops.get(0).numConnections() + eventLoops.get(1).numConnections());
+            } finally {
+                for (Socket socket : sockets) {
+                    socket.close();
+                }
+            }
+            for (int i = 0; i < 100 && eventLoops.stream().mapToInt(ConnectionEventLoop::numConnections).sum() > 0; i++) {
+                sleep();
+            }
+            assertEquals(0, eventLoops.get(0).numConnections() + eventLoops.get(1).numConnections(),
+                    "the connections are no longer counted once closed");
+        } finally {
+            for (ConnectionEventLoop loop : eventLoops) {
+                loop.closeServerSocket();
+            }
+        }
+    }
+
+    private void start(Handler handler) throws IOException {
+        start(new HttpOptions(), null, handler);
+    }
+
+    private void start(HttpOptions options, Executor executor, Handler handler) throws IOException {
+        eventLoop = new ConnectionEventLoop(options, handler, executor, new AtomicLong(), stop);
+        eventLoop.start();
+        final Thread acceptor = new Thread(() -> {
+            try {
+                while (!stop.get()) {
+                    eventLoop.register(serverSocketChannel.accept());
+                }
+            } catch (IOException ex) {
+                // server socket closed
+            }
+        });
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    private Socket connect() throws IOException {
+        final Socket socket = new Socket("localhost", serverSocketChannel.socket().getLocalPort());
+        socket.setSoTimeout(10_000);
+        return socket;
+    }
+
+    private static void send(Socket socket, String request) throws IOException {
+        socket.getOutputStream().write(request.getBytes(StandardCharsets.US_ASCII));
+        socket.getOutputStream().flush();
+    }
+
+    /**
+     * Reads the head of a response and the given number of body bytes.
+     */
+    private static byte[] readResponse(InputStream in, int bodyLength) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(readHead(in));
+        final byte[] body = in.readNBytes(bodyLength);
+        if (body.length < bodyLength) {
+            throw new IOException("Connection closed after " + (out.size() + body.length) + " bytes");
+        }
+        out.write(body);
+        return out.toByteArray();
+    }
+
+    /**
+     * Reads the head of a response, up to and including the blank line.
+     */
+    private static byte[] readHead(InputStream in) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int matched = 0; // number of matched bytes of the CR LF CR LF sequence
+        while (matched < 4) {
+            final int b = in.read();
+            if (b < 0) {
+                throw new IOException("Connection closed after " + out.size() + " bytes");
+            }
+            out.write(b);
+            matched = b == (matched % 2 == 0 ? '\r' : '\n') ? matched + 1 : (b == '\r' ? 1 : 0);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Reads a chunked body and returns its content.
+     */
+    private static byte[] readChunked(InputStream in) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        while (true) {
+            final String sizeLine = new String(readLine(in), StandardCharsets.US_ASCII);
+            final int size = Integer.parseInt(sizeLine, 16);
+            if (size == 0) {
+                assertEquals(0, readLine(in).length);
+                return out.toByteArray();
+            }
+            out.write(in.readNBytes(size));
+            assertEquals(0, readLine(in).length);
+        }
+    }
+
+    private static byte[] readLine(InputStream in) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int b;
+        while ((b = in.read()) != '\n') {
+            if (b < 0) {
+                throw new IOException("Connection closed after " + out.size() + " bytes");
+            }
+            if (b != '\r') {
+                out.write(b);
+            }
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] tail(byte[] bytes, int length) {
+        final byte[] result = new byte[length];
+        System.arraycopy(bytes, bytes.length - length, result, 0, length);
+        return result;
+    }
+
+    private static void sleep() {
+        try {
+            Thread.sleep(20);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package one.jpro.platform.auth.core.http.impl;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * RequestParser and ByteTokenizer tests.
+ *
+ * @author Besmir Beqiri
+ */
+public class RequestParserTests {
+
+    private static final String GET_REQUEST = "GET /auth?code=abc&state=xyz HTTP/1.1\r\n" +
+            "Host: localhost:8080\r\n" +
+            "Connection:   Keep-Alive\r\n" +
+            "Accept: text/html\r\n" +
+            "\r\n";
+
+    @Test
+    public void parseRequestAtOnce() {
+        final ByteTokenizer tokenizer = new ByteTokenizer();
+        tokenizer.add(bytes(GET_REQUEST));
+        final RequestParser parser = new RequestParser(tokenizer);
+        assertTrue(parser.parse());
+
+        final Request request = parser.request();
+        assertEquals("GET", request.method());
+        assertEquals("/auth?code=abc&state=xyz", request.uri());
+        assertEquals("HTTP/1.1", request.version());
+        assertEquals(List.of(new Header("Host", "localhost:8080"),
+                new Header("Connection", "Keep-Alive"),
+                new Header("Accept", "text/html")), request.headers());
+        assertEquals("localhost:8080", request.header("host"));
+        assertNull(request.header("Content-Length"));
+        assertTrue(request.hasHeader("connection", "keep-alive"));
+        assertFalse(request.hasHeader("Connection", "close"));
+        assertNull(request.body());
+        assertEquals(0, tokenizer.remaining());
+    }
+
+    @Test
+    public void parseRequestByteByByte() {
+        final byte[] bytes = (GET_REQUEST.replace("GET", "POST").replace("\r\n\r\n", "\r\nContent-Length: 5\r\n\r\n")
+                + "hello").getBytes(StandardCharsets.UTF_8);
+        final ByteTokenizer tokenizer = new ByteTokenizer();
+        final RequestParser parser = new RequestParser(tokenizer);
+        for (int i = 0; i < bytes.length - 1; i++) {
+            tokenizer.add(ByteBuffer.wrap(bytes, i, 1));
+            assertFalse(parser.parse());
+        }
+        tokenizer.add(ByteBuffer.wrap(bytes, bytes.length - 1, 1));
+        assertTrue(parser.parse());
+
+        final Request request = parser.request();
+        assertEquals("POST", request.method());
+        assertEquals(4, request.headers().size());
+        assertEquals("5", request.header("Content-Length"));
+        assertArrayEquals("hello".getBytes(StandardCharsets.UTF_8), request.body());
+    }
+
+    @Test
+    public void parseChunkedRequest() {
+        final ByteTokenizer tokenizer = new ByteTokenizer();
+        tokenizer.add(bytes("POST /token HTTP/1.1\r\nTransfer-Encoding: Chunked\r\n\r\n" +
+                "5\r\nhello\r\n7\r\n, world\r\n0\r\n\r\n"));
+        final RequestParser parser = new RequestParser(tokenizer);
+        assertTrue(parser.parse());
+        assertEquals("hello, world", new String(parser.request().body(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void streamBodyInPieces() {
+        final ByteTokenizer tokenizer = new ByteTokenizer();
+        tokenizer.add(bytes("POST /upload HTTP/1.1\r\nContent-Length: 10\r\n\r\n0123"));
+        final RequestParser parser = new RequestParser(tokenizer);
+        assertTrue(parser.parseHead());
+        assertEquals("/upload", parser.head().uri());
+        assertNull(parser.head().body());
+        assertEquals(10, parser.contentLength());
+
+        assertTrue(parser.nextBodyChunk(3));
+        assertEquals("012", tokenizer.tokenString());
+        assertTrue(parser.nextBodyChunk(3));
+        assertEquals("3", tokenizer.tokenString());
+        assertFalse(parser.nextBodyChunk(3));
+        tokenizer.compact();
+        assertEquals(0, tokenizer.size());
+
+        tokenizer.add(bytes("456789GET"));
+        assertTrue(parser.nextBodyChunk(100));
+        assertEquals("456789", tokenizer.tokenString());
+        assertTrue(parser.isComplete());
+        assertFalse(parser.nextBodyChunk(100));
+        assertEquals(3, tokenizer.remaining(), "the next request is left in the tokenizer");
+    }
+
+    @Test
+    public void streamChunkedBody() {
+        final ByteTokenizer tokenizer = new ByteTokenizer();
+        final RequestParser parser = new RequestParser(tokenizer);
+        tokenizer.add(bytes("POST /upload HTTP/1.1\r\nTransfer-Encoding: chunked\r\n\r\n5\r\nhel"));
+        assertTrue(parser.parseHead());
+        assertEquals(-1, parser.contentLength());
+
+        final StringBuilder body = new StringBuilder();
+        final String[] segments = {"lo\r", "\n7\r\n, wo", "rld\r\n0", "\r\n\r\n"};
+        for (String segment : segments) {
+            while (parser.nextBodyChunk(4)) {
+                body.append(tokenizer.tokenString());
+            }
+            assertFalse(parser.isComplete());
+            tokenizer.compact();
+            tokenizer.add(bytes(segment));
+        }
+        assertFalse(parser.nextBodyChunk(4));
+        assertTrue(parser.isComplete());
+        assertEquals("hello, world", body.toString());
+        assertEquals(0, tokenizer.remaining());
+    }
+
+    @Test
+    public void parsePipelinedRequestsAfterCompaction() {
+        final ByteTokenizer tokenizer = new ByteTokenizer();
+        tokenizer.add(bytes(GET_REQUEST + GET_REQUEST.replace("/auth", "/second")));
+        RequestParser parser = new RequestParser(tokenizer);
+        assertTrue(parser.parse());
+        final Request first = parser.request();
+        final int capacity = tokenizer.capacity();
+
+        tokenizer.compact();
+        assertEquals(capacity, tokenizer.capacity());
+        assertEquals(GET_REQUEST.length() + 2, tokenizer.size());
+        parser = new RequestParser(tokenizer);
+        assertTrue(parser.parse());
+
+        // the first request does not depend on the compacted buffer
+        assertEquals("/auth?code=abc&state=xyz", first.uri());
+        assertEquals("text/html", first.header("Accept"));
+        assertEquals("/second?code=abc&state=xyz", parser.request().uri());
+    }
+
+    @Test
+    public void malformedRequestsAreRejected() {
+        assertThrows(IllegalStateException.class, () -> parse("GET / HTTP/1.1\r\nHost localhost\r\n\r\n"));
+        assertThrows(IllegalStateException.class, () -> parse("GET / HTTP/1.1\r\nContent-Length: 1x\r\n\r\n"));
+        assertThrows(IllegalStateException.class, () -> parse("GET / HTTP/1.1\r\nContent-Length: 1\r\n" +
+                "Transfer-Encoding: chunked\r\n\r\n"));
+        assertThrows(IllegalStateException.class, () -> parse("POST / HTTP/1.1\r\nTransfer-Encoding: chunked\r\n\r\n" +
+                "zz\r\n"));
+    }
+
+    @Test
+    public void tokenizerResumesDelimiterSearch() {
+        final ByteTokenizer tokenizer = new ByteTokenizer();
+        tokenizer.add(bytes("Host: localhost\r"));
+        assertFalse(tokenizer.next("\r\n".getBytes()));
+        tokenizer.add(bytes("\nAccept"));
+        assertTrue(tokenizer.next("\r\n".getBytes()));
+        assertEquals("Host: localhost", tokenizer.tokenString());
+        assertEquals(17, tokenizer.position());
+        assertFalse(tokenizer.next("\r\n".getBytes()));
+        assertEquals(6, tokenizer.remaining());
+    }
+
+    private static void parse(String request) {
+        final ByteTokenizer tokenizer = new ByteTokenizer();
+        tokenizer.add(bytes(request));
+        new RequestParser(tokenizer).parse();
+    }
+
+    private static ByteBuffer bytes(String s) {
+        return ByteBuffer.wrap(s.getBytes(StandardCharsets.UTF_8));
+    }
+}
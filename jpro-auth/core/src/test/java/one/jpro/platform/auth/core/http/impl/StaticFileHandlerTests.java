@@ -0,0 +1,269 @@
+package one.jpro.platform.auth.core.http.impl;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * StaticFileHandler and Router tests.
+ *
+ * @author Besmir Beqiri
+ */
+public class StaticFileHandlerTests {
+
+    private Path root;
+    private ExecutorService fileExecutor;
+    private StaticFileHandler handler;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        root = Files.createTempDirectory("static-file-handler");
+        Files.writeString(root.resolve("index.html"), "<html>login</html>");
+        Files.createDirectories(root.resolve("css"));
+        Files.writeString(root.resolve("css/style.css"), "body { margin: 0; }");
+        Files.write(root.resolve("large.bin"), new byte[100]);
+        Files.writeString(root.getParent().resolve("secret.txt"), "secret");
+        fileExecutor = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, "static-file-reader"));
+        handler = new StaticFileHandler("/static/", root, 32, 1024,
+                StaticFileHandler.DEFAULT_MAX_COMPRESSED_FILE_SIZE, fileExecutor);
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        fileExecutor.shutdownNow();
+        Files.deleteIfExists(root.getParent().resolve("secret.txt"));
+        try (Stream<Path> files = Files.walk(root)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Test
+    public void serveFiles() throws IOException {
+        Response response = handle("GET", "/static/css/style.css?v=1");
+        assertEquals(200, response.status());
+        assertEquals("text/css; charset=utf-8", header(response, "Content-Type"));
+        assertEquals("19", header(response, "Content-Length"));
+        assertEquals("body { margin: 0; }", content(response));
+        assertInstanceOf(ResponseBody.BufferBody.class, response.body());
+        assertTrue(((ResponseBody.BufferBody) response.body()).buffer().isDirect());
+
+        response = handle("GET", "/static/");
+        assertEquals("<html>login</html>", content(response));
+
+        response = handle("GET", "/static/large.bin");
+        assertEquals(200, response.status());
+        assertInstanceOf(ResponseBody.FileBody.class, response.body());
+        assertEquals(100, response.body().length());
+        ((ResponseBody.FileBody) response.body()).channel().close();
+
+        response = handle("HEAD", "/static/css/style.css");
+        assertEquals("19", header(response, "Content-Length"));
+        assertEquals(0, response.body().length());
+    }
+
+    @Test
+    public void rejectInvalidRequests() throws IOException {
+        assertEquals(404, handle("GET", "/static/missing.css").status());
+        assertEquals(404, handle("GET", "/static/../secret.txt").status());
+        assertEquals(404, handle("GET", "/static/%2e%2e/secret.txt").status());
+        assertEquals(404, handle("GET", "/static/css/../../secret.txt").status());
+        final Response response = handle("POST", "/static/index.html");
+        assertEquals(405, response.status());
+        assertEquals("GET, HEAD", header(response, "Allow"));
+    }
+
+    @Test
+    public void revalidateWithETag() throws IOException {
+        final String etag = header(handle("GET", "/static/index.html"), "ETag");
+        assertNotNull(etag);
+        Response response = handle("GET", "/static/index.html", new Header("If-None-Match", "\"other\", W/" + etag));
+        assertEquals(304, response.status());
+        assertEquals(etag, header(response, "ETag"));
+        assertEquals(0, response.body().length());
+
+        Files.writeString(root.resolve("index.html"), "<html>changed login</html>");
+        response = handle("GET", "/static/index.html", new Header("If-None-Match", etag));
+        assertEquals(200, response.status());
+        assertEquals("<html>changed login</html>", content(response));
+    }
+
+    @Test
+    public void serveByteRanges() throws IOException {
+        Response response = handle("GET", "/static/css/style.css", new Header("Range", "bytes=5-6"));
+        assertEquals(206, response.status());
+        assertEquals("bytes 5-6/19", header(response, "Content-Range"));
+        assertEquals("2", header(response, "Content-Length"));
+        assertEquals("{ ", content(response));
+
+        response = handle("GET", "/static/css/style.css", new Header("Range", "bytes=-2"));
+        assertEquals(" }", content(response));
+
+        response = handle("GET", "/static/large.bin", new Header("Range", "bytes=90-"));
+        final ResponseBody.FileBody fileBody = (ResponseBody.FileBody) response.body();
+        assertEquals(90, fileBody.position());
+        assertEquals(10, fileBody.count());
+        fileBody.channel().close();
+
+        response = handle("GET", "/static/css/style.css", new Header("Range", "bytes=19-"));
+        assertEquals(416, response.status());
+        assertEquals("bytes */19", header(response, "Content-Range"));
+
+        response = handle("GET", "/static/css/style.css", new Header("Range", "bytes=0-1,4-5"));
+        assertEquals(200, response.status());
+    }
+
+    @Test
+    public void serveCompressedVariants() throws IOException {
+        final String script = "function login() { return 'login'; }\n".repeat(100);
+        final Path file = root.resolve("app.js");
+        Files.writeString(file, script);
+        final FileTime lastModified = Files.getLastModifiedTime(file);
+
+        Response response = handle("GET", "/static/app.js", new Header("Accept-Encoding", "deflate, gzip"));
+        assertEquals(200, response.status());
+        assertEquals("gzip", header(response, "Content-Encoding"));
+        assertEquals("Accept-Encoding", header(response, "Vary"));
+        assertTrue(header(response, "ETag").endsWith("-gzip\""));
+        final byte[] compressed = bytes(response);
+        assertEquals(Integer.toString(compressed.length), header(response, "Content-Length"));
+        assertTrue(compressed.length < script.length() / 10);
+        assertEquals(script, new String(new GZIPInputStream(new ByteArrayInputStream(compressed)).readAllBytes(),
+                StandardCharsets.UTF_8));
+
+        response = handle("GET", "/static/app.js", new Header("Accept-Encoding", "gzip;q=0.5, deflate"));
+        assertEquals("deflate", header(response, "Content-Encoding"));
+        assertEquals(script, new String(new InflaterInputStream(new ByteArrayInputStream(bytes(response))).readAllBytes(),
+                StandardCharsets.UTF_8));
+
+        // the compressed variant is cached as long as the size and modification time of the file are unchanged
+        Files.writeString(file, script.toUpperCase());
+        Files.setLastModifiedTime(file, lastModified);
+        response = handle("GET", "/static/app.js", new Header("Accept-Encoding", "gzip"));
+        assertArrayEquals(compressed, bytes(response));
+
+        response = handle("GET", "/static/app.js", new Header("Accept-Encoding", "gzip"),
+                new Header("If-None-Match", header(response, "ETag")));
+        assertEquals(304, response.status());
+
+        response = handle("GET", "/static/app.js", new Header("Accept-Encoding", "gzip;q=0, identity"));
+        assertNull(header(response, "Content-Encoding"));
+        assertEquals("Accept-Encoding", header(response, "Vary"));
+        response = handle("GET", "/static/app.js", new Header("Accept-Encoding", "gzip"), new Header("Range", "bytes=0-7"));
+        assertNull(header(response, "Content-Encoding"));
+        assertEquals(206, response.status());
+        ((ResponseBody.FileBody) response.body()).channel().close();
+        response = handle("GET", "/static/large.bin", new Header("Accept-Encoding", "gzip"));
+        assertNull(header(response, "Content-Encoding"));
+        ((ResponseBody.FileBody) response.body()).channel().close();
+    }
+
+    @Test
+    public void readFilesOffCallingThread() throws Exception {
+        final Request request = new Request("GET", "/static/index.html", "HTTP/1.1", List.of(), null);
+        final CompletableFuture<Thread> missThread = new CompletableFuture<>();
+        handler.handle(request, response -> missThread.complete(Thread.currentThread()));
+        assertEquals("static-file-reader", missThread.get(5, TimeUnit.SECONDS).getName());
+
+        // a cached file is served without leaving the calling thread
+        final Thread[] hitThread = new Thread[1];
+        handler.handle(request, response -> hitThread[0] = Thread.currentThread());
+        assertSame(Thread.currentThread(), hitThread[0]);
+    }
+
+    @Test
+    public void coalesceConcurrentReads() throws IOException {
+        final String script = "function login() { return 'login'; }\n".repeat(100);
+        Files.writeString(root.resolve("app.js"), script);
+        final List<Runnable> reads = new ArrayList<>();
+        handler = new StaticFileHandler("/static/", root, 32, 1024 * 1024,
+                StaticFileHandler.DEFAULT_MAX_COMPRESSED_FILE_SIZE, reads::add);
+        final List<Response> responses = new ArrayList<>();
+        final Request request = new Request("GET", "/static/app.js", "HTTP/1.1",
+                List.of(new Header("Accept-Encoding", "gzip")), null);
+        handler.handle(request, responses::add);
+        handler.handle(request, responses::add);
+        assertEquals(1, reads.size());
+        assertTrue(responses.isEmpty());
+
+        reads.remove(0).run();
+        assertEquals(2, responses.size());
+        assertArrayEquals(bytes(responses.get(0)), bytes(responses.get(1)));
+        assertEquals(script, new String(new GZIPInputStream(new ByteArrayInputStream(bytes(responses.get(0))))
+                .readAllBytes(), StandardCharsets.UTF_8));
+
+        // the compressed variant is now cached
+        handler.handle(request, responses::add);
+        assertTrue(reads.isEmpty());
+        assertEquals(3, responses.size());
+    }
+
+    @Test
+    public void routeRequests() {
+        final List<String> handled = new ArrayList<>();
+        final Router router = new Router((request, callback) -> handled.add("fallback"))
+                .route("/auth", (request, callback) -> handled.add("auth"))
+                .route("/static/", (request, callback) -> handled.add("static"))
+                .route("/static/css/", (request, callback) -> handled.add("css"));
+        for (String uri : List.of("/auth?code=1", "/auth/other", "/static/a.js", "/static/css/a.css", "/other")) {
+            router.handle(new Request("GET", uri, "HTTP/1.1", List.of(), null), response -> {
+            });
+        }
+        assertEquals(List.of("auth", "fallback", "static", "css", "fallback"), handled);
+        assertThrows(IllegalArgumentException.class, () -> router.route("auth", (request, callback) -> {
+        }));
+    }
+
+    private Response handle(String method, String uri, Header... headers) {
+        final CompletableFuture<Response> response = new CompletableFuture<>();
+        handler.handle(new Request(method, uri, "HTTP/1.1", List.of(headers), null), response::complete);
+        try {
+            return response.get(5, TimeUnit.SECONDS);
+        } catch (InterruptedException | ExecutionException | TimeoutException ex) {
+            throw new AssertionError("No response for " + uri, ex);
+        }
+    }
+
+    private static String header(Response response, String name) {
+        for (Header header : response.headers()) {
+            if (header.name().equalsIgnoreCase(name)) {
+                return header.value();
+            }
+        }
+        return null;
+    }
+
+    private static String content(Response response) {
+        return new String(bytes(response), StandardCharsets.UTF_8);
+    }
+
+    private static byte[] bytes(Response response) {
+        final ByteBuffer buffer = ((ResponseBody.BufferBody) response.body()).buffer().duplicate();
+        final byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,127 @@
+package one.jpro.platform.auth.core.http.impl;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * TimerWheel tests.
+ *
+ * @author Besmir Beqiri
+ */
+public class TimerWheelTests {
+
+    private long now;
+    private final TimerWheel timerWheel = new TimerWheel(() -> now, Duration.ofNanos(10), 8);
+
+    @Test
+    public void tasksRunAfterTheirDeadline() {
+        final List<String> runs = new ArrayList<>();
+        timerWheel.schedule(() -> runs.add("a"), Duration.ofNanos(25));
+        timerWheel.schedule(() -> runs.add("b"), Duration.ofNanos(10));
+        assertEquals(2, timerWheel.size());
+
+        now = 9;
+        assertEquals(0, timerWheel.runExpired());
+        now = 10;
+        assertEquals(1, timerWheel.runExpired());
+        assertEquals(List.of("b"), runs);
+        now = 29;
+        assertEquals(0, timerWheel.runExpired());
+        now = 30;
+        assertEquals(1, timerWheel.runExpired());
+        assertEquals(List.of("b", "a"), runs);
+        assertEquals(0, timerWheel.size());
+    }
+
+    @Test
+    public void tasksBeyondOneTurnWaitForTheirRound() {
+        final List<String> runs = new ArrayList<>();
+        timerWheel.schedule(() -> runs.add("far"), Duration.ofNanos(200)); // 20 ticks on a wheel of 8 buckets
+        for (now = 0; now < 200; now += 10) {
+            timerWheel.runExpired();
+            assertTrue(runs.isEmpty());
+        }
+        timerWheel.runExpired();
+        assertEquals(List.of("far"), runs);
+    }
+
+    @Test
+    public void tasksExpireAfterLongPauses() {
+        final List<String> runs = new ArrayList<>();
+        timerWheel.schedule(() -> runs.add("a"), Duration.ofNanos(30));
+        timerWheel.schedule(() -> runs.add("b"), Duration.ofNanos(70));
+        timerWheel.schedule(() -> runs.add("c"), Duration.ofNanos(1_000));
+        now = 500;
+        assertEquals(2, timerWheel.runExpired());
+        assertEquals(List.of("a", "b"), runs);
+        assertEquals(1, timerWheel.size());
+    }
+
+    @Test
+    public void cancelledTasksDoNotRun() {
+        final List<String> runs = new ArrayList<>();
+        final Cancellable a = timerWheel.schedule(() -> runs.add("a"), Duration.ofNanos(10));
+        final Cancellable b = timerWheel.schedule(() -> runs.add("b"), Duration.ofNanos(10));
+        timerWheel.schedule(() -> runs.add("c"), Duration.ofNanos(10));
+        b.cancel();
+        b.cancel();
+        assertEquals(2, timerWheel.size());
+
+        now = 10;
+        assertEquals(2, timerWheel.runExpired());
+        assertEquals(List.of("a", "c"), runs.stream().sorted().toList());
+        a.cancel(); // already expired
+        assertEquals(0, timerWheel.size());
+    }
+
+    @Test
+    public void expiredTasksCanScheduleAndCancelTasks() {
+        final List<String> runs = new ArrayList<>();
+        final Cancellable[] other = new Cancellable[1];
+        timerWheel.schedule(() -> {
+            runs.add("a");
+            other[0].cancel();
+            timerWheel.schedule(() -> runs.add("c"), Duration.ofNanos(10));
+        }, Duration.ofNanos(10));
+        other[0] = timerWheel.schedule(() -> runs.add("b"), Duration.ofNanos(20));
+
+        now = 10;
+        timerWheel.runExpired();
+        now = 20;
+        timerWheel.runExpired();
+        assertEquals(List.of("a", "c"), runs);
+        assertEquals(0, timerWheel.size());
+    }
+
+    @Test
+    public void nanosUntilNextExpiry() {
+        now = 3;
+        assertEquals(100, timerWheel.nanosUntilNextExpiry(100), "no task, so no need to wake up earlier");
+        timerWheel.schedule(() -> {}, Duration.ofNanos(35));
+        assertEquals(37, timerWheel.nanosUntilNextExpiry(100));
+        assertEquals(20, timerWheel.nanosUntilNextExpiry(20), "the task expires after the given time");
+        now = 45;
+        assertEquals(0, timerWheel.nanosUntilNextExpiry(100));
+        timerWheel.runExpired();
+        assertEquals(100, timerWheel.nanosUntilNextExpiry(100));
+    }
+
+    @Test
+    public void failingTasksDoNotStopTheOthers() {
+        final List<String> runs = new ArrayList<>();
+        timerWheel.schedule(() -> {
+            throw new IllegalStateException("failing task");
+        }, Duration.ofNanos(10));
+        timerWheel.schedule(() -> runs.add("a"), Duration.ofNanos(10));
+        timerWheel.schedule(() -> runs.add("b"), Duration.ofNanos(20));
+        now = 20;
+        assertEquals(3, timerWheel.runExpired());
+        assertEquals(List.of("a", "b"), runs);
+        assertEquals(0, timerWheel.size());
+    }
+}
@@ -0,0 +1,70 @@
+package one.jpro.platform.image.manager;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Generates the images used by the benchmarks, so that they do not depend on external fixtures.
+ *
+ * @author Florian Kirmaier
+ */
+public final class BenchmarkImages {
+
+    // Private constructor to prevent instantiation
+    private BenchmarkImages() {
+    }
+
+    /**
+     * Creates an image with a gradient and fine line detail, which makes aliasing visible
+     * and keeps the image from compressing unrealistically well.
+     *
+     * @param width  the image width
+     * @param height the image height
+     * @return the image
+     */
+    public static BufferedImage createImage(int width, int height) {
+        final BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+        final Graphics2D g2d = image.createGraphics();
+        g2d.setPaint(new GradientPaint(0, 0, Color.ORANGE, width, height, Color.BLUE));
+        g2d.fillRect(0, 0, width, height);
+        g2d.setColor(Color.WHITE);
+        for (int x = 0; x < width; x += 3) {
+            g2d.drawLine(x, 0, width - x, height);
+        }
+        g2d.dispose();
+        return image;
+    }
+
+    /**
+     * Creates an image of the given size, e.g. {@code "1024x768"}.
+     *
+     * @param size the image size as width and height separated by {@code x}
+     * @return the image
+     */
+    public static BufferedImage createImage(String size) {
+        final String[] dimensions = size.split("x");
+        return createImage(Integer.parseInt(dimensions[0]), Integer.parseInt(dimensions[1]));
+    }
+
+    /**
+     * Creates an image of the given size and writes it to a file in the given format.
+     *
+     * @param size   the image size as width and height separated by {@code x}
+     * @param format the image format, e.g. {@code "jpg"} or {@code "png"}
+     * @param dir    the directory to write the file to
+     * @return the image file
+     */
+    public static File writeImage(String size, String format, File dir) {
+        final File file = new File(dir, "image-" + size + "." + format);
+        try {
+            ImageIO.write(createImage(size), format, file);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return file;
+    }
+}
@@ -0,0 +1,46 @@
+package one.jpro.platform.image.manager;
+
+import one.jpro.platform.image.manager.encoder.ImageEncoderJPG;
+import one.jpro.platform.image.manager.source.ImageSourceFile;
+import one.jpro.platform.image.manager.transformer.ImageTransformerFitWidth;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link ImageManager#computeImageDefinitionHash(ImageDefinition)}, which runs for every
+ * image lookup, including memory cache hits.
+ *
+ * @author Florian Kirmaier
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ImageDefinitionHashBenchmark {
+
+    /**
+     * The size of the source image, whose content hash is part of the definition.
+     */
+    @Param({"320x240", "4000x3000"})
+    public String sourceSize;
+
+    private ImageDefinition definition;
+
+    @Setup
+    public void setUp() throws IOException {
+        definition = new ImageDefinition(
+                new ImageSourceFile(BenchmarkImages.writeImage(sourceSize, "png",
+                        Files.createTempDirectory("image-manager-benchmark").toFile())),
+                new ImageTransformerFitWidth(320), new ImageEncoderJPG());
+    }
+
+    @Benchmark
+    public String computeImageDefinitionHash() {
+        return ImageManager.computeImageDefinitionHash(definition);
+    }
+}
@@ -0,0 +1,67 @@
+package one.jpro.platform.image.manager;
+
+import one.jpro.platform.image.manager.encoder.ImageEncoderJPG;
+import one.jpro.platform.image.manager.source.ImageSourceFile;
+import one.jpro.platform.image.manager.transformer.ImageTransformerFitWidth;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link ImageManager#loadImage(ImageDefinition)} for images found in the memory cache,
+ * found in the disk cache only, and found in neither cache. Every cache scenario runs in its own
+ * fork, since the image manager is a singleton configured by system properties.
+ *
+ * @author Florian Kirmaier
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ImageManagerBenchmark {
+
+    /**
+     * Where the image is found: {@code MEMORY_HIT}, {@code DISK_HIT} or {@code MISS}.
+     */
+    @Param({"MEMORY_HIT", "DISK_HIT", "MISS"})
+    public String cache;
+
+    /**
+     * The size of the source image.
+     */
+    @Param({"1024x768"})
+    public String sourceSize;
+
+    private ImageManager manager;
+    private ImageDefinition definition;
+
+    @Setup
+    public void setUp() throws IOException {
+        final File dir = Files.createTempDirectory("image-manager-benchmark").toFile();
+        System.setProperty("jpro.imagemanager.cache", new File(dir, "cache").getAbsolutePath());
+        if (!cache.equals("MEMORY_HIT")) {
+            System.setProperty("jpro.imagemanager.memoryCacheSize", "0");
+        }
+        manager = ImageManager.getInstance();
+        definition = new ImageDefinition(new ImageSourceFile(BenchmarkImages.writeImage(sourceSize, "jpg", dir)),
+                new ImageTransformerFitWidth(320), new ImageEncoderJPG());
+        manager.loadImage(definition);
+    }
+
+    @Setup(Level.Invocation)
+    public void clearCache() {
+        if (cache.equals("MISS")) {
+            manager.clearCache();
+        }
+    }
+
+    @Benchmark
+    public ImageResult loadImage() {
+        return manager.loadImage(definition);
+    }
+}
@@ -0,0 +1,57 @@
+package one.jpro.platform.image.manager.encoder;
+
+import one.jpro.platform.image.manager.BenchmarkImages;
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.image.BufferedImage;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the image encoders, writing to a stream that discards the output, so that only
+ * the encoding itself is measured.
+ *
+ * @author Florian Kirmaier
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ImageEncoderBenchmark {
+
+    /**
+     * The size of the encoded image.
+     */
+    @Param({"320x240", "1920x1080"})
+    public String imageSize;
+
+    /**
+     * The encoder configuration, {@code PNG} uses adaptive filtering.
+     */
+    @Param({"JPG", "JPG_PROGRESSIVE", "PNG", "PNG_PAETH", "PNG_FAST"})
+    public String encoder;
+
+    private BufferedImage image;
+    private ImageEncoder imageEncoder;
+
+    @Setup
+    public void setUp() {
+        image = BenchmarkImages.createImage(imageSize);
+        imageEncoder = switch (encoder) {
+            case "JPG" -> new ImageEncoderJPG();
+            case "JPG_PROGRESSIVE" -> new ImageEncoderJPG(0.80, true);
+            case "PNG" -> new ImageEncoderPNG();
+            case "PNG_PAETH" -> new ImageEncoderPNG(ImageEncoderPNG.DEFAULT_COMPRESSION_LEVEL,
+                    ImageEncoderPNG.Filter.PAETH);
+            case "PNG_FAST" -> new ImageEncoderPNG(1, ImageEncoderPNG.Filter.SUB);
+            default -> throw new IllegalArgumentException("Unknown encoder: " + encoder);
+        };
+    }
+
+    @Benchmark
+    public void encode() {
+        imageEncoder.encode(image, OutputStream.nullOutputStream());
+    }
+}
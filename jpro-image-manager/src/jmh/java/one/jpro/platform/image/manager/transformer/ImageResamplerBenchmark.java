@@ -0,0 +1,50 @@
+package one.jpro.platform.image.manager.transformer;
+
+import one.jpro.platform.image.manager.BenchmarkImages;
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the {@link ImageResampler} filters with the default {@link Graphics2D} scaling
+ * when creating a thumbnail from a decoded image.
+ *
+ * @author Florian Kirmaier
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ImageResamplerBenchmark {
+
+    /**
+     * The size of the source image, as produced by the JPEG reader.
+     */
+    @Param({"1024x768", "4000x3000"})
+    public String sourceSize;
+
+    /**
+     * The scaling implementation, {@code JAVA2D} is the current default path.
+     */
+    @Param({"JAVA2D", "AREA_AVERAGE", "LANCZOS3"})
+    public String scaling;
+
+    private BufferedImage image;
+    private ImageTransformer transformer;
+
+    @Setup
+    public void setUp() {
+        image = BenchmarkImages.createImage(sourceSize);
+        transformer = scaling.equals("JAVA2D") ? new ImageTransformerFitWidth(320)
+                : new ImageTransformerFitWidth(320, 1, ImageResampler.Filter.valueOf(scaling));
+    }
+
+    @Benchmark
+    public BufferedImage fitWidth() {
+        return transformer.transform(image);
+    }
+}
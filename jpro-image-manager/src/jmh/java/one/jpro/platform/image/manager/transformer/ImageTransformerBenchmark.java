@@ -0,0 +1,54 @@
+package one.jpro.platform.image.manager.transformer;
+
+import one.jpro.platform.image.manager.BenchmarkImages;
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures every {@link ImageTransformer} with its default filter on small, medium and very large images.
+ *
+ * @author Florian Kirmaier
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ImageTransformerBenchmark {
+
+    /**
+     * The size of the source image.
+     */
+    @Param({"320x240", "1920x1080", "8000x6000"})
+    public String sourceSize;
+
+    /**
+     * The transformer, each one producing an image about 256 pixels wide.
+     */
+    @Param({"IDENTITY", "FIT_WIDTH", "FIT_HEIGHT", "SCALE_TO_AREA", "WH"})
+    public String transformer;
+
+    private BufferedImage image;
+    private ImageTransformer imageTransformer;
+
+    @Setup
+    public void setUp() {
+        image = BenchmarkImages.createImage(sourceSize);
+        imageTransformer = switch (transformer) {
+            case "IDENTITY" -> new ImageTransformerIdentity();
+            case "FIT_WIDTH" -> new ImageTransformerFitWidth(256);
+            case "FIT_HEIGHT" -> new ImageTransformerFitHeight(192);
+            case "SCALE_TO_AREA" -> new ImageTransformerScaleToArea(256 * 192);
+            case "WH" -> new ImageTransformerWH(256, 192);
+            default -> throw new IllegalArgumentException("Unknown transformer: " + transformer);
+        };
+    }
+
+    @Benchmark
+    public BufferedImage transform() {
+        return imageTransformer.transform(image);
+    }
+}
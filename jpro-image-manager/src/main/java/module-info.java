@@ -3,6 +3,7 @@
  */
 module one.jpro.platform.image.manager {
     requires java.desktop;
+    requires static jdk.jfr;
     requires javafx.graphics;
     requires org.slf4j;
     requires jpro.webapi;
@@ -0,0 +1,172 @@
+package one.jpro.platform.image.manager;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Locks shared by all processes using the same image cache directory. The locks are byte range
+ * locks on a single lock file: the first byte guards the metadata index, and every cache entry is
+ * guarded by one of a fixed number of stripes selected by its hash. Since file locks are held on
+ * behalf of the whole process, every stripe is additionally guarded by a reentrant lock, so that
+ * threads of the same process wait for each other instead of failing with an
+ * {@link java.nio.channels.OverlappingFileLockException}. For the same reason, there is only one
+ * instance per lock file in a process.
+ *
+ * @author Florian Kirmaier
+ */
+final class ImageCacheLocks {
+
+    static final String FILE_NAME = "locks";
+    private static final int ENTRY_STRIPES = 4096;
+    private static final int INDEX_STRIPE = 0;
+    private static final Map<Path, ImageCacheLocks> instances = new HashMap<>();
+
+    private final FileChannel channel;
+    private final ReentrantLock[] localLocks = new ReentrantLock[ENTRY_STRIPES + 1];
+    private final FileLock[] fileLocks = new FileLock[ENTRY_STRIPES + 1];
+
+    /**
+     * A held lock, released when closed.
+     */
+    interface Handle extends AutoCloseable {
+
+        @Override
+        void close();
+    }
+
+    /**
+     * Returns the locks of the lock file with the given path, creating the file if it does not exist yet.
+     * The file stays open until the process exits.
+     *
+     * @param file the lock file
+     * @return the locks
+     * @throws IOException if an I/O error occurs
+     */
+    static synchronized ImageCacheLocks forFile(Path file) throws IOException {
+        final Path key = file.toAbsolutePath().normalize();
+        ImageCacheLocks locks = instances.get(key);
+        if (locks == null) {
+            locks = new ImageCacheLocks(key);
+            instances.put(key, locks);
+        }
+        return locks;
+    }
+
+    private ImageCacheLocks(Path file) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        for (int i = 0; i < localLocks.length; i++) {
+            localLocks[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Acquires the lock guarding the metadata index, waiting for other threads and processes.
+     *
+     * @return the handle releasing the lock
+     * @throws IOException if an I/O error occurs
+     */
+    Handle lockIndex() throws IOException {
+        return lock(INDEX_STRIPE, true);
+    }
+
+    /**
+     * Acquires the lock guarding the entry with the given hash, waiting for other threads and processes.
+     *
+     * @param hash the image definition hash
+     * @return the handle releasing the lock
+     * @throws IOException if an I/O error occurs
+     */
+    Handle lockEntry(String hash) throws IOException {
+        return lock(getStripe(hash), true);
+    }
+
+    /**
+     * Acquires the locks guarding the entries with the given hashes, waiting for other threads and
+     * processes. The locks are always acquired in the same order, so that two holders of overlapping
+     * sets of entries cannot deadlock.
+     *
+     * @param hashes the image definition hashes
+     * @return the handle releasing all the locks
+     * @throws IOException if an I/O error occurs
+     */
+    Handle lockEntries(Collection<String> hashes) throws IOException {
+        final int[] stripes = hashes.stream().mapToInt(ImageCacheLocks::getStripe).distinct().sorted().toArray();
+        final Deque<Handle> handles = new ArrayDeque<>(stripes.length);
+        final Handle handle = () -> {
+            while (!handles.isEmpty()) {
+                handles.pop().close();
+            }
+        };
+        try {
+            for (int stripe : stripes) {
+                handles.push(lock(stripe, true));
+            }
+        } catch (IOException | RuntimeException ex) {
+            handle.close();
+            throw ex;
+        }
+        return handle;
+    }
+
+    /**
+     * Acquires the lock guarding the entry with the given hash, if no other thread or process holds it.
+     *
+     * @param hash the image definition hash
+     * @return the handle releasing the lock, or {@code null} if the lock is held by someone else
+     * @throws IOException if an I/O error occurs
+     */
+    Handle tryLockEntry(String hash) throws IOException {
+        return lock(getStripe(hash), false);
+    }
+
+    private static int getStripe(String hash) {
+        return 1 + Math.floorMod(hash.hashCode(), ENTRY_STRIPES);
+    }
+
+    private Handle lock(int stripe, boolean wait) throws IOException {
+        final ReentrantLock localLock = localLocks[stripe];
+        if (wait) {
+            localLock.lock();
+        } else if (!localLock.tryLock()) {
+            return null;
+        }
+        try {
+            // the file lock is held once per process, the outermost holder acquires it
+            if (localLock.getHoldCount() == 1) {
+                final FileLock fileLock = wait ? channel.lock(stripe, 1, false) : channel.tryLock(stripe, 1, false);
+                if (fileLock == null) {
+                    localLock.unlock();
+                    return null;
+                }
+                fileLocks[stripe] = fileLock;
+            }
+        } catch (IOException | RuntimeException ex) {
+            localLock.unlock();
+            throw ex;
+        }
+        return () -> unlock(stripe);
+    }
+
+    private void unlock(int stripe) {
+        final ReentrantLock localLock = localLocks[stripe];
+        try {
+            if (localLock.getHoldCount() == 1 && fileLocks[stripe] != null) {
+                fileLocks[stripe].release();
+                fileLocks[stripe] = null;
+            }
+        } catch (IOException ex) {
+            // the lock is released anyway once the channel is closed
+        } finally {
+            localLock.unlock();
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package one.jpro.platform.image.manager;
+
+/**
+ * Defines the limits of the image disk cache. When either the total size in bytes or the number
+ * of cached entries exceeds its limit, the least recently used entries are evicted.
+ *
+ * @author Florian Kirmaier
+ * @see ImageManager#setCachePolicy(ImageCachePolicy)
+ */
+public class ImageCachePolicy {
+
+    public static final long DEFAULT_MAX_SIZE = 1_024L * 1_024 * 1_024;
+    public static final int DEFAULT_MAX_ENTRIES = 100_000;
+
+    /**
+     * A policy without any limits, the cache is never evicted.
+     */
+    public static final ImageCachePolicy UNLIMITED = new ImageCachePolicy(Long.MAX_VALUE, Integer.MAX_VALUE);
+
+    /**
+     * The maximum total size of the cached entries in bytes.
+     */
+    private final long maxSize;
+
+    /**
+     * The maximum number of cached entries.
+     */
+    private final int maxEntries;
+
+    /**
+     * Constructs a new cache policy with the default limits.
+     */
+    public ImageCachePolicy() {
+        this(DEFAULT_MAX_SIZE, DEFAULT_MAX_ENTRIES);
+    }
+
+    /**
+     * Constructs a new cache policy.
+     *
+     * @param maxSize    The maximum total size of the cached entries in bytes.
+     * @param maxEntries The maximum number of cached entries.
+     * @throws IllegalArgumentException if any of the limits is not positive.
+     */
+    public ImageCachePolicy(long maxSize, int maxEntries) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Maximum cache size must be positive.");
+        }
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("Maximum number of cache entries must be positive.");
+        }
+        this.maxSize = maxSize;
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * Returns the maximum total size of the cached entries in bytes.
+     *
+     * @return The maximum size in bytes.
+     */
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Returns the maximum number of cached entries.
+     *
+     * @return The maximum number of entries.
+     */
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    /**
+     * Checks whether a cache with the given number of entries and total size exceeds this policy.
+     *
+     * @param entries The number of cached entries.
+     * @param size    The total size of the cached entries in bytes.
+     * @return {@code true} if any of the limits is exceeded, {@code false} otherwise.
+     */
+    public boolean isExceeded(int entries, long size) {
+        return entries > maxEntries || size > maxSize;
+    }
+}
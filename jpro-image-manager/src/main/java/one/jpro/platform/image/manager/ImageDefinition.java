@@ -1,10 +1,25 @@
 package one.jpro.platform.image.manager;
 
 import one.jpro.platform.image.manager.encoder.ImageEncoder;
+import one.jpro.platform.image.manager.encoder.ImageEncoderJPG;
+import one.jpro.platform.image.manager.encoder.ImageEncoderPNG;
 import one.jpro.platform.image.manager.source.ImageSource;
+import one.jpro.platform.image.manager.source.ImageSourceFile;
+import one.jpro.platform.image.manager.source.ImageSourceResource;
+import one.jpro.platform.image.manager.source.ImageSourceURL;
+import one.jpro.platform.image.manager.transformer.ImageResampler;
 import one.jpro.platform.image.manager.transformer.ImageTransformer;
+import one.jpro.platform.image.manager.transformer.ImageTransformerFitHeight;
+import one.jpro.platform.image.manager.transformer.ImageTransformerFitWidth;
+import one.jpro.platform.image.manager.transformer.ImageTransformerIdentity;
+import one.jpro.platform.image.manager.transformer.ImageTransformerScaleToArea;
+import one.jpro.platform.image.manager.transformer.ImageTransformerWH;
+import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.net.MalformedURLException;
+import java.net.URL;
+
 /**
  * Represents a definition of an image that encompasses its source, transformation, and encoding details.
  * This class also provides the capability to convert its instance into a JSON representation.
@@ -43,6 +58,61 @@ public class ImageDefinition implements JsonConvertible {
         this.encoder = encoder;
     }
 
+    /**
+     * Creates an image definition from its JSON representation, as returned by {@link #toJSON()}.
+     * Only the built-in sources, transformers and encoders are supported. Properties derived from the
+     * current state of the source, such as its modification date, are ignored, so that the definition
+     * refers to the current version of the source.
+     *
+     * @param json The JSON representation of the image definition.
+     * @return The image definition.
+     * @throws IllegalArgumentException if the JSON does not describe a supported image definition.
+     */
+    public static ImageDefinition fromJSON(JSONObject json) {
+        try {
+            return new ImageDefinition(sourceFromJSON(json.getJSONObject("source")),
+                    transformerFromJSON(json.getJSONObject("transformer")),
+                    encoderFromJSON(json.getJSONObject("encoder")));
+        } catch (JSONException | MalformedURLException ex) {
+            throw new IllegalArgumentException("Invalid image definition: " + json, ex);
+        }
+    }
+
+    private static ImageSource sourceFromJSON(JSONObject json) throws MalformedURLException {
+        final String type = json.getString("type");
+        return switch (type) {
+            case "ImageSourceFile" -> new ImageSourceFile(ImageUtils.unescapeJson(json.getString("path")));
+            case "ImageSourceResource" -> new ImageSourceResource(ImageUtils.unescapeJson(json.getString("resourcePath")));
+            case "ImageSourceURL" -> new ImageSourceURL(new URL(ImageUtils.unescapeJson(json.getString("url"))));
+            default -> throw new IllegalArgumentException("Unsupported image source: " + type);
+        };
+    }
+
+    private static ImageTransformer transformerFromJSON(JSONObject json) {
+        final String type = json.getString("type");
+        final ImageResampler.Filter filter = json.has("filter")
+                ? ImageResampler.Filter.valueOf(json.getString("filter")) : null;
+        return switch (type) {
+            case "ImageTransformerIdentity" -> new ImageTransformerIdentity();
+            case "ImageTransformerFitWidth" -> new ImageTransformerFitWidth(json.getInt("targetWidth"), 1, filter);
+            case "ImageTransformerFitHeight" -> new ImageTransformerFitHeight(json.getInt("targetHeight"), 1, filter);
+            case "ImageTransformerScaleToArea" -> new ImageTransformerScaleToArea(json.getInt("targetArea"), filter);
+            case "ImageTransformerWH" -> new ImageTransformerWH(json.getInt("targetWidth"), json.getInt("targetHeight"), filter);
+            default -> throw new IllegalArgumentException("Unsupported image transformer: " + type);
+        };
+    }
+
+    private static ImageEncoder encoderFromJSON(JSONObject json) {
+        final String type = json.getString("type");
+        return switch (type) {
+            case "ImageEncoderJPG" -> new ImageEncoderJPG(json.getDouble("quality"), json.optBoolean("progressive", false));
+            case "ImageEncoderPNG" -> new ImageEncoderPNG(
+                    json.optInt("compressionLevel", ImageEncoderPNG.DEFAULT_COMPRESSION_LEVEL),
+                    ImageEncoderPNG.Filter.valueOf(json.optString("filter", ImageEncoderPNG.Filter.ADAPTIVE.name())));
+            default -> throw new IllegalArgumentException("Unsupported image encoder: " + type);
+        };
+    }
+
     @Override
     public JSONObject toJSON() {
         JSONObject json = new JSONObject();
@@ -79,6 +149,22 @@ public class ImageDefinition implements JsonConvertible {
         return encoder;
     }
 
+    /**
+     * Returns a key identifying this definition in the memory cache, which is computed without building
+     * the JSON representation. Definitions with equal keys have equal JSON representations, as the key is
+     * made of the {@link ImageSource#getMemoryKey() key of the source} and of the transformer and encoder,
+     * which are compared with their {@code equals} methods.
+     *
+     * @return the key, or {@code null} if the source has no cheap identity
+     */
+    Object getMemoryKey() {
+        final Object sourceKey = source.getMemoryKey();
+        return sourceKey == null ? null : new MemoryKey(sourceKey, transformer, encoder);
+    }
+
+    private record MemoryKey(Object source, ImageTransformer transformer, ImageEncoder encoder) {
+    }
+
     /**
      * Computes and returns a hash string representation for this instance.
      *
@@ -0,0 +1,784 @@
+package one.jpro.platform.image.manager;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Keeps track of the entries of the image disk cache and enforces the {@link ImageCachePolicy}.
+ * Every entry is a directory named after the image definition hash, containing the image file.
+ * The metadata of all entries, that is the image file name, its dimensions, the entry size, the
+ * last access time and a digest of the image definition, is kept in memory and persisted in a
+ * single append-only {@link ImageMetadataIndex}, so a lookup does not need to read any metadata
+ * files. When the policy is exceeded, the least recently used entries are evicted on a background
+ * thread.
+ * <p>
+ * Caches written by previous versions, which kept the metadata in {@code key} and {@code wh} files
+ * in every entry directory, are migrated to the index when it is loaded for the first time.
+ *
+ * @author Florian Kirmaier
+ */
+final class ImageDiskCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImageDiskCache.class);
+
+    static final String INDEX_FILE_NAME = ImageMetadataIndex.FILE_NAME;
+    static final String PLACEHOLDER_FILE_NAME = "placeholder.lqip.png";
+    static final String LEGACY_INDEX_FILE_NAME = "index";
+    static final String LEGACY_KEY_FILE_NAME = "key";
+    static final String LEGACY_WH_FILE_NAME = "wh";
+    private static final String LEGACY_INDEX_HEADER = "jpro-image-manager-index 1";
+    private static final long INDEX_FLUSH_INTERVAL_SECONDS = 30;
+    private static final int COMPACTION_MIN_RECORDS = 1_024;
+
+    private static final ImageCacheLocks.Handle NO_LOCK = () -> {
+    };
+
+    private final File cacheDir;
+    private final boolean shared;
+    private final Consumer<String> evictionListener;
+    private final Predicate<String> evictable;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Set<String> touched = new HashSet<>();
+    private final ConcurrentHashMap<String, Long> pendingTouches = new ConcurrentHashMap<>();
+    private final AtomicBoolean evictionScheduled = new AtomicBoolean();
+    private final ScheduledExecutorService backgroundExecutor;
+    private volatile ImageCachePolicy policy;
+    private volatile boolean started;
+    private ImageMetadataIndex index;
+    private ImageCacheLocks locks;
+    private long logRecords;
+    private long totalSize;
+
+    /**
+     * The metadata of a cache entry.
+     */
+    private static final class Entry {
+        private final byte[] keyDigest;
+        private final String fileName;
+        private final int width;
+        private final int height;
+        private final long size;
+        private long lastAccess;
+
+        private Entry(byte[] keyDigest, String fileName, int width, int height, long size, long lastAccess) {
+            this.keyDigest = keyDigest;
+            this.fileName = fileName;
+            this.width = width;
+            this.height = height;
+            this.size = size;
+            this.lastAccess = lastAccess;
+        }
+
+        private ImageMetadataIndex.Record toRecord(String hash) {
+            return ImageMetadataIndex.Record.put(hash, keyDigest, fileName, width, height, size, lastAccess);
+        }
+    }
+
+    /**
+     * Creates a new disk cache tracker.
+     *
+     * @param cacheDir         the cache directory
+     * @param policy           the cache policy to enforce
+     * @param evictionListener notified with the hash of every evicted entry before it gets deleted
+     * @param evictable        decides whether the entry with the given hash may currently be evicted
+     */
+    ImageDiskCache(File cacheDir, ImageCachePolicy policy,
+                   Consumer<String> evictionListener, Predicate<String> evictable) {
+        this(cacheDir, false, policy, evictionListener, evictable);
+    }
+
+    /**
+     * Creates a new disk cache tracker, which may share the cache directory with other processes.
+     * In shared mode, changes of the index are guarded by a file lock and the changes of the other
+     * processes are replayed before every change and on every cache miss.
+     *
+     * @param cacheDir         the cache directory
+     * @param shared           whether the cache directory is shared with other processes
+     * @param policy           the cache policy to enforce
+     * @param evictionListener notified with the hash of every evicted entry before it gets deleted
+     * @param evictable        decides whether the entry with the given hash may currently be evicted
+     */
+    ImageDiskCache(File cacheDir, boolean shared, ImageCachePolicy policy,
+                   Consumer<String> evictionListener, Predicate<String> evictable) {
+        this.cacheDir = cacheDir;
+        this.shared = shared;
+        this.policy = Objects.requireNonNull(policy, "Cache policy cannot be null");
+        this.evictionListener = evictionListener;
+        this.evictable = evictable;
+        this.backgroundExecutor = Executors.newSingleThreadScheduledExecutor(run -> {
+            final Thread thread = new Thread(run, "image-manager-cache-thread");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Loads the index, evicts entries in the background if the policy is exceeded and starts
+     * flushing the index periodically. Entries are only evicted in the background once the
+     * cache has been started.
+     */
+    void start() {
+        loadIndex();
+        started = true;
+        scheduleEvictionIfNeeded();
+        backgroundExecutor.scheduleWithFixedDelay(this::flush,
+                INDEX_FLUSH_INTERVAL_SECONDS, INDEX_FLUSH_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Returns the cache policy.
+     *
+     * @return the cache policy
+     */
+    ImageCachePolicy getPolicy() {
+        return policy;
+    }
+
+    /**
+     * Sets the cache policy and evicts entries in the background if the new policy is exceeded.
+     *
+     * @param policy the cache policy
+     */
+    void setPolicy(ImageCachePolicy policy) {
+        this.policy = Objects.requireNonNull(policy, "Cache policy cannot be null");
+        scheduleEvictionIfNeeded();
+    }
+
+    /**
+     * Returns the cached image for the given hash, if the cache contains it for the given image
+     * definition, and marks the entry as recently used.
+     *
+     * @param hash           the image definition hash
+     * @param definitionJson the image definition in its JSON string form
+     * @return the image result, or {@code null} if the image is not cached
+     */
+    ImageResult get(String hash, String definitionJson) {
+        final byte[] keyDigest = computeKeyDigest(definitionJson);
+        synchronized (this) {
+            Entry entry = entries.get(hash);
+            if (entry == null && shared) {
+                // the entry may have been created by another process meanwhile
+                refresh();
+                entry = entries.get(hash);
+            }
+            if (entry == null || !Arrays.equals(entry.keyDigest, keyDigest)) {
+                return null;
+            }
+            final File imageFile = new File(new File(cacheDir, hash), entry.fileName);
+            if (!imageFile.exists()) {
+                // the image has been deleted externally, so forget the entry
+                try (ImageCacheLocks.Handle ignored = lockIndex()) {
+                    refresh();
+                    if (entries.get(hash) == entry) {
+                        entries.remove(hash);
+                        totalSize -= entry.size;
+                        append(ImageMetadataIndex.Record.remove(hash));
+                    }
+                }
+                return null;
+            }
+            entry.lastAccess = System.currentTimeMillis();
+            touched.add(hash);
+            return new ImageResult(imageFile, entry.width, entry.height,
+                    new File(imageFile.getParentFile(), PLACEHOLDER_FILE_NAME));
+        }
+    }
+
+    /**
+     * Records a newly written entry, whose image file has already been published.
+     *
+     * @param hash           the image definition hash
+     * @param definitionJson the image definition in its JSON string form
+     * @param fileName       the name of the image file in the entry directory
+     * @param width          the width of the image
+     * @param height         the height of the image
+     * @return the image result
+     */
+    ImageResult put(String hash, String definitionJson, String fileName, int width, int height) {
+        final File hashDir = new File(cacheDir, hash);
+        final File imageFile = new File(hashDir, fileName);
+        final File placeholderFile = new File(hashDir, PLACEHOLDER_FILE_NAME);
+        final Entry entry = new Entry(computeKeyDigest(definitionJson), fileName, width, height,
+                imageFile.length() + placeholderFile.length(), System.currentTimeMillis());
+        synchronized (this) {
+            try (ImageCacheLocks.Handle ignored = lockIndex()) {
+                refresh();
+                final Entry previous = entries.put(hash, entry);
+                if (previous != null) {
+                    totalSize -= previous.size;
+                }
+                totalSize += entry.size;
+                touched.remove(hash);
+                append(entry.toRecord(hash));
+            }
+        }
+        scheduleEvictionIfNeeded();
+        return new ImageResult(imageFile, width, height, placeholderFile);
+    }
+
+    /**
+     * Marks the entry with the given hash as recently used, if it is tracked. This is called on every
+     * memory cache hit, so it only records the access time without taking the monitor of this cache,
+     * which may be held while waiting for the lock of a shared index. The access is applied to the
+     * entry before the next eviction or flush.
+     *
+     * @param hash the image definition hash
+     */
+    void touch(String hash) {
+        pendingTouches.merge(hash, System.currentTimeMillis(), Math::max);
+    }
+
+    /**
+     * Applies the access times recorded by {@link #touch(String)} to the tracked entries,
+     * which also moves them to the most recently used end of the eviction order.
+     */
+    private void applyPendingTouches() {
+        for (Map.Entry<String, Long> pendingTouch : pendingTouches.entrySet()) {
+            final String hash = pendingTouch.getKey();
+            final long lastAccess = pendingTouch.getValue();
+            // a newer access recorded meanwhile is kept for the next time
+            pendingTouches.remove(hash, lastAccess);
+            final Entry entry = entries.get(hash);
+            if (entry != null) {
+                entry.lastAccess = Math.max(entry.lastAccess, lastAccess);
+                touched.add(hash);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of tracked entries.
+     *
+     * @return the number of entries
+     */
+    synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Returns the total size of the tracked entries in bytes.
+     *
+     * @return the total size in bytes
+     */
+    synchronized long totalSize() {
+        return totalSize;
+    }
+
+    /**
+     * Deletes all entries from the cache directory and the index. The index is replaced by a new one
+     * through the compaction path, so that other processes sharing the cache directory notice the
+     * replacement and reload it. Entries that may currently not be evicted, or whose lock is held by
+     * another thread or process creating them, are kept.
+     */
+    void clear() {
+        final List<ImageCacheLocks.Handle> entryLocks = new ArrayList<>();
+        final List<File> deleted = new ArrayList<>();
+        try {
+            synchronized (this) {
+                try (ImageCacheLocks.Handle ignored = lockIndex()) {
+                    refresh();
+                    final Set<String> kept = new HashSet<>();
+                    final File[] files = cacheDir.listFiles(file -> !file.getName().equals(INDEX_FILE_NAME)
+                            && !file.getName().equals(ImageCacheLocks.FILE_NAME));
+                    if (files != null) {
+                        for (File file : files) {
+                            if (file.isDirectory()) {
+                                final ImageCacheLocks.Handle handle = tryLockEvictable(file.getName());
+                                if (handle == null) {
+                                    kept.add(file.getName());
+                                    continue;
+                                }
+                                entryLocks.add(handle);
+                            }
+                            deleted.add(file);
+                        }
+                    }
+
+                    final List<String> removed = new ArrayList<>();
+                    final List<ImageMetadataIndex.Record> records = new ArrayList<>();
+                    final Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+                    while (iterator.hasNext()) {
+                        final Map.Entry<String, Entry> entry = iterator.next();
+                        if (kept.contains(entry.getKey())) {
+                            records.add(entry.getValue().toRecord(entry.getKey()));
+                        } else {
+                            iterator.remove();
+                            totalSize -= entry.getValue().size;
+                            touched.remove(entry.getKey());
+                            removed.add(entry.getKey());
+                        }
+                    }
+                    if (index != null) {
+                        try {
+                            index.compact(records);
+                            logRecords = records.size();
+                        } catch (IOException ex) {
+                            logger.warn("Failed to replace the image cache index, recording the removals instead", ex);
+                            for (String hash : removed) {
+                                append(ImageMetadataIndex.Record.remove(hash));
+                            }
+                            index.force();
+                        }
+                    }
+                }
+            }
+            // the entries are deleted while their locks are held, so that no one recreates them meanwhile
+            for (File file : deleted) {
+                deleteRecursively(file);
+            }
+        } finally {
+            for (ImageCacheLocks.Handle handle : entryLocks) {
+                handle.close();
+            }
+        }
+    }
+
+    private void scheduleEvictionIfNeeded() {
+        final boolean exceeded;
+        synchronized (this) {
+            exceeded = policy.isExceeded(entries.size(), totalSize);
+        }
+        if (exceeded && started && evictionScheduled.compareAndSet(false, true)) {
+            backgroundExecutor.execute(() -> {
+                evictionScheduled.set(false);
+                evictIfNeeded();
+            });
+        }
+    }
+
+    /**
+     * Evicts the least recently used entries until the policy is no longer exceeded.
+     *
+     * @return the number of evicted entries
+     */
+    int evictIfNeeded() {
+        final List<String> evicted = new ArrayList<>();
+        synchronized (this) {
+            try (ImageCacheLocks.Handle ignored = lockIndex()) {
+                refresh();
+                applyPendingTouches();
+                final Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+                while (policy.isExceeded(entries.size(), totalSize) && iterator.hasNext()) {
+                    final Map.Entry<String, Entry> eldest = iterator.next();
+                    if (!evictable.test(eldest.getKey()) || isLockedByOthers(eldest.getKey())) {
+                        continue;
+                    }
+                    iterator.remove();
+                    totalSize -= eldest.getValue().size;
+                    touched.remove(eldest.getKey());
+                    append(ImageMetadataIndex.Record.remove(eldest.getKey()));
+                    evicted.add(eldest.getKey());
+                }
+            }
+        }
+        for (String hash : evicted) {
+            evictionListener.accept(hash);
+            deleteRecursively(new File(cacheDir, hash));
+        }
+        if (!evicted.isEmpty()) {
+            logger.debug("Evicted {} entries from the image cache", evicted.size());
+            flush();
+        }
+        return evicted.size();
+    }
+
+    /**
+     * Opens the index and replays it. If there is no index yet, the entries of a cache written by a
+     * previous version are migrated into a new index first.
+     */
+    synchronized void loadIndex() {
+        if (index != null) {
+            return;
+        }
+        final Map<String, Entry> loaded = new HashMap<>();
+        try {
+            Files.createDirectories(cacheDir.toPath());
+            if (shared) {
+                locks = ImageCacheLocks.forFile(new File(cacheDir, ImageCacheLocks.FILE_NAME).toPath());
+            }
+            try (ImageCacheLocks.Handle ignored = lockIndex()) {
+                final Path indexFile = new File(cacheDir, INDEX_FILE_NAME).toPath();
+                if (!Files.exists(indexFile)) {
+                    migrateLegacyEntries(indexFile);
+                }
+                try {
+                    index = ImageMetadataIndex.open(indexFile);
+                } catch (IOException ex) {
+                    logger.warn("Failed to open the image cache index, starting with an empty one", ex);
+                    Files.deleteIfExists(indexFile);
+                    index = ImageMetadataIndex.open(indexFile);
+                }
+                logRecords = index.replay(record -> apply(loaded, record));
+            }
+        } catch (IOException ex) {
+            logger.warn("Failed to load the image cache index, the cache is not persisted", ex);
+        }
+
+        setEntries(loaded);
+    }
+
+    /**
+     * Replays the changes other processes made to a shared index since the last refresh.
+     * If the index has been compacted by another process, it is reopened and replayed entirely.
+     * The eviction listener is notified of every entry another process has removed.
+     */
+    private synchronized void refresh() {
+        if (!shared || index == null) {
+            return;
+        }
+        if (index.isReplaced()) {
+            try {
+                final ImageMetadataIndex replacedIndex = index;
+                index = ImageMetadataIndex.open(new File(cacheDir, INDEX_FILE_NAME).toPath());
+                replacedIndex.close();
+            } catch (IOException ex) {
+                logger.warn("Failed to reopen the image cache index", ex);
+                return;
+            }
+            final Map<String, Entry> loaded = new HashMap<>();
+            logRecords = index.replay(record -> apply(loaded, record));
+            final List<String> removed = new ArrayList<>();
+            for (String hash : entries.keySet()) {
+                if (!loaded.containsKey(hash)) {
+                    removed.add(hash);
+                }
+            }
+            setEntries(loaded);
+            touched.removeAll(removed);
+            removed.forEach(evictionListener);
+            return;
+        }
+        logRecords += index.replay(this::applyLive);
+    }
+
+    /**
+     * Replaces the tracked entries with the given ones, ordered from least to most recently used.
+     */
+    private void setEntries(Map<String, Entry> loaded) {
+        final List<Map.Entry<String, Entry>> sorted = new ArrayList<>(loaded.entrySet());
+        sorted.sort(Comparator.comparingLong(entry -> entry.getValue().lastAccess));
+        entries.clear();
+        totalSize = 0;
+        for (Map.Entry<String, Entry> entry : sorted) {
+            entries.put(entry.getKey(), entry.getValue());
+            totalSize += entry.getValue().size;
+        }
+    }
+
+    /**
+     * Applies a record replayed from another process to the tracked entries.
+     */
+    private void applyLive(ImageMetadataIndex.Record record) {
+        switch (record.type()) {
+            case ImageMetadataIndex.TYPE_PUT -> {
+                final Entry previous = entries.put(record.hash(), new Entry(record.keyDigest(), record.fileName(),
+                        record.width(), record.height(), record.size(), record.lastAccess()));
+                if (previous != null) {
+                    totalSize -= previous.size;
+                }
+                totalSize += record.size();
+            }
+            case ImageMetadataIndex.TYPE_TOUCH -> {
+                final Entry entry = entries.get(record.hash());
+                if (entry != null) {
+                    entry.lastAccess = Math.max(entry.lastAccess, record.lastAccess());
+                }
+            }
+            case ImageMetadataIndex.TYPE_REMOVE -> {
+                final Entry removed = entries.remove(record.hash());
+                if (removed != null) {
+                    totalSize -= removed.size;
+                    touched.remove(record.hash());
+                    evictionListener.accept(record.hash());
+                }
+            }
+            default -> {
+            }
+        }
+    }
+
+    /**
+     * Acquires the lock guarding the index in shared mode.
+     *
+     * @return the handle releasing the lock, which does nothing if the cache is not shared
+     */
+    private ImageCacheLocks.Handle lockIndex() {
+        if (locks == null) {
+            return NO_LOCK;
+        }
+        try {
+            return locks.lockIndex();
+        } catch (IOException ex) {
+            logger.warn("Failed to lock the image cache index", ex);
+            return NO_LOCK;
+        }
+    }
+
+    /**
+     * Acquires the locks guarding the entries with the given hashes in shared mode, so that only one
+     * process creates them. Callers must check the cache again once they hold the locks, as another
+     * process may have created the entries while they were waiting.
+     *
+     * @param hashes the image definition hashes
+     * @return the handle releasing the locks, which does nothing if the cache is not shared
+     */
+    ImageCacheLocks.Handle lockEntries(Collection<String> hashes) {
+        if (locks == null) {
+            return NO_LOCK;
+        }
+        try {
+            return locks.lockEntries(hashes);
+        } catch (IOException ex) {
+            logger.warn("Failed to lock the image cache entries", ex);
+            return NO_LOCK;
+        }
+    }
+
+    /**
+     * Returns whether the cache directory is shared with other processes.
+     *
+     * @return {@code true} if the cache is shared, {@code false} otherwise
+     */
+    boolean isShared() {
+        return shared;
+    }
+
+    /**
+     * Acquires the lock guarding the entry with the given hash, if the entry may currently be evicted
+     * and no other thread or process holds the lock.
+     *
+     * @return the handle releasing the lock, or {@code null} if the entry must be kept
+     */
+    private ImageCacheLocks.Handle tryLockEvictable(String hash) {
+        if (!evictable.test(hash)) {
+            return null;
+        }
+        if (locks == null) {
+            return NO_LOCK;
+        }
+        try {
+            return locks.tryLockEntry(hash);
+        } catch (IOException ex) {
+            return null;
+        }
+    }
+
+    private boolean isLockedByOthers(String hash) {
+        if (locks == null) {
+            return false;
+        }
+        try (ImageCacheLocks.Handle handle = locks.tryLockEntry(hash)) {
+            return handle == null;
+        } catch (IOException ex) {
+            return true;
+        }
+    }
+
+    private static void apply(Map<String, Entry> entries, ImageMetadataIndex.Record record) {
+        switch (record.type()) {
+            case ImageMetadataIndex.TYPE_PUT -> entries.put(record.hash(), new Entry(record.keyDigest(),
+                    record.fileName(), record.width(), record.height(), record.size(), record.lastAccess()));
+            case ImageMetadataIndex.TYPE_TOUCH -> {
+                final Entry entry = entries.get(record.hash());
+                if (entry != null) {
+                    entry.lastAccess = Math.max(entry.lastAccess, record.lastAccess());
+                }
+            }
+            case ImageMetadataIndex.TYPE_REMOVE -> entries.remove(record.hash());
+            default -> {
+            }
+        }
+    }
+
+    /**
+     * Migrates the entries of a cache written by a previous version, which kept the image definition
+     * and the dimensions in {@code key} and {@code wh} files, into a new index. The index is written
+     * to a temporary file and renamed, so an interrupted migration is simply started again. Only
+     * afterwards the legacy metadata files are deleted.
+     *
+     * @param indexFile the index file to create
+     * @throws IOException if an I/O error occurs
+     */
+    private void migrateLegacyEntries(Path indexFile) throws IOException {
+        final File[] hashDirs = cacheDir.listFiles(File::isDirectory);
+        if (hashDirs == null || hashDirs.length == 0) {
+            return;
+        }
+        final Map<String, Long> legacyLastAccess = readLegacyIndex();
+        final List<ImageMetadataIndex.Record> records = new ArrayList<>();
+        final List<File> migratedDirs = new ArrayList<>();
+        for (File hashDir : hashDirs) {
+            final File keyFile = new File(hashDir, LEGACY_KEY_FILE_NAME);
+            final File whFile = new File(hashDir, LEGACY_WH_FILE_NAME);
+            final File[] imageFiles = hashDir.listFiles(file -> file.isFile()
+                    && !file.getName().equals(LEGACY_KEY_FILE_NAME)
+                    && !file.getName().equals(LEGACY_WH_FILE_NAME)
+                    && !file.getName().endsWith(".tmp"));
+            if (!keyFile.isFile() || !whFile.isFile() || imageFiles == null || imageFiles.length != 1) {
+                continue;
+            }
+            try {
+                final String[] dims = Files.readString(whFile.toPath()).split(",");
+                final String hash = hashDir.getName();
+                records.add(ImageMetadataIndex.Record.put(hash,
+                        computeKeyDigest(Files.readString(keyFile.toPath())), imageFiles[0].getName(),
+                        Integer.parseInt(dims[0].trim()), Integer.parseInt(dims[1].trim()), imageFiles[0].length(),
+                        legacyLastAccess.getOrDefault(hash, hashDir.lastModified())));
+                migratedDirs.add(hashDir);
+            } catch (IOException | RuntimeException ex) {
+                logger.debug("Skipping invalid image cache entry {}", hashDir, ex);
+            }
+        }
+        records.sort(Comparator.comparingLong(ImageMetadataIndex.Record::lastAccess));
+
+        final Path tempFile = Files.createTempFile(cacheDir.toPath(), INDEX_FILE_NAME, ".tmp");
+        try {
+            ImageMetadataIndex.write(tempFile, records);
+            ImageUtils.moveAtomically(tempFile, indexFile);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+        for (File hashDir : migratedDirs) {
+            Files.deleteIfExists(new File(hashDir, LEGACY_KEY_FILE_NAME).toPath());
+            Files.deleteIfExists(new File(hashDir, LEGACY_WH_FILE_NAME).toPath());
+        }
+        Files.deleteIfExists(new File(cacheDir, LEGACY_INDEX_FILE_NAME).toPath());
+        logger.info("Migrated {} image cache entries to the index", records.size());
+    }
+
+    /**
+     * Reads the last access times from the text index written by previous versions, if present.
+     */
+    private Map<String, Long> readLegacyIndex() {
+        final Map<String, Long> lastAccess = new HashMap<>();
+        final File legacyIndexFile = new File(cacheDir, LEGACY_INDEX_FILE_NAME);
+        if (legacyIndexFile.isFile()) {
+            try (BufferedReader reader = Files.newBufferedReader(legacyIndexFile.toPath())) {
+                if (LEGACY_INDEX_HEADER.equals(reader.readLine())) {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        final String[] parts = line.split(" ");
+                        lastAccess.put(parts[0], Long.parseLong(parts[2]));
+                    }
+                }
+            } catch (IOException | RuntimeException ex) {
+                logger.debug("Ignoring the legacy image cache index", ex);
+            }
+        }
+        return lastAccess;
+    }
+
+    /**
+     * Appends the last access times of the recently used entries to the index, compacts the index
+     * if it mostly consists of outdated records, and forces it to the storage device.
+     */
+    synchronized void flush() {
+        if (index == null) {
+            return;
+        }
+        try (ImageCacheLocks.Handle ignored = lockIndex()) {
+            refresh();
+            flushLocked();
+        }
+    }
+
+    private void flushLocked() {
+        applyPendingTouches();
+        for (String hash : touched) {
+            final Entry entry = entries.get(hash);
+            if (entry != null) {
+                append(ImageMetadataIndex.Record.touch(hash, entry.lastAccess));
+            }
+        }
+        touched.clear();
+        if (logRecords > COMPACTION_MIN_RECORDS && logRecords > 2L * entries.size()) {
+            final List<ImageMetadataIndex.Record> records = new ArrayList<>(entries.size());
+            // the iteration order of the access ordered map is from least to most recently used
+            for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+                records.add(entry.getValue().toRecord(entry.getKey()));
+            }
+            try {
+                index.compact(records);
+                logRecords = records.size();
+            } catch (IOException ex) {
+                logger.warn("Failed to compact the image cache index", ex);
+            }
+        }
+        index.force();
+    }
+
+    /**
+     * Appends the given record to the index, if it is loaded.
+     */
+    private void append(ImageMetadataIndex.Record record) {
+        if (index == null) {
+            return;
+        }
+        try {
+            index.append(record);
+            logRecords++;
+        } catch (IOException ex) {
+            logger.warn("Failed to update the image cache index", ex);
+        }
+    }
+
+    /**
+     * Computes the digest of the given image definition, which is stored in the index to verify
+     * that an entry found by its hash really belongs to the image definition.
+     *
+     * @param definitionJson the image definition in its JSON string form
+     * @return the SHA-256 digest
+     */
+    static byte[] computeKeyDigest(String definitionJson) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(definitionJson.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    /**
+     * Recursively deletes the given directory or file.
+     *
+     * @param file the file or directory to delete
+     */
+    static void deleteRecursively(File file) {
+        if (file.isDirectory()) {
+            final File[] files = file.listFiles();
+            if (files != null) {
+                for (File child : files) {
+                    deleteRecursively(child);
+                }
+            }
+        }
+        file.delete();
+    }
+}
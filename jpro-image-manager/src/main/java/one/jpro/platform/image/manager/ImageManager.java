@@ -2,17 +2,33 @@ package one.jpro.platform.image.manager;
 
 import javafx.scene.image.Image;
 
+import java.awt.Dimension;
 import java.awt.image.BufferedImage;
 import java.io.*;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
-import java.util.concurrent.CompletableFuture;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 
 import one.jpro.platform.image.manager.encoder.ImageEncoder;
+import one.jpro.platform.image.manager.encoder.ImageEncoderPNG;
 import one.jpro.platform.image.manager.source.ImageSource;
+import one.jpro.platform.image.manager.transformer.ImageResampler;
 import one.jpro.platform.image.manager.transformer.ImageTransformer;
+import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -27,11 +43,151 @@ public class ImageManager {
 
     private static final String CACHE_DIR_NAME = "jpro.imagemanager.cache";
     private static final String CACHE_DIR_HOME = System.getProperty("user.home") + "/.jpro" + "/image-manager";
+    private static final String MEMORY_CACHE_SIZE_NAME = "jpro.imagemanager.memoryCacheSize";
+    private static final int DEFAULT_MEMORY_CACHE_SIZE = 1000;
+    private static final String PARALLELISM_NAME = "jpro.imagemanager.parallelism";
+    private static final int DEFAULT_PARALLELISM = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+    private static final String QUEUE_SIZE_NAME = "jpro.imagemanager.queueSize";
+    private static final int DEFAULT_QUEUE_SIZE = 1024;
+    private static final String MAX_CACHE_SIZE_NAME = "jpro.imagemanager.maxCacheSize";
+    private static final String MAX_CACHE_ENTRIES_NAME = "jpro.imagemanager.maxCacheEntries";
+    private static final String SHARED_CACHE_NAME = "jpro.imagemanager.sharedCache";
+    private static final String MANIFEST_NAME = "jpro.imagemanager.manifest";
+    private static final int DEFAULT_PREWARM_PARALLELISM = Math.max(1, Runtime.getRuntime().availableProcessors() / 4);
+    static final int PLACEHOLDER_WIDTH = 16;
+    private static final ImageEncoder PLACEHOLDER_ENCODER = new ImageEncoderPNG(9, ImageEncoderPNG.Filter.NONE);
     private static String CACHE_DIR = null;
     private static volatile ImageManager defaultInstance;
 
+    private final ImageMemoryCache memoryCache;
+    private final ImageDiskCache diskCache;
+    private final ConcurrentHashMap<String, CompletableFuture<ImageResult>> inFlight = new ConcurrentHashMap<>();
+    private final ImageStatisticsRecorder statistics = new ImageStatisticsRecorder();
+    private final Path manifest;
+    private volatile Executor executor;
+    // the executor created by this manager, which is the only one it shuts down
+    private ExecutorService defaultExecutor;
+
     // Private constructor to prevent instantiation
-    private ImageManager() {}
+    private ImageManager() {
+        // If `jpro.imagemanager.memoryCacheSize` is set, use that as maximum number of in-memory entries
+        memoryCache = new ImageMemoryCache(Integer.getInteger(MEMORY_CACHE_SIZE_NAME, DEFAULT_MEMORY_CACHE_SIZE));
+        defaultExecutor = createDefaultExecutor();
+        executor = defaultExecutor;
+        // If `jpro.imagemanager.maxCacheSize` or `jpro.imagemanager.maxCacheEntries` are set, use them to bound the disk cache
+        final ImageCachePolicy cachePolicy = new ImageCachePolicy(
+                Long.getLong(MAX_CACHE_SIZE_NAME, ImageCachePolicy.DEFAULT_MAX_SIZE),
+                Integer.getInteger(MAX_CACHE_ENTRIES_NAME, ImageCachePolicy.DEFAULT_MAX_ENTRIES));
+        // If `jpro.imagemanager.sharedCache` is set, the cache directory is shared with other processes on the same host
+        diskCache = new ImageDiskCache(getCacheDir(), Boolean.getBoolean(SHARED_CACHE_NAME), cachePolicy,
+                hash -> {
+                    statistics.eviction();
+                    memoryCache.remove(hash);
+                }, hash -> !inFlight.containsKey(hash));
+        diskCache.start();
+        // If `jpro.imagemanager.manifest` is set, the definition of every created image is recorded to that file
+        final String manifestPath = System.getProperty(MANIFEST_NAME);
+        manifest = manifestPath == null ? null : Path.of(manifestPath);
+    }
+
+    /**
+     * Creates the default executor, bounded by the {@code jpro.imagemanager.parallelism} and
+     * {@code jpro.imagemanager.queueSize} system properties if they are set.
+     *
+     * @return the default executor
+     */
+    static ExecutorService createDefaultExecutor() {
+        return createDefaultExecutor(Integer.getInteger(PARALLELISM_NAME, DEFAULT_PARALLELISM),
+                Integer.getInteger(QUEUE_SIZE_NAME, DEFAULT_QUEUE_SIZE));
+    }
+
+    /**
+     * Creates the default executor used for asynchronous image loading. It runs at most the given
+     * number of images in parallel on daemon threads and queues at most the given number of pending
+     * images. When the queue is full, further images are rejected instead of growing the queue without
+     * limit. The asynchronous loads never fall back to the submitting thread, which may be the JavaFX
+     * application thread or a session thread, so their futures fail with a
+     * {@link RejectedExecutionException} instead. Only {@link #loadImages(Collection)}, which blocks
+     * anyway, processes rejected images on the calling thread.
+     *
+     * @param parallelism the maximum number of images processed in parallel
+     * @param queueSize   the maximum number of pending images
+     * @return the executor
+     */
+    private static ExecutorService createDefaultExecutor(int parallelism, int queueSize) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("Parallelism must be positive.");
+        }
+        if (queueSize <= 0) {
+            throw new IllegalArgumentException("Queue size must be positive.");
+        }
+        final AtomicInteger threadCounter = new AtomicInteger();
+        final ThreadFactory threadFactory = run -> {
+            final Thread thread = new Thread(run);
+            thread.setName("image-manager-thread-" + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        final ThreadPoolExecutor threadPoolExecutor = new ThreadPoolExecutor(parallelism, parallelism,
+                60L, TimeUnit.SECONDS, new ArrayBlockingQueue<>(queueSize), threadFactory,
+                new ThreadPoolExecutor.AbortPolicy());
+        threadPoolExecutor.allowCoreThreadTimeOut(true);
+        return threadPoolExecutor;
+    }
+
+    /**
+     * Returns the policy limiting the size of the disk cache.
+     *
+     * @return the cache policy
+     */
+    public ImageCachePolicy getCachePolicy() {
+        return diskCache.getPolicy();
+    }
+
+    /**
+     * Sets the policy limiting the size of the disk cache. When the policy is exceeded,
+     * the least recently used images are evicted from the cache in the background.
+     *
+     * @param cachePolicy the cache policy
+     */
+    public void setCachePolicy(ImageCachePolicy cachePolicy) {
+        diskCache.setPolicy(cachePolicy);
+    }
+
+    /**
+     * Returns the tracker of the disk cache entries.
+     *
+     * @return the disk cache
+     */
+    ImageDiskCache getDiskCache() {
+        return diskCache;
+    }
+
+    /**
+     * Returns the executor used for asynchronous image loading.
+     *
+     * @return the executor
+     */
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Sets the executor used for asynchronous image loading. By default, a dedicated executor with
+     * bounded parallelism and a bounded queue is used, so heavy image processing does not starve
+     * other users of the common fork-join pool. The default executor is shut down when replaced,
+     * while executors set by the caller stay owned by the caller and are never shut down.
+     *
+     * @param executor the executor to use
+     */
+    public synchronized void setExecutor(Executor executor) {
+        Objects.requireNonNull(executor, "Executor cannot be null");
+        this.executor = executor;
+        if (defaultExecutor != null && defaultExecutor != executor) {
+            defaultExecutor.shutdown();
+            defaultExecutor = null;
+        }
+    }
 
     /**
      * Returns the singleton instance of ImageManager.
@@ -64,59 +220,562 @@ public class ImageManager {
         return new File(CACHE_DIR);
     }
 
+    /**
+     * Returns the in-memory cache placed in front of the disk cache.
+     *
+     * @return the memory cache
+     */
+    ImageMemoryCache getMemoryCache() {
+        return memoryCache;
+    }
+
     /**
      * Loads the image based on the given definition, caches it, and returns the image result.
+     * Results are first looked up in a bounded in-memory cache shared across all sessions,
+     * then in the disk cache, and are only computed if neither of them contains the image.
+     * Concurrent requests for the same definition are coalesced, so that only one thread
+     * computes the image while the others wait for its result.
      *
      * @param imageDefinition the image definition containing source, transformation and encoder
      * @return the loaded and potentially cached image result
      */
     public ImageResult loadImage(ImageDefinition imageDefinition) {
+        return loadImage(imageDefinition, true);
+    }
+
+    /**
+     * Loads the image based on the given definition and caches it.
+     *
+     * @param imageDefinition the image definition containing source, transformation and encoder
+     * @param keepInMemory    whether to add the result to the memory cache
+     * @return the loaded and potentially cached image result
+     */
+    private ImageResult loadImage(ImageDefinition imageDefinition, boolean keepInMemory) {
+        // Sources with a cheap identity are looked up by their memory key, without serializing the definition.
+        final Object memoryKey = imageDefinition.getMemoryKey();
+        ImageResult cachedResult = getFromMemory(memoryKey);
+        if (cachedResult != null) {
+            statistics.memoryHit();
+            return cachedResult;
+        }
+
+        // The definition is serialized only once, the source part carries the modification date,
+        // so a changed source yields a different hash and never hits a stale memory entry.
+        imageDefinition.getSource().prepare();
+        final String definitionJson = imageDefinition.toJSON().toString();
+        final String hash = computeHash(definitionJson);
+
+        cachedResult = memoryCache.get(hash);
+        if (cachedResult != null) {
+            statistics.memoryHit();
+            diskCache.touch(hash);
+            if (memoryKey != null) {
+                memoryCache.put(hash, memoryKey, cachedResult);
+            }
+            return cachedResult;
+        }
+        statistics.memoryMiss();
+
+        final CompletableFuture<ImageResult> future = new CompletableFuture<>();
+        final CompletableFuture<ImageResult> inFlightFuture = inFlight.putIfAbsent(hash, future);
+        if (inFlightFuture != null) {
+            return awaitResult(inFlightFuture);
+        }
+
+        try {
+            ImageResult result = loadOrCreateImage(imageDefinition, definitionJson, hash);
+            if (keepInMemory) {
+                memoryCache.put(hash, memoryKey, result);
+            }
+            future.complete(result);
+            return result;
+        } catch (RuntimeException ex) {
+            future.completeExceptionally(ex);
+            throw ex;
+        } finally {
+            inFlight.remove(hash, future);
+        }
+    }
+
+    /**
+     * Returns the result cached in memory for the given memory key and marks it as recently used.
+     *
+     * @param memoryKey the memory key of the image definition, or {@code null} if it has none
+     * @return the cached result, or {@code null} if none is present
+     */
+    private ImageResult getFromMemory(Object memoryKey) {
+        if (memoryKey == null) {
+            return null;
+        }
+        final String hash = memoryCache.getHash(memoryKey);
+        final ImageResult cachedResult = hash == null ? null : memoryCache.get(hash);
+        if (cachedResult != null) {
+            diskCache.touch(hash);
+        }
+        return cachedResult;
+    }
+
+    /**
+     * Returns the image from the disk cache if present, otherwise loads, transforms and encodes it
+     * and publishes the new cache entry.
+     *
+     * @param imageDefinition the image definition containing source, transformation and encoder
+     * @param definitionJson  the image definition in its JSON string form
+     * @param hash            the hash of the image definition
+     * @return the image result
+     */
+    private ImageResult loadOrCreateImage(ImageDefinition imageDefinition, String definitionJson, String hash) {
+        ImageResult cachedResult = diskCache.get(hash, definitionJson);
+        if (cachedResult != null) {
+            statistics.diskHit();
+            return cachedResult;
+        }
+        try (ImageCacheLocks.Handle ignored = diskCache.lockEntries(List.of(hash))) {
+            if (diskCache.isShared()) {
+                // another process may have created the image while we were waiting for the lock
+                cachedResult = diskCache.get(hash, definitionJson);
+                if (cachedResult != null) {
+                    statistics.diskHit();
+                    return cachedResult;
+                }
+            }
+            statistics.diskMiss();
+            final ImageStatisticsRecorder.Timer decodeTimer =
+                    statistics.start(ImageStatisticsRecorder.Operation.DECODE, imageDefinition.getSource(), hash);
+            BufferedImage img = imageDefinition.getSource().loadImage(imageDefinition.getTransformer());
+            decodeTimer.stop();
+            img = transform(imageDefinition.getTransformer(), img, hash);
+            return storeImage(imageDefinition, definitionJson, hash, img);
+        }
+    }
+
+    /**
+     * Applies the given transformer to the given image and records the time it takes.
+     *
+     * @param transformer the image transformer
+     * @param img         the image to transform
+     * @param hash        the hash of the image definition
+     * @return the transformed image
+     */
+    private BufferedImage transform(ImageTransformer transformer, BufferedImage img, String hash) {
+        final ImageStatisticsRecorder.Timer timer =
+                statistics.start(ImageStatisticsRecorder.Operation.TRANSFORM, transformer, hash);
+        final BufferedImage result = transformer.transform(img);
+        timer.stop();
+        return result;
+    }
+
+    /**
+     * Returns the name of the cached image file for the given definition.
+     *
+     * @param imageDefinition the image definition
+     * @return the file name
+     */
+    private static String getFileName(ImageDefinition imageDefinition) {
         String origFileName = imageDefinition.getSource().getFileName();
         String baseName = origFileName.substring(0, origFileName.lastIndexOf("."));
-        String fileName = baseName + "." + imageDefinition.getEncoder().getFileExtension();
+        return baseName + "." + imageDefinition.getEncoder().getFileExtension();
+    }
 
+    /**
+     * Encodes the given transformed image and publishes it as a new disk cache entry.
+     *
+     * @param imageDefinition the image definition containing source, transformation and encoder
+     * @param definitionJson  the image definition in its JSON string form
+     * @param hash            the hash of the image definition
+     * @param img             the transformed image
+     * @return the image result
+     */
+    private ImageResult storeImage(ImageDefinition imageDefinition, String definitionJson, String hash,
+                                   BufferedImage img) {
+        String fileName = getFileName(imageDefinition);
         try {
-            String hash = computeImageDefinitionHash(imageDefinition);
             File hashDir = new File(CACHE_DIR, hash);
             File imageFile = new File(hashDir, fileName);
 
-            if (hashDir.exists()) {
-                File keyFile = new File(hashDir, "key");
-                if (keyFile.exists() && imageFile.exists()) {
-                    String savedDef = Files.readString(keyFile.toPath());
-                    if (savedDef.equals(imageDefinition.toJSON().toString())) {
-                        String wh = Files.readString(new File(hashDir, "wh").toPath());
-                        String[] dims = wh.split(",");
-                        return new ImageResult(imageFile, Integer.parseInt(dims[0]), Integer.parseInt(dims[1]));
+            // The placeholder and the image are written to temporary files first and then renamed, so that
+            // readers never see a partially written image. The entry is only recorded in the index afterwards.
+            Files.createDirectories(hashDir.toPath());
+            File placeholderFile = new File(hashDir, ImageDiskCache.PLACEHOLDER_FILE_NAME);
+            saveAtomically(PLACEHOLDER_ENCODER, createPlaceholder(img), placeholderFile);
+            ImageStatisticsRecorder.Timer encodeTimer =
+                    statistics.start(ImageStatisticsRecorder.Operation.ENCODE, imageDefinition.getEncoder(), hash);
+            saveAtomically(imageDefinition.getEncoder(), img, imageFile);
+            encodeTimer.stop();
+            statistics.bytesWritten(imageFile.length() + placeholderFile.length());
+            if (manifest != null) {
+                recordManifest(definitionJson);
+            }
+
+            return diskCache.put(hash, definitionJson, fileName, img.getWidth(), img.getHeight());
+        } catch (IOException ex) {
+            logger.error("Error while loading image", ex);
+            throw new RuntimeException(ex);
+        }
+    }
+
+    /**
+     * Appends the given image definition as a new line to the manifest. This is only called when an image
+     * is created, not when it is loaded from the cache, but the definition is appended without checking
+     * whether the manifest already contains it. Duplicate lines, including those that only differ in the
+     * version of the source, are therefore not removed here, but when the manifest is read with
+     * {@link ImageManifest#read(Path)}. A failure to write the manifest is logged and does not fail the load.
+     *
+     * @param definitionJson the image definition in its JSON string form
+     */
+    private void recordManifest(String definitionJson) {
+        try {
+            ImageManifest.append(manifest, definitionJson);
+        } catch (IOException ex) {
+            logger.warn("Failed to record the image definition to the manifest {}", manifest, ex);
+        }
+    }
+
+    /**
+     * Encodes the given image to a temporary file next to the target and renames it to the target.
+     *
+     * @param encoder the image encoder
+     * @param img     the image to save
+     * @param target  the target file
+     * @throws IOException if an I/O error occurs
+     */
+    private static void saveAtomically(ImageEncoder encoder, BufferedImage img, File target) throws IOException {
+        Path tempFile = Files.createTempFile(target.getParentFile().toPath(), target.getName(), ".tmp");
+        try {
+            encoder.saveImage(img, tempFile.toFile());
+            ImageUtils.moveAtomically(tempFile, target.toPath());
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    /**
+     * Creates the low-quality placeholder of the given image: the image scaled down to at most
+     * {@value #PLACEHOLDER_WIDTH} pixels in width, which looks blurred once it is scaled up again.
+     *
+     * @param img the transformed image
+     * @return the placeholder image
+     */
+    static BufferedImage createPlaceholder(BufferedImage img) {
+        final int width = Math.min(PLACEHOLDER_WIDTH, img.getWidth());
+        final int height = Math.max(1, (int) Math.round(img.getHeight() * (double) width / img.getWidth()));
+        return ImageResampler.resize(img, width, height, ImageResampler.Filter.AREA_AVERAGE);
+    }
+
+    /**
+     * Loads several variants of the same image, for example for different device pixel ratios
+     * or breakpoints. Variants found in the memory or disk cache are returned directly. All other
+     * variants are produced from a single decode of the source: they are transformed from the
+     * largest to the smallest, and each one starts from the smallest raster produced so far that
+     * is still at least twice as large as its target, so that small thumbnails are not computed
+     * from the full resolution original.
+     *
+     * @param source   the image source shared by all variants
+     * @param variants the transformer and encoder of each variant
+     * @return the results, in the order of the given variants
+     */
+    public ImageResultSet loadImageVariants(ImageSource source, List<ImageVariant> variants) {
+        final int count = variants.size();
+        final ImageResult[] results = new ImageResult[count];
+        final List<PendingVariant> pending = new ArrayList<>();
+        final List<Integer> awaited = new ArrayList<>();
+        final List<CompletableFuture<ImageResult>> awaitedFutures = new ArrayList<>();
+        // several variants may be equal, only the first of them is computed
+        final Map<String, Integer> firstIndexByHash = new HashMap<>();
+        final List<int[]> duplicates = new ArrayList<>();
+        boolean prepared = false;
+
+        for (int i = 0; i < count; i++) {
+            final ImageVariant variant = variants.get(i);
+            final ImageDefinition imageDefinition =
+                    new ImageDefinition(source, variant.getTransformer(), variant.getEncoder());
+            final Object memoryKey = imageDefinition.getMemoryKey();
+            ImageResult cachedResult = getFromMemory(memoryKey);
+            if (cachedResult != null) {
+                statistics.memoryHit();
+                results[i] = cachedResult;
+                continue;
+            }
+            if (!prepared) {
+                source.prepare();
+                prepared = true;
+            }
+            final String definitionJson = imageDefinition.toJSON().toString();
+            final String hash = computeHash(definitionJson);
+
+            final Integer firstIndex = firstIndexByHash.putIfAbsent(hash, i);
+            if (firstIndex != null) {
+                duplicates.add(new int[]{i, firstIndex});
+                continue;
+            }
+            cachedResult = memoryCache.get(hash);
+            if (cachedResult != null) {
+                statistics.memoryHit();
+                diskCache.touch(hash);
+                if (memoryKey != null) {
+                    memoryCache.put(hash, memoryKey, cachedResult);
+                }
+                results[i] = cachedResult;
+                continue;
+            }
+            statistics.memoryMiss();
+            final CompletableFuture<ImageResult> future = new CompletableFuture<>();
+            final CompletableFuture<ImageResult> inFlightFuture = inFlight.putIfAbsent(hash, future);
+            if (inFlightFuture != null) {
+                awaited.add(i);
+                awaitedFutures.add(inFlightFuture);
+            } else {
+                pending.add(new PendingVariant(i, imageDefinition, memoryKey, definitionJson, hash, future));
+            }
+        }
+
+        try {
+            completeCachedVariants(pending, results);
+            if (!pending.isEmpty()) {
+                final List<String> hashes = pending.stream().map(variant -> variant.hash).toList();
+                try (ImageCacheLocks.Handle ignored = diskCache.lockEntries(hashes)) {
+                    if (diskCache.isShared()) {
+                        // another process may have created some variants while we were waiting for the locks
+                        completeCachedVariants(pending, results);
+                    }
+                    if (!pending.isEmpty()) {
+                        createVariants(source, pending, results);
+                    }
+                }
+            }
+        } catch (RuntimeException ex) {
+            for (PendingVariant variant : pending) {
+                variant.completeExceptionally(ex);
+            }
+            throw ex;
+        } finally {
+            for (PendingVariant variant : pending) {
+                inFlight.remove(variant.hash, variant.future);
+            }
+        }
+
+        for (int i = 0; i < awaited.size(); i++) {
+            results[awaited.get(i)] = awaitResult(awaitedFutures.get(i));
+        }
+        for (int[] duplicate : duplicates) {
+            results[duplicate[0]] = results[duplicate[1]];
+        }
+        return new ImageResultSet(Arrays.asList(results));
+    }
+
+    /**
+     * Completes and removes the pending variants found in the disk cache.
+     *
+     * @param pending the variants that are not in the memory cache
+     * @param results the results to fill in
+     */
+    private void completeCachedVariants(List<PendingVariant> pending, ImageResult[] results) {
+        for (Iterator<PendingVariant> iterator = pending.iterator(); iterator.hasNext(); ) {
+            final PendingVariant variant = iterator.next();
+            final ImageResult cachedResult = diskCache.get(variant.hash, variant.definitionJson);
+            if (cachedResult != null) {
+                statistics.diskHit();
+                variant.complete(cachedResult);
+                memoryCache.put(variant.hash, variant.memoryKey, cachedResult);
+                results[variant.index] = cachedResult;
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Decodes the source once and produces all the given variants from it.
+     *
+     * @param source  the image source shared by all variants
+     * @param pending the variants that are neither in the memory nor in the disk cache
+     * @param results the results to fill in
+     */
+    private void createVariants(ImageSource source, List<PendingVariant> pending, ImageResult[] results) {
+        for (int i = 0; i < pending.size(); i++) {
+            statistics.diskMiss();
+        }
+        final ImageStatisticsRecorder.Timer decodeTimer =
+                statistics.start(ImageStatisticsRecorder.Operation.DECODE, source, pending.get(0).hash);
+        final BufferedImage decoded = source.loadImage(new VariantsDecodeTransformer(pending));
+        decodeTimer.stop();
+
+        for (PendingVariant variant : pending) {
+            variant.targetSize = variant.imageDefinition.getTransformer()
+                    .getTargetSize(decoded.getWidth(), decoded.getHeight());
+        }
+        final List<PendingVariant> ordered = new ArrayList<>(pending);
+        ordered.sort(Comparator.comparingLong(PendingVariant::targetArea).reversed());
+
+        // the rasters produced so far, from which smaller variants can be derived
+        final List<BufferedImage> rasters = new ArrayList<>();
+        rasters.add(decoded);
+        for (PendingVariant variant : ordered) {
+            final ImageTransformer transformer = variant.imageDefinition.getTransformer();
+            BufferedImage input = decoded;
+            if (variant.targetSize != null) {
+                for (BufferedImage raster : rasters) {
+                    if (raster.getWidth() >= 2 * variant.targetSize.width
+                            && raster.getHeight() >= 2 * variant.targetSize.height
+                            && raster.getWidth() * (long) raster.getHeight() < input.getWidth() * (long) input.getHeight()
+                            && variant.targetSize.equals(transformer.getTargetSize(raster.getWidth(), raster.getHeight()))) {
+                        input = raster;
                     }
                 }
             }
+            final BufferedImage img = transform(transformer, input, variant.hash);
+            rasters.add(img);
+            final ImageResult result = storeImage(variant.imageDefinition, variant.definitionJson, variant.hash, img);
+            memoryCache.put(variant.hash, variant.memoryKey, result);
+            variant.complete(result);
+            results[variant.index] = result;
+        }
+    }
 
-            BufferedImage img = imageDefinition.getSource().loadImage();
-            img = imageDefinition.getTransformer().transform(img);
-            imageDefinition.getEncoder().saveImage(img, imageFile);
+    /**
+     * Only used as decoding hint for the source: its target size covers the target sizes of all
+     * variants, so that source subsampling keeps enough resolution for every one of them.
+     */
+    private static final class VariantsDecodeTransformer implements ImageTransformer {
+        private final List<PendingVariant> variants;
 
-            ImageResult result = new ImageResult(imageFile, img.getWidth(), img.getHeight());
+        private VariantsDecodeTransformer(List<PendingVariant> variants) {
+            this.variants = variants;
+        }
 
-            // Save metadata
-            Files.writeString(new File(hashDir, "key").toPath(), imageDefinition.toJSON().toString());
-            Files.writeString(new File(hashDir, "wh").toPath(), img.getWidth() + "," + img.getHeight());
+        @Override
+        public BufferedImage transform(BufferedImage image) {
+            return image;
+        }
 
-            return result;
-        } catch (IOException ex) {
-            logger.error("Error while loading image", ex);
-            throw new RuntimeException(ex);
+        @Override
+        public Dimension getTargetSize(int width, int height) {
+            final Dimension targetSize = new Dimension();
+            for (PendingVariant variant : variants) {
+                final Dimension variantSize = variant.imageDefinition.getTransformer().getTargetSize(width, height);
+                if (variantSize == null) {
+                    return null;
+                }
+                targetSize.width = Math.max(targetSize.width, variantSize.width);
+                targetSize.height = Math.max(targetSize.height, variantSize.height);
+            }
+            return targetSize;
+        }
+
+        @Override
+        public JSONObject toJSON() {
+            final JSONObject json = new JSONObject();
+            json.put("type", getClass().getSimpleName());
+            return json;
         }
     }
 
     /**
-     * Loads the image asynchronously based on the given definition.
+     * A variant that has to be loaded from the disk cache or created by the current thread.
+     */
+    private static final class PendingVariant {
+        private final int index;
+        private final ImageDefinition imageDefinition;
+        private final Object memoryKey;
+        private final String definitionJson;
+        private final String hash;
+        private final CompletableFuture<ImageResult> future;
+        private Dimension targetSize;
+
+        private PendingVariant(int index, ImageDefinition imageDefinition, Object memoryKey, String definitionJson,
+                               String hash, CompletableFuture<ImageResult> future) {
+            this.index = index;
+            this.imageDefinition = imageDefinition;
+            this.memoryKey = memoryKey;
+            this.definitionJson = definitionJson;
+            this.hash = hash;
+            this.future = future;
+        }
+
+        private long targetArea() {
+            return targetSize == null ? Long.MAX_VALUE : (long) targetSize.width * targetSize.height;
+        }
+
+        private void complete(ImageResult result) {
+            future.complete(result);
+        }
+
+        private void completeExceptionally(Throwable ex) {
+            future.completeExceptionally(ex);
+        }
+    }
+
+    /**
+     * Waits for the given in-flight computation and returns its result.
+     *
+     * @param future the future of the in-flight computation
+     * @return the image result
+     */
+    private static ImageResult awaitResult(CompletableFuture<ImageResult> future) {
+        try {
+            return future.join();
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw ex;
+        }
+    }
+
+    /**
+     * Loads the image asynchronously based on the given definition. The image is never loaded on the
+     * calling thread: if the executor rejects it, for example because its queue is full, the returned
+     * future fails with a {@link RejectedExecutionException}.
      *
      * @param imageDefinition the image definition containing source, transformation, and encoder
      * @return a CompletableFuture containing the image result
      */
     CompletableFuture<ImageResult> loadImageFuture(ImageDefinition imageDefinition) {
-        return CompletableFuture.supplyAsync(() -> loadImage(imageDefinition));
+        return supplyAsync(() -> loadImage(imageDefinition));
+    }
+
+    /**
+     * Runs the given supplier on the executor of this manager, never on the calling thread.
+     *
+     * @param supplier the supplier to run
+     * @return the future completed with the result of the supplier, or failed with a
+     * {@link RejectedExecutionException} if the executor rejected it
+     */
+    private <T> CompletableFuture<T> supplyAsync(Supplier<T> supplier) {
+        try {
+            return CompletableFuture.supplyAsync(supplier, executor);
+        } catch (RejectedExecutionException ex) {
+            return CompletableFuture.failedFuture(ex);
+        }
+    }
+
+    /**
+     * Loads the images for all the given definitions in parallel on the executor of this manager
+     * and waits for all of them to complete. Images rejected by the executor, for example because its
+     * queue is full, are loaded on the calling thread, which slows down the batch instead of failing it.
+     *
+     * @param imageDefinitions the image definitions to load
+     * @return the image results, in the iteration order of the given definitions
+     */
+    public List<ImageResult> loadImages(Collection<ImageDefinition> imageDefinitions) {
+        final List<CompletableFuture<ImageResult>> futures = new ArrayList<>(imageDefinitions.size());
+        for (ImageDefinition imageDefinition : imageDefinitions) {
+            CompletableFuture<ImageResult> future;
+            try {
+                future = CompletableFuture.supplyAsync(() -> loadImage(imageDefinition), executor);
+            } catch (RejectedExecutionException ex) {
+                try {
+                    future = CompletableFuture.completedFuture(loadImage(imageDefinition));
+                } catch (RuntimeException loadException) {
+                    future = CompletableFuture.failedFuture(loadException);
+                }
+            }
+            futures.add(future);
+        }
+        final List<ImageResult> results = new ArrayList<>(futures.size());
+        for (CompletableFuture<ImageResult> future : futures) {
+            results.add(awaitResult(future));
+        }
+        return results;
     }
 
     /**
@@ -135,6 +794,8 @@ public class ImageManager {
 
     /**
      * Loads an JavaFX image asynchronously after applying the specified transformation and encoding.
+     * The image is never loaded on the calling thread: if the executor rejects it, the returned future
+     * fails with a {@link RejectedExecutionException}.
      *
      * @param source      the image source
      * @param transformer the image transformer to apply
@@ -142,7 +803,7 @@ public class ImageManager {
      * @return a CompletableFuture containing the processed FX image
      */
     CompletableFuture<Image> loadFXImageFuture(ImageSource source, ImageTransformer transformer, ImageEncoder encoder) {
-        return CompletableFuture.supplyAsync(() -> loadFXImage(source, transformer, encoder));
+        return supplyAsync(() -> loadFXImage(source, transformer, encoder));
     }
 
     /**
@@ -152,9 +813,20 @@ public class ImageManager {
      * @return the computed MD5 hash as a string
      */
     public static String computeImageDefinitionHash(ImageDefinition imageDefinition) {
+        imageDefinition.getSource().prepare();
+        return computeHash(imageDefinition.toJSON().toString());
+    }
+
+    /**
+     * Computes the MD5 hash of the given serialized image definition.
+     *
+     * @param definitionJson the image definition in its JSON string form
+     * @return the computed MD5 hash as a string
+     */
+    private static String computeHash(String definitionJson) {
         try {
             MessageDigest digest = MessageDigest.getInstance("MD5");
-            byte[] hashBytes = digest.digest(imageDefinition.toJSON().toString().getBytes(StandardCharsets.UTF_8));
+            byte[] hashBytes = digest.digest(definitionJson.getBytes(StandardCharsets.UTF_8));
             StringBuilder hexString = new StringBuilder();
             for (byte b : hashBytes) {
                 String hex = Integer.toHexString(0xFF & b);
@@ -171,27 +843,83 @@ public class ImageManager {
     }
 
     /**
-     * Clears the entire image cache.
+     * Creates the missing cache entries of the given image definitions in the background, for example
+     * after a deployment or at startup, so that the first requests find them in the cache. It uses at
+     * most a quarter of the available processors. Images already in the cache are skipped quickly.
+     *
+     * @param definitions the image definitions, for example read with {@link ImageManifest#read(Path)}
+     * @return the progress of prewarming
      */
-    void clearCache() {
-        File cacheDirectory = new File(CACHE_DIR);
-        deleteDirectoryRecursively(cacheDirectory);
+    public ImagePrewarm prewarm(Collection<ImageDefinition> definitions) {
+        return prewarm(definitions, DEFAULT_PREWARM_PARALLELISM);
     }
 
     /**
-     * Recursively deletes the given directory or file.
+     * Creates the missing cache entries of the given image definitions in the background on at most
+     * the given number of low-priority threads, which bounds the CPU used for prewarming. The created
+     * images are not added to the memory cache, so that they do not displace the images in use.
      *
-     * @param file the file or directory to delete
+     * @param definitions the image definitions, for example read with {@link ImageManifest#read(Path)}
+     * @param parallelism the maximum number of images created in parallel
+     * @return the progress of prewarming
      */
-    private void deleteDirectoryRecursively(File file) {
-        if (file.isDirectory()) {
-            final File[] files = file.listFiles();
-            if (files != null) {
-                for (File child : files) {
-                    deleteDirectoryRecursively(child);
+    public ImagePrewarm prewarm(Collection<ImageDefinition> definitions, int parallelism) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("Parallelism must be positive.");
+        }
+        final ConcurrentLinkedQueue<ImageDefinition> queue = new ConcurrentLinkedQueue<>(definitions);
+        final ImagePrewarm prewarm = new ImagePrewarm(queue.size());
+        final int workers = Math.min(parallelism, queue.size());
+        if (workers == 0) {
+            prewarm.finish();
+            return prewarm;
+        }
+        logger.info("Prewarming {} images on {} threads", prewarm.getTotal(), workers);
+        final long start = System.nanoTime();
+        final AtomicInteger runningWorkers = new AtomicInteger(workers);
+        for (int i = 0; i < workers; i++) {
+            final Thread thread = new Thread(() -> {
+                ImageDefinition definition;
+                while (!prewarm.isCancelled() && (definition = queue.poll()) != null) {
+                    boolean success = false;
+                    try {
+                        loadImage(definition, false);
+                        success = true;
+                    } catch (RuntimeException ex) {
+                        logger.warn("Failed to prewarm image {}", definition.getSource().getFileName(), ex);
+                    }
+                    prewarm.imageCompleted(success);
                 }
-            }
+                if (runningWorkers.decrementAndGet() == 0) {
+                    logger.info("Prewarmed {} of {} images ({} failed) in {} ms", prewarm.getCompleted(),
+                            prewarm.getTotal(), prewarm.getFailed(), (System.nanoTime() - start) / 1_000_000);
+                    prewarm.finish();
+                }
+            }, "image-manager-prewarm-" + (i + 1));
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            thread.start();
         }
-        file.delete();
+        return prewarm;
+    }
+
+    /**
+     * Returns a snapshot of the statistics of this image manager, such as the cache hits and misses
+     * and the latencies of decoding, transforming and encoding images. Collecting the statistics is
+     * cheap, so they are always enabled. Every operation is also reported as an
+     * {@code one.jpro.platform.image.manager.ImageOperation} event to running Flight Recorder recordings.
+     *
+     * @return the statistics snapshot
+     */
+    public ImageManagerStatistics getStatistics() {
+        return statistics.snapshot(inFlight.size());
+    }
+
+    /**
+     * Clears the entire image cache, both in memory and on disk.
+     */
+    void clearCache() {
+        memoryCache.clear();
+        diskCache.clear();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,234 @@
+package one.jpro.platform.image.manager;
+
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * A snapshot of the statistics of an {@link ImageManager}, as returned by
+ * {@link ImageManager#getStatistics()}. All counts are accumulated since the image manager has been created.
+ *
+ * @author Florian Kirmaier
+ */
+public final class ImageManagerStatistics {
+
+    private final long memoryHits;
+    private final long memoryMisses;
+    private final long diskHits;
+    private final long diskMisses;
+    private final long bytesWritten;
+    private final long evictions;
+    private final int inFlight;
+    private final Map<String, LatencyHistogram> decodeLatencies;
+    private final Map<String, LatencyHistogram> transformLatencies;
+    private final Map<String, LatencyHistogram> encodeLatencies;
+
+    ImageManagerStatistics(long memoryHits, long memoryMisses, long diskHits, long diskMisses,
+                           long bytesWritten, long evictions, int inFlight,
+                           Map<String, LatencyHistogram> decodeLatencies,
+                           Map<String, LatencyHistogram> transformLatencies,
+                           Map<String, LatencyHistogram> encodeLatencies) {
+        this.memoryHits = memoryHits;
+        this.memoryMisses = memoryMisses;
+        this.diskHits = diskHits;
+        this.diskMisses = diskMisses;
+        this.bytesWritten = bytesWritten;
+        this.evictions = evictions;
+        this.inFlight = inFlight;
+        this.decodeLatencies = Map.copyOf(decodeLatencies);
+        this.transformLatencies = Map.copyOf(transformLatencies);
+        this.encodeLatencies = Map.copyOf(encodeLatencies);
+    }
+
+    /**
+     * Returns the number of images found in the memory cache.
+     *
+     * @return the number of memory cache hits
+     */
+    public long getMemoryHits() {
+        return memoryHits;
+    }
+
+    /**
+     * Returns the number of images not found in the memory cache.
+     *
+     * @return the number of memory cache misses
+     */
+    public long getMemoryMisses() {
+        return memoryMisses;
+    }
+
+    /**
+     * Returns the number of images not found in the memory cache, but in the disk cache.
+     *
+     * @return the number of disk cache hits
+     */
+    public long getDiskHits() {
+        return diskHits;
+    }
+
+    /**
+     * Returns the number of images found in neither cache, which had to be created.
+     *
+     * @return the number of disk cache misses
+     */
+    public long getDiskMisses() {
+        return diskMisses;
+    }
+
+    /**
+     * Returns the number of bytes written to the disk cache, including the placeholders.
+     *
+     * @return the number of bytes written
+     */
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    /**
+     * Returns the number of entries evicted from the disk cache.
+     *
+     * @return the number of evictions
+     */
+    public long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * Returns the number of images being loaded or created at the time of the snapshot.
+     *
+     * @return the number of in-flight computations
+     */
+    public int getInFlight() {
+        return inFlight;
+    }
+
+    /**
+     * Returns the latencies of decoding images, by image source type.
+     *
+     * @return the decode latencies, keyed by the fully qualified class name of the source
+     */
+    public Map<String, LatencyHistogram> getDecodeLatencies() {
+        return decodeLatencies;
+    }
+
+    /**
+     * Returns the latencies of transforming images, by image transformer type.
+     *
+     * @return the transform latencies, keyed by the fully qualified class name of the transformer
+     */
+    public Map<String, LatencyHistogram> getTransformLatencies() {
+        return transformLatencies;
+    }
+
+    /**
+     * Returns the latencies of encoding and storing images, by image encoder type.
+     *
+     * @return the encode latencies, keyed by the fully qualified class name of the encoder
+     */
+    public Map<String, LatencyHistogram> getEncodeLatencies() {
+        return encodeLatencies;
+    }
+
+    @Override
+    public String toString() {
+        return "ImageManagerStatistics{" +
+                "memoryHits=" + memoryHits +
+                ", memoryMisses=" + memoryMisses +
+                ", diskHits=" + diskHits +
+                ", diskMisses=" + diskMisses +
+                ", bytesWritten=" + bytesWritten +
+                ", evictions=" + evictions +
+                ", inFlight=" + inFlight +
+                ", decodeLatencies=" + decodeLatencies +
+                ", transformLatencies=" + transformLatencies +
+                ", encodeLatencies=" + encodeLatencies +
+                '}';
+    }
+
+    /**
+     * A snapshot of a latency histogram. The latencies are counted in buckets whose upper bounds
+     * are powers of two microseconds, so percentiles are accurate to a factor of two.
+     */
+    public static final class LatencyHistogram {
+
+        private final long count;
+        private final long totalNanos;
+        private final long maxNanos;
+        private final long[] buckets;
+
+        LatencyHistogram(long count, long totalNanos, long maxNanos, long[] buckets) {
+            this.count = count;
+            this.totalNanos = totalNanos;
+            this.maxNanos = maxNanos;
+            this.buckets = buckets;
+        }
+
+        /**
+         * Returns the number of recorded latencies.
+         *
+         * @return the count
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * Returns the sum of all recorded latencies.
+         *
+         * @return the total duration
+         */
+        public Duration getTotal() {
+            return Duration.ofNanos(totalNanos);
+        }
+
+        /**
+         * Returns the mean of the recorded latencies.
+         *
+         * @return the mean duration, or zero if nothing has been recorded
+         */
+        public Duration getMean() {
+            return count == 0 ? Duration.ZERO : Duration.ofNanos(totalNanos / count);
+        }
+
+        /**
+         * Returns the highest recorded latency.
+         *
+         * @return the maximum duration
+         */
+        public Duration getMax() {
+            return Duration.ofNanos(maxNanos);
+        }
+
+        /**
+         * Returns an upper bound of the given percentile of the recorded latencies.
+         *
+         * @param percentile the percentile, between 0 and 100
+         * @return the upper bound of the bucket containing the percentile, at most the maximum
+         */
+        public Duration getPercentile(double percentile) {
+            if (percentile < 0 || percentile > 100) {
+                throw new IllegalArgumentException("Percentile must be between 0 and 100: " + percentile);
+            }
+            final long rank = Math.max(1, (long) Math.ceil(count * percentile / 100));
+            long cumulative = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                cumulative += buckets[i];
+                if (cumulative >= rank) {
+                    return Duration.ofNanos(Math.min(ImageStatisticsRecorder.getBucketUpperBound(i), maxNanos));
+                }
+            }
+            return getMax();
+        }
+
+        @Override
+        public String toString() {
+            return "LatencyHistogram{" +
+                    "count=" + count +
+                    ", mean=" + getMean() +
+                    ", p50=" + getPercentile(50) +
+                    ", p99=" + getPercentile(99) +
+                    ", max=" + getMax() +
+                    '}';
+        }
+    }
+}
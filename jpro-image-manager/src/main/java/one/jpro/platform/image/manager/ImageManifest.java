@@ -0,0 +1,110 @@
+package one.jpro.platform.image.manager;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads and writes manifests of image definitions, which can be used to prewarm the image cache
+ * with {@link ImageManager#prewarm(Collection)}. A manifest is a text file with the JSON representation
+ * of one image definition per line. A single JSON array of image definitions is accepted as well.
+ * <p>
+ * The image manager records the definition of every image it creates to a manifest, if the
+ * {@code jpro.imagemanager.manifest} system property is set to its path.
+ *
+ * @author Florian Kirmaier
+ */
+public final class ImageManifest {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImageManifest.class);
+
+    // Private constructor to prevent instantiation
+    private ImageManifest() {
+    }
+
+    /**
+     * Reads the image definitions from the given manifest. Duplicate definitions are returned only once,
+     * and definitions that cannot be read, for example because of an unsupported source type, are skipped.
+     *
+     * @param manifest the manifest file
+     * @return the image definitions in the order of the manifest
+     * @throws IOException if an I/O error occurs
+     */
+    public static List<ImageDefinition> read(Path manifest) throws IOException {
+        final String content = Files.readString(manifest, StandardCharsets.UTF_8).trim();
+        final List<Object> entries = new ArrayList<>();
+        if (content.startsWith("[")) {
+            new JSONArray(content).forEach(entries::add);
+        } else {
+            for (String line : content.split("\\R")) {
+                if (!line.isBlank()) {
+                    entries.add(line);
+                }
+            }
+        }
+
+        final Map<String, ImageDefinition> definitions = new LinkedHashMap<>();
+        for (Object entry : entries) {
+            try {
+                final JSONObject json = entry instanceof JSONObject ? (JSONObject) entry : new JSONObject((String) entry);
+                final ImageDefinition definition = ImageDefinition.fromJSON(json);
+                definitions.putIfAbsent(getKey(json), definition);
+            } catch (JSONException | IllegalArgumentException ex) {
+                logger.warn("Skipping invalid image definition in manifest {}: {}", manifest, ex.getMessage());
+            }
+        }
+        return new ArrayList<>(definitions.values());
+    }
+
+    /**
+     * Writes the given image definitions to the given manifest, replacing its content.
+     *
+     * @param manifest    the manifest file
+     * @param definitions the image definitions
+     * @throws IOException if an I/O error occurs
+     */
+    public static void write(Path manifest, Collection<ImageDefinition> definitions) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(manifest, StandardCharsets.UTF_8)) {
+            for (ImageDefinition definition : definitions) {
+                writer.write(definition.toJSON().toString());
+                writer.newLine();
+            }
+        }
+    }
+
+    /**
+     * Appends the given image definition to the given manifest, creating it if it does not exist yet.
+     *
+     * @param manifest       the manifest file
+     * @param definitionJson the image definition in its JSON string form
+     * @throws IOException if an I/O error occurs
+     */
+    static synchronized void append(Path manifest, String definitionJson) throws IOException {
+        Files.writeString(manifest, definitionJson + System.lineSeparator(), StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    /**
+     * Returns the key identifying the given definition regardless of the version of its source.
+     */
+    private static String getKey(JSONObject json) {
+        final JSONObject source = json.getJSONObject("source");
+        source.remove("modified");
+        source.remove("version");
+        return json.toString();
+    }
+}
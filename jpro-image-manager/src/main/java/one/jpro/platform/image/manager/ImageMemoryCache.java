@@ -0,0 +1,149 @@
+package one.jpro.platform.image.manager;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded, in-memory least-recently-used cache of {@link ImageResult} instances keyed by
+ * the image definition hash. It sits in front of the disk cache of the {@link ImageManager},
+ * so that repeated requests for the same image definition are served without any disk access.
+ * <p>
+ * Every entry may additionally be found by the {@link ImageDefinition#getMemoryKey() memory key}
+ * of its image definition, so that a lookup does not need to serialize the definition to compute
+ * its hash.
+ * <p>
+ * This class is thread-safe and is meant to be shared across all sessions.
+ *
+ * @author Florian Kirmaier
+ */
+final class ImageMemoryCache {
+
+    private final int maxEntries;
+    private final LinkedHashMap<String, Cached> entries;
+    private final Map<Object, String> hashesByKey = new HashMap<>();
+
+    /**
+     * A cached result, with the memory key it can be found by.
+     */
+    private record Cached(ImageResult result, Object memoryKey) {
+    }
+
+    /**
+     * Creates a new memory cache holding at most the given number of entries.
+     *
+     * @param maxEntries the maximum number of entries, a value of {@code 0} disables the cache
+     * @throws IllegalArgumentException if the maximum number of entries is negative
+     */
+    ImageMemoryCache(int maxEntries) {
+        if (maxEntries < 0) {
+            throw new IllegalArgumentException("Maximum number of entries must not be negative.");
+        }
+        this.maxEntries = maxEntries;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Cached> eldest) {
+                if (size() > ImageMemoryCache.this.maxEntries) {
+                    removeMemoryKey(eldest.getKey(), eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Returns the cached result for the given hash and marks it as recently used.
+     *
+     * @param hash the image definition hash
+     * @return the cached result, or {@code null} if none is present
+     */
+    synchronized ImageResult get(String hash) {
+        final Cached cached = entries.get(hash);
+        return cached == null ? null : cached.result();
+    }
+
+    /**
+     * Returns the hash of the cached result for the given memory key.
+     *
+     * @param memoryKey the memory key of the image definition
+     * @return the image definition hash, or {@code null} if no result is cached for the key
+     */
+    synchronized String getHash(Object memoryKey) {
+        return hashesByKey.get(memoryKey);
+    }
+
+    /**
+     * Stores the given result, evicting the least recently used entry if the cache is full.
+     *
+     * @param hash   the image definition hash
+     * @param result the image result
+     */
+    synchronized void put(String hash, ImageResult result) {
+        put(hash, null, result);
+    }
+
+    /**
+     * Stores the given result, which can also be found by the given memory key, evicting
+     * the least recently used entry if the cache is full.
+     *
+     * @param hash      the image definition hash
+     * @param memoryKey the memory key of the image definition, or {@code null} if it has none
+     * @param result    the image result
+     */
+    synchronized void put(String hash, Object memoryKey, ImageResult result) {
+        if (maxEntries > 0) {
+            final Cached previous = entries.put(hash, new Cached(result, memoryKey));
+            if (previous != null) {
+                removeMemoryKey(hash, previous);
+            }
+            if (memoryKey != null) {
+                hashesByKey.put(memoryKey, hash);
+            }
+        }
+    }
+
+    /**
+     * Removes the entry for the given hash, if present.
+     *
+     * @param hash the image definition hash
+     */
+    synchronized void remove(String hash) {
+        final Cached removed = entries.remove(hash);
+        if (removed != null) {
+            removeMemoryKey(hash, removed);
+        }
+    }
+
+    /**
+     * Removes all entries from the cache.
+     */
+    synchronized void clear() {
+        entries.clear();
+        hashesByKey.clear();
+    }
+
+    /**
+     * Returns the number of entries currently held in the cache.
+     *
+     * @return the number of entries
+     */
+    synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Returns the maximum number of entries this cache can hold.
+     *
+     * @return the maximum number of entries
+     */
+    int getMaxEntries() {
+        return maxEntries;
+    }
+
+    private void removeMemoryKey(String hash, Cached cached) {
+        if (cached.memoryKey() != null) {
+            hashesByKey.remove(cached.memoryKey(), hash);
+        }
+    }
+}
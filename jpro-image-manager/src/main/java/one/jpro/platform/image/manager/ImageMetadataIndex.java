@@ -0,0 +1,333 @@
+package one.jpro.platform.image.manager;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collection;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only, memory-mapped log of the metadata of the image disk cache entries. Every change
+ * of an entry is appended as a record, and the current state is obtained by replaying the records.
+ * <p>
+ * The file starts with a header, followed by records of the form {@code length, type, payload, crc}.
+ * The mapped region is larger than the written records and filled with zeros, so a record length of
+ * zero marks the end of the log. A record that was only partially written, for example because the
+ * process crashed, fails its checksum and is treated as the end of the log as well.
+ * <p>
+ * When the log has grown much larger than the live entries, it is compacted into a new file that is
+ * atomically renamed over the old one, so a crash during compaction leaves either log intact.
+ * <p>
+ * The log can be shared by several processes, as long as appends and compactions are guarded
+ * by a lock of the {@link ImageCacheLocks} and every process replays the records of the others
+ * before appending. This class is not thread-safe, it is guarded by the {@link ImageDiskCache}
+ * that owns it.
+ *
+ * @author Florian Kirmaier
+ */
+final class ImageMetadataIndex implements Closeable {
+
+    static final String FILE_NAME = "index.bin";
+
+    private static final long MAGIC = 0x4A50494D47494458L; // "JPIMGIDX"
+    private static final int VERSION = 1;
+    static final int HEADER_SIZE = 16;
+    private static final int INITIAL_CAPACITY = 256 * 1_024;
+    private static final int RECORD_OVERHEAD = Integer.BYTES + Integer.BYTES;
+
+    static final byte TYPE_PUT = 1;
+    static final byte TYPE_TOUCH = 2;
+    static final byte TYPE_REMOVE = 3;
+
+    /**
+     * A record of the log.
+     *
+     * @param type       the record type
+     * @param hash       the image definition hash
+     * @param keyDigest  the SHA-256 digest of the image definition, only for put records
+     * @param fileName   the name of the image file, only for put records
+     * @param width      the width of the image, only for put records
+     * @param height     the height of the image, only for put records
+     * @param size       the size of the entry in bytes, only for put records
+     * @param lastAccess the last access time in milliseconds, for put and touch records
+     */
+    record Record(byte type, String hash, byte[] keyDigest, String fileName,
+                  int width, int height, long size, long lastAccess) {
+
+        static Record put(String hash, byte[] keyDigest, String fileName,
+                          int width, int height, long size, long lastAccess) {
+            return new Record(TYPE_PUT, hash, keyDigest, fileName, width, height, size, lastAccess);
+        }
+
+        static Record touch(String hash, long lastAccess) {
+            return new Record(TYPE_TOUCH, hash, null, null, 0, 0, 0, lastAccess);
+        }
+
+        static Record remove(String hash) {
+            return new Record(TYPE_REMOVE, hash, null, null, 0, 0, 0, 0);
+        }
+    }
+
+    private final Path file;
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private Object fileKey;
+    private int position = HEADER_SIZE;
+
+    private ImageMetadataIndex(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * Opens the index stored in the given file, creating it if it does not exist yet.
+     * Records are only read by {@link #replay(Consumer)}.
+     *
+     * @param file the index file
+     * @return the index
+     * @throws IOException if an I/O error occurs or the file is not an index
+     */
+    static ImageMetadataIndex open(Path file) throws IOException {
+        Files.deleteIfExists(getCompactionFile(file));
+        final ImageMetadataIndex index = new ImageMetadataIndex(file);
+        index.map();
+        return index;
+    }
+
+    private void map() throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            final boolean created = channel.size() == 0;
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(channel.size(), INITIAL_CAPACITY));
+            if (created) {
+                buffer.putLong(0, MAGIC);
+                buffer.putInt(Long.BYTES, VERSION);
+            } else if (buffer.getLong(0) != MAGIC || buffer.getInt(Long.BYTES) != VERSION) {
+                throw new IOException("Not an image cache index: " + file);
+            }
+            position = HEADER_SIZE;
+            fileKey = Files.readAttributes(file, BasicFileAttributes.class).fileKey();
+        } catch (IOException ex) {
+            channel.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Reads all records after the ones already read and passes them to the given consumer.
+     *
+     * @param consumer the consumer of the records
+     * @return the number of records read
+     */
+    int replay(Consumer<Record> consumer) {
+        try {
+            // the log may have been grown by another process
+            if (channel.size() > buffer.capacity() && channel.size() <= Integer.MAX_VALUE) {
+                buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+            }
+        } catch (IOException ex) {
+            // continue with the current mapping
+        }
+        int count = 0;
+        final CRC32 crc = new CRC32();
+        while (position + RECORD_OVERHEAD <= buffer.capacity()) {
+            final int length = buffer.getInt(position);
+            if (length <= 0 || position + RECORD_OVERHEAD + length > buffer.capacity()) {
+                break;
+            }
+            final ByteBuffer payload = buffer.slice(position + Integer.BYTES, length);
+            crc.reset();
+            crc.update(payload.duplicate());
+            if ((int) crc.getValue() != buffer.getInt(position + Integer.BYTES + length)) {
+                // a torn write at the end of the log
+                break;
+            }
+            consumer.accept(readRecord(payload));
+            position += RECORD_OVERHEAD + length;
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Appends the given record to the log, growing the mapped region if needed.
+     *
+     * @param record the record to append
+     * @throws IOException if an I/O error occurs
+     */
+    void append(Record record) throws IOException {
+        final byte[] payload = writeRecord(record);
+        final int recordSize = RECORD_OVERHEAD + payload.length;
+        if (position + recordSize + Integer.BYTES > buffer.capacity()) {
+            final long capacity = Math.max(2L * buffer.capacity(), position + recordSize + Integer.BYTES);
+            if (capacity > Integer.MAX_VALUE) {
+                throw new IOException("Image cache index is too large: " + file);
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        }
+        final CRC32 crc = new CRC32();
+        crc.update(payload);
+        // the length is written last, so that a record only becomes visible once it is complete
+        buffer.put(position + Integer.BYTES, payload);
+        buffer.putInt(position + Integer.BYTES + payload.length, (int) crc.getValue());
+        buffer.putInt(position + recordSize, 0);
+        buffer.putInt(position, payload.length);
+        position += recordSize;
+    }
+
+    /**
+     * Returns the number of bytes used by the header and the records.
+     *
+     * @return the used size in bytes
+     */
+    int usedSize() {
+        return position;
+    }
+
+    /**
+     * Checks whether the index file has been replaced by another process since it was opened,
+     * for example by a compaction. The records of a replaced index must be replayed from a
+     * newly opened index.
+     *
+     * @return {@code true} if the file has been replaced, {@code false} otherwise
+     */
+    boolean isReplaced() {
+        try {
+            return fileKey != null && !fileKey.equals(Files.readAttributes(file, BasicFileAttributes.class).fileKey());
+        } catch (IOException ex) {
+            return true;
+        }
+    }
+
+    /**
+     * Writes the modified parts of the mapped region to the storage device.
+     */
+    void force() {
+        buffer.force();
+    }
+
+    /**
+     * Replaces the log with a new one containing only the given records. The new log is written to a
+     * separate file, which is forced to the storage device and then atomically renamed over the old one.
+     *
+     * @param records the records of the live entries
+     * @throws IOException if an I/O error occurs, in which case the old log is still in use
+     */
+    void compact(Collection<Record> records) throws IOException {
+        final Path compactionFile = getCompactionFile(file);
+        write(compactionFile, records);
+        try {
+            ImageUtils.moveAtomically(compactionFile, file);
+        } catch (IOException ex) {
+            // e.g. a mapped file cannot be replaced on Windows, the old log stays in use
+            Files.deleteIfExists(compactionFile);
+            throw ex;
+        }
+        channel.close();
+        map();
+        replay(record -> {
+        });
+    }
+
+    /**
+     * Writes a new log containing the given records to the given file and forces it to the storage device.
+     *
+     * @param target  the file to write
+     * @param records the records
+     * @throws IOException if an I/O error occurs, in which case the file is deleted
+     */
+    static void write(Path target, Collection<Record> records) throws IOException {
+        try (FileChannel targetChannel = FileChannel.open(target, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putLong(MAGIC).putInt(VERSION).putInt(0).flip();
+            targetChannel.write(header);
+            final CRC32 crc = new CRC32();
+            for (Record record : records) {
+                final byte[] payload = writeRecord(record);
+                crc.reset();
+                crc.update(payload);
+                final ByteBuffer recordBuffer = ByteBuffer.allocate(RECORD_OVERHEAD + payload.length);
+                recordBuffer.putInt(payload.length).put(payload).putInt((int) crc.getValue()).flip();
+                while (recordBuffer.hasRemaining()) {
+                    targetChannel.write(recordBuffer);
+                }
+            }
+            targetChannel.force(true);
+        } catch (IOException ex) {
+            Files.deleteIfExists(target);
+            throw ex;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        force();
+        channel.close();
+    }
+
+    private static Path getCompactionFile(Path file) {
+        return file.resolveSibling(file.getFileName() + ".compact");
+    }
+
+    private static byte[] writeRecord(Record record) {
+        final byte[] hash = record.hash().getBytes(StandardCharsets.UTF_8);
+        final byte[] fileName = record.fileName() == null ? new byte[0] : record.fileName().getBytes(StandardCharsets.UTF_8);
+        final ByteBuffer payload;
+        switch (record.type()) {
+            case TYPE_PUT -> {
+                payload = ByteBuffer.allocate(1 + 2 + hash.length + 1 + record.keyDigest().length
+                        + 2 + fileName.length + 4 + 4 + 8 + 8);
+                payload.put(record.type());
+                payload.putShort((short) hash.length).put(hash);
+                payload.put((byte) record.keyDigest().length).put(record.keyDigest());
+                payload.putShort((short) fileName.length).put(fileName);
+                payload.putInt(record.width()).putInt(record.height());
+                payload.putLong(record.size()).putLong(record.lastAccess());
+            }
+            case TYPE_TOUCH -> {
+                payload = ByteBuffer.allocate(1 + 2 + hash.length + 8);
+                payload.put(record.type());
+                payload.putShort((short) hash.length).put(hash);
+                payload.putLong(record.lastAccess());
+            }
+            case TYPE_REMOVE -> {
+                payload = ByteBuffer.allocate(1 + 2 + hash.length);
+                payload.put(record.type());
+                payload.putShort((short) hash.length).put(hash);
+            }
+            default -> throw new IllegalArgumentException("Unknown record type: " + record.type());
+        }
+        return payload.array();
+    }
+
+    private static Record readRecord(ByteBuffer payload) {
+        final byte type = payload.get();
+        final String hash = readString(payload, payload.getShort() & 0xFFFF);
+        return switch (type) {
+            case TYPE_PUT -> {
+                final byte[] keyDigest = new byte[payload.get() & 0xFF];
+                payload.get(keyDigest);
+                final String fileName = readString(payload, payload.getShort() & 0xFFFF);
+                yield Record.put(hash, keyDigest, fileName, payload.getInt(), payload.getInt(),
+                        payload.getLong(), payload.getLong());
+            }
+            case TYPE_TOUCH -> Record.touch(hash, payload.getLong());
+            case TYPE_REMOVE -> Record.remove(hash);
+            default -> throw new IllegalStateException("Unknown record type: " + type);
+        };
+    }
+
+    private static String readString(ByteBuffer payload, int length) {
+        final byte[] bytes = new byte[length];
+        payload.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
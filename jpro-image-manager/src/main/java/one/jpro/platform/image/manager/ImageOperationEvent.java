@@ -0,0 +1,30 @@
+package one.jpro.platform.image.manager;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A Flight Recorder event for decoding, transforming or encoding an image in the {@link ImageManager}.
+ *
+ * @author Florian Kirmaier
+ */
+@Name("one.jpro.platform.image.manager.ImageOperation")
+@Label("Image Operation")
+@Category({"JPro", "Image Manager"})
+@Description("Decoding, transforming or encoding an image")
+final class ImageOperationEvent extends Event {
+
+    @Label("Operation")
+    String operation;
+
+    @Label("Type")
+    @Description("The image source, transformer or encoder performing the operation")
+    String type;
+
+    @Label("Hash")
+    @Description("The hash of the image definition")
+    String hash;
+}
@@ -0,0 +1,114 @@
+package one.jpro.platform.image.manager;
+
+import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tracks the progress of prewarming the image cache, as started by {@link ImageManager#prewarm(Collection, int)}.
+ *
+ * @author Florian Kirmaier
+ */
+public final class ImagePrewarm {
+
+    private final int total;
+    private final AtomicInteger completed = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+    private final CompletableFuture<ImagePrewarm> future = new CompletableFuture<>();
+    private volatile boolean cancelled;
+
+    ImagePrewarm(int total) {
+        this.total = total;
+    }
+
+    /**
+     * Returns the number of images to prewarm.
+     *
+     * @return the total number of images
+     */
+    public int getTotal() {
+        return total;
+    }
+
+    /**
+     * Returns the number of images processed so far, including the failed ones.
+     *
+     * @return the number of completed images
+     */
+    public int getCompleted() {
+        return completed.get();
+    }
+
+    /**
+     * Returns the number of images that could not be created.
+     *
+     * @return the number of failed images
+     */
+    public int getFailed() {
+        return failed.get();
+    }
+
+    /**
+     * Returns the fraction of the images processed so far.
+     *
+     * @return the progress, from 0 to 1
+     */
+    public double getProgress() {
+        return total == 0 ? 1 : (double) completed.get() / total;
+    }
+
+    /**
+     * Returns whether prewarming has finished, because all images have been processed or it has been cancelled.
+     *
+     * @return {@code true} if prewarming has finished, {@code false} otherwise
+     */
+    public boolean isDone() {
+        return future.isDone();
+    }
+
+    /**
+     * Stops prewarming. Images already being created are still finished.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * Returns whether prewarming has been cancelled.
+     *
+     * @return {@code true} if prewarming has been cancelled, {@code false} otherwise
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Returns a future completed with this instance once prewarming has finished.
+     *
+     * @return the future
+     */
+    public CompletableFuture<ImagePrewarm> getFuture() {
+        return future;
+    }
+
+    void imageCompleted(boolean success) {
+        if (!success) {
+            failed.incrementAndGet();
+        }
+        completed.incrementAndGet();
+    }
+
+    void finish() {
+        future.complete(this);
+    }
+
+    @Override
+    public String toString() {
+        return "ImagePrewarm{" +
+                "total=" + total +
+                ", completed=" + completed +
+                ", failed=" + failed +
+                ", cancelled=" + cancelled +
+                '}';
+    }
+}
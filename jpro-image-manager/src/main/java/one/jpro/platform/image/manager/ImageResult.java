@@ -4,10 +4,17 @@ import com.jpro.webapi.WebAPI;
 import javafx.scene.image.Image;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.util.Base64;
 
 /**
  * Represents the result of an image operation, encapsulating details about
  * the image file and its dimensions (width and height).
+ * <p>
+ * Images created by the {@link ImageManager} also come with a low-quality placeholder, a tiny
+ * version of the image, which can be shown immediately while the full image is still loading.
  *
  * @author Florian Kirmaier
  */
@@ -29,16 +36,34 @@ public class ImageResult {
     private final int height;
 
     /**
-     * Constructs a new instance.
+     * The low-quality placeholder image file, which may not exist.
+     */
+    private final File placeholderFile;
+
+    /**
+     * Constructs a new instance without a placeholder.
      *
      * @param file   The image file.
      * @param width  The width of the image in pixels.
      * @param height The height of the image in pixels.
      */
     public ImageResult(File file, int width, int height) {
+        this(file, width, height, null);
+    }
+
+    /**
+     * Constructs a new instance with a low-quality placeholder.
+     *
+     * @param file            The image file.
+     * @param width           The width of the image in pixels.
+     * @param height          The height of the image in pixels.
+     * @param placeholderFile The placeholder image file, or {@code null} if there is none.
+     */
+    public ImageResult(File file, int width, int height, File placeholderFile) {
         this.file = file;
         this.width = width;
         this.height = height;
+        this.placeholderFile = placeholderFile;
     }
 
     /**
@@ -68,6 +93,53 @@ public class ImageResult {
         return height;
     }
 
+    /**
+     * Returns the low-quality placeholder of the image, a PNG image at most 16 pixels wide with the
+     * same aspect ratio as the image. Images cached by previous versions have no placeholder.
+     *
+     * @return The placeholder image file, or {@code null} if there is no placeholder.
+     */
+    public File getPlaceholderFile() {
+        return placeholderFile != null && placeholderFile.isFile() ? placeholderFile : null;
+    }
+
+    /**
+     * Returns the low-quality placeholder of the image as a {@code data:} URI, which can be
+     * inlined into a page, for example as the background of the element showing the image.
+     *
+     * @return The placeholder data URI, or {@code null} if there is no placeholder.
+     * @throws UncheckedIOException if the placeholder cannot be read.
+     */
+    public String getPlaceholderDataURI() {
+        final File placeholder = getPlaceholderFile();
+        if (placeholder == null) {
+            return null;
+        }
+        try {
+            return "data:image/png;base64," + Base64.getEncoder().encodeToString(Files.readAllBytes(placeholder.toPath()));
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * Converts the low-quality placeholder of this image result into an {@link Image} with the size
+     * of the full image. It can be shown immediately and replaced by {@link #toFXImage()} once the
+     * full image has been loaded. The placeholder is scaled up smoothly, which blurs it.
+     *
+     * @return A {@link Image} instance representing the placeholder, or {@code null} if there is no placeholder.
+     */
+    public Image toFXPlaceholderImage() {
+        final File placeholder = getPlaceholderFile();
+        if (placeholder == null) {
+            return null;
+        } else if (WebAPI.isBrowser()) {
+            return WebAPI.createVirtualImage(placeholder.toURI().toString(), width, height);
+        } else {
+            return new Image(placeholder.toURI().toString(), width, height, false, true);
+        }
+    }
+
     /**
      * Converts this image result into an {@link Image} suitable for use within JavaFX applications.
      * If the code is running in a browser context (as determined by the WebAPI), a virtual image is created instead.
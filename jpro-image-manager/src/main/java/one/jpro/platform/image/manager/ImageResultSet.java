@@ -0,0 +1,89 @@
+package one.jpro.platform.image.manager;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * The results of all variants of one image, as returned by
+ * {@link ImageManager#loadImageVariants(one.jpro.platform.image.manager.source.ImageSource, List)}.
+ * Besides giving access to the individual results, it selects the most appropriate variant
+ * for a required width, similar to the {@code srcset} attribute of HTML images.
+ *
+ * @author Florian Kirmaier
+ */
+public class ImageResultSet {
+
+    /**
+     * The results, in the order of the requested variants.
+     */
+    private final List<ImageResult> results;
+
+    /**
+     * The distinct results, sorted by ascending width.
+     */
+    private final List<ImageResult> resultsByWidth;
+
+    /**
+     * Constructs a new instance.
+     *
+     * @param results The results, in the order of the requested variants.
+     */
+    public ImageResultSet(List<ImageResult> results) {
+        this.results = List.copyOf(results);
+        this.resultsByWidth = this.results.stream()
+                .distinct()
+                .sorted(Comparator.comparingInt(ImageResult::getWidth))
+                .toList();
+    }
+
+    /**
+     * Returns the results, in the order of the requested variants.
+     *
+     * @return An unmodifiable list of the results.
+     */
+    public List<ImageResult> getResults() {
+        return results;
+    }
+
+    /**
+     * Selects the smallest result that is at least as wide as the given width.
+     * If no result is wide enough, the widest one is returned.
+     *
+     * @param requiredWidth The required width in pixels.
+     * @return The selected result, or {@code null} if this set is empty.
+     */
+    public ImageResult select(int requiredWidth) {
+        for (ImageResult result : resultsByWidth) {
+            if (result.getWidth() >= requiredWidth) {
+                return result;
+            }
+        }
+        return resultsByWidth.isEmpty() ? null : resultsByWidth.get(resultsByWidth.size() - 1);
+    }
+
+    /**
+     * Selects the most appropriate result for an image displayed with the given width
+     * on a screen with the given device pixel ratio.
+     *
+     * @param displayWidth     The width the image is displayed with, in logical pixels.
+     * @param devicePixelRatio The device pixel ratio of the screen.
+     * @return The selected result, or {@code null} if this set is empty.
+     */
+    public ImageResult select(double displayWidth, double devicePixelRatio) {
+        return select((int) Math.ceil(displayWidth * devicePixelRatio));
+    }
+
+    /**
+     * Creates the value of an HTML {@code srcset} attribute with width descriptors for all results.
+     *
+     * @param urlMapper Maps each result to the URL it is served from.
+     * @return The {@code srcset} value, for example {@code "a.jpg 300w, b.jpg 600w"}.
+     */
+    public String toSrcSet(Function<ImageResult, String> urlMapper) {
+        return resultsByWidth.stream()
+                .map(result -> urlMapper.apply(result) + " " + result.getWidth() + "w")
+                .collect(Collectors.joining(", "));
+    }
+}
@@ -0,0 +1,185 @@
+package one.jpro.platform.image.manager;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Records the statistics of an {@link ImageManager} with lock-free counters and histograms.
+ * If the {@code jdk.jfr} module is available, every decode, transform and encode is also
+ * reported as an {@link ImageOperationEvent} to running Flight Recorder recordings.
+ *
+ * @author Florian Kirmaier
+ */
+final class ImageStatisticsRecorder {
+
+    private static final int BUCKETS = 48;
+    private static final boolean JFR_AVAILABLE = ModuleLayer.boot().findModule("jdk.jfr").isPresent();
+
+    /**
+     * The measured operations.
+     */
+    enum Operation {
+        DECODE, TRANSFORM, ENCODE
+    }
+
+    private final LongAdder memoryHits = new LongAdder();
+    private final LongAdder memoryMisses = new LongAdder();
+    private final LongAdder diskHits = new LongAdder();
+    private final LongAdder diskMisses = new LongAdder();
+    private final LongAdder bytesWritten = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final Map<Operation, ConcurrentHashMap<String, Histogram>> histograms = new HashMap<>();
+
+    ImageStatisticsRecorder() {
+        for (Operation operation : Operation.values()) {
+            histograms.put(operation, new ConcurrentHashMap<>());
+        }
+    }
+
+    void memoryHit() {
+        memoryHits.increment();
+    }
+
+    void memoryMiss() {
+        memoryMisses.increment();
+    }
+
+    void diskHit() {
+        diskHits.increment();
+    }
+
+    void diskMiss() {
+        diskMisses.increment();
+    }
+
+    void bytesWritten(long bytes) {
+        bytesWritten.add(bytes);
+    }
+
+    void eviction() {
+        evictions.increment();
+    }
+
+    /**
+     * Starts measuring an operation, which is recorded when the returned timer is stopped.
+     *
+     * @param operation the operation
+     * @param type      the object performing the operation, whose fully qualified class name is used as histogram key,
+     *                  so that anonymous classes and classes of the same name in different packages are
+     *                  recorded separately
+     * @param hash      the hash of the image definition, reported to Flight Recorder
+     * @return the timer
+     */
+    Timer start(Operation operation, Object type, String hash) {
+        final String typeName = type.getClass().getName();
+        return new Timer(histograms.get(operation).computeIfAbsent(typeName, key -> new Histogram()),
+                JFR_AVAILABLE ? JfrSupport.begin(operation, typeName, hash) : null);
+    }
+
+    /**
+     * Returns a snapshot of the current statistics.
+     *
+     * @param inFlight the number of in-flight computations
+     * @return the snapshot
+     */
+    ImageManagerStatistics snapshot(int inFlight) {
+        return new ImageManagerStatistics(memoryHits.sum(), memoryMisses.sum(), diskHits.sum(), diskMisses.sum(),
+                bytesWritten.sum(), evictions.sum(), inFlight,
+                snapshot(Operation.DECODE), snapshot(Operation.TRANSFORM), snapshot(Operation.ENCODE));
+    }
+
+    private Map<String, ImageManagerStatistics.LatencyHistogram> snapshot(Operation operation) {
+        final Map<String, ImageManagerStatistics.LatencyHistogram> result = new HashMap<>();
+        histograms.get(operation).forEach((type, histogram) -> result.put(type, histogram.snapshot()));
+        return result;
+    }
+
+    /**
+     * Returns the exclusive upper bound of the latencies counted in the given bucket.
+     *
+     * @param bucket the bucket index
+     * @return the upper bound in nanoseconds
+     */
+    static long getBucketUpperBound(int bucket) {
+        return (1L << bucket) * 1_000;
+    }
+
+    private static int getBucket(long nanos) {
+        return Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(nanos / 1_000));
+    }
+
+    /**
+     * A running measurement.
+     */
+    static final class Timer {
+        private final Histogram histogram;
+        private final Object event;
+        private final long start = System.nanoTime();
+
+        private Timer(Histogram histogram, Object event) {
+            this.histogram = histogram;
+            this.event = event;
+        }
+
+        /**
+         * Records the time elapsed since the timer has been started.
+         */
+        void stop() {
+            histogram.record(System.nanoTime() - start);
+            if (event != null) {
+                JfrSupport.commit(event);
+            }
+        }
+    }
+
+    private static final class Histogram {
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        private void record(long nanos) {
+            buckets.incrementAndGet(getBucket(nanos));
+            count.increment();
+            totalNanos.add(nanos);
+            maxNanos.accumulateAndGet(nanos, Math::max);
+        }
+
+        private ImageManagerStatistics.LatencyHistogram snapshot() {
+            final long[] counts = new long[BUCKETS];
+            long total = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                counts[i] = buckets.get(i);
+                total += counts[i];
+            }
+            // the bucket counts are taken as count, so that percentiles are consistent with them
+            return new ImageManagerStatistics.LatencyHistogram(total, totalNanos.sum(), maxNanos.get(), counts);
+        }
+    }
+
+    /**
+     * Isolates the references to Flight Recorder, so that they are only resolved if it is available.
+     */
+    private static final class JfrSupport {
+
+        private static Object begin(Operation operation, String type, String hash) {
+            final ImageOperationEvent event = new ImageOperationEvent();
+            if (!event.isEnabled()) {
+                return null;
+            }
+            event.operation = operation.name().toLowerCase();
+            event.type = type;
+            event.hash = hash;
+            event.begin();
+            return event;
+        }
+
+        private static void commit(Object event) {
+            ((ImageOperationEvent) event).commit();
+        }
+    }
+}
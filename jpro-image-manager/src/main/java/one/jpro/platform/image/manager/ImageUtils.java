@@ -1,7 +1,15 @@
 package one.jpro.platform.image.manager;
 
+import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 
 /**
  * This class provides utility methods for various image operations.
@@ -10,6 +18,8 @@ import java.security.MessageDigest;
  */
 public class ImageUtils {
 
+    private static final int HASH_BUFFER_SIZE = 64 * 1_024;
+
     /**
      * Computes the MD5 hash of the given data and returns the first 8 bytes
      * of the hash as a long value.
@@ -30,6 +40,49 @@ public class ImageUtils {
         }
     }
 
+    /**
+     * Computes the MD5 hash of the content of the given file and returns the first 8 bytes
+     * of the hash as a long value. The file is read in chunks through a bounded buffer,
+     * so it is never fully loaded into memory. The result is the same as the one of
+     * {@link #computeHashValue(byte[])} applied to the content of the file.
+     *
+     * @param file The file for which the hash needs to be computed.
+     * @return The first 8 bytes of the MD5 hash as a long value.
+     * @throws IOException if an I/O error occurs while reading the file.
+     */
+    public static long computeHashValue(Path file) throws IOException {
+        final MessageDigest md;
+        try {
+            md = MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new RuntimeException("Error computing hash value", ex);
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final ByteBuffer buffer = ByteBuffer.allocate(HASH_BUFFER_SIZE);
+            while (channel.read(buffer) != -1) {
+                buffer.flip();
+                md.update(buffer);
+                buffer.clear();
+            }
+        }
+        return ByteBuffer.wrap(md.digest(), 0, 8).getLong();
+    }
+
+    /**
+     * Moves the source file to the target, replacing it atomically where the file system supports it.
+     *
+     * @param source The file to move.
+     * @param target The file to replace.
+     * @throws IOException if an I/O error occurs while moving the file.
+     */
+    public static void moveAtomically(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException ex) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
     /**
      * Escapes certain special characters in a JSON string to ensure it's valid.
      * Specifically, it escapes backslashes and double quotes.
@@ -40,4 +93,23 @@ public class ImageUtils {
     public static String escapeJson(String str) {
         return str.replace("\\", "\\\\").replace("\"", "\\\"");
     }
+
+    /**
+     * Reverses {@link #escapeJson(String)}.
+     *
+     * @param str The escaped string.
+     * @return The string with escaped backslashes and double quotes restored.
+     */
+    public static String unescapeJson(String str) {
+        final StringBuilder result = new StringBuilder(str.length());
+        for (int i = 0; i < str.length(); i++) {
+            final char c = str.charAt(i);
+            if (c == '\\' && i + 1 < str.length()) {
+                result.append(str.charAt(++i));
+            } else {
+                result.append(c);
+            }
+        }
+        return result.toString();
+    }
 }
@@ -0,0 +1,55 @@
+package one.jpro.platform.image.manager;
+
+import one.jpro.platform.image.manager.encoder.ImageEncoder;
+import one.jpro.platform.image.manager.transformer.ImageTransformer;
+
+import java.util.Objects;
+
+/**
+ * Describes one variant of an image, such as a resolution for a specific device pixel ratio
+ * or breakpoint, as a pair of transformer and encoder applied to a common image source.
+ *
+ * @author Florian Kirmaier
+ * @see ImageManager#loadImageVariants(one.jpro.platform.image.manager.source.ImageSource, java.util.List)
+ */
+public class ImageVariant {
+
+    /**
+     * The transformer responsible for applying transformations to the image.
+     */
+    private final ImageTransformer transformer;
+
+    /**
+     * The encoder that defines how the image should be encoded.
+     */
+    private final ImageEncoder encoder;
+
+    /**
+     * Constructs a new instance of ImageVariant.
+     *
+     * @param transformer The transformer for the image.
+     * @param encoder     The encoder for the image.
+     */
+    public ImageVariant(ImageTransformer transformer, ImageEncoder encoder) {
+        this.transformer = Objects.requireNonNull(transformer, "Transformer cannot be null");
+        this.encoder = Objects.requireNonNull(encoder, "Encoder cannot be null");
+    }
+
+    /**
+     * Returns the image transformer of this variant.
+     *
+     * @return The {@link ImageTransformer} instance.
+     */
+    public ImageTransformer getTransformer() {
+        return transformer;
+    }
+
+    /**
+     * Returns the image encoder of this variant.
+     *
+     * @return The {@link ImageEncoder} instance.
+     */
+    public ImageEncoder getEncoder() {
+        return encoder;
+    }
+}
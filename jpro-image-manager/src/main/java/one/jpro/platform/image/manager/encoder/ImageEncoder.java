@@ -4,6 +4,11 @@ import one.jpro.platform.image.manager.JsonConvertible;
 
 import java.awt.image.BufferedImage;
 import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
 
 /**
  * Interface for encoding and saving images.
@@ -23,10 +28,50 @@ public interface ImageEncoder extends JsonConvertible {
      */
     void saveImage(BufferedImage image, File target);
 
+    /**
+     * Encodes a {@link BufferedImage} to the given {@link OutputStream}. The stream is not closed.
+     * The default implementation saves the image to a temporary file and copies it to the stream,
+     * encoders should override it to write to the stream directly.
+     *
+     * @param image  the image to be encoded
+     * @param output the stream to write the encoded image to
+     * @throws ImageEncoderException if the image cannot be encoded
+     */
+    default void encode(BufferedImage image, OutputStream output) {
+        try {
+            final File tempFile = File.createTempFile("image-encoder", "." + getFileExtension());
+            try {
+                saveImage(image, tempFile);
+                Files.copy(tempFile.toPath(), output);
+            } finally {
+                Files.deleteIfExists(tempFile.toPath());
+            }
+        } catch (IOException ex) {
+            throw new ImageEncoderException("Error while encoding the image.", ex);
+        }
+    }
+
+    /**
+     * Encodes a {@link BufferedImage} to the given {@link WritableByteChannel}. The channel is not closed.
+     *
+     * @param image   the image to be encoded
+     * @param channel the channel to write the encoded image to
+     * @throws ImageEncoderException if the image cannot be encoded
+     */
+    default void encode(BufferedImage image, WritableByteChannel channel) {
+        final OutputStream output = Channels.newOutputStream(channel);
+        encode(image, output);
+        try {
+            output.flush();
+        } catch (IOException ex) {
+            throw new ImageEncoderException("Error while encoding the image.", ex);
+        }
+    }
+
     /**
      * Returns the file extension of the encoded image.
      *
      * @return The file extension as a string.
      */
     String getFileExtension();
-}
\ No newline at end of file
+}
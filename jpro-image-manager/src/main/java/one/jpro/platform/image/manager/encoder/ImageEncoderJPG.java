@@ -4,10 +4,21 @@ import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.imageio.IIOImage;
 import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+import java.awt.*;
 import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.Iterator;
+import java.util.Objects;
 
 /**
  * An implementation of ImageEncoder for encoding images in JPG format.
@@ -21,6 +32,7 @@ public class ImageEncoderJPG implements ImageEncoder {
     private static final Logger logger = LoggerFactory.getLogger(ImageEncoderJPG.class);
 
     private final double quality;
+    private final boolean progressive;
 
     /**
      * Default constructor. Initializes with a default quality of 0.80.
@@ -36,15 +48,27 @@ public class ImageEncoderJPG implements ImageEncoder {
      * @throws IllegalArgumentException If the provided quality is not between 0.0 and 1.0.
      */
     public ImageEncoderJPG(double quality) {
+        this(quality, false);
+    }
+
+    /**
+     * Constructor with specified quality and progressive mode. Progressive JPEGs are usually
+     * slightly smaller and are displayed in increasing detail while they are loaded.
+     *
+     * @param quality     The quality factor for encoding, a value between 0.0 and 1.0.
+     * @param progressive Whether the image is encoded as progressive JPEG.
+     * @throws IllegalArgumentException If the provided quality is not between 0.0 and 1.0.
+     */
+    public ImageEncoderJPG(double quality, boolean progressive) {
         if (quality < 0.0 || quality > 1.0) {
             throw new IllegalArgumentException("Quality should be between 0.0 and 1.0");
         }
         this.quality = quality;
+        this.progressive = progressive;
     }
 
     /**
      * Save the provided image to the specified file in JPG format.
-     * Note: The current implementation doesn't consider the quality settings due to Java's ImageIO limitations.
      *
      * @param image  The image to be saved.
      * @param target The target file where the image will be saved.
@@ -53,26 +77,64 @@ public class ImageEncoderJPG implements ImageEncoder {
     @Override
     public void saveImage(BufferedImage image, File target) {
         final String fileExtensionUpperCase = getFileExtension().toUpperCase();
-        try {
-            // Java's ImageIO doesn't support JPG quality settings, so we would need another method
-            // For simplicity, we'll just save it without specifying quality
-            final File parentFile = target.getParentFile();
-            if (parentFile != null && !parentFile.exists()) {
-                if (parentFile.mkdirs()) {
-                    logger.info("Created directory: {}", parentFile.getAbsolutePath());
-                } else {
-                    throw new ImageEncoderException("Failed to create directory: " + parentFile.getAbsolutePath());
-                }
-            }
-            boolean result = ImageIO.write(image, fileExtensionUpperCase, target);
-            if (!result) {
-                throw new ImageEncoderException("The given " + fileExtensionUpperCase + " format is not supported.");
+        final File parentFile = target.getParentFile();
+        if (parentFile != null && !parentFile.exists()) {
+            if (parentFile.mkdirs()) {
+                logger.info("Created directory: {}", parentFile.getAbsolutePath());
+            } else {
+                throw new ImageEncoderException("Failed to create directory: " + parentFile.getAbsolutePath());
             }
+        }
+        try (OutputStream output = new BufferedOutputStream(Files.newOutputStream(target.toPath()))) {
+            encode(image, output);
         } catch (IOException ex) {
             throw new ImageEncoderException("Error while saving the image to " + fileExtensionUpperCase + " format.", ex);
         }
     }
 
+    /**
+     * Encodes the provided image in JPG format to the given stream, honouring the quality
+     * and progressive mode of this encoder. Images with an alpha channel are composed onto
+     * a white background, since JPG does not support transparency.
+     *
+     * @param image  The image to be encoded.
+     * @param output The stream to write the encoded image to.
+     * @throws ImageEncoderException If there's an error while encoding the image.
+     */
+    @Override
+    public void encode(BufferedImage image, OutputStream output) {
+        final String fileExtensionUpperCase = getFileExtension().toUpperCase();
+        final Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName(fileExtensionUpperCase);
+        if (!writers.hasNext()) {
+            throw new ImageEncoderException("The given " + fileExtensionUpperCase + " format is not supported.");
+        }
+        final ImageWriter writer = writers.next();
+        try (ImageOutputStream imageOutput = new MemoryCacheImageOutputStream(output)) {
+            final ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality((float) quality);
+            param.setProgressiveMode(progressive ? ImageWriteParam.MODE_DEFAULT : ImageWriteParam.MODE_DISABLED);
+            writer.setOutput(imageOutput);
+            writer.write(null, new IIOImage(removeAlpha(image), null, null), param);
+        } catch (IOException ex) {
+            throw new ImageEncoderException("Error while saving the image to " + fileExtensionUpperCase + " format.", ex);
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    private static BufferedImage removeAlpha(BufferedImage image) {
+        if (!image.getColorModel().hasAlpha()) {
+            return image;
+        }
+        final BufferedImage opaqueImage = new BufferedImage(image.getWidth(), image.getHeight(),
+                BufferedImage.TYPE_INT_RGB);
+        final Graphics2D g2d = opaqueImage.createGraphics();
+        g2d.drawImage(image, 0, 0, Color.WHITE, null);
+        g2d.dispose();
+        return opaqueImage;
+    }
+
     /**
      * Gets the file extension for this encoder, which is "jpg".
      *
@@ -88,7 +150,28 @@ public class ImageEncoderJPG implements ImageEncoder {
         JSONObject json = new JSONObject();
         json.put("type", getClass().getSimpleName());
         json.put("quality", quality);
+        if (progressive) {
+            json.put("progressive", true);
+        }
         json.put("fileExtension", getFileExtension());
         return json;
     }
-}
\ No newline at end of file
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null || getClass() != obj.getClass()) {
+            return false;
+        }
+        final ImageEncoderJPG other = (ImageEncoderJPG) obj;
+        return Double.compare(quality, other.quality) == 0
+                && progressive == other.progressive;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(quality, progressive);
+    }
+}
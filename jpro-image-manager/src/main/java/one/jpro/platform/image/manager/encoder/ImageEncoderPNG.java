@@ -4,10 +4,21 @@ import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.imageio.IIOImage;
 import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
 import java.awt.image.BufferedImage;
+import java.awt.image.IndexColorModel;
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.Iterator;
+import java.util.Objects;
 
 /**
  * An implementation of the ImageEncoder interface for PNG image format.
@@ -20,6 +31,75 @@ public class ImageEncoderPNG implements ImageEncoder {
 
     private static final Logger logger = LoggerFactory.getLogger(ImageEncoderPNG.class);
 
+    /**
+     * The deflate compression level used by default, the same as the one of the {@code ImageIO} PNG writer.
+     */
+    public static final int DEFAULT_COMPRESSION_LEVEL = 4;
+
+    /**
+     * The scanline filters of the PNG format. Filtering makes the image data more compressible.
+     */
+    public enum Filter {
+
+        /**
+         * Stores the rows unfiltered, usually the best choice for images with few colors.
+         */
+        NONE,
+
+        /**
+         * Predicts each byte from the pixel on the left.
+         */
+        SUB,
+
+        /**
+         * Predicts each byte from the pixel above.
+         */
+        UP,
+
+        /**
+         * Predicts each byte from the average of the pixels on the left and above.
+         */
+        AVERAGE,
+
+        /**
+         * Predicts each byte with the Paeth predictor, usually the best choice for photos.
+         */
+        PAETH,
+
+        /**
+         * Chooses the filter for each row heuristically, as done by the {@code ImageIO} PNG writer.
+         */
+        ADAPTIVE
+    }
+
+    private final int compressionLevel;
+    private final Filter filter;
+
+    /**
+     * Default constructor. Initializes with the default compression level and adaptive filtering.
+     */
+    public ImageEncoderPNG() {
+        this(DEFAULT_COMPRESSION_LEVEL, Filter.ADAPTIVE);
+    }
+
+    /**
+     * Constructor with specified compression level and filter.
+     *
+     * @param compressionLevel The deflate compression level, from 0 (fastest) to 9 (smallest).
+     * @param filter           The scanline filter applied to the image rows.
+     * @throws IllegalArgumentException If the compression level is not between 0 and 9 or the filter is null.
+     */
+    public ImageEncoderPNG(int compressionLevel, Filter filter) {
+        if (compressionLevel < 0 || compressionLevel > 9) {
+            throw new IllegalArgumentException("Compression level should be between 0 and 9");
+        }
+        if (filter == null) {
+            throw new IllegalArgumentException("Filter cannot be null");
+        }
+        this.compressionLevel = compressionLevel;
+        this.filter = filter;
+    }
+
     /**
      * Saves the provided BufferedImage to a specified target file in PNG format.
      *
@@ -31,24 +111,65 @@ public class ImageEncoderPNG implements ImageEncoder {
     @Override
     public void saveImage(BufferedImage image, File target) {
         final String fileExtensionUpperCase = getFileExtension().toUpperCase();
-        try {
-            final File parentFile = target.getParentFile();
-            if (parentFile != null && !parentFile.exists()) {
-                if (parentFile.mkdirs()) {
-                    logger.info("Created directory: {}", parentFile.getAbsolutePath());
-                } else {
-                    throw new ImageEncoderException("Failed to create directory: " + parentFile.getAbsolutePath());
-                }
+        final File parentFile = target.getParentFile();
+        if (parentFile != null && !parentFile.exists()) {
+            if (parentFile.mkdirs()) {
+                logger.info("Created directory: {}", parentFile.getAbsolutePath());
+            } else {
+                throw new ImageEncoderException("Failed to create directory: " + parentFile.getAbsolutePath());
             }
-            boolean result = ImageIO.write(image, fileExtensionUpperCase, target);
-            if (!result) {
-                throw new ImageEncoderException("The given " + fileExtensionUpperCase + " format is not supported.");
+        }
+        try (OutputStream output = new BufferedOutputStream(Files.newOutputStream(target.toPath()))) {
+            encode(image, output);
+        } catch (IOException ex) {
+            throw new ImageEncoderException("Error while saving the image to " + fileExtensionUpperCase + " format.", ex);
+        }
+    }
+
+    /**
+     * Encodes the provided image in PNG format to the given stream, using the compression level
+     * and filter of this encoder. Images with an indexed color model are always written with the
+     * {@code ImageIO} PNG writer and adaptive filtering, to keep their palette.
+     *
+     * @param image  The BufferedImage to be encoded.
+     * @param output The stream to write the encoded image to.
+     * @throws ImageEncoderException If there's an error while encoding the image.
+     */
+    @Override
+    public void encode(BufferedImage image, OutputStream output) {
+        final String fileExtensionUpperCase = getFileExtension().toUpperCase();
+        try {
+            if (filter != Filter.ADAPTIVE && !(image.getColorModel() instanceof IndexColorModel)) {
+                PngWriter.write(image, output, compressionLevel, filter.ordinal());
+            } else {
+                encodeWithImageIO(image, output);
             }
         } catch (IOException ex) {
             throw new ImageEncoderException("Error while saving the image to " + fileExtensionUpperCase + " format.", ex);
         }
     }
 
+    private void encodeWithImageIO(BufferedImage image, OutputStream output) throws IOException {
+        final String fileExtensionUpperCase = getFileExtension().toUpperCase();
+        final Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName(fileExtensionUpperCase);
+        if (!writers.hasNext()) {
+            throw new ImageEncoderException("The given " + fileExtensionUpperCase + " format is not supported.");
+        }
+        final ImageWriter writer = writers.next();
+        try (ImageOutputStream imageOutput = new MemoryCacheImageOutputStream(output)) {
+            final ImageWriteParam param = writer.getDefaultWriteParam();
+            if (param.canWriteCompressed()) {
+                // the ImageIO PNG writer derives the deflate level as (int) ((1 - quality) * 9)
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                param.setCompressionQuality(Math.max(0.0f, 1.0f - (compressionLevel + 0.5f) / 9.0f));
+            }
+            writer.setOutput(imageOutput);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+    }
+
     /**
      * Gets the file extension for this encoder, which is "png".
      *
@@ -63,7 +184,31 @@ public class ImageEncoderPNG implements ImageEncoder {
     public JSONObject toJSON() {
         JSONObject json = new JSONObject();
         json.put("type", getClass().getSimpleName());
+        if (compressionLevel != DEFAULT_COMPRESSION_LEVEL) {
+            json.put("compressionLevel", compressionLevel);
+        }
+        if (filter != Filter.ADAPTIVE) {
+            json.put("filter", filter.name());
+        }
         json.put("fileExtension", getFileExtension());
         return json;
     }
-}
\ No newline at end of file
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null || getClass() != obj.getClass()) {
+            return false;
+        }
+        final ImageEncoderPNG other = (ImageEncoderPNG) obj;
+        return compressionLevel == other.compressionLevel
+                && filter == other.filter;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(compressionLevel, filter);
+    }
+}
@@ -0,0 +1,190 @@
+package one.jpro.platform.image.manager.encoder;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * A minimal PNG writer for 8-bit grayscale, RGB and RGBA images, that applies one fixed
+ * scanline filter type to every row and streams the compressed data in IDAT chunks.
+ * It is used for the filter types the {@code ImageIO} PNG writer does not allow to choose.
+ *
+ * @author Florian Kirmaier
+ */
+final class PngWriter {
+
+    private static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+    private static final int IDAT_CHUNK_SIZE = 32 * 1_024;
+
+    private static final int COLOR_TYPE_GRAY = 0;
+    private static final int COLOR_TYPE_RGB = 2;
+    private static final int COLOR_TYPE_RGBA = 6;
+
+    // Private constructor to prevent instantiation
+    private PngWriter() {
+    }
+
+    /**
+     * Writes the given image in PNG format to the given stream, which is not closed.
+     *
+     * @param image            the image to write
+     * @param output           the stream to write to
+     * @param compressionLevel the deflate compression level, from 0 to 9
+     * @param filterType       the PNG filter type applied to every row, from 0 (none) to 4 (Paeth)
+     * @throws IOException if an I/O error occurs
+     */
+    static void write(BufferedImage image, OutputStream output, int compressionLevel, int filterType)
+            throws IOException {
+        final int width = image.getWidth();
+        final int height = image.getHeight();
+        final boolean gray = image.getType() == BufferedImage.TYPE_BYTE_GRAY;
+        final boolean alpha = !gray && image.getColorModel().hasAlpha();
+        final int bytesPerPixel = gray ? 1 : alpha ? 4 : 3;
+        final int rowLength = width * bytesPerPixel;
+
+        final DataOutputStream out = new DataOutputStream(output);
+        out.write(SIGNATURE);
+
+        final ByteArrayOutputStream header = new ByteArrayOutputStream(13);
+        final DataOutputStream headerData = new DataOutputStream(header);
+        headerData.writeInt(width);
+        headerData.writeInt(height);
+        headerData.writeByte(8);
+        headerData.writeByte(gray ? COLOR_TYPE_GRAY : alpha ? COLOR_TYPE_RGBA : COLOR_TYPE_RGB);
+        headerData.writeByte(0); // deflate compression
+        headerData.writeByte(0); // adaptive filtering method
+        headerData.writeByte(0); // no interlace
+        writeChunk(out, "IHDR", header.toByteArray(), header.size());
+
+        final Deflater deflater = new Deflater(compressionLevel);
+        try {
+            final IdatOutputStream idat = new IdatOutputStream(out);
+            final DeflaterOutputStream compressed = new DeflaterOutputStream(idat, deflater, IDAT_CHUNK_SIZE);
+            final int[] pixels = new int[width];
+            byte[] previous = new byte[rowLength];
+            byte[] current = new byte[rowLength];
+            final byte[] filtered = new byte[rowLength];
+            for (int y = 0; y < height; y++) {
+                if (gray) {
+                    image.getRaster().getSamples(0, y, width, 1, 0, pixels);
+                    for (int x = 0; x < width; x++) {
+                        current[x] = (byte) pixels[x];
+                    }
+                } else {
+                    image.getRGB(0, y, width, 1, pixels, 0, width);
+                    for (int x = 0, i = 0; x < width; x++) {
+                        final int argb = pixels[x];
+                        current[i++] = (byte) (argb >> 16);
+                        current[i++] = (byte) (argb >> 8);
+                        current[i++] = (byte) argb;
+                        if (alpha) {
+                            current[i++] = (byte) (argb >>> 24);
+                        }
+                    }
+                }
+                filter(filterType, current, previous, filtered, bytesPerPixel);
+                compressed.write(filterType);
+                compressed.write(filtered, 0, rowLength);
+
+                final byte[] swap = previous;
+                previous = current;
+                current = swap;
+            }
+            compressed.finish();
+            idat.flushChunk();
+        } finally {
+            deflater.end();
+        }
+
+        writeChunk(out, "IEND", new byte[0], 0);
+        out.flush();
+    }
+
+    private static void filter(int filterType, byte[] row, byte[] previous, byte[] result, int bytesPerPixel) {
+        for (int i = 0; i < row.length; i++) {
+            final int x = row[i] & 0xFF;
+            final int a = i >= bytesPerPixel ? row[i - bytesPerPixel] & 0xFF : 0;
+            final int b = previous[i] & 0xFF;
+            final int c = i >= bytesPerPixel ? previous[i - bytesPerPixel] & 0xFF : 0;
+            final int predictor = switch (filterType) {
+                case 0 -> 0;
+                case 1 -> a;
+                case 2 -> b;
+                case 3 -> (a + b) >>> 1;
+                case 4 -> paeth(a, b, c);
+                default -> throw new IllegalArgumentException("Unknown PNG filter type: " + filterType);
+            };
+            result[i] = (byte) (x - predictor);
+        }
+    }
+
+    private static int paeth(int a, int b, int c) {
+        final int p = a + b - c;
+        final int pa = Math.abs(p - a);
+        final int pb = Math.abs(p - b);
+        final int pc = Math.abs(p - c);
+        if (pa <= pb && pa <= pc) {
+            return a;
+        }
+        return pb <= pc ? b : c;
+    }
+
+    private static void writeChunk(DataOutputStream out, String type, byte[] data, int length) throws IOException {
+        final byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+        final CRC32 crc = new CRC32();
+        crc.update(typeBytes);
+        crc.update(data, 0, length);
+        out.writeInt(length);
+        out.write(typeBytes);
+        out.write(data, 0, length);
+        out.writeInt((int) crc.getValue());
+    }
+
+    /**
+     * Collects the compressed image data and writes it as a sequence of IDAT chunks.
+     */
+    private static final class IdatOutputStream extends OutputStream {
+        private final DataOutputStream out;
+        private final byte[] buffer = new byte[IDAT_CHUNK_SIZE];
+        private int count;
+
+        private IdatOutputStream(DataOutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (count == buffer.length) {
+                flushChunk();
+            }
+            buffer[count++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            while (length > 0) {
+                if (count == buffer.length) {
+                    flushChunk();
+                }
+                final int chunk = Math.min(length, buffer.length - count);
+                System.arraycopy(bytes, offset, buffer, count, chunk);
+                count += chunk;
+                offset += chunk;
+                length -= chunk;
+            }
+        }
+
+        private void flushChunk() throws IOException {
+            if (count > 0) {
+                writeChunk(out, "IDAT", buffer, count);
+                count = 0;
+            }
+        }
+    }
+}
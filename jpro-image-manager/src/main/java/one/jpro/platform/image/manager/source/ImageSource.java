@@ -1,6 +1,7 @@
 package one.jpro.platform.image.manager.source;
 
 import one.jpro.platform.image.manager.JsonConvertible;
+import one.jpro.platform.image.manager.transformer.ImageTransformer;
 
 import java.awt.image.BufferedImage;
 
@@ -19,6 +20,19 @@ public interface ImageSource extends JsonConvertible {
      */
     BufferedImage loadImage();
 
+    /**
+     * Loads an image that will be transformed by the given transformer. Sources may use the
+     * {@link ImageTransformer#getTargetSize(int, int) target size} of the transformer to decode
+     * a reduced version of the image, that is still large enough for the transformation.
+     * The default implementation loads the image at its full resolution.
+     *
+     * @param transformer The transformer that will be applied to the loaded image.
+     * @return The loaded image as a BufferedImage object.
+     */
+    default BufferedImage loadImage(ImageTransformer transformer) {
+        return loadImage();
+    }
+
     /**
      * Returns the identity hash code associated with this image source.
      *
@@ -26,6 +40,29 @@ public interface ImageSource extends JsonConvertible {
      */
     long identityHashValue();
 
+    /**
+     * Resolves everything the {@link #toJSON() JSON representation} depends on, performing I/O if needed,
+     * for example to fetch a remote image whose version is not known yet. The image manager calls this
+     * method before it computes the hash of an image definition, so the JSON representation itself can
+     * stay free of I/O. The default implementation does nothing.
+     */
+    default void prepare() {
+    }
+
+    /**
+     * Returns a key identifying the image this source currently provides, if it can be obtained
+     * without any I/O and without building the {@link #toJSON() JSON representation}, for example
+     * because the source cannot change while the application is running. Sources with equal keys
+     * must have equal JSON representations. The image manager uses the key to look up images in
+     * its memory cache. The default implementation returns {@code null}, so the JSON representation
+     * is used instead.
+     *
+     * @return the key, or {@code null} if this source has no cheap identity
+     */
+    default Object getMemoryKey() {
+        return null;
+    }
+
     /**
      * Returns the file name associated with this image source.
      *
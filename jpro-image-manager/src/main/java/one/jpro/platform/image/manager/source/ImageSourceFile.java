@@ -1,13 +1,21 @@
 package one.jpro.platform.image.manager.source;
 
 import one.jpro.platform.image.manager.ImageUtils;
+import one.jpro.platform.image.manager.transformer.ImageTransformer;
 import org.json.JSONObject;
 
 import java.awt.image.BufferedImage;
+import javax.imageio.IIOException;
 import javax.imageio.ImageIO;
+import javax.imageio.stream.ImageInputStream;
 import java.io.File;
 import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
 import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
 
 /**
  * Represents an image source based on a file.
@@ -20,6 +28,32 @@ import java.io.IOException;
  */
 public class ImageSourceFile implements ImageSource {
 
+    private static final int MAX_CACHED_HASH_VALUES = 1024;
+
+    /**
+     * The identity hash values computed so far, keyed by absolute path. An entry is only used as long as
+     * the size, modification time and file key of the file are unchanged, so the content of a file is
+     * hashed again only after it changed.
+     */
+    private static final Map<String, FileHashValue> hashValues = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, FileHashValue> eldest) {
+            return size() > MAX_CACHED_HASH_VALUES;
+        }
+    };
+
+    /**
+     * The identity hash value of a file, along with the attributes it was computed for.
+     */
+    private record FileHashValue(long size, FileTime modified, Object fileKey, long hashValue) {
+
+        private boolean matches(BasicFileAttributes attributes) {
+            return size == attributes.size()
+                    && modified.equals(attributes.lastModifiedTime())
+                    && Objects.equals(fileKey, attributes.fileKey());
+        }
+    }
+
     private final File file;
 
     /**
@@ -42,18 +76,53 @@ public class ImageSourceFile implements ImageSource {
 
     @Override
     public BufferedImage loadImage() {
+        return loadImage(null);
+    }
+
+    @Override
+    public BufferedImage loadImage(ImageTransformer transformer) {
         try {
-            return ImageIO.read(file);
+            if (!file.canRead()) {
+                throw new IIOException("Can't read input file!");
+            }
+            try (ImageInputStream input = ImageIO.createImageInputStream(file)) {
+                return ImageSourceHelpers.readImage(input, transformer);
+            }
         } catch (IOException ex) {
             throw new ImageSourceException("Failed to load image from file: " + file.getAbsolutePath(), ex);
         }
     }
 
+    /**
+     * Returns the MD5 based hash value of the file content. The value is remembered along with the size
+     * and the modification time of the file, and is only computed again once either of them changes.
+     * The content is hashed in chunks, so large files are never fully loaded into memory.
+     *
+     * @return The identity hash value of the file.
+     * @throws ImageSourceException if the file cannot be read.
+     */
     @Override
     public long identityHashValue() {
         try {
-            byte[] fileBytes = Files.readAllBytes(file.toPath());
-            return ImageUtils.computeHashValue(fileBytes);
+            final String path = file.getAbsolutePath();
+            final BasicFileAttributes attributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+            synchronized (hashValues) {
+                final FileHashValue cachedHashValue = hashValues.get(path);
+                if (cachedHashValue != null && cachedHashValue.matches(attributes)) {
+                    return cachedHashValue.hashValue();
+                }
+            }
+            final long hashValue = ImageUtils.computeHashValue(file.toPath());
+            // the attributes are checked again, so a file modified while hashing is not remembered
+            final BasicFileAttributes attributesAfter = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+            final FileHashValue fileHashValue = new FileHashValue(attributes.size(),
+                    attributes.lastModifiedTime(), attributes.fileKey(), hashValue);
+            if (fileHashValue.matches(attributesAfter)) {
+                synchronized (hashValues) {
+                    hashValues.put(path, fileHashValue);
+                }
+            }
+            return hashValue;
         } catch (IOException ex) {
             throw new ImageSourceException("Failed to compute hash value for the file: " + file.getAbsolutePath(), ex);
         }
@@ -0,0 +1,75 @@
+package one.jpro.platform.image.manager.source;
+
+import one.jpro.platform.image.manager.transformer.ImageTransformer;
+
+import javax.imageio.IIOException;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.Iterator;
+
+/**
+ * Provides helper methods for decoding images in image sources.
+ *
+ * @author Florian Kirmaier
+ */
+public class ImageSourceHelpers {
+
+    /**
+     * Decodes the image from the given stream. If a transformer is given, the image is decoded
+     * with source subsampling, so that large originals are never fully materialized when the
+     * transformer shrinks them anyway. The decoded image is kept at least twice as large as the
+     * target size of the transformer, to leave the final, filtered downscaling to the transformer.
+     *
+     * @param input       The stream to decode the image from.
+     * @param transformer The transformer that will be applied to the image, may be {@code null}.
+     * @return The decoded image, or {@code null} if no registered reader supports the image format.
+     * @throws IOException if an error occurs during decoding.
+     */
+    public static BufferedImage readImage(ImageInputStream input, ImageTransformer transformer) throws IOException {
+        if (input == null) {
+            throw new IIOException("Can't create an ImageInputStream!");
+        }
+        final Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+        if (!readers.hasNext()) {
+            return null;
+        }
+        final ImageReader reader = readers.next();
+        try {
+            reader.setInput(input, true, true);
+            final ImageReadParam param = reader.getDefaultReadParam();
+            if (transformer != null) {
+                final int width = reader.getWidth(0);
+                final int height = reader.getHeight(0);
+                final int subsampling = computeSubsampling(width, height, transformer.getTargetSize(width, height));
+                if (subsampling > 1) {
+                    param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                }
+            }
+            return reader.read(0, param);
+        } finally {
+            reader.dispose();
+        }
+    }
+
+    /**
+     * Computes the largest subsampling factor that keeps an image with the given size
+     * at least twice as large as the target size in both dimensions.
+     *
+     * @param width      The width of the original image.
+     * @param height     The height of the original image.
+     * @param targetSize The target size, may be {@code null} if unknown.
+     * @return The subsampling factor, {@code 1} if the image must be decoded at its full resolution.
+     */
+    static int computeSubsampling(int width, int height, Dimension targetSize) {
+        if (targetSize == null || targetSize.width <= 0 || targetSize.height <= 0) {
+            return 1;
+        }
+        final int factor = Math.min(width / (2 * targetSize.width), height / (2 * targetSize.height));
+        return Math.max(1, factor);
+    }
+}
@@ -1,9 +1,11 @@
 package one.jpro.platform.image.manager.source;
 
 import one.jpro.platform.image.manager.ImageUtils;
+import one.jpro.platform.image.manager.transformer.ImageTransformer;
 import org.json.JSONObject;
 
 import javax.imageio.ImageIO;
+import javax.imageio.stream.ImageInputStream;
 import java.awt.image.BufferedImage;
 import java.io.InputStream;
 import java.net.URL;
@@ -21,7 +23,10 @@ import java.nio.file.Paths;
  */
 public class ImageSourceResource implements ImageSource {
 
+    private static final Object NO_MEMORY_KEY = new Object();
+
     private final String resourcePath;
+    private volatile Object memoryKey;
 
     /**
      * Creates a new instance with the given resource path.
@@ -34,11 +39,18 @@ public class ImageSourceResource implements ImageSource {
 
     @Override
     public BufferedImage loadImage() {
+        return loadImage(null);
+    }
+
+    @Override
+    public BufferedImage loadImage(ImageTransformer transformer) {
         try (InputStream is = getClass().getResourceAsStream(resourcePath)) {
             if (is == null) {
                 throw new ImageSourceException("Resource not found: " + resourcePath);
             }
-            return ImageIO.read(is);
+            try (ImageInputStream input = ImageIO.createImageInputStream(is)) {
+                return ImageSourceHelpers.readImage(input, transformer);
+            }
         } catch (Exception e) {
             throw new ImageSourceException("Error loading resource: " + resourcePath, e);
         }
@@ -63,6 +75,28 @@ public class ImageSourceResource implements ImageSource {
         }
     }
 
+    /**
+     * Returns a key made of the resource path, if the resource is packaged in a JAR file or a module
+     * image, which cannot change while the application is running. Resources in directories, for
+     * example during development, have no key, so their modification date is checked on every load.
+     *
+     * @return the key, or {@code null} if the resource may change while the application is running
+     */
+    @Override
+    public Object getMemoryKey() {
+        Object memoryKey = this.memoryKey;
+        if (memoryKey == null) {
+            final URL resourceUrl = getClass().getResource(resourcePath);
+            final String protocol = resourceUrl == null ? null : resourceUrl.getProtocol();
+            memoryKey = "jar".equals(protocol) || "jrt".equals(protocol) ? new MemoryKey(resourcePath) : NO_MEMORY_KEY;
+            this.memoryKey = memoryKey;
+        }
+        return memoryKey == NO_MEMORY_KEY ? null : memoryKey;
+    }
+
+    private record MemoryKey(String resourcePath) {
+    }
+
     @Override
     public JSONObject toJSON() {
         JSONObject json = new JSONObject();
@@ -1,17 +1,28 @@
 package one.jpro.platform.image.manager.source;
 
 import one.jpro.platform.image.manager.ImageUtils;
+import one.jpro.platform.image.manager.transformer.ImageTransformer;
 import org.json.JSONObject;
 
 import javax.imageio.ImageIO;
+import javax.imageio.stream.ImageInputStream;
 import java.awt.image.BufferedImage;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URL;
 import java.net.URLConnection;
 
 /**
  * This class provides an implementation of the ImageSource interface
  * for an image source fetched from a given URL.
+ * <p>
+ * Images from HTTP and HTTPS URLs are fetched through a {@link RemoteImageCache}, which keeps the
+ * original bytes and revalidates them in the background with conditional requests. The version of
+ * the cached image is part of the JSON representation, so a changed remote image yields a new image
+ * definition hash, while the previously transformed images are served until the change is detected.
+ * The image is fetched by {@link #prepare()}, before the image definition hash is computed, so that the
+ * first load of an image already hashes its version. The JSON representation then reads the version
+ * the cache holds in memory on every call, so it never performs a request and follows revalidations.
  *
  * @author Florian Kirmaier
  * @author Besmir Beqiri
@@ -20,15 +31,63 @@ import java.net.URLConnection;
 public class ImageSourceURL implements ImageSource {
 
     private final URL url;
+    private final RemoteImageCache remoteImageCache;
 
+    /**
+     * Constructs an ImageSourceURL, fetching remote images through the default {@link RemoteImageCache}.
+     *
+     * @param url The URL of the image.
+     */
     public ImageSourceURL(URL url) {
+        this(url, null);
+    }
+
+    /**
+     * Constructs an ImageSourceURL, fetching remote images through the given {@link RemoteImageCache}.
+     *
+     * @param url              The URL of the image.
+     * @param remoteImageCache The cache for remote images, or {@code null} to use the default one.
+     */
+    public ImageSourceURL(URL url, RemoteImageCache remoteImageCache) {
         this.url = url;
+        this.remoteImageCache = remoteImageCache;
+    }
+
+    private RemoteImageCache getRemoteImageCache() {
+        return remoteImageCache != null ? remoteImageCache : RemoteImageCache.getDefault();
+    }
+
+    /**
+     * Returns the version of the remote image currently known to the cache.
+     *
+     * @return the version, or {@code null} if the image has not been fetched yet
+     */
+    private String getVersion() {
+        return getRemoteImageCache().getCachedVersion(url);
+    }
+
+    /**
+     * Fetches remote images that are not cached yet, so that their version is known.
+     *
+     * @throws ImageSourceException if the image cannot be fetched
+     */
+    @Override
+    public void prepare() {
+        if (RemoteImageCache.isRemote(url)) {
+            getRemoteImageCache().getVersion(url);
+        }
     }
 
     @Override
     public BufferedImage loadImage() {
-        try {
-            return ImageIO.read(url);
+        return loadImage(null);
+    }
+
+    @Override
+    public BufferedImage loadImage(ImageTransformer transformer) {
+        try (InputStream is = RemoteImageCache.isRemote(url) ? getRemoteImageCache().openStream(url) : url.openStream();
+             ImageInputStream input = ImageIO.createImageInputStream(is)) {
+            return ImageSourceHelpers.readImage(input, transformer);
         } catch (IOException ex) {
             throw new ImageSourceException("Error while reading image from URL: " + url, ex);
         }
@@ -36,6 +95,11 @@ public class ImageSourceURL implements ImageSource {
 
     @Override
     public long identityHashValue() {
+        if (RemoteImageCache.isRemote(url)) {
+            final String version = getVersion();
+            String combined = version == null ? url.toString() : url.toString() + version;
+            return ImageUtils.computeHashValue(combined.getBytes());
+        }
         try {
             // First, get the modification date.
             URLConnection connection = url.openConnection();
@@ -55,9 +119,33 @@ public class ImageSourceURL implements ImageSource {
         JSONObject json = new JSONObject();
         json.put("type", getClass().getSimpleName());
         json.put("url", ImageUtils.escapeJson(url.toString()));
+        if (RemoteImageCache.isRemote(url)) {
+            final String version = getVersion();
+            if (version != null) {
+                json.put("version", version);
+            }
+        }
         return json;
     }
 
+    /**
+     * Returns a key made of the URL and, for remote images, their version. Remote images that have not
+     * been fetched yet have no key.
+     *
+     * @return the key, or {@code null} if the version of the remote image is not known yet
+     */
+    @Override
+    public Object getMemoryKey() {
+        if (!RemoteImageCache.isRemote(url)) {
+            return new MemoryKey(url.toString(), null);
+        }
+        final String version = getVersion();
+        return version == null ? null : new MemoryKey(url.toString(), version);
+    }
+
+    private record MemoryKey(String url, String version) {
+    }
+
     @Override
     public String getFileName() {
         return url.toString().substring(url.toString().lastIndexOf('/') + 1);
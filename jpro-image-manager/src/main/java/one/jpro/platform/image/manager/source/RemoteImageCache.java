@@ -0,0 +1,518 @@
+package one.jpro.platform.image.manager.source;
+
+import one.jpro.platform.image.manager.ImageUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Caches the original bytes of remote images fetched over HTTP, together with their
+ * {@code ETag} and {@code Last-Modified} validators.
+ * <p>
+ * Every cached image has a version, derived from the hash of its content, which becomes part of
+ * the {@link ImageSourceURL#toJSON() JSON} of the source and therefore of the image definition hash.
+ * A version that is older than the maximum age is still returned immediately, while the image is
+ * revalidated in the background with a conditional GET request. When the remote image changed,
+ * the new version is returned from then on, so the transformed images get computed again. Until
+ * then, the previously transformed images keep being served from the image cache.
+ * <p>
+ * The number of concurrent requests to the same host is bounded, and concurrent fetches of the
+ * same URL are coalesced into a single request. When the cached bytes exceed the maximum size,
+ * the least recently used images are deleted in the background. Their small metadata is kept, so
+ * their version stays known, and they are fetched again when they are read the next time.
+ *
+ * @author Florian Kirmaier
+ * @see ImageSourceURL
+ */
+public final class RemoteImageCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(RemoteImageCache.class);
+
+    private static final String CACHE_DIR_NAME = "jpro.imagemanager.remoteCache";
+    private static final String CACHE_DIR_HOME = System.getProperty("user.home") + "/.jpro" + "/image-manager-remote";
+    private static final String MAX_AGE_NAME = "jpro.imagemanager.remoteMaxAge";
+    private static final String MAX_FETCHES_PER_HOST_NAME = "jpro.imagemanager.maxFetchesPerHost";
+    private static final String MAX_SIZE_NAME = "jpro.imagemanager.remoteMaxSize";
+    private static final String META_FILE_NAME = "meta";
+    private static final int TIMEOUT_MILLIS = 30_000;
+    private static final int REVALIDATION_THREADS = 4;
+
+    /**
+     * The default time after which a cached image is revalidated.
+     */
+    public static final Duration DEFAULT_MAX_AGE = Duration.ofMinutes(5);
+
+    /**
+     * The default maximum number of concurrent requests to the same host.
+     */
+    public static final int DEFAULT_MAX_FETCHES_PER_HOST = 4;
+
+    /**
+     * The default maximum number of bytes of the cached images.
+     */
+    public static final long DEFAULT_MAX_SIZE = 512L * 1_024 * 1_024;
+
+    private static volatile RemoteImageCache defaultInstance;
+
+    private final File cacheDir;
+    private final long maxAgeMillis;
+    private final int maxFetchesPerHost;
+    private final long maxSize;
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private final Set<String> metaRead = ConcurrentHashMap.newKeySet();
+    private final ConcurrentHashMap<Path, Body> bodies = new ConcurrentHashMap<>();
+    private final AtomicBoolean evictionScheduled = new AtomicBoolean();
+    private volatile boolean bodiesScanned;
+    private final ConcurrentHashMap<String, CompletableFuture<Entry>> inFlight = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Semaphore> hostPermits = new ConcurrentHashMap<>();
+    private final ExecutorService revalidationExecutor;
+
+    /**
+     * A cached remote image.
+     *
+     * @param etag         the value of the {@code ETag} response header, or {@code null}
+     * @param lastModified the value of the {@code Last-Modified} response header, or {@code null}
+     * @param fetchedAt    the time the image was last fetched or revalidated, in milliseconds
+     * @param version      the version of the image, derived from the hash of its content
+     */
+    private record Entry(String etag, String lastModified, long fetchedAt, String version) {
+
+        private Entry withFetchedAt(long fetchedAt) {
+            return new Entry(etag, lastModified, fetchedAt, version);
+        }
+    }
+
+    /**
+     * The cached bytes of a remote image.
+     */
+    private static final class Body {
+        private final long size;
+        private volatile long lastAccess;
+
+        private Body(long size, long lastAccess) {
+            this.size = size;
+            this.lastAccess = lastAccess;
+        }
+    }
+
+    /**
+     * Creates a new remote image cache, keeping at most {@link #DEFAULT_MAX_SIZE} bytes of images.
+     *
+     * @param cacheDir          the directory the remote images are stored in
+     * @param maxAge            the time after which a cached image is revalidated
+     * @param maxFetchesPerHost the maximum number of concurrent requests to the same host
+     * @throws IllegalArgumentException if the maximum age is negative or the maximum number of fetches not positive
+     */
+    public RemoteImageCache(File cacheDir, Duration maxAge, int maxFetchesPerHost) {
+        this(cacheDir, maxAge, maxFetchesPerHost, DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * Creates a new remote image cache.
+     *
+     * @param cacheDir          the directory the remote images are stored in
+     * @param maxAge            the time after which a cached image is revalidated
+     * @param maxFetchesPerHost the maximum number of concurrent requests to the same host
+     * @param maxSize           the maximum number of bytes of the cached images, the most recently
+     *                          used image is always kept
+     * @throws IllegalArgumentException if the maximum age or size is negative or the maximum number
+     *                                  of fetches not positive
+     */
+    public RemoteImageCache(File cacheDir, Duration maxAge, int maxFetchesPerHost, long maxSize) {
+        this.cacheDir = Objects.requireNonNull(cacheDir, "Cache directory cannot be null");
+        if (maxAge.isNegative()) {
+            throw new IllegalArgumentException("Maximum age must not be negative.");
+        }
+        if (maxFetchesPerHost <= 0) {
+            throw new IllegalArgumentException("Maximum number of fetches per host must be positive.");
+        }
+        if (maxSize < 0) {
+            throw new IllegalArgumentException("Maximum size must not be negative.");
+        }
+        this.maxAgeMillis = maxAge.toMillis();
+        this.maxFetchesPerHost = maxFetchesPerHost;
+        this.maxSize = maxSize;
+        final AtomicInteger threadCounter = new AtomicInteger();
+        this.revalidationExecutor = Executors.newFixedThreadPool(REVALIDATION_THREADS, run -> {
+            final Thread thread = new Thread(run, "image-remote-thread-" + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Returns the cache used by default by {@link ImageSourceURL}. Its directory, maximum age in seconds,
+     * maximum number of fetches per host and maximum size in bytes can be configured with the
+     * {@code jpro.imagemanager.remoteCache}, {@code jpro.imagemanager.remoteMaxAge},
+     * {@code jpro.imagemanager.maxFetchesPerHost} and {@code jpro.imagemanager.remoteMaxSize} system properties.
+     *
+     * @return the default remote image cache
+     */
+    public static RemoteImageCache getDefault() {
+        if (defaultInstance == null) {
+            synchronized (RemoteImageCache.class) {
+                if (defaultInstance == null) {
+                    defaultInstance = new RemoteImageCache(
+                            new File(System.getProperty(CACHE_DIR_NAME, CACHE_DIR_HOME)),
+                            Duration.ofSeconds(Long.getLong(MAX_AGE_NAME, DEFAULT_MAX_AGE.toSeconds())),
+                            Integer.getInteger(MAX_FETCHES_PER_HOST_NAME, DEFAULT_MAX_FETCHES_PER_HOST),
+                            Long.getLong(MAX_SIZE_NAME, DEFAULT_MAX_SIZE));
+                }
+            }
+        }
+        return defaultInstance;
+    }
+
+    /**
+     * Returns whether the given URL is fetched through this cache, which is the case for HTTP and HTTPS URLs.
+     *
+     * @param url the URL
+     * @return {@code true} if the URL is remote, {@code false} otherwise
+     */
+    public static boolean isRemote(URL url) {
+        final String protocol = url.getProtocol();
+        return "http".equalsIgnoreCase(protocol) || "https".equalsIgnoreCase(protocol);
+    }
+
+    /**
+     * Returns the version of the image at the given URL. If the image is not cached yet, it is fetched
+     * first. If the cached image is older than the maximum age, its current version is returned and
+     * the image is revalidated in the background.
+     *
+     * @param url the URL of the image
+     * @return the version of the image
+     * @throws ImageSourceException if the image is not cached and cannot be fetched
+     */
+    public String getVersion(URL url) {
+        final Entry entry = getEntry(url);
+        if (System.currentTimeMillis() - entry.fetchedAt() > maxAgeMillis) {
+            revalidateAsync(url);
+        }
+        return entry.version();
+    }
+
+    /**
+     * Returns the version of the image at the given URL, if it is already known, without fetching the
+     * image. Only the metadata of the cached image is read, at most once per URL. If the known version
+     * is older than the maximum age, the image is revalidated in the background.
+     *
+     * @param url the URL of the image
+     * @return the version of the image, or {@code null} if the image has not been fetched yet
+     */
+    public String getCachedVersion(URL url) {
+        final String key = computeKey(url);
+        if (!entries.containsKey(key) && metaRead.add(key)) {
+            final Entry meta = readMeta(key);
+            if (meta != null) {
+                entries.putIfAbsent(key, meta);
+            }
+        }
+        final Entry entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (System.currentTimeMillis() - entry.fetchedAt() > maxAgeMillis) {
+            revalidateAsync(url);
+        }
+        return entry.version();
+    }
+
+    /**
+     * Opens a stream to read the cached bytes of the image at the given URL,
+     * fetching the image first if it is not cached yet.
+     *
+     * @param url the URL of the image
+     * @return the input stream, which has to be closed by the caller
+     * @throws ImageSourceException if the image is not cached and cannot be fetched
+     */
+    public InputStream openStream(URL url) {
+        final String key = computeKey(url);
+        for (int attempt = 0; ; attempt++) {
+            final Entry entry = getEntry(url);
+            final Path bodyFile = getBodyFile(key, entry.version());
+            try {
+                final InputStream input = Files.newInputStream(bodyFile);
+                final Body body = bodies.get(bodyFile);
+                if (body != null) {
+                    body.lastAccess = System.currentTimeMillis();
+                }
+                return input;
+            } catch (NoSuchFileException ex) {
+                // the body has been replaced by a newer version or deleted meanwhile
+                entries.remove(key, entry);
+                if (attempt > 0) {
+                    throw new ImageSourceException("Cached image disappeared: " + url, ex);
+                }
+            } catch (IOException ex) {
+                throw new ImageSourceException("Error while reading cached image: " + url, ex);
+            }
+        }
+    }
+
+    /**
+     * Revalidates the image at the given URL in the background. If revalidation fails,
+     * the cached image keeps being used.
+     *
+     * @param url the URL of the image
+     * @return a future completed with the version of the image after revalidation
+     */
+    public CompletableFuture<String> revalidateAsync(URL url) {
+        return fetch(url, true).thenApply(Entry::version);
+    }
+
+    private Entry getEntry(URL url) {
+        final String key = computeKey(url);
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            entry = readMeta(key);
+            if (entry != null) {
+                entries.putIfAbsent(key, entry);
+            }
+        }
+        if (entry != null && Files.exists(getBodyFile(key, entry.version()))) {
+            return entry;
+        }
+        try {
+            return fetch(url, false).join();
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof ImageSourceException imageSourceException) {
+                throw imageSourceException;
+            }
+            throw new ImageSourceException("Error while fetching image from URL: " + url, ex.getCause());
+        }
+    }
+
+    /**
+     * Fetches the image, coalescing concurrent fetches of the same URL.
+     */
+    private CompletableFuture<Entry> fetch(URL url, boolean background) {
+        final String key = computeKey(url);
+        final CompletableFuture<Entry> future = new CompletableFuture<>();
+        final CompletableFuture<Entry> inFlightFuture = inFlight.putIfAbsent(key, future);
+        if (inFlightFuture != null) {
+            return inFlightFuture;
+        }
+        final Runnable task = () -> {
+            try {
+                future.complete(fetchNow(url, key));
+            } catch (IOException | RuntimeException ex) {
+                if (background) {
+                    logger.warn("Failed to revalidate image from URL: {}", url, ex);
+                }
+                future.completeExceptionally(new ImageSourceException("Error while fetching image from URL: " + url, ex));
+            } finally {
+                inFlight.remove(key, future);
+            }
+        };
+        if (background) {
+            revalidationExecutor.execute(task);
+        } else {
+            task.run();
+        }
+        return future;
+    }
+
+    /**
+     * Fetches the image, with a conditional request if it is already cached.
+     */
+    private Entry fetchNow(URL url, String key) throws IOException {
+        final Semaphore permits = hostPermits.computeIfAbsent(url.getHost(), host -> new Semaphore(maxFetchesPerHost));
+        try {
+            permits.acquire();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting to fetch " + url, ex);
+        }
+        try {
+            final Entry cached = entries.get(key);
+            final boolean conditional = cached != null && Files.exists(getBodyFile(key, cached.version()));
+            final HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+            try {
+                connection.setConnectTimeout(TIMEOUT_MILLIS);
+                connection.setReadTimeout(TIMEOUT_MILLIS);
+                if (conditional) {
+                    if (cached.etag() != null) {
+                        connection.setRequestProperty("If-None-Match", cached.etag());
+                    }
+                    if (cached.lastModified() != null) {
+                        connection.setRequestProperty("If-Modified-Since", cached.lastModified());
+                    }
+                }
+
+                final int status = connection.getResponseCode();
+                if (conditional && status == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                    final Entry entry = cached.withFetchedAt(System.currentTimeMillis());
+                    store(key, url, entry);
+                    return entry;
+                }
+                if (status != HttpURLConnection.HTTP_OK) {
+                    throw new IOException("Unexpected HTTP status " + status + " for " + url);
+                }
+
+                final Path dir = new File(cacheDir, key).toPath();
+                Files.createDirectories(dir);
+                final Path tempFile = Files.createTempFile(dir, "body", ".tmp");
+                try {
+                    try (InputStream input = connection.getInputStream();
+                         OutputStream output = Files.newOutputStream(tempFile)) {
+                        input.transferTo(output);
+                    }
+                    final String version = Long.toHexString(ImageUtils.computeHashValue(tempFile));
+                    final Entry entry = new Entry(connection.getHeaderField("ETag"),
+                            connection.getHeaderField("Last-Modified"), System.currentTimeMillis(), version);
+                    final Path bodyFile = getBodyFile(key, version);
+                    ImageUtils.moveAtomically(tempFile, bodyFile);
+                    bodies.put(bodyFile, new Body(Files.size(bodyFile), System.currentTimeMillis()));
+                    store(key, url, entry);
+                    if (cached != null && !cached.version().equals(version)) {
+                        final Path previousBodyFile = getBodyFile(key, cached.version());
+                        bodies.remove(previousBodyFile);
+                        Files.deleteIfExists(previousBodyFile);
+                    }
+                    scheduleEvictionIfNeeded();
+                    return entry;
+                } finally {
+                    Files.deleteIfExists(tempFile);
+                }
+            } finally {
+                connection.disconnect();
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    private void store(String key, URL url, Entry entry) throws IOException {
+        entries.put(key, entry);
+        final Properties meta = new Properties();
+        meta.setProperty("url", url.toString());
+        if (entry.etag() != null) {
+            meta.setProperty("etag", entry.etag());
+        }
+        if (entry.lastModified() != null) {
+            meta.setProperty("lastModified", entry.lastModified());
+        }
+        meta.setProperty("fetchedAt", Long.toString(entry.fetchedAt()));
+        meta.setProperty("version", entry.version());
+
+        final Path metaFile = new File(new File(cacheDir, key), META_FILE_NAME).toPath();
+        final Path tempFile = Files.createTempFile(metaFile.getParent(), META_FILE_NAME, ".tmp");
+        try {
+            try (Writer writer = Files.newBufferedWriter(tempFile, StandardCharsets.UTF_8)) {
+                meta.store(writer, null);
+            }
+            ImageUtils.moveAtomically(tempFile, metaFile);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    private Entry readMeta(String key) {
+        final Path metaFile = new File(new File(cacheDir, key), META_FILE_NAME).toPath();
+        if (!Files.exists(metaFile)) {
+            return null;
+        }
+        try (Reader reader = Files.newBufferedReader(metaFile, StandardCharsets.UTF_8)) {
+            final Properties meta = new Properties();
+            meta.load(reader);
+            return new Entry(meta.getProperty("etag"), meta.getProperty("lastModified"),
+                    Long.parseLong(meta.getProperty("fetchedAt")), Objects.requireNonNull(meta.getProperty("version")));
+        } catch (IOException | RuntimeException ex) {
+            logger.warn("Failed to read the metadata of the cached remote image {}", key, ex);
+            return null;
+        }
+    }
+
+    private Path getBodyFile(String key, String version) {
+        return new File(new File(cacheDir, key), version).toPath();
+    }
+
+    private static String computeKey(URL url) {
+        return Long.toHexString(ImageUtils.computeHashValue(url.toString().getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private void scheduleEvictionIfNeeded() {
+        if (evictionScheduled.compareAndSet(false, true)) {
+            revalidationExecutor.execute(() -> {
+                evictionScheduled.set(false);
+                evictIfNeeded();
+            });
+        }
+    }
+
+    /**
+     * Deletes the least recently used images until the cached bytes no longer exceed the maximum size.
+     * The most recently used image is always kept, so that an image just fetched can be read. The
+     * images cached by previous runs are collected from the cache directory the first time.
+     */
+    synchronized void evictIfNeeded() {
+        if (!bodiesScanned) {
+            scanBodies();
+            bodiesScanned = true;
+        }
+        long totalSize = 0;
+        for (Body body : bodies.values()) {
+            totalSize += body.size;
+        }
+        if (totalSize <= maxSize) {
+            return;
+        }
+        final List<Map.Entry<Path, Body>> sorted = new ArrayList<>(bodies.entrySet());
+        sorted.sort(Comparator.comparingLong(entry -> entry.getValue().lastAccess));
+        for (int i = 0; i < sorted.size() - 1 && totalSize > maxSize; i++) {
+            final Map.Entry<Path, Body> eldest = sorted.get(i);
+            try {
+                Files.deleteIfExists(eldest.getKey());
+                bodies.remove(eldest.getKey(), eldest.getValue());
+                totalSize -= eldest.getValue().size;
+            } catch (IOException ex) {
+                // e.g. the image is being read on Windows, it is deleted later
+                logger.debug("Failed to delete the cached remote image {}", eldest.getKey(), ex);
+            }
+        }
+    }
+
+    private void scanBodies() {
+        final File[] keyDirs = cacheDir.listFiles(File::isDirectory);
+        if (keyDirs == null) {
+            return;
+        }
+        for (File keyDir : keyDirs) {
+            final File[] bodyFiles = keyDir.listFiles(file -> file.isFile()
+                    && !file.getName().equals(META_FILE_NAME) && !file.getName().endsWith(".tmp"));
+            if (bodyFiles != null) {
+                for (File bodyFile : bodyFiles) {
+                    bodies.putIfAbsent(bodyFile.toPath(), new Body(bodyFile.length(), bodyFile.lastModified()));
+                }
+            }
+        }
+    }
+}
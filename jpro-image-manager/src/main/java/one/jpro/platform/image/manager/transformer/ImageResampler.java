@@ -0,0 +1,391 @@
+package one.jpro.platform.image.manager.transformer;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.WritableRaster;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+
+/**
+ * A high-quality image resampler for downscaling, working directly on the packed {@code int[]}
+ * pixels of the image instead of going through {@link Graphics2D#drawImage}. The image is first
+ * halved progressively with a 2x2 box filter while it is still more than four times larger than
+ * the target, and then resampled to the exact target size with a separable {@link Filter}.
+ * Very large images are processed in parallel on a dedicated fork-join pool.
+ * <p>
+ * Images with an alpha channel are filtered with premultiplied alpha, so that fully transparent
+ * pixels do not bleed their color into the visible ones.
+ *
+ * @author Florian Kirmaier
+ * @see ImageTransformerHelpers
+ */
+public final class ImageResampler {
+
+    /**
+     * The number of source pixels from which an image is processed in parallel.
+     */
+    private static final long PARALLEL_THRESHOLD = 4L * 1_024 * 1_024;
+
+    /**
+     * The filters supported by the resampler for the final resampling step.
+     */
+    public enum Filter {
+
+        /**
+         * Averages all source pixels covered by a target pixel, weighted by the covered area.
+         * Free of aliasing and ringing, this is the recommended filter for thumbnails.
+         */
+        AREA_AVERAGE(0.5),
+
+        /**
+         * A Lanczos windowed sinc filter with three lobes. Produces sharper results than area
+         * averaging, at the cost of more computation and slight ringing at hard edges.
+         */
+        LANCZOS3(3.0);
+
+        private final double radius;
+
+        Filter(double radius) {
+            this.radius = radius;
+        }
+
+        private double weight(double x) {
+            if (this == AREA_AVERAGE) {
+                return Math.abs(x) <= 0.5 ? 1.0 : 0.0;
+            }
+            x = Math.abs(x);
+            if (x < 1e-8) {
+                return 1.0;
+            }
+            if (x >= radius) {
+                return 0.0;
+            }
+            final double px = Math.PI * x;
+            return radius * Math.sin(px) * Math.sin(px / radius) / (px * px);
+        }
+    }
+
+    // Private constructor to prevent instantiation
+    private ImageResampler() {
+    }
+
+    /**
+     * Resizes the given image to the given size. Upscaling in any direction is delegated to
+     * {@link Graphics2D} with the default configuration of {@link ImageTransformerHelpers}.
+     *
+     * @param image        The image to resize.
+     * @param targetWidth  The width of the resulting image.
+     * @param targetHeight The height of the resulting image.
+     * @param filter       The filter to use for the final resampling step.
+     * @return A new image of type {@link BufferedImage#TYPE_INT_ARGB} if the given image has an alpha channel,
+     *         otherwise of type {@link BufferedImage#TYPE_INT_RGB}.
+     * @throws IllegalArgumentException if the target width or height is not positive.
+     */
+    public static BufferedImage resize(BufferedImage image, int targetWidth, int targetHeight, Filter filter) {
+        Objects.requireNonNull(filter, "Filter cannot be null");
+        if (targetWidth <= 0 || targetHeight <= 0) {
+            throw new IllegalArgumentException("Target width and height must be positive.");
+        }
+
+        final boolean alpha = image.getColorModel().hasAlpha();
+        final int imageType = alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+        int width = image.getWidth();
+        int height = image.getHeight();
+
+        if (targetWidth > width || targetHeight > height) {
+            final BufferedImage result = new BufferedImage(targetWidth, targetHeight, imageType);
+            final Graphics2D g2d = result.createGraphics();
+            ImageTransformerHelpers.graphicsDefaultConfiguration(g2d);
+            g2d.drawImage(image, 0, 0, targetWidth, targetHeight, null);
+            g2d.dispose();
+            return result;
+        }
+
+        int[] pixels = readPixels(image);
+        if (alpha) {
+            premultiply(pixels);
+        }
+
+        while (width / 2 >= 2 * targetWidth && height / 2 >= 2 * targetHeight) {
+            pixels = halve(pixels, width, height);
+            width /= 2;
+            height /= 2;
+        }
+
+        final BufferedImage result = new BufferedImage(targetWidth, targetHeight, imageType);
+        final int[] resultPixels = ((DataBufferInt) result.getRaster().getDataBuffer()).getData();
+        if (width == targetWidth && height == targetHeight) {
+            System.arraycopy(pixels, 0, resultPixels, 0, resultPixels.length);
+        } else {
+            final int[] horizontal = new int[targetWidth * height];
+            resampleHorizontally(pixels, width, height, horizontal, targetWidth, filter);
+            resampleVertically(horizontal, targetWidth, height, resultPixels, targetHeight, filter);
+        }
+        if (alpha) {
+            unpremultiply(resultPixels);
+        }
+        return result;
+    }
+
+    /**
+     * Reads the pixels of the given image as non-premultiplied ARGB values, accessing
+     * the data buffer directly for the image types produced by the image readers.
+     */
+    private static int[] readPixels(BufferedImage image) {
+        final int width = image.getWidth();
+        final int height = image.getHeight();
+        final int length = width * height;
+        final WritableRaster raster = image.getRaster();
+        final DataBuffer dataBuffer = raster.getDataBuffer();
+        final boolean plainRaster = raster.getParent() == null && dataBuffer.getNumBanks() == 1;
+
+        if (plainRaster && dataBuffer instanceof DataBufferInt intBuffer && intBuffer.getData().length == length) {
+            final int[] data = intBuffer.getData();
+            if (image.getType() == BufferedImage.TYPE_INT_ARGB) {
+                return data.clone();
+            } else if (image.getType() == BufferedImage.TYPE_INT_RGB) {
+                final int[] pixels = new int[length];
+                for (int i = 0; i < length; i++) {
+                    pixels[i] = 0xFF000000 | data[i];
+                }
+                return pixels;
+            }
+        } else if (plainRaster && dataBuffer instanceof DataBufferByte byteBuffer) {
+            final byte[] data = byteBuffer.getData();
+            if (image.getType() == BufferedImage.TYPE_3BYTE_BGR && data.length == length * 3) {
+                final int[] pixels = new int[length];
+                for (int i = 0, j = 0; i < length; i++, j += 3) {
+                    pixels[i] = 0xFF000000 | (data[j + 2] & 0xFF) << 16 | (data[j + 1] & 0xFF) << 8 | (data[j] & 0xFF);
+                }
+                return pixels;
+            } else if (image.getType() == BufferedImage.TYPE_4BYTE_ABGR && data.length == length * 4) {
+                final int[] pixels = new int[length];
+                for (int i = 0, j = 0; i < length; i++, j += 4) {
+                    pixels[i] = (data[j] & 0xFF) << 24 | (data[j + 3] & 0xFF) << 16
+                            | (data[j + 2] & 0xFF) << 8 | (data[j + 1] & 0xFF);
+                }
+                return pixels;
+            }
+        }
+        return image.getRGB(0, 0, width, height, null, 0, width);
+    }
+
+    private static void premultiply(int[] pixels) {
+        for (int i = 0; i < pixels.length; i++) {
+            final int argb = pixels[i];
+            final int a = argb >>> 24;
+            if (a == 0) {
+                pixels[i] = 0;
+            } else if (a != 0xFF) {
+                final int r = ((argb >> 16) & 0xFF) * a / 0xFF;
+                final int g = ((argb >> 8) & 0xFF) * a / 0xFF;
+                final int b = (argb & 0xFF) * a / 0xFF;
+                pixels[i] = a << 24 | r << 16 | g << 8 | b;
+            }
+        }
+    }
+
+    private static void unpremultiply(int[] pixels) {
+        for (int i = 0; i < pixels.length; i++) {
+            final int argb = pixels[i];
+            final int a = argb >>> 24;
+            if (a != 0 && a != 0xFF) {
+                final int r = Math.min(0xFF, (((argb >> 16) & 0xFF) * 0xFF + a / 2) / a);
+                final int g = Math.min(0xFF, (((argb >> 8) & 0xFF) * 0xFF + a / 2) / a);
+                final int b = Math.min(0xFF, ((argb & 0xFF) * 0xFF + a / 2) / a);
+                pixels[i] = a << 24 | r << 16 | g << 8 | b;
+            }
+        }
+    }
+
+    /**
+     * Halves the image in both directions, averaging each 2x2 block of pixels.
+     */
+    private static int[] halve(int[] pixels, int width, int height) {
+        final int halfWidth = width / 2;
+        final int halfHeight = height / 2;
+        final int[] result = new int[halfWidth * halfHeight];
+        forEachRow(halfHeight, (long) width * height, y -> {
+            int top = 2 * y * width;
+            int bottom = top + width;
+            int target = y * halfWidth;
+            for (int x = 0; x < halfWidth; x++, top += 2, bottom += 2, target++) {
+                final int p0 = pixels[top];
+                final int p1 = pixels[top + 1];
+                final int p2 = pixels[bottom];
+                final int p3 = pixels[bottom + 1];
+                final int a = ((p0 >>> 24) + (p1 >>> 24) + (p2 >>> 24) + (p3 >>> 24) + 2) >> 2;
+                final int r = (((p0 >> 16) & 0xFF) + ((p1 >> 16) & 0xFF) + ((p2 >> 16) & 0xFF) + ((p3 >> 16) & 0xFF) + 2) >> 2;
+                final int g = (((p0 >> 8) & 0xFF) + ((p1 >> 8) & 0xFF) + ((p2 >> 8) & 0xFF) + ((p3 >> 8) & 0xFF) + 2) >> 2;
+                final int b = ((p0 & 0xFF) + (p1 & 0xFF) + (p2 & 0xFF) + (p3 & 0xFF) + 2) >> 2;
+                result[target] = a << 24 | r << 16 | g << 8 | b;
+            }
+        });
+        return result;
+    }
+
+    private static void resampleHorizontally(int[] source, int width, int height,
+                                             int[] target, int targetWidth, Filter filter) {
+        final Contributions contributions = new Contributions(width, targetWidth, filter);
+        forEachRow(height, (long) width * height, y -> {
+            final int rowOffset = y * width;
+            final int targetOffset = y * targetWidth;
+            for (int x = 0; x < targetWidth; x++) {
+                final int start = contributions.start[x];
+                final int count = contributions.count[x];
+                final int weightOffset = x * contributions.stride;
+                float a = 0, r = 0, g = 0, b = 0;
+                for (int k = 0; k < count; k++) {
+                    final int pixel = source[rowOffset + start + k];
+                    final float weight = contributions.weights[weightOffset + k];
+                    a += (pixel >>> 24) * weight;
+                    r += ((pixel >> 16) & 0xFF) * weight;
+                    g += ((pixel >> 8) & 0xFF) * weight;
+                    b += (pixel & 0xFF) * weight;
+                }
+                target[targetOffset + x] = pack(a, r, g, b);
+            }
+        });
+    }
+
+    private static void resampleVertically(int[] source, int width, int height,
+                                           int[] target, int targetHeight, Filter filter) {
+        final Contributions contributions = new Contributions(height, targetHeight, filter);
+        forEachRow(targetHeight, (long) width * height, y -> {
+            final int start = contributions.start[y];
+            final int count = contributions.count[y];
+            final int weightOffset = y * contributions.stride;
+            final int targetOffset = y * width;
+            for (int x = 0; x < width; x++) {
+                float a = 0, r = 0, g = 0, b = 0;
+                int index = start * width + x;
+                for (int k = 0; k < count; k++, index += width) {
+                    final int pixel = source[index];
+                    final float weight = contributions.weights[weightOffset + k];
+                    a += (pixel >>> 24) * weight;
+                    r += ((pixel >> 16) & 0xFF) * weight;
+                    g += ((pixel >> 8) & 0xFF) * weight;
+                    b += (pixel & 0xFF) * weight;
+                }
+                target[targetOffset + x] = pack(a, r, g, b);
+            }
+        });
+    }
+
+    /**
+     * Packs the given premultiplied channels, clamping the overshoot of filters with negative lobes.
+     */
+    private static int pack(float a, float r, float g, float b) {
+        final int ia = clamp(a, 0xFF);
+        return ia << 24 | clamp(r, ia) << 16 | clamp(g, ia) << 8 | clamp(b, ia);
+    }
+
+    private static int clamp(float value, int max) {
+        final int rounded = Math.round(value);
+        return rounded < 0 ? 0 : Math.min(rounded, max);
+    }
+
+    /**
+     * The normalized filter weights of the source pixels contributing to each target pixel
+     * of a one-dimensional downscaling.
+     */
+    private static final class Contributions {
+        private final int[] start;
+        private final int[] count;
+        private final float[] weights;
+        private final int stride;
+
+        private Contributions(int sourceSize, int targetSize, Filter filter) {
+            final double scale = (double) sourceSize / targetSize;
+            final double support = filter.radius * scale;
+            start = new int[targetSize];
+            count = new int[targetSize];
+            stride = (int) Math.ceil(2 * support) + 2;
+            weights = new float[targetSize * stride];
+
+            for (int i = 0; i < targetSize; i++) {
+                final double center = (i + 0.5) * scale;
+                final int left = Math.max(0, (int) Math.floor(center - support));
+                final int right = Math.min(sourceSize, (int) Math.ceil(center + support));
+                final int offset = i * stride;
+                double sum = 0;
+                for (int j = left; j < right; j++) {
+                    final double weight;
+                    if (filter == Filter.AREA_AVERAGE) {
+                        // the exact area of the source pixel covered by the target pixel
+                        weight = Math.max(0, Math.min(j + 1, center + support) - Math.max(j, center - support));
+                    } else {
+                        weight = filter.weight((j + 0.5 - center) / scale);
+                    }
+                    weights[offset + j - left] = (float) weight;
+                    sum += weight;
+                }
+                for (int j = left; j < right; j++) {
+                    weights[offset + j - left] /= (float) sum;
+                }
+                start[i] = left;
+                count[i] = right - left;
+            }
+        }
+    }
+
+    /**
+     * Runs the given action for every row, in parallel when the processed image is very large.
+     */
+    private static void forEachRow(int rows, long pixels, IntConsumer rowAction) {
+        if (pixels < PARALLEL_THRESHOLD || rows < 2) {
+            for (int row = 0; row < rows; row++) {
+                rowAction.accept(row);
+            }
+        } else {
+            final ForkJoinPool pool = PoolHolder.POOL;
+            final int grain = Math.max(1, rows / (pool.getParallelism() * 4));
+            pool.invoke(new RowTask(0, rows, grain, rowAction));
+        }
+    }
+
+    private static final class RowTask extends RecursiveAction {
+        private final int from;
+        private final int to;
+        private final int grain;
+        private final IntConsumer rowAction;
+
+        private RowTask(int from, int to, int grain, IntConsumer rowAction) {
+            this.from = from;
+            this.to = to;
+            this.grain = grain;
+            this.rowAction = rowAction;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= grain) {
+                for (int row = from; row < to; row++) {
+                    rowAction.accept(row);
+                }
+            } else {
+                final int middle = (from + to) >>> 1;
+                invokeAll(new RowTask(from, middle, grain, rowAction), new RowTask(middle, to, grain, rowAction));
+            }
+        }
+    }
+
+    /**
+     * Lazily creates the pool used for very large images, separate from the common pool.
+     */
+    private static final class PoolHolder {
+        private static final ForkJoinPool POOL = new ForkJoinPool(Runtime.getRuntime().availableProcessors(),
+                pool -> {
+                    final ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                    thread.setName("image-resampler-thread-" + thread.getPoolIndex());
+                    thread.setDaemon(true);
+                    return thread;
+                }, null, false);
+    }
+}
@@ -2,6 +2,7 @@ package one.jpro.platform.image.manager.transformer;
 
 import one.jpro.platform.image.manager.JsonConvertible;
 
+import java.awt.Dimension;
 import java.awt.image.BufferedImage;
 
 /**
@@ -19,4 +20,18 @@ public interface ImageTransformer extends JsonConvertible {
      * @return A new BufferedImage resulting from the applied transformation.
      */
     BufferedImage transform(BufferedImage image);
+
+    /**
+     * Returns the size of the image this transformer produces from an image with the given size.
+     * Image sources use this as a hint to decode large images at a reduced resolution that is
+     * still sufficient for the transformation. The default implementation returns {@code null},
+     * meaning that the image has to be decoded at its full resolution.
+     *
+     * @param width  The width of the original image.
+     * @param height The height of the original image.
+     * @return The size of the transformed image, or {@code null} if it is unknown.
+     */
+    default Dimension getTargetSize(int width, int height) {
+        return null;
+    }
 }
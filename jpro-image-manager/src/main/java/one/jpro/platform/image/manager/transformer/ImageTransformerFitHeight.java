@@ -4,6 +4,7 @@ import org.json.JSONObject;
 
 import java.awt.*;
 import java.awt.image.BufferedImage;
+import java.util.Objects;
 
 /**
  * This class is responsible for transforming images such that they fit a specified height,
@@ -15,6 +16,7 @@ import java.awt.image.BufferedImage;
 public class ImageTransformerFitHeight implements ImageTransformer {
 
     private final int targetHeight;
+    private final ImageResampler.Filter filter;
 
     /**
      * Constructs an instance with a specified target height.
@@ -22,7 +24,18 @@ public class ImageTransformerFitHeight implements ImageTransformer {
      * @param targetHeight The target height in pixels for the resulting image.
      */
     public ImageTransformerFitHeight(int targetHeight) {
-        this.targetHeight = targetHeight;
+        this(targetHeight, 1, null);
+    }
+
+    /**
+     * Constructs an instance with a specified target height, that downscales
+     * images with the {@link ImageResampler} using the given filter.
+     *
+     * @param targetHeight The target height in pixels for the resulting image.
+     * @param filter       The resampling filter, or {@code null} to scale with {@link Graphics2D}.
+     */
+    public ImageTransformerFitHeight(int targetHeight, ImageResampler.Filter filter) {
+        this(targetHeight, 1, filter);
     }
 
     /**
@@ -34,7 +47,21 @@ public class ImageTransformerFitHeight implements ImageTransformer {
      * @param devicePixelRatio  The device pixel ratio to adjust the height.
      */
     public ImageTransformerFitHeight(int targetHeight, int devicePixelRatio) {
+        this(targetHeight, devicePixelRatio, null);
+    }
+
+    /**
+     * Constructs an instance with a specified target height and device
+     * pixel ratio, that downscales images with the {@link ImageResampler}
+     * using the given filter.
+     *
+     * @param targetHeight      The original target height in pixels.
+     * @param devicePixelRatio  The device pixel ratio to adjust the height.
+     * @param filter            The resampling filter, or {@code null} to scale with {@link Graphics2D}.
+     */
+    public ImageTransformerFitHeight(int targetHeight, int devicePixelRatio, ImageResampler.Filter filter) {
         this.targetHeight = targetHeight * devicePixelRatio;
+        this.filter = filter;
     }
 
     /**
@@ -48,6 +75,9 @@ public class ImageTransformerFitHeight implements ImageTransformer {
     public BufferedImage transform(BufferedImage original) {
         double aspectRatio = (double) original.getWidth() / original.getHeight();
         int newWidth = (int) (targetHeight * aspectRatio);
+        if (filter != null) {
+            return ImageResampler.resize(original, newWidth, targetHeight, filter);
+        }
         BufferedImage resized = new BufferedImage(newWidth, targetHeight, original.getType());
         Graphics2D g2d = resized.createGraphics();
         ImageTransformerHelpers.graphicsDefaultConfiguration(g2d);
@@ -55,11 +85,37 @@ public class ImageTransformerFitHeight implements ImageTransformer {
         return resized;
     }
 
+    @Override
+    public Dimension getTargetSize(int width, int height) {
+        return new Dimension((int) (targetHeight * ((double) width / height)), targetHeight);
+    }
+
     @Override
     public JSONObject toJSON() {
         JSONObject json = new JSONObject();
         json.put("type", getClass().getSimpleName());
         json.put("targetHeight", targetHeight);
+        if (filter != null) {
+            json.put("filter", filter.name());
+        }
         return json;
     }
-}
\ No newline at end of file
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null || getClass() != obj.getClass()) {
+            return false;
+        }
+        final ImageTransformerFitHeight other = (ImageTransformerFitHeight) obj;
+        return targetHeight == other.targetHeight
+                && filter == other.filter;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(targetHeight, filter);
+    }
+}
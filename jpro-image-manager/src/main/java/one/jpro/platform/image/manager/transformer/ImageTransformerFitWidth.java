@@ -4,6 +4,7 @@ import org.json.JSONObject;
 
 import java.awt.*;
 import java.awt.image.BufferedImage;
+import java.util.Objects;
 
 /**
  * This class is responsible for transforming images such that they fit a specified width,
@@ -16,6 +17,7 @@ import java.awt.image.BufferedImage;
 public class ImageTransformerFitWidth implements ImageTransformer {
 
     private final int targetWidth;
+    private final ImageResampler.Filter filter;
 
     /**
      * Constructs an instance that sets the target width for the transformation.
@@ -23,7 +25,18 @@ public class ImageTransformerFitWidth implements ImageTransformer {
      * @param targetWidth The desired width of the output image.
      */
     public ImageTransformerFitWidth(int targetWidth) {
-        this.targetWidth = targetWidth;
+        this(targetWidth, 1, null);
+    }
+
+    /**
+     * Constructs an instance that sets the target width for the transformation
+     * and downscales images with the {@link ImageResampler} using the given filter.
+     *
+     * @param targetWidth The desired width of the output image.
+     * @param filter      The resampling filter, or {@code null} to scale with {@link Graphics2D}.
+     */
+    public ImageTransformerFitWidth(int targetWidth, ImageResampler.Filter filter) {
+        this(targetWidth, 1, filter);
     }
 
     /**
@@ -34,7 +47,20 @@ public class ImageTransformerFitWidth implements ImageTransformer {
      * @param devicePixelRatio The pixel ratio of the target device.
      */
     public ImageTransformerFitWidth(int targetWidth, int devicePixelRatio) {
+        this(targetWidth, devicePixelRatio, null);
+    }
+
+    /**
+     * Constructs an instance that sets the target width based on a device pixel ratio
+     * and downscales images with the {@link ImageResampler} using the given filter.
+     *
+     * @param targetWidth      The base width of the desired output image.
+     * @param devicePixelRatio The pixel ratio of the target device.
+     * @param filter           The resampling filter, or {@code null} to scale with {@link Graphics2D}.
+     */
+    public ImageTransformerFitWidth(int targetWidth, int devicePixelRatio, ImageResampler.Filter filter) {
         this.targetWidth = targetWidth * devicePixelRatio;
+        this.filter = filter;
     }
 
     /**
@@ -52,6 +78,10 @@ public class ImageTransformerFitWidth implements ImageTransformer {
         double aspectRatio = (double) originalHeight / originalWidth;
         int targetHeight = (int) (targetWidth * aspectRatio);
 
+        if (filter != null) {
+            return ImageResampler.resize(inputImage, targetWidth, targetHeight, filter);
+        }
+
         BufferedImage outputImage = new BufferedImage(targetWidth, targetHeight, inputImage.getType());
         Graphics2D g2d = (Graphics2D) outputImage.getGraphics();
         ImageTransformerHelpers.graphicsDefaultConfiguration(g2d);
@@ -59,11 +89,37 @@ public class ImageTransformerFitWidth implements ImageTransformer {
         return outputImage;
     }
 
+    @Override
+    public Dimension getTargetSize(int width, int height) {
+        return new Dimension(targetWidth, (int) (targetWidth * ((double) height / width)));
+    }
+
     @Override
     public JSONObject toJSON() {
         final JSONObject json = new JSONObject();
         json.put("type", getClass().getSimpleName());
         json.put("targetWidth", targetWidth);
+        if (filter != null) {
+            json.put("filter", filter.name());
+        }
         return json;
     }
-}
\ No newline at end of file
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null || getClass() != obj.getClass()) {
+            return false;
+        }
+        final ImageTransformerFitWidth other = (ImageTransformerFitWidth) obj;
+        return targetWidth == other.targetWidth
+                && filter == other.filter;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(targetWidth, filter);
+    }
+}
@@ -32,4 +32,13 @@ public class ImageTransformerIdentity implements ImageTransformer {
         return json;
     }
 
+    @Override
+    public boolean equals(Object obj) {
+        return obj != null && getClass() == obj.getClass();
+    }
+
+    @Override
+    public int hashCode() {
+        return getClass().hashCode();
+    }
 }
@@ -4,6 +4,7 @@ import org.json.JSONObject;
 
 import java.awt.*;
 import java.awt.image.BufferedImage;
+import java.util.Objects;
 
 /**
  * This class implements an image transformer that scales images to a target area
@@ -17,6 +18,7 @@ public class ImageTransformerScaleToArea implements ImageTransformer {
 
 
     private final int targetArea;
+    private final ImageResampler.Filter filter;
 
     /**
      * Constructs an instance with the specified target area.
@@ -25,10 +27,23 @@ public class ImageTransformerScaleToArea implements ImageTransformer {
      * @throws IllegalArgumentException if targetArea is not positive.
      */
     public ImageTransformerScaleToArea(int targetArea) {
+        this(targetArea, null);
+    }
+
+    /**
+     * Constructs an instance with the specified target area, that downscales images
+     * with the {@link ImageResampler} using the given filter.
+     *
+     * @param targetArea The desired area (in pixels) of the scaled image.
+     * @param filter     The resampling filter, or {@code null} to scale with {@link Graphics2D}.
+     * @throws IllegalArgumentException if targetArea is not positive.
+     */
+    public ImageTransformerScaleToArea(int targetArea, ImageResampler.Filter filter) {
         if (targetArea <= 0) {
             throw new IllegalArgumentException("Target area must be positive.");
         }
         this.targetArea = targetArea;
+        this.filter = filter;
     }
 
     /**
@@ -42,6 +57,19 @@ public class ImageTransformerScaleToArea implements ImageTransformer {
         this(targetWidth * targetHeight);
     }
 
+    /**
+     * Constructs an instance with a specified target width and height, that downscales images
+     * with the {@link ImageResampler} using the given filter. The target area will be calculated
+     * as the product of targetWidth and targetHeight.
+     *
+     * @param targetWidth  The desired width of the scaled image.
+     * @param targetHeight The desired height of the scaled image.
+     * @param filter       The resampling filter, or {@code null} to scale with {@link Graphics2D}.
+     */
+    public ImageTransformerScaleToArea(int targetWidth, int targetHeight, ImageResampler.Filter filter) {
+        this(targetWidth * targetHeight, filter);
+    }
+
     /**
      * Transforms the given image, scaling it to the desired area while maintaining
      * its original aspect ratio.
@@ -55,6 +83,10 @@ public class ImageTransformerScaleToArea implements ImageTransformer {
         double newWidth = Math.sqrt(targetArea * aspectRatio);
         double newHeight = newWidth / aspectRatio;
 
+        if (filter != null) {
+            return ImageResampler.resize(image, (int) newWidth, (int) newHeight, filter);
+        }
+
         BufferedImage newImage = new BufferedImage((int) newWidth, (int) newHeight, image.getType());
         Graphics2D g2d = (Graphics2D) newImage.getGraphics();
         ImageTransformerHelpers.graphicsDefaultConfiguration(g2d);
@@ -62,11 +94,39 @@ public class ImageTransformerScaleToArea implements ImageTransformer {
         return newImage;
     }
 
+    @Override
+    public Dimension getTargetSize(int width, int height) {
+        double aspectRatio = (double) width / height;
+        double newWidth = Math.sqrt(targetArea * aspectRatio);
+        return new Dimension((int) newWidth, (int) (newWidth / aspectRatio));
+    }
+
     @Override
     public JSONObject toJSON() {
         JSONObject json = new JSONObject();
         json.put("type", getClass().getSimpleName());
         json.put("targetArea", targetArea);
+        if (filter != null) {
+            json.put("filter", filter.name());
+        }
         return json;
     }
-}
\ No newline at end of file
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null || getClass() != obj.getClass()) {
+            return false;
+        }
+        final ImageTransformerScaleToArea other = (ImageTransformerScaleToArea) obj;
+        return targetArea == other.targetArea
+                && filter == other.filter;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(targetArea, filter);
+    }
+}
@@ -2,7 +2,9 @@ package one.jpro.platform.image.manager.transformer;
 
 import org.json.JSONObject;
 import java.awt.image.BufferedImage;
+import java.awt.Dimension;
 import java.awt.Graphics2D;
+import java.util.Objects;
 
 /**
  * Implements the ImageTransformer interface to provide functionalities
@@ -16,6 +18,7 @@ public class ImageTransformerWH implements ImageTransformer {
 
     private final int targetWidth;
     private final int targetHeight;
+    private final ImageResampler.Filter filter;
 
     /**
      * Constructs an instance of ImageTransformerWH with specified target width and height.
@@ -24,8 +27,21 @@ public class ImageTransformerWH implements ImageTransformer {
      * @param targetHeight The desired height of the transformed image.
      */
     public ImageTransformerWH(int targetWidth, int targetHeight) {
+        this(targetWidth, targetHeight, null);
+    }
+
+    /**
+     * Constructs an instance of ImageTransformerWH with specified target width and height,
+     * that downscales images with the {@link ImageResampler} using the given filter.
+     *
+     * @param targetWidth  The desired width of the transformed image.
+     * @param targetHeight The desired height of the transformed image.
+     * @param filter       The resampling filter, or {@code null} to scale with {@link Graphics2D}.
+     */
+    public ImageTransformerWH(int targetWidth, int targetHeight, ImageResampler.Filter filter) {
         this.targetWidth = targetWidth;
         this.targetHeight = targetHeight;
+        this.filter = filter;
     }
 
     /**
@@ -37,8 +53,21 @@ public class ImageTransformerWH implements ImageTransformer {
      * @param ratio        The scaling factor for width and height.
      */
     public ImageTransformerWH(int targetWidth, int targetHeight, double ratio) {
-        this.targetWidth = (int) (targetWidth * ratio);
-        this.targetHeight = (int) (targetHeight * ratio);
+        this(targetWidth, targetHeight, ratio, null);
+    }
+
+    /**
+     * Constructs an instance of ImageTransformerWH with a specified target width and height,
+     * scales them by the provided ratio and downscales images with the {@link ImageResampler}
+     * using the given filter.
+     *
+     * @param targetWidth  The initial width value before scaling.
+     * @param targetHeight The initial height value before scaling.
+     * @param ratio        The scaling factor for width and height.
+     * @param filter       The resampling filter, or {@code null} to scale with {@link Graphics2D}.
+     */
+    public ImageTransformerWH(int targetWidth, int targetHeight, double ratio, ImageResampler.Filter filter) {
+        this((int) (targetWidth * ratio), (int) (targetHeight * ratio), filter);
     }
 
     /**
@@ -49,6 +78,9 @@ public class ImageTransformerWH implements ImageTransformer {
      */
     @Override
     public BufferedImage transform(BufferedImage original) {
+        if (filter != null) {
+            return ImageResampler.resize(original, targetWidth, targetHeight, filter);
+        }
         BufferedImage resizedImage = new BufferedImage(targetWidth, targetHeight, original.getType());
         Graphics2D g2d = resizedImage.createGraphics();
         ImageTransformerHelpers.graphicsDefaultConfiguration(g2d);
@@ -57,12 +89,39 @@ public class ImageTransformerWH implements ImageTransformer {
         return resizedImage;
     }
 
+    @Override
+    public Dimension getTargetSize(int width, int height) {
+        return new Dimension(targetWidth, targetHeight);
+    }
+
     @Override
     public JSONObject toJSON() {
         JSONObject json = new JSONObject();
         json.put("type", getClass().getSimpleName());
         json.put("targetWidth", targetWidth);
         json.put("targetHeight", targetHeight);
+        if (filter != null) {
+            json.put("filter", filter.name());
+        }
         return json;
     }
-}
\ No newline at end of file
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null || getClass() != obj.getClass()) {
+            return false;
+        }
+        final ImageTransformerWH other = (ImageTransformerWH) obj;
+        return targetWidth == other.targetWidth
+                && targetHeight == other.targetHeight
+                && filter == other.filter;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(targetWidth, targetHeight, filter);
+    }
+}
@@ -0,0 +1,64 @@
+package one.jpro.platform.image.manager;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ImageCacheLocksTest {
+
+    @TempDir
+    File cacheDir;
+
+    @Test
+    public void testSameFileYieldsSameLocks() throws Exception {
+        ImageCacheLocks locks = ImageCacheLocks.forFile(new File(cacheDir, ImageCacheLocks.FILE_NAME).toPath());
+
+        assertSame(locks, ImageCacheLocks.forFile(new File(cacheDir, "./" + ImageCacheLocks.FILE_NAME).toPath()));
+    }
+
+    @Test
+    public void testEntryLockIsReentrant() throws Exception {
+        ImageCacheLocks locks = ImageCacheLocks.forFile(new File(cacheDir, ImageCacheLocks.FILE_NAME).toPath());
+
+        try (ImageCacheLocks.Handle outer = locks.lockEntry("a")) {
+            try (ImageCacheLocks.Handle inner = locks.tryLockEntry("a")) {
+                assertNotNull(inner);
+            }
+            try (ImageCacheLocks.Handle entries = locks.lockEntries(List.of("a", "b"))) {
+                assertNotNull(entries);
+            }
+        }
+    }
+
+    @Test
+    public void testEntryLockExcludesOtherThreads() throws Exception {
+        ImageCacheLocks locks = ImageCacheLocks.forFile(new File(cacheDir, ImageCacheLocks.FILE_NAME).toPath());
+        CountDownLatch locked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        CompletableFuture<Void> holder = CompletableFuture.runAsync(() -> {
+            try (ImageCacheLocks.Handle handle = locks.lockEntries(List.of("a", "b"))) {
+                locked.countDown();
+                release.await();
+            } catch (Exception ex) {
+                throw new RuntimeException(ex);
+            }
+        });
+        assertTrue(locked.await(10, TimeUnit.SECONDS));
+        assertNull(locks.tryLockEntry("a"));
+        assertNull(locks.tryLockEntry("b"));
+
+        release.countDown();
+        holder.get(10, TimeUnit.SECONDS);
+        try (ImageCacheLocks.Handle handle = locks.tryLockEntry("a")) {
+            assertNotNull(handle);
+        }
+    }
+}
@@ -1,17 +1,23 @@
 package one.jpro.platform.image.manager;
 
 import one.jpro.platform.image.manager.encoder.ImageEncoder;
+import one.jpro.platform.image.manager.encoder.ImageEncoderJPG;
 import one.jpro.platform.image.manager.encoder.ImageEncoderPNG;
 import one.jpro.platform.image.manager.source.ImageSource;
 import one.jpro.platform.image.manager.source.ImageSourceFile;
+import one.jpro.platform.image.manager.source.ImageSourceResource;
+import one.jpro.platform.image.manager.transformer.ImageResampler;
 import one.jpro.platform.image.manager.transformer.ImageTransformer;
 import one.jpro.platform.image.manager.transformer.ImageTransformerFitWidth;
+import one.jpro.platform.image.manager.transformer.ImageTransformerScaleToArea;
+import one.jpro.platform.image.manager.transformer.ImageTransformerWH;
 import org.json.JSONObject;
 import org.junit.jupiter.api.Test;
 
 import java.io.File;
+import java.util.List;
 
-import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.*;
 
 class ImageDefinitionTest {
 
@@ -31,4 +37,30 @@ class ImageDefinitionTest {
         assertTrue(definition.toJSON().similar(json));
     }
 
-}
\ No newline at end of file
+    @Test
+    void testFromJson() {
+        List<ImageDefinition> definitions = List.of(
+                new ImageDefinition(new ImageSourceFile(new File("path/with \"quotes\"/file.png")),
+                        new ImageTransformerFitWidth(500, 2, ImageResampler.Filter.LANCZOS3), new ImageEncoderPNG()),
+                new ImageDefinition(new ImageSourceResource("/testImage.png"),
+                        new ImageTransformerWH(200, 100), new ImageEncoderJPG(0.5, true)),
+                new ImageDefinition(new ImageSourceResource("/testImage.png"),
+                        new ImageTransformerScaleToArea(10_000, ImageResampler.Filter.AREA_AVERAGE),
+                        new ImageEncoderPNG(9, ImageEncoderPNG.Filter.PAETH)));
+
+        for (ImageDefinition definition : definitions) {
+            String json = definition.toJSON().toString();
+            assertEquals(json, ImageDefinition.fromJSON(new JSONObject(json)).toJSON().toString());
+        }
+    }
+
+    @Test
+    void testFromJsonRejectsUnknownTypes() {
+        JSONObject json = new ImageDefinition(new ImageSourceResource("/testImage.png"),
+                new ImageTransformerFitWidth(500), new ImageEncoderPNG()).toJSON();
+        json.getJSONObject("transformer").put("type", "CustomTransformer");
+
+        assertThrows(IllegalArgumentException.class, () -> ImageDefinition.fromJSON(json));
+        assertThrows(IllegalArgumentException.class, () -> ImageDefinition.fromJSON(new JSONObject("{}")));
+    }
+}
@@ -0,0 +1,301 @@
+package one.jpro.platform.image.manager;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ImageDiskCacheTest {
+
+    @TempDir
+    File cacheDir;
+
+    @Test
+    public void testLeastRecentlyUsedEntriesAreEvicted() throws Exception {
+        List<String> evicted = new ArrayList<>();
+        ImageDiskCache diskCache = new ImageDiskCache(cacheDir, ImageCachePolicy.UNLIMITED, evicted::add, hash -> true);
+        diskCache.loadIndex();
+        writeEntry(diskCache, "a", 100);
+        writeEntry(diskCache, "b", 100);
+        writeEntry(diskCache, "c", 100);
+        // access "a", so "b" becomes the least recently used entry
+        diskCache.touch("a");
+
+        diskCache.setPolicy(new ImageCachePolicy(250, 10));
+        diskCache.evictIfNeeded();
+
+        assertEquals(List.of("b"), evicted);
+        assertEquals(2, diskCache.size());
+        assertEquals(200, diskCache.totalSize());
+        assertFalse(new File(cacheDir, "b").exists());
+        assertTrue(new File(cacheDir, "a").exists());
+        assertTrue(new File(cacheDir, "c").exists());
+    }
+
+    @Test
+    public void testEntriesInUseAreNotEvicted() throws Exception {
+        List<String> evicted = new ArrayList<>();
+        ImageDiskCache diskCache = new ImageDiskCache(cacheDir, ImageCachePolicy.UNLIMITED, evicted::add,
+                hash -> !hash.equals("a"));
+        diskCache.loadIndex();
+        writeEntry(diskCache, "a", 100);
+        writeEntry(diskCache, "b", 100);
+
+        diskCache.setPolicy(new ImageCachePolicy(1_000, 1));
+        diskCache.evictIfNeeded();
+
+        assertEquals(List.of("b"), evicted);
+        assertTrue(new File(cacheDir, "a").exists());
+    }
+
+    @Test
+    public void testLookupChecksDefinition() throws Exception {
+        ImageDiskCache diskCache = new ImageDiskCache(cacheDir, ImageCachePolicy.UNLIMITED, hash -> {}, hash -> true);
+        diskCache.loadIndex();
+        writeEntry(diskCache, "a", 100);
+
+        ImageResult result = diskCache.get("a", "definition-a");
+        assertNotNull(result);
+        assertEquals(new File(new File(cacheDir, "a"), "image.png"), result.getFile());
+        assertEquals(20, result.getWidth());
+        assertEquals(10, result.getHeight());
+        assertNull(diskCache.get("a", "other-definition"));
+        assertNull(diskCache.get("b", "definition-b"));
+    }
+
+    @Test
+    public void testIndexIsPersistedAndReloaded() throws Exception {
+        ImageDiskCache diskCache = new ImageDiskCache(cacheDir, ImageCachePolicy.UNLIMITED, hash -> {}, hash -> true);
+        diskCache.loadIndex();
+        writeEntry(diskCache, "a", 100);
+        writeEntry(diskCache, "b", 50);
+        writeEntry(diskCache, "c", 10);
+        diskCache.setPolicy(new ImageCachePolicy(1_000, 2));
+        diskCache.evictIfNeeded();
+        diskCache.touch("b");
+        diskCache.flush();
+        assertTrue(new File(cacheDir, ImageDiskCache.INDEX_FILE_NAME).exists());
+
+        ImageDiskCache reloaded = new ImageDiskCache(cacheDir, ImageCachePolicy.UNLIMITED, hash -> {}, hash -> true);
+        reloaded.loadIndex();
+        assertEquals(2, reloaded.size());
+        assertEquals(60, reloaded.totalSize());
+        assertNotNull(reloaded.get("b", "definition-b"));
+        assertNull(reloaded.get("a", "definition-a"));
+    }
+
+    @Test
+    public void testLegacyEntriesAreMigrated() throws Exception {
+        writeLegacyEntry("a", 100);
+        writeLegacyEntry("b", 50);
+        // an incomplete legacy entry without key file is not migrated
+        Files.createDirectories(new File(cacheDir, "c").toPath());
+        Files.write(new File(cacheDir, "c/image.png").toPath(), new byte[10]);
+
+        ImageDiskCache diskCache = new ImageDiskCache(cacheDir, ImageCachePolicy.UNLIMITED, hash -> {}, hash -> true);
+        diskCache.loadIndex();
+
+        assertEquals(2, diskCache.size());
+        assertEquals(150, diskCache.totalSize());
+        ImageResult result = diskCache.get("a", "definition-a");
+        assertNotNull(result);
+        assertEquals(20, result.getWidth());
+        assertEquals(10, result.getHeight());
+        assertFalse(new File(cacheDir, "a/" + ImageDiskCache.LEGACY_KEY_FILE_NAME).exists());
+        assertFalse(new File(cacheDir, "a/" + ImageDiskCache.LEGACY_WH_FILE_NAME).exists());
+        assertTrue(new File(cacheDir, ImageDiskCache.INDEX_FILE_NAME).exists());
+    }
+
+    @Test
+    public void testClearKeepsIndexUsable() throws Exception {
+        ImageDiskCache diskCache = new ImageDiskCache(cacheDir, ImageCachePolicy.UNLIMITED, hash -> {}, hash -> true);
+        diskCache.loadIndex();
+        writeEntry(diskCache, "a", 100);
+
+        diskCache.clear();
+        assertEquals(0, diskCache.size());
+        assertFalse(new File(cacheDir, "a").exists());
+
+        writeEntry(diskCache, "b", 50);
+        diskCache.flush();
+        ImageDiskCache reloaded = new ImageDiskCache(cacheDir, ImageCachePolicy.UNLIMITED, hash -> {}, hash -> true);
+        reloaded.loadIndex();
+        assertEquals(1, reloaded.size());
+        assertNotNull(reloaded.get("b", "definition-b"));
+    }
+
+    @Test
+    public void testSharedCachesSeeEachOthersChanges() throws Exception {
+        List<String> evictedByOthers = new ArrayList<>();
+        ImageDiskCache first = new ImageDiskCache(cacheDir, true, ImageCachePolicy.UNLIMITED, evictedByOthers::add,
+                hash -> true);
+        first.loadIndex();
+        ImageDiskCache second = new ImageDiskCache(cacheDir, true, ImageCachePolicy.UNLIMITED, hash -> {}, hash -> true);
+        second.loadIndex();
+
+        writeEntry(first, "a", 100);
+        assertNotNull(second.get("a", "definition-a"));
+
+        writeEntry(second, "b", 50);
+        assertNotNull(first.get("b", "definition-b"));
+        assertEquals(2, first.size());
+        assertEquals(150, first.totalSize());
+
+        second.setPolicy(new ImageCachePolicy(1_000, 1));
+        second.evictIfNeeded();
+        writeEntry(first, "c", 10);
+        assertEquals(2, first.size());
+        assertNull(first.get("a", "definition-a"));
+        // the entry evicted by the other cache is dropped from memory as well
+        assertEquals(List.of("a"), evictedByOthers);
+    }
+
+    @Test
+    public void testSharedCacheFollowsCompaction() throws Exception {
+        ImageDiskCache first = new ImageDiskCache(cacheDir, true, ImageCachePolicy.UNLIMITED, hash -> {}, hash -> true);
+        first.loadIndex();
+        ImageDiskCache second = new ImageDiskCache(cacheDir, true, ImageCachePolicy.UNLIMITED, hash -> {}, hash -> true);
+        second.loadIndex();
+
+        // rewriting the same entry grows the log until the flush compacts it into a new file
+        for (int i = 0; i < 2_000; i++) {
+            writeEntry(first, "a", 100);
+        }
+        first.flush();
+        writeEntry(first, "b", 50);
+
+        assertNotNull(second.get("b", "definition-b"));
+        assertEquals(2, second.size());
+        assertEquals(150, second.totalSize());
+    }
+
+    @Test
+    public void testSharedCachesFollowClear() throws Exception {
+        ImageDiskCache first = new ImageDiskCache(cacheDir, true, ImageCachePolicy.UNLIMITED, hash -> {}, hash -> true);
+        first.loadIndex();
+        List<String> clearedByOthers = new ArrayList<>();
+        ImageDiskCache second = new ImageDiskCache(cacheDir, true, ImageCachePolicy.UNLIMITED, clearedByOthers::add,
+                hash -> true);
+        second.loadIndex();
+        writeEntry(first, "a", 100);
+        writeEntry(second, "b", 50);
+
+        first.clear();
+        assertEquals(0, first.size());
+        assertFalse(new File(cacheDir, "a").exists());
+        assertFalse(new File(cacheDir, "b").exists());
+
+        // the other cache reloads the replaced index before its next change, so both stay consistent
+        writeEntry(second, "c", 10);
+        assertEquals(1, second.size());
+        assertEquals(10, second.totalSize());
+        assertEquals(List.of("a", "b"), clearedByOthers.stream().sorted().toList());
+        assertNotNull(first.get("c", "definition-c"));
+        assertEquals(1, first.size());
+        assertEquals(10, first.totalSize());
+
+        ImageDiskCache reloaded = new ImageDiskCache(cacheDir, true, ImageCachePolicy.UNLIMITED, hash -> {}, hash -> true);
+        reloaded.loadIndex();
+        assertEquals(1, reloaded.size());
+        assertNotNull(reloaded.get("c", "definition-c"));
+        assertNull(reloaded.get("a", "definition-a"));
+        assertNull(reloaded.get("b", "definition-b"));
+    }
+
+    @Test
+    public void testClearKeepsLockedEntries() throws Exception {
+        ImageDiskCache first = new ImageDiskCache(cacheDir, true, ImageCachePolicy.UNLIMITED, hash -> {}, hash -> true);
+        first.loadIndex();
+        ImageDiskCache second = new ImageDiskCache(cacheDir, true, ImageCachePolicy.UNLIMITED, hash -> {}, hash -> true);
+        second.loadIndex();
+        writeEntry(first, "a", 100);
+        writeEntry(first, "b", 50);
+
+        // another thread holds the lock of "b", as if it was creating it
+        CountDownLatch locked = new CountDownLatch(1);
+        CountDownLatch cleared = new CountDownLatch(1);
+        Thread writer = new Thread(() -> {
+            try (ImageCacheLocks.Handle ignored = second.lockEntries(List.of("b"))) {
+                locked.countDown();
+                cleared.await();
+            } catch (Exception ex) {
+                throw new RuntimeException(ex);
+            }
+        });
+        writer.start();
+        locked.await();
+        try {
+            first.clear();
+        } finally {
+            cleared.countDown();
+            writer.join();
+        }
+
+        assertFalse(new File(cacheDir, "a").exists());
+        assertTrue(new File(cacheDir, "b").exists());
+        assertEquals(1, first.size());
+        assertNotNull(second.get("b", "definition-b"));
+        assertNull(second.get("a", "definition-a"));
+        assertEquals(1, second.size());
+    }
+
+    @Test
+    public void testTouchDoesNotWaitForTheCache() throws Exception {
+        List<String> evicted = new ArrayList<>();
+        ImageDiskCache diskCache = new ImageDiskCache(cacheDir, ImageCachePolicy.UNLIMITED, evicted::add, hash -> true);
+        diskCache.loadIndex();
+        writeEntry(diskCache, "a", 100);
+        writeEntry(diskCache, "b", 100);
+
+        // the monitor of the cache may be held while waiting for the lock of a shared index
+        CountDownLatch locked = new CountDownLatch(1);
+        CountDownLatch touched = new CountDownLatch(1);
+        Thread holder = new Thread(() -> {
+            synchronized (diskCache) {
+                locked.countDown();
+                try {
+                    touched.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        holder.start();
+        locked.await();
+        Thread toucher = new Thread(() -> {
+            diskCache.touch("a");
+            touched.countDown();
+        });
+        toucher.start();
+        assertTrue(touched.await(5, TimeUnit.SECONDS), "Touching an entry waited for the cache monitor.");
+        holder.join();
+
+        // the access is applied before evicting, so "b" is the least recently used entry
+        diskCache.setPolicy(new ImageCachePolicy(1_000, 1));
+        diskCache.evictIfNeeded();
+        assertEquals(List.of("b"), evicted);
+    }
+
+    private void writeEntry(ImageDiskCache diskCache, String hash, int size) throws IOException {
+        File hashDir = new File(cacheDir, hash);
+        Files.createDirectories(hashDir.toPath());
+        Files.write(new File(hashDir, "image.png").toPath(), new byte[size]);
+        diskCache.put(hash, "definition-" + hash, "image.png", 20, 10);
+    }
+
+    private void writeLegacyEntry(String hash, int size) throws IOException {
+        File hashDir = new File(cacheDir, hash);
+        Files.createDirectories(hashDir.toPath());
+        Files.write(new File(hashDir, "image.png").toPath(), new byte[size]);
+        Files.writeString(new File(hashDir, ImageDiskCache.LEGACY_WH_FILE_NAME).toPath(), "20,10");
+        Files.writeString(new File(hashDir, ImageDiskCache.LEGACY_KEY_FILE_NAME).toPath(), "definition-" + hash);
+    }
+}
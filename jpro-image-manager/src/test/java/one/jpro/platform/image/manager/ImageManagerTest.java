@@ -10,6 +10,7 @@ import one.jpro.platform.image.manager.source.ImageSourceFile;
 import one.jpro.platform.image.manager.source.ImageSourceResource;
 import one.jpro.platform.image.manager.transformer.ImageTransformer;
 import one.jpro.platform.image.manager.transformer.ImageTransformerFitWidth;
+import org.json.JSONObject;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
@@ -17,13 +18,28 @@ import org.mockito.Mockito;
 import java.io.IOException;
 import java.nio.file.Files;
 
+import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.nio.file.StandardCopyOption;
 import java.nio.file.attribute.FileTime;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -69,6 +85,119 @@ class ImageManagerTest {
         assertEquals(200, result.getWidth());
     }
 
+    @Test
+    void testLoadImageCreatesPlaceholder() throws IOException {
+        ImageResult result = manager.loadImage(def);
+        File placeholderFile = result.getPlaceholderFile();
+        assertNotNull(placeholderFile);
+        assertEquals(result.getFile().getParentFile(), placeholderFile.getParentFile());
+
+        BufferedImage placeholder = ImageIO.read(placeholderFile);
+        assertEquals(ImageManager.PLACEHOLDER_WIDTH, placeholder.getWidth());
+        assertEquals(Math.round(result.getHeight() * (double) ImageManager.PLACEHOLDER_WIDTH / result.getWidth()),
+                placeholder.getHeight());
+    }
+
+    @Test
+    void testStatistics() {
+        manager.clearCache();
+        ImageManagerStatistics before = manager.getStatistics();
+        manager.loadImage(def);
+        manager.loadImage(def);
+        ImageManagerStatistics after = manager.getStatistics();
+
+        assertEquals(1, after.getMemoryHits() - before.getMemoryHits());
+        assertEquals(1, after.getMemoryMisses() - before.getMemoryMisses());
+        assertEquals(1, after.getDiskMisses() - before.getDiskMisses());
+        assertTrue(after.getBytesWritten() > before.getBytesWritten());
+        assertEquals(0, after.getInFlight());
+        assertTrue(after.getDecodeLatencies().containsKey(ImageSourceResource.class.getName()));
+        assertTrue(after.getTransformLatencies().containsKey(ImageTransformerFitWidth.class.getName()));
+        assertTrue(after.getEncodeLatencies().containsKey(ImageEncoderPNG.class.getName()));
+    }
+
+    @Test
+    void testPrewarm() throws Exception {
+        manager.clearCache();
+        ImageDefinition missing = new ImageDefinition(new ImageSourceFile(new File("missing.png")),
+                new ImageTransformerFitWidth(100), new ImageEncoderPNG());
+
+        ImagePrewarm prewarm = manager.prewarm(List.of(def, imageDef2, missing), 2);
+        assertSame(prewarm, prewarm.getFuture().get(30, TimeUnit.SECONDS));
+        assertEquals(3, prewarm.getTotal());
+        assertEquals(3, prewarm.getCompleted());
+        assertEquals(1, prewarm.getFailed());
+        assertEquals(1.0, prewarm.getProgress());
+
+        // the prewarmed image is served from the disk cache
+        ImageManagerStatistics before = manager.getStatistics();
+        manager.loadImage(def);
+        assertEquals(1, manager.getStatistics().getDiskHits() - before.getDiskHits());
+    }
+
+    @Test
+    void testMemoryKeyHitDoesNotSerializeDefinition() {
+        AtomicInteger serializations = new AtomicInteger();
+        ImageSource resource = new ImageSourceResource("/testImage.png");
+        Supplier<ImageSource> sourceWithKey = () -> new ImageSource() {
+            @Override
+            public BufferedImage loadImage() {
+                return resource.loadImage();
+            }
+
+            @Override
+            public long identityHashValue() {
+                return resource.identityHashValue();
+            }
+
+            @Override
+            public String getFileName() {
+                return resource.getFileName();
+            }
+
+            @Override
+            public Object getMemoryKey() {
+                return "memory-key-test";
+            }
+
+            @Override
+            public JSONObject toJSON() {
+                serializations.incrementAndGet();
+                JSONObject json = resource.toJSON();
+                json.put("memoryKeyTest", true);
+                return json;
+            }
+        };
+
+        ImageResult first = manager.loadImage(new ImageDefinition(sourceWithKey.get(),
+                new ImageTransformerFitWidth(120), new ImageEncoderPNG()));
+        int count = serializations.get();
+        ImageResult second = manager.loadImage(new ImageDefinition(sourceWithKey.get(),
+                new ImageTransformerFitWidth(120), new ImageEncoderPNG()));
+
+        assertSame(first, second);
+        assertEquals(count, serializations.get(), "A memory key hit serialized the image definition.");
+        ImageResult otherWidth = manager.loadImage(new ImageDefinition(sourceWithKey.get(),
+                new ImageTransformerFitWidth(121), new ImageEncoderPNG()));
+        assertNotSame(first, otherWidth);
+        assertEquals(121, otherWidth.getWidth());
+    }
+
+    @Test
+    void testMemoryCacheHit() {
+        ImageResult first = manager.loadImage(def);
+        ImageResult second = manager.loadImage(def);
+
+        assertSame(first, second, "Second load should be served from the memory cache.");
+        assertSame(first, manager.getMemoryCache().get(def.getHashString()));
+
+        manager.getMemoryCache().clear();
+        ImageResult fromDisk = manager.loadImage(def);
+        assertEquals(first.getFile(), fromDisk.getFile());
+        assertEquals(first.getWidth(), fromDisk.getWidth());
+        assertEquals(first.getHeight(), fromDisk.getHeight());
+    }
+
     @Test
     void testImageNotCreatedTwice() {
         String hashBefore = def.getHashString();
@@ -189,6 +318,199 @@ class ImageManagerTest {
         verify(encoderSpy, times(2)).saveImage(any(BufferedImage.class), any(File.class));
     }
 
+    @Test
+    void testConcurrentLoadsAreCoalesced() throws Exception {
+        manager.clearCache();
+
+        CountDownLatch transformStarted = new CountDownLatch(1);
+        CountDownLatch releaseTransform = new CountDownLatch(1);
+        ImageTransformer slowTransformer = new ImageTransformerFitWidth(150) {
+            @Override
+            public BufferedImage transform(BufferedImage image) {
+                transformStarted.countDown();
+                try {
+                    releaseTransform.await();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.transform(image);
+            }
+        };
+        ImageEncoder encoderSpy = Mockito.spy(new ImageEncoderPNG());
+        ImageDefinition definition = new ImageDefinition(
+                new ImageSourceFile("src/test/resources/testImage.png"), slowTransformer, encoderSpy);
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<ImageResult>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                futures.add(executor.submit(() -> manager.loadImage(definition)));
+            }
+            futures.add(executor.submit(() -> manager.loadImageFuture(definition).join()));
+
+            assertTrue(transformStarted.await(10, TimeUnit.SECONDS));
+            // give the other threads time to join the in-flight computation
+            Thread.sleep(200);
+            releaseTransform.countDown();
+
+            File expectedFile = futures.get(0).get(10, TimeUnit.SECONDS).getFile();
+            for (Future<ImageResult> future : futures) {
+                ImageResult result = future.get(10, TimeUnit.SECONDS);
+                assertEquals(expectedFile, result.getFile());
+                assertEquals(150, result.getWidth());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        verify(encoderSpy, times(1)).saveImage(any(BufferedImage.class), any(File.class));
+
+        // no temporary files must be left behind after publishing the entry
+        File hashDir = new File(manager.getCacheDir(), definition.getHashString());
+        String[] tempFiles = hashDir.list((dir, name) -> name.endsWith(".tmp"));
+        assertNotNull(tempFiles);
+        assertEquals(0, tempFiles.length);
+    }
+
+    @Test
+    void testLoadImagesKeepsOrder() {
+        List<ImageDefinition> definitions = new ArrayList<>();
+        for (int width : new int[]{300, 100, 200, 100}) {
+            definitions.add(new ImageDefinition(new ImageSourceFile("src/test/resources/testImage.png"),
+                    new ImageTransformerFitWidth(width), new ImageEncoderPNG()));
+        }
+
+        List<ImageResult> results = manager.loadImages(definitions);
+
+        assertEquals(4, results.size());
+        assertEquals(300, results.get(0).getWidth());
+        assertEquals(100, results.get(1).getWidth());
+        assertEquals(200, results.get(2).getWidth());
+        assertEquals(100, results.get(3).getWidth());
+        assertEquals(results.get(1).getFile(), results.get(3).getFile());
+    }
+
+    @Test
+    void testLoadImageVariantsDecodesOnce() {
+        manager.clearCache();
+
+        ImageSourceFile source = Mockito.spy(new ImageSourceFile("src/test/resources/testImage.png"));
+        List<ImageVariant> variants = new ArrayList<>();
+        for (int width : new int[]{100, 300, 50, 100}) {
+            variants.add(new ImageVariant(new ImageTransformerFitWidth(width), new ImageEncoderPNG()));
+        }
+
+        ImageResultSet resultSet = manager.loadImageVariants(source, variants);
+
+        verify(source, times(1)).loadImage(any());
+        List<ImageResult> results = resultSet.getResults();
+        assertEquals(4, results.size());
+        assertEquals(100, results.get(0).getWidth());
+        assertEquals(300, results.get(1).getWidth());
+        assertEquals(50, results.get(2).getWidth());
+        assertSame(results.get(0), results.get(3));
+        assertEquals(100, resultSet.select(80).getWidth());
+        assertEquals(300, resultSet.select(150, 2.0).getWidth());
+
+        // the variants are regular cache entries, so single loads of them are cache hits
+        ImageResult single = manager.loadImage(new ImageDefinition(source,
+                new ImageTransformerFitWidth(50), new ImageEncoderPNG()));
+        assertSame(results.get(2), single);
+        manager.loadImageVariants(source, variants);
+        verify(source, times(1)).loadImage(any());
+    }
+
+    @Test
+    void testLoadImageFutureRunsOnDedicatedExecutor() {
+        AtomicReference<Thread> loadingThread = new AtomicReference<>();
+        ImageSource resource = new ImageSourceResource("/testImage.png");
+        String marker = "executor-test-" + System.nanoTime();
+        ImageSource source = new ImageSource() {
+            @Override
+            public BufferedImage loadImage() {
+                loadingThread.set(Thread.currentThread());
+                return resource.loadImage();
+            }
+
+            @Override
+            public long identityHashValue() {
+                return resource.identityHashValue();
+            }
+
+            @Override
+            public String getFileName() {
+                return resource.getFileName();
+            }
+
+            @Override
+            public JSONObject toJSON() {
+                JSONObject json = resource.toJSON();
+                json.put("executorTest", marker);
+                return json;
+            }
+        };
+
+        manager.loadImageFuture(new ImageDefinition(source,
+                new ImageTransformerFitWidth(130), new ImageEncoderPNG())).join();
+
+        assertNotNull(loadingThread.get(), "The image was served from a cache instead of being loaded.");
+        assertNotSame(Thread.currentThread(), loadingThread.get());
+        assertTrue(loadingThread.get().getName().startsWith("image-manager-thread-"));
+    }
+
+    @Test
+    void testLoadImageFutureFailsInsteadOfRunningOnCaller() throws InterruptedException {
+        Executor previousExecutor = manager.getExecutor();
+        CountDownLatch release = new CountDownLatch(1);
+        ThreadPoolExecutor saturated = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(1));
+        try {
+            manager.setExecutor(saturated);
+            saturated.execute(() -> {
+                try {
+                    release.await();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            saturated.execute(() -> { });
+
+            CompletableFuture<ImageResult> future = manager.loadImageFuture(def);
+
+            assertTrue(future.isCompletedExceptionally());
+            CompletionException ex = assertThrows(CompletionException.class, future::join);
+            assertInstanceOf(RejectedExecutionException.class, ex.getCause());
+        } finally {
+            release.countDown();
+            restoreExecutor(previousExecutor);
+            saturated.shutdown();
+            saturated.awaitTermination(5, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    void testSetExecutorKeepsCallerExecutorsRunning() {
+        Executor previousExecutor = manager.getExecutor();
+        ExecutorService first = Executors.newSingleThreadExecutor();
+        ExecutorService second = Executors.newSingleThreadExecutor();
+        try {
+            manager.setExecutor(first);
+            manager.setExecutor(second);
+            assertFalse(first.isShutdown(), "An executor owned by the caller was shut down.");
+            assertSame(second, manager.getExecutor());
+        } finally {
+            restoreExecutor(previousExecutor);
+            first.shutdown();
+            second.shutdown();
+        }
+    }
+
+    // Restores the given executor, or a new default executor if replacing the default one shut it down
+    private void restoreExecutor(Executor previousExecutor) {
+        manager.setExecutor(previousExecutor instanceof ExecutorService service && service.isShutdown()
+                ? ImageManager.createDefaultExecutor() : previousExecutor);
+    }
+
     // Test changing image format
     @Test
     void testChangingFormat() {
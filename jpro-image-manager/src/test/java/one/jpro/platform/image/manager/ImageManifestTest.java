@@ -0,0 +1,65 @@
+package one.jpro.platform.image.manager;
+
+import one.jpro.platform.image.manager.encoder.ImageEncoderJPG;
+import one.jpro.platform.image.manager.encoder.ImageEncoderPNG;
+import one.jpro.platform.image.manager.source.ImageSourceResource;
+import one.jpro.platform.image.manager.transformer.ImageTransformerFitWidth;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ImageManifestTest {
+
+    @TempDir
+    File dir;
+
+    @Test
+    public void testManifestRoundTrip() throws Exception {
+        ImageDefinition first = new ImageDefinition(new ImageSourceResource("/testImage.png"),
+                new ImageTransformerFitWidth(100), new ImageEncoderPNG());
+        ImageDefinition second = new ImageDefinition(new ImageSourceResource("/logo.png"),
+                new ImageTransformerFitWidth(200), new ImageEncoderJPG());
+        Path manifest = new File(dir, "manifest.jsonl").toPath();
+
+        ImageManifest.write(manifest, List.of(first, second));
+        List<ImageDefinition> definitions = ImageManifest.read(manifest);
+
+        assertEquals(2, definitions.size());
+        assertEquals(first.toJSON().toString(), definitions.get(0).toJSON().toString());
+        assertEquals(second.toJSON().toString(), definitions.get(1).toJSON().toString());
+    }
+
+    @Test
+    public void testRecordedManifestSkipsDuplicatesAndInvalidEntries() throws Exception {
+        ImageDefinition definition = new ImageDefinition(new ImageSourceResource("/testImage.png"),
+                new ImageTransformerFitWidth(100), new ImageEncoderPNG());
+        String json = definition.toJSON().toString();
+        Path manifest = new File(dir, "manifest.jsonl").toPath();
+
+        ImageManifest.append(manifest, json);
+        ImageManifest.append(manifest, "{\"source\": {\"type\": \"Unknown\"}}");
+        ImageManifest.append(manifest, "not json");
+        // the same definition recorded with another modification date of the source
+        ImageManifest.append(manifest, json.replaceAll("\"modified\":\\d+", "\"modified\":1"));
+
+        List<ImageDefinition> definitions = ImageManifest.read(manifest);
+        assertEquals(1, definitions.size());
+        assertEquals(json, definitions.get(0).toJSON().toString());
+    }
+
+    @Test
+    public void testJsonArrayManifest() throws Exception {
+        ImageDefinition definition = new ImageDefinition(new ImageSourceResource("/testImage.png"),
+                new ImageTransformerFitWidth(100), new ImageEncoderPNG());
+        Path manifest = new File(dir, "manifest.json").toPath();
+        Files.writeString(manifest, "[" + definition.toJSON() + "]");
+
+        assertEquals(1, ImageManifest.read(manifest).size());
+    }
+}
@@ -0,0 +1,82 @@
+package one.jpro.platform.image.manager;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ImageMemoryCacheTest {
+
+    @Test
+    public void testLeastRecentlyUsedEntryIsEvicted() {
+        ImageMemoryCache cache = new ImageMemoryCache(2);
+        ImageResult result1 = new ImageResult(new File("a.png"), 10, 10);
+        ImageResult result2 = new ImageResult(new File("b.png"), 20, 20);
+        ImageResult result3 = new ImageResult(new File("c.png"), 30, 30);
+
+        cache.put("a", result1);
+        cache.put("b", result2);
+        // access "a", so "b" becomes the least recently used entry
+        assertSame(result1, cache.get("a"));
+        cache.put("c", result3);
+
+        assertEquals(2, cache.size());
+        assertSame(result1, cache.get("a"));
+        assertNull(cache.get("b"));
+        assertSame(result3, cache.get("c"));
+    }
+
+    @Test
+    public void testDisabledCacheHoldsNothing() {
+        ImageMemoryCache cache = new ImageMemoryCache(0);
+        cache.put("a", new ImageResult(new File("a.png"), 10, 10));
+
+        assertEquals(0, cache.size());
+        assertNull(cache.get("a"));
+    }
+
+    @Test
+    public void testClearAndRemove() {
+        ImageMemoryCache cache = new ImageMemoryCache(10);
+        cache.put("a", new ImageResult(new File("a.png"), 10, 10));
+        cache.put("b", new ImageResult(new File("b.png"), 20, 20));
+
+        cache.remove("a");
+        assertNull(cache.get("a"));
+        assertEquals(1, cache.size());
+
+        cache.clear();
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testNegativeSizeIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new ImageMemoryCache(-1));
+    }
+
+    @Test
+    public void testEntriesAreFoundByMemoryKey() {
+        ImageMemoryCache cache = new ImageMemoryCache(2);
+        ImageResult result1 = new ImageResult(new File("a.png"), 10, 10);
+        ImageResult result2 = new ImageResult(new File("b.png"), 20, 20);
+        ImageResult result3 = new ImageResult(new File("c.png"), 30, 30);
+
+        cache.put("a", "key-a", result1);
+        cache.put("b", "key-b", result2);
+        assertEquals("a", cache.getHash("key-a"));
+        assertSame(result1, cache.get(cache.getHash("key-a")));
+
+        // the keys of removed and evicted entries are forgotten as well
+        cache.remove("a");
+        assertNull(cache.getHash("key-a"));
+        cache.put("c", result3);
+        cache.put("a", result1);
+        assertNull(cache.getHash("key-b"));
+        assertEquals(2, cache.size());
+
+        cache.put("c", "key-c", result3);
+        cache.clear();
+        assertNull(cache.getHash("key-c"));
+    }
+}
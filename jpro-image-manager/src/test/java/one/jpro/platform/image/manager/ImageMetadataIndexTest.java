@@ -0,0 +1,91 @@
+package one.jpro.platform.image.manager;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.RandomAccessFile;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ImageMetadataIndexTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testRecordsAreReplayed() throws Exception {
+        Path file = tempDir.resolve(ImageMetadataIndex.FILE_NAME);
+        try (ImageMetadataIndex index = ImageMetadataIndex.open(file)) {
+            index.append(ImageMetadataIndex.Record.put("a", new byte[]{1, 2}, "image.png", 20, 10, 100, 1_000));
+            index.append(ImageMetadataIndex.Record.touch("a", 2_000));
+            index.append(ImageMetadataIndex.Record.remove("b"));
+        }
+
+        List<ImageMetadataIndex.Record> records = new ArrayList<>();
+        try (ImageMetadataIndex index = ImageMetadataIndex.open(file)) {
+            assertEquals(3, index.replay(records::add));
+        }
+        ImageMetadataIndex.Record put = records.get(0);
+        assertEquals(ImageMetadataIndex.TYPE_PUT, put.type());
+        assertEquals("a", put.hash());
+        assertArrayEquals(new byte[]{1, 2}, put.keyDigest());
+        assertEquals("image.png", put.fileName());
+        assertEquals(20, put.width());
+        assertEquals(10, put.height());
+        assertEquals(100, put.size());
+        assertEquals(1_000, put.lastAccess());
+        assertEquals(2_000, records.get(1).lastAccess());
+        assertEquals(ImageMetadataIndex.TYPE_REMOVE, records.get(2).type());
+    }
+
+    @Test
+    public void testTornRecordEndsTheLog() throws Exception {
+        Path file = tempDir.resolve(ImageMetadataIndex.FILE_NAME);
+        int secondRecordOffset;
+        try (ImageMetadataIndex index = ImageMetadataIndex.open(file)) {
+            index.append(ImageMetadataIndex.Record.touch("a", 1));
+            secondRecordOffset = index.usedSize();
+            index.append(ImageMetadataIndex.Record.touch("b", 2));
+        }
+        // corrupt the payload of the second record, as if the process crashed while writing it
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file.toFile(), "rw")) {
+            randomAccessFile.seek(secondRecordOffset + 6);
+            randomAccessFile.write(0x7F);
+        }
+
+        try (ImageMetadataIndex index = ImageMetadataIndex.open(file)) {
+            List<ImageMetadataIndex.Record> records = new ArrayList<>();
+            assertEquals(1, index.replay(records::add));
+            assertEquals("a", records.get(0).hash());
+            // appending continues after the last valid record
+            index.append(ImageMetadataIndex.Record.touch("c", 3));
+        }
+        try (ImageMetadataIndex index = ImageMetadataIndex.open(file)) {
+            assertEquals(2, index.replay(record -> {}));
+        }
+    }
+
+    @Test
+    public void testLogGrowsAndCompacts() throws Exception {
+        Path file = tempDir.resolve(ImageMetadataIndex.FILE_NAME);
+        try (ImageMetadataIndex index = ImageMetadataIndex.open(file)) {
+            for (int i = 0; i < 20_000; i++) {
+                index.append(ImageMetadataIndex.Record.put("hash" + i, new byte[32], "image.png", 1, 1, 1, i));
+            }
+            assertTrue(index.usedSize() > 256 * 1_024);
+
+            index.compact(List.of(ImageMetadataIndex.Record.put("kept", new byte[32], "image.png", 1, 1, 1, 1)));
+            index.append(ImageMetadataIndex.Record.touch("kept", 2));
+        }
+
+        try (ImageMetadataIndex index = ImageMetadataIndex.open(file)) {
+            List<ImageMetadataIndex.Record> records = new ArrayList<>();
+            assertEquals(2, index.replay(records::add));
+            assertEquals("kept", records.get(0).hash());
+            assertEquals(2, records.get(1).lastAccess());
+        }
+    }
+}
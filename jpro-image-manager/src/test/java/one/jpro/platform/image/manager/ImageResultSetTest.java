@@ -0,0 +1,40 @@
+package one.jpro.platform.image.manager;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ImageResultSetTest {
+
+    private final ImageResult small = new ImageResult(new File("small.png"), 100, 50);
+    private final ImageResult medium = new ImageResult(new File("medium.png"), 200, 100);
+    private final ImageResult large = new ImageResult(new File("large.png"), 400, 200);
+
+    @Test
+    public void testSelect() {
+        ImageResultSet resultSet = new ImageResultSet(List.of(large, small, medium));
+
+        assertSame(small, resultSet.select(1));
+        assertSame(small, resultSet.select(100));
+        assertSame(medium, resultSet.select(101));
+        assertSame(large, resultSet.select(1000));
+        assertSame(large, resultSet.select(200, 1.5));
+        assertEquals(List.of(large, small, medium), resultSet.getResults());
+    }
+
+    @Test
+    public void testEmptySet() {
+        assertNull(new ImageResultSet(List.of()).select(100));
+    }
+
+    @Test
+    public void testToSrcSet() {
+        ImageResultSet resultSet = new ImageResultSet(List.of(large, small));
+
+        assertEquals("/images/small.png 100w, /images/large.png 400w",
+                resultSet.toSrcSet(result -> "/images/" + result.getFile().getName()));
+    }
+}
@@ -8,7 +8,7 @@ import org.junit.jupiter.api.Test;
 import java.io.File;
 import java.util.concurrent.CountDownLatch;
 
-import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.*;
 
 public class ImageResultTest {
 
@@ -32,4 +32,26 @@ public class ImageResultTest {
         assertEquals(100, fxImage.getWidth());
         assertEquals(100, fxImage.getHeight());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testToFXPlaceholderImage() {
+        File testFile = new File("src/test/resources/testImage.png");
+        ImageResult result = new ImageResult(testFile, 100, 100, new File("src/test/resources/logo.png"));
+        Image fxImage = result.toFXPlaceholderImage();
+
+        assertEquals(100, fxImage.getWidth());
+        assertEquals(100, fxImage.getHeight());
+        assertTrue(result.getPlaceholderDataURI().startsWith("data:image/png;base64,"));
+    }
+
+    @Test
+    public void testMissingPlaceholder() {
+        File testFile = new File("src/test/resources/testImage.png");
+        ImageResult result = new ImageResult(testFile, 100, 100, new File("missing.png"));
+
+        assertNull(result.getPlaceholderFile());
+        assertNull(result.getPlaceholderDataURI());
+        assertNull(result.toFXPlaceholderImage());
+        assertNull(new ImageResult(testFile, 100, 100).getPlaceholderFile());
+    }
+}
@@ -0,0 +1,75 @@
+package one.jpro.platform.image.manager;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ImageStatisticsRecorderTest {
+
+    @Test
+    public void testCountersAreSnapshotted() {
+        ImageStatisticsRecorder recorder = new ImageStatisticsRecorder();
+        recorder.memoryHit();
+        recorder.memoryMiss();
+        recorder.memoryMiss();
+        recorder.diskHit();
+        recorder.diskMiss();
+        recorder.bytesWritten(100);
+        recorder.bytesWritten(50);
+        recorder.eviction();
+
+        ImageManagerStatistics statistics = recorder.snapshot(3);
+        assertEquals(1, statistics.getMemoryHits());
+        assertEquals(2, statistics.getMemoryMisses());
+        assertEquals(1, statistics.getDiskHits());
+        assertEquals(1, statistics.getDiskMisses());
+        assertEquals(150, statistics.getBytesWritten());
+        assertEquals(1, statistics.getEvictions());
+        assertEquals(3, statistics.getInFlight());
+
+        // later changes do not affect the snapshot
+        recorder.memoryHit();
+        assertEquals(1, statistics.getMemoryHits());
+    }
+
+    @Test
+    public void testLatenciesAreRecordedPerType() throws Exception {
+        ImageStatisticsRecorder recorder = new ImageStatisticsRecorder();
+        ImageStatisticsRecorder.Timer timer = recorder.start(ImageStatisticsRecorder.Operation.ENCODE, "encoder", "hash");
+        Thread.sleep(20);
+        timer.stop();
+        recorder.start(ImageStatisticsRecorder.Operation.ENCODE, "encoder", "hash").stop();
+        recorder.start(ImageStatisticsRecorder.Operation.DECODE, 1, "hash").stop();
+
+        ImageManagerStatistics statistics = recorder.snapshot(0);
+        assertEquals(1, statistics.getDecodeLatencies().get(Integer.class.getName()).getCount());
+        assertTrue(statistics.getTransformLatencies().isEmpty());
+
+        ImageManagerStatistics.LatencyHistogram histogram = statistics.getEncodeLatencies().get(String.class.getName());
+        assertEquals(2, histogram.getCount());
+        assertTrue(histogram.getMax().compareTo(Duration.ofMillis(20)) >= 0);
+        assertEquals(histogram.getMax(), histogram.getPercentile(100));
+        assertTrue(histogram.getPercentile(50).compareTo(Duration.ofMillis(20)) < 0);
+        assertTrue(histogram.getTotal().compareTo(histogram.getMax()) >= 0);
+        assertThrows(IllegalArgumentException.class, () -> histogram.getPercentile(101));
+    }
+
+    @Test
+    public void testAnonymousTypesAreRecordedSeparately() {
+        ImageStatisticsRecorder recorder = new ImageStatisticsRecorder();
+        Object first = new Object() {
+        };
+        Object second = new Object() {
+        };
+        recorder.start(ImageStatisticsRecorder.Operation.TRANSFORM, first, "hash").stop();
+        recorder.start(ImageStatisticsRecorder.Operation.TRANSFORM, second, "hash").stop();
+
+        Map<String, ImageManagerStatistics.LatencyHistogram> latencies = recorder.snapshot(0).getTransformLatencies();
+        assertEquals(2, latencies.size());
+        assertEquals(1, latencies.get(first.getClass().getName()).getCount());
+        assertEquals(1, latencies.get(second.getClass().getName()).getCount());
+    }
+}
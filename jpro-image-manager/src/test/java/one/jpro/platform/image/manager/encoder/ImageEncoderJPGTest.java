@@ -5,7 +5,10 @@ import org.junit.jupiter.api.Test;
 
 import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.util.Random;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -63,4 +66,39 @@ public class ImageEncoderJPGTest {
         json.put("fileExtension", "jpg");
         assertTrue(encoder.toJSON().similar(json));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testLowerQualityProducesSmallerOutput() throws Exception {
+        BufferedImage image = new BufferedImage(200, 200, BufferedImage.TYPE_INT_RGB);
+        Random random = new Random(42);
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                image.setRGB(x, y, random.nextInt(0x1000000));
+            }
+        }
+
+        ByteArrayOutputStream high = new ByteArrayOutputStream();
+        new ImageEncoderJPG(0.95).encode(image, high);
+        ByteArrayOutputStream low = new ByteArrayOutputStream();
+        new ImageEncoderJPG(0.3).encode(image, low);
+
+        assertTrue(low.size() < high.size());
+        BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(low.toByteArray()));
+        assertEquals(200, decoded.getWidth());
+        assertEquals(200, decoded.getHeight());
+    }
+
+    @Test
+    public void testEncodeProgressiveImageWithAlpha() throws Exception {
+        BufferedImage image = new BufferedImage(64, 48, BufferedImage.TYPE_INT_ARGB);
+        ImageEncoderJPG encoder = new ImageEncoderJPG(0.8, true);
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        encoder.encode(image, output);
+
+        BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(output.toByteArray()));
+        assertEquals(64, decoded.getWidth());
+        assertEquals(48, decoded.getHeight());
+        assertTrue(encoder.toJSON().getBoolean("progressive"));
+    }
+}
@@ -4,7 +4,10 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.nio.channels.Channels;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -38,4 +41,46 @@ public class ImageEncoderPNGTest {
     public void testFileExtension() {
         assertEquals("png", encoder.getFileExtension());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testEveryFilterIsLossless() throws Exception {
+        BufferedImage image = new BufferedImage(61, 37, BufferedImage.TYPE_INT_ARGB);
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                image.setRGB(x, y, (x * 4) << 24 | (y * 7) << 16 | (x * y) % 256 << 8 | (x + y) % 256);
+            }
+        }
+
+        for (ImageEncoderPNG.Filter filter : ImageEncoderPNG.Filter.values()) {
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            new ImageEncoderPNG(9, filter).encode(image, output);
+
+            BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(output.toByteArray()));
+            for (int y = 0; y < image.getHeight(); y++) {
+                for (int x = 0; x < image.getWidth(); x++) {
+                    assertEquals(image.getRGB(x, y), decoded.getRGB(x, y), filter + " changed pixel " + x + "," + y);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testEncodeToChannel() throws Exception {
+        BufferedImage image = new BufferedImage(20, 10, BufferedImage.TYPE_3BYTE_BGR);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        new ImageEncoderPNG(1, ImageEncoderPNG.Filter.PAETH).encode(image, Channels.newChannel(output));
+
+        BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(output.toByteArray()));
+        assertEquals(20, decoded.getWidth());
+        assertEquals(10, decoded.getHeight());
+    }
+
+    @Test
+    public void testToJsonOmitsDefaults() {
+        assertFalse(encoder.toJSON().has("compressionLevel"));
+        assertFalse(encoder.toJSON().has("filter"));
+        assertEquals("PAETH", new ImageEncoderPNG(6, ImageEncoderPNG.Filter.PAETH).toJSON().getString("filter"));
+        assertThrows(IllegalArgumentException.class, () -> new ImageEncoderPNG(10, ImageEncoderPNG.Filter.NONE));
+    }
+}
@@ -1,12 +1,19 @@
 package one.jpro.platform.image.manager.source;
 
 import one.jpro.platform.image.manager.ImageUtils;
+import one.jpro.platform.image.manager.transformer.ImageTransformerFitWidth;
+import one.jpro.platform.image.manager.transformer.ImageTransformerIdentity;
 import org.json.JSONObject;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import static org.junit.jupiter.api.Assertions.*;
 
 import java.awt.image.BufferedImage;
 import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Random;
 
 public class ImageSourceFileTest {
 
@@ -19,6 +26,19 @@ public class ImageSourceFileTest {
         assertNotNull(image);
     }
 
+    @Test
+    public void testLoadImageWithTransformerHintIsSubsampled() {
+        File testImageFile = new File("src/test/resources/testImage.png");
+        ImageSourceFile imageSource = new ImageSourceFile(testImageFile);
+
+        BufferedImage fullImage = imageSource.loadImage(new ImageTransformerIdentity());
+        BufferedImage subsampledImage = imageSource.loadImage(new ImageTransformerFitWidth(100));
+
+        assertEquals(433, fullImage.getWidth());
+        assertTrue(subsampledImage.getWidth() < fullImage.getWidth());
+        assertTrue(subsampledImage.getWidth() >= 200, "Subsampled image should stay twice the target width");
+    }
+
     @Test
     public void testIdentityHashValue() {
         File testImageFile = new File("src/test/resources/testImage.png");
@@ -28,6 +48,33 @@ public class ImageSourceFileTest {
         assertTrue(hashValue != 0);
     }
 
+    @Test
+    public void testIdentityHashValueMatchesContentHash(@TempDir Path tempDir) throws Exception {
+        byte[] content = new byte[200_000];
+        new Random(42).nextBytes(content);
+        Path file = tempDir.resolve("image.bin");
+        Files.write(file, content);
+        ImageSourceFile imageSource = new ImageSourceFile(file.toFile());
+
+        assertEquals(ImageUtils.computeHashValue(content), imageSource.identityHashValue());
+        assertEquals(ImageUtils.computeHashValue(content), ImageUtils.computeHashValue(file));
+    }
+
+    @Test
+    public void testIdentityHashValueChangesWithFile(@TempDir Path tempDir) throws Exception {
+        Path file = tempDir.resolve("image.bin");
+        Files.write(file, new byte[]{1, 2, 3});
+        ImageSourceFile imageSource = new ImageSourceFile(file.toFile());
+        long hashValue = imageSource.identityHashValue();
+        assertEquals(hashValue, imageSource.identityHashValue());
+
+        Files.write(file, new byte[]{1, 2, 4});
+        Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis() + 10_000));
+
+        assertEquals(ImageUtils.computeHashValue(new byte[]{1, 2, 4}), imageSource.identityHashValue());
+        assertNotEquals(hashValue, imageSource.identityHashValue());
+    }
+
     @Test
     public void testToJson() {
         final File testImageFile = new File("src/test/resources/testImage.png");
@@ -0,0 +1,272 @@
+package one.jpro.platform.image.manager.source;
+
+import one.jpro.platform.image.manager.ImageDefinition;
+import one.jpro.platform.image.manager.ImageManager;
+import one.jpro.platform.image.manager.encoder.ImageEncoderPNG;
+import one.jpro.platform.image.manager.transformer.ImageTransformerFitWidth;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.awt.image.BufferedImage;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RemoteImageCacheTest {
+
+    @TempDir
+    File cacheDir;
+
+    private StandInServer server;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        server = new StandInServer(Files.readAllBytes(new File("src/test/resources/testImage.png").toPath()));
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        server.close();
+    }
+
+    @Test
+    public void testImageIsFetchedOnce() {
+        RemoteImageCache cache = new RemoteImageCache(cacheDir, Duration.ofHours(1), 2);
+        ImageSourceURL source = new ImageSourceURL(server.getUrl(), cache);
+
+        // the JSON representation never fetches the image, preparing the source does
+        assertFalse(source.toJSON().has("version"));
+        assertEquals(0, server.requests.get());
+        source.prepare();
+        String version = source.toJSON().getString("version");
+        BufferedImage image = source.loadImage();
+
+        assertEquals(433, image.getWidth());
+        assertEquals(version, source.toJSON().getString("version"));
+        assertEquals(version, cache.getVersion(server.getUrl()));
+        assertEquals(version, new ImageSourceURL(server.getUrl(), cache).toJSON().getString("version"));
+        assertEquals(1, server.requests.get());
+    }
+
+    @Test
+    public void testFirstDefinitionHashIncludesVersion() {
+        RemoteImageCache cache = new RemoteImageCache(cacheDir, Duration.ofHours(1), 2);
+        URL url = server.getUrl();
+        String hash = ImageManager.computeImageDefinitionHash(new ImageDefinition(new ImageSourceURL(url, cache),
+                new ImageTransformerFitWidth(100), new ImageEncoderPNG()));
+        assertEquals(1, server.requests.get());
+
+        // once the image has been loaded, the definition still has the same hash
+        new ImageSourceURL(url, cache).loadImage();
+        assertEquals(hash, ImageManager.computeImageDefinitionHash(new ImageDefinition(new ImageSourceURL(url, cache),
+                new ImageTransformerFitWidth(100), new ImageEncoderPNG())));
+        assertEquals(1, server.requests.get());
+    }
+
+    @Test
+    public void testSourceFollowsRevalidatedVersion() throws Exception {
+        RemoteImageCache cache = new RemoteImageCache(cacheDir, Duration.ofHours(1), 2);
+        URL url = server.getUrl();
+        String version = cache.getVersion(url);
+        ImageSourceURL source = new ImageSourceURL(url, cache);
+        assertEquals(version, source.toJSON().getString("version"));
+
+        server.setBody(Files.readAllBytes(new File("src/test/resources/logo.png").toPath()));
+        String newVersion = cache.revalidateAsync(url).get(10, TimeUnit.SECONDS);
+        assertNotEquals(version, newVersion);
+        assertEquals(newVersion, source.toJSON().getString("version"));
+        assertEquals(newVersion, new ImageSourceURL(url, cache).toJSON().getString("version"));
+    }
+
+    @Test
+    public void testLeastRecentlyUsedImagesAreEvicted() throws Exception {
+        RemoteImageCache cache = new RemoteImageCache(cacheDir, Duration.ofHours(1), 2, server.body.length);
+        URL first = new URL(server.getUrl(), "/image.png?first");
+        URL second = new URL(server.getUrl(), "/image.png?second");
+        String version = cache.getVersion(first);
+        Thread.sleep(5);
+        cache.getVersion(second);
+
+        cache.evictIfNeeded();
+        // the version of the evicted image stays known, its bytes are fetched again when read
+        assertEquals(version, cache.getCachedVersion(first));
+        assertEquals(2, server.requests.get());
+        try (InputStream input = cache.openStream(first)) {
+            assertArrayEquals(server.body, input.readAllBytes());
+        }
+        assertEquals(3, server.requests.get());
+        try (InputStream input = cache.openStream(second)) {
+            assertArrayEquals(server.body, input.readAllBytes());
+        }
+    }
+
+    @Test
+    public void testStaleImageIsRevalidatedWithConditionalRequest() throws Exception {
+        RemoteImageCache cache = new RemoteImageCache(cacheDir, Duration.ZERO, 2);
+        URL url = server.getUrl();
+        String version = cache.getVersion(url);
+
+        // the stale version is returned immediately, the unchanged image is revalidated with a 304
+        Thread.sleep(5);
+        assertEquals(version, cache.getVersion(url));
+        assertEquals(version, cache.revalidateAsync(url).get(10, TimeUnit.SECONDS));
+        assertTrue(server.conditionalRequests.get() >= 1);
+        assertTrue(server.notModifiedResponses.get() >= 1);
+
+        // a changed image yields a new version once it has been revalidated
+        server.setBody(Files.readAllBytes(new File("src/test/resources/logo.png").toPath()));
+        String newVersion = cache.revalidateAsync(url).get(10, TimeUnit.SECONDS);
+        assertNotEquals(version, newVersion);
+        assertEquals(newVersion, cache.getVersion(url));
+        try (InputStream input = cache.openStream(url)) {
+            assertArrayEquals(server.body, input.readAllBytes());
+        }
+    }
+
+    @Test
+    public void testCacheSurvivesRestart() {
+        URL url = server.getUrl();
+        String version = new RemoteImageCache(cacheDir, Duration.ofHours(1), 2).getVersion(url);
+
+        RemoteImageCache restarted = new RemoteImageCache(cacheDir, Duration.ofHours(1), 2);
+        assertEquals(version, restarted.getCachedVersion(url));
+        assertEquals(version, restarted.getVersion(url));
+        assertEquals(1, server.requests.get());
+    }
+
+    @Test
+    public void testFailedFetchThrows() throws Exception {
+        RemoteImageCache cache = new RemoteImageCache(cacheDir, Duration.ofHours(1), 2);
+        URL missing = new URL(server.getUrl(), "/missing.png");
+
+        assertThrows(ImageSourceException.class, () -> cache.getVersion(missing));
+    }
+
+    @Test
+    public void testNonRemoteUrlsAreNotCached() {
+        URL resource = getClass().getResource("/testImage.png");
+
+        assertFalse(RemoteImageCache.isRemote(resource));
+        assertFalse(new ImageSourceURL(resource).toJSON().has("version"));
+        assertTrue(RemoteImageCache.isRemote(server.getUrl()));
+    }
+
+    /**
+     * A minimal HTTP server serving one image with an ETag and answering conditional requests.
+     */
+    private static final class StandInServer implements AutoCloseable {
+        private final ServerSocket serverSocket;
+        private final ExecutorService executor = Executors.newCachedThreadPool();
+        private final AtomicInteger requests = new AtomicInteger();
+        private final AtomicInteger conditionalRequests = new AtomicInteger();
+        private final AtomicInteger notModifiedResponses = new AtomicInteger();
+        private final List<Socket> sockets = new CopyOnWriteArrayList<>();
+        private volatile byte[] body;
+        private volatile String etag;
+
+        private StandInServer(byte[] body) throws IOException {
+            setBody(body);
+            serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+            executor.execute(this::accept);
+        }
+
+        private void setBody(byte[] body) {
+            this.body = body;
+            this.etag = "\"" + body.length + "-" + java.util.Arrays.hashCode(body) + "\"";
+        }
+
+        private URL getUrl() {
+            try {
+                return new URL("http://127.0.0.1:" + serverSocket.getLocalPort() + "/image.png");
+            } catch (IOException ex) {
+                throw new RuntimeException(ex);
+            }
+        }
+
+        private void accept() {
+            while (!serverSocket.isClosed()) {
+                try {
+                    Socket socket = serverSocket.accept();
+                    sockets.add(socket);
+                    executor.execute(() -> handle(socket));
+                } catch (IOException ex) {
+                    return;
+                }
+            }
+        }
+
+        private void handle(Socket socket) {
+            try (socket) {
+                BufferedReader reader = new BufferedReader(
+                        new InputStreamReader(socket.getInputStream(), StandardCharsets.ISO_8859_1));
+                String requestLine;
+                while ((requestLine = reader.readLine()) != null) {
+                    String ifNoneMatch = null;
+                    String line;
+                    while ((line = reader.readLine()) != null && !line.isEmpty()) {
+                        if (line.toLowerCase().startsWith("if-none-match:")) {
+                            ifNoneMatch = line.substring(line.indexOf(':') + 1).trim();
+                        }
+                    }
+                    requests.incrementAndGet();
+                    OutputStream output = socket.getOutputStream();
+                    String path = requestLine.split(" ")[1].split("\\?")[0];
+                    if (!path.equals("/image.png")) {
+                        output.write("HTTP/1.1 404 Not Found\r\nContent-Length: 0\r\n\r\n"
+                                .getBytes(StandardCharsets.ISO_8859_1));
+                    } else if (ifNoneMatch != null) {
+                        conditionalRequests.incrementAndGet();
+                        if (ifNoneMatch.equals(etag)) {
+                            notModifiedResponses.incrementAndGet();
+                            output.write(("HTTP/1.1 304 Not Modified\r\nETag: " + etag + "\r\n\r\n")
+                                    .getBytes(StandardCharsets.ISO_8859_1));
+                        } else {
+                            writeBody(output);
+                        }
+                    } else {
+                        writeBody(output);
+                    }
+                    output.flush();
+                }
+            } catch (IOException ex) {
+                // connection closed
+            }
+        }
+
+        private void writeBody(OutputStream output) throws IOException {
+            byte[] content = body;
+            output.write(("HTTP/1.1 200 OK\r\nContent-Type: image/png\r\nETag: " + etag
+                    + "\r\nContent-Length: " + content.length + "\r\n\r\n").getBytes(StandardCharsets.ISO_8859_1));
+            output.write(content);
+        }
+
+        @Override
+        public void close() throws IOException {
+            serverSocket.close();
+            for (Socket socket : sockets) {
+                socket.close();
+            }
+            executor.shutdownNow();
+        }
+    }
+}
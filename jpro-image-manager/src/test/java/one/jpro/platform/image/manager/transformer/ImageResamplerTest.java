@@ -0,0 +1,80 @@
+package one.jpro.platform.image.manager.transformer;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ImageResamplerTest {
+
+    @Test
+    public void testCheckerboardIsAveragedWithoutAliasing() {
+        BufferedImage checkerboard = new BufferedImage(800, 600, BufferedImage.TYPE_3BYTE_BGR);
+        for (int y = 0; y < checkerboard.getHeight(); y++) {
+            for (int x = 0; x < checkerboard.getWidth(); x++) {
+                checkerboard.setRGB(x, y, ((x + y) & 1) == 0 ? 0xFFFFFF : 0x000000);
+            }
+        }
+
+        for (ImageResampler.Filter filter : ImageResampler.Filter.values()) {
+            BufferedImage resized = ImageResampler.resize(checkerboard, 97, 71, filter);
+
+            assertEquals(97, resized.getWidth());
+            assertEquals(71, resized.getHeight());
+            assertEquals(BufferedImage.TYPE_INT_RGB, resized.getType());
+            for (int y = 0; y < resized.getHeight(); y++) {
+                for (int x = 0; x < resized.getWidth(); x++) {
+                    int blue = resized.getRGB(x, y) & 0xFF;
+                    assertTrue(Math.abs(blue - 128) <= 1, filter + " produced aliasing at " + x + "," + y);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testTransparentPixelsDoNotBleed() {
+        BufferedImage image = new BufferedImage(400, 400, BufferedImage.TYPE_INT_ARGB);
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                image.setRGB(x, y, x < 200 ? 0x00FF0000 : 0xFF0000FF);
+            }
+        }
+
+        BufferedImage resized = ImageResampler.resize(image, 40, 40, ImageResampler.Filter.AREA_AVERAGE);
+
+        assertEquals(BufferedImage.TYPE_INT_ARGB, resized.getType());
+        assertEquals(0x00000000, resized.getRGB(5, 5));
+        assertEquals(0xFF0000FF, resized.getRGB(20, 5));
+    }
+
+    @Test
+    public void testUpscalingIsSupported() {
+        BufferedImage image = new BufferedImage(10, 10, BufferedImage.TYPE_INT_RGB);
+
+        BufferedImage resized = ImageResampler.resize(image, 20, 5, ImageResampler.Filter.LANCZOS3);
+
+        assertEquals(20, resized.getWidth());
+        assertEquals(5, resized.getHeight());
+    }
+
+    @Test
+    public void testTransformerWithFilter() {
+        BufferedImage image = new BufferedImage(1000, 500, BufferedImage.TYPE_3BYTE_BGR);
+        ImageTransformerFitWidth transformer = new ImageTransformerFitWidth(100, 1, ImageResampler.Filter.AREA_AVERAGE);
+
+        BufferedImage resized = transformer.transform(image);
+
+        assertEquals(100, resized.getWidth());
+        assertEquals(50, resized.getHeight());
+        assertEquals("AREA_AVERAGE", transformer.toJSON().getString("filter"));
+        assertFalse(new ImageTransformerFitWidth(100).toJSON().has("filter"));
+    }
+
+    @Test
+    public void testInvalidTargetSizeIsRejected() {
+        BufferedImage image = new BufferedImage(10, 10, BufferedImage.TYPE_INT_RGB);
+        assertThrows(IllegalArgumentException.class,
+                () -> ImageResampler.resize(image, 0, 5, ImageResampler.Filter.AREA_AVERAGE));
+    }
+}
@@ -3,6 +3,7 @@ package one.jpro.platform.image.manager.transformer;
 import org.junit.jupiter.api.Test;
 
 import javax.imageio.ImageIO;
+import java.awt.Dimension;
 import java.awt.image.BufferedImage;
 import java.io.File;
 
@@ -20,4 +21,16 @@ public class ImageTransformerFitWidthTest {
         assertEquals(100, transformedImage.getWidth());
         assertEquals((originalImage.getHeight() * 100) / originalImage.getWidth(), transformedImage.getHeight());
     }
+
+    @Test
+    public void testTargetSizeMatchesTransformation() throws Exception {
+        BufferedImage originalImage = ImageIO.read(new File("src/test/resources/testImage.png"));
+        ImageTransformerFitWidth transformer = new ImageTransformerFitWidth(100);
+
+        Dimension targetSize = transformer.getTargetSize(originalImage.getWidth(), originalImage.getHeight());
+        BufferedImage transformedImage = transformer.transform(originalImage);
+
+        assertEquals(transformedImage.getWidth(), targetSize.width);
+        assertEquals(transformedImage.getHeight(), targetSize.height);
+    }
 }
\ No newline at end of file
@@ -31,4 +31,16 @@ public class ImageTransformerWHTest {
         json.put("targetHeight", 300);
         assertTrue(transformer.toJSON().similar(json));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testRatioWithFilter() {
+        ImageTransformer transformer = new ImageTransformerWH(200, 300, 1.5, ImageResampler.Filter.LANCZOS3);
+
+        JSONObject json = new JSONObject();
+        json.put("type", "ImageTransformerWH");
+        json.put("targetWidth", 300);
+        json.put("targetHeight", 450);
+        json.put("filter", "LANCZOS3");
+        assertTrue(transformer.toJSON().similar(json));
+    }
+}